@@ -16,15 +16,12 @@
 package com.paypal.selion.platform.dataprovider;
 
 import java.io.IOException;
-import java.lang.reflect.Array;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
-
-import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang3.ClassUtils;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Preconditions;
 import com.paypal.selion.logger.SeLionLogger;
@@ -44,9 +41,24 @@ public abstract class AbstractExcelDataProvider {
 
     protected static final SimpleLogger logger = SeLionLogger.getLogger();
     private List<DefaultCustomType> customTypes = new ArrayList<DefaultCustomType>();
+    private Map<Class<?>, FieldBindingPlan> bindingPlans = new ConcurrentHashMap<>();
 
     public AbstractExcelDataProvider(String pathName, String fileName) throws IOException {
-        excelReader = new ExcelReader(pathName, fileName);
+        this(pathName, fileName, false);
+    }
+
+    /**
+     * @param pathName
+     *            the path where the excel file is located.
+     * @param fileName
+     *            the name of the excel file to be read.
+     * @param streaming
+     *            if <code>true</code>, rows of an .xlsx file are parsed on demand instead of loading the whole workbook
+     *            in memory.
+     * @throws IOException
+     */
+    public AbstractExcelDataProvider(String pathName, String fileName, boolean streaming) throws IOException {
+        excelReader = new ExcelReader(pathName, fileName, streaming);
     }
 
     /**
@@ -57,6 +69,7 @@ public abstract class AbstractExcelDataProvider {
     public final void addCustomTypes(DefaultCustomType type) {
         Preconditions.checkArgument(type != null, "Type cannot be null.");
         customTypes.add(type);
+        bindingPlans.clear();
     }
 
     /**
@@ -215,15 +228,6 @@ public abstract class AbstractExcelDataProvider {
      */
     public abstract Object[][] getAllExcelRows(Object myObj);
 
-    private DefaultCustomType fetchMatchingCustomType(Class<?> type) {
-        for (DefaultCustomType eachCustomType : customTypes) {
-            if (type.equals(eachCustomType.getCustomTypeClass())) {
-                return eachCustomType;
-            }
-        }
-        return null;
-    }
-
     /**
      * Currently this function will handle these data types:
      * <ul>
@@ -250,48 +254,24 @@ public abstract class AbstractExcelDataProvider {
             throws IllegalAccessException {
         logger.entering(new Object[] { userObj, fields, excelRowData });
         Object objectToReturn = createObjectToUse(userObj);
-        int index = 0;
-        for (Field eachField : fields) {
-            // If the data is not present in excel sheet then skip it
-            String data = excelRowData.get(index++);
-            if (StringUtils.isEmpty(data)) {
-                continue;
-            }
-
-            Class<?> eachFieldType = eachField.getType();
-
-            if (eachFieldType.isInterface()) {
-                // We cannot work with Interfaces because for instantiating them we would need to use Proxy
-                // and also build in assumptions on what type of the implementation we are going to be providing back to
-                // the user.
-                // things get complex if the user supplies us with an interface of which we dont have any idea.
-                // so lets just throw an error and bail out.
-                throw new IllegalArgumentException(eachField.getName()
-                        + " is an interface. Interfaces are not supported.");
-            }
-
-            eachField.setAccessible(true);
-            boolean isArray = eachFieldType.isArray();
-            DataMemberInformation memberInfo = new DataMemberInformation(eachField, userObj, objectToReturn, data);
-            if (isArray) {
-                try {
-                    setValueForArrayType(memberInfo);
-                } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | InstantiationException e) {
-                    throw new DataProviderException(e.getMessage(), e);
-                }
-            } else {
-                try {
-                    setValueForNonArrayType(memberInfo);
-                } catch (InstantiationException | IllegalArgumentException | InvocationTargetException
-                        | NoSuchMethodException | SecurityException e) {
-                    throw new DataProviderException(e.getMessage(), e);
-                }
-            }
-        }
+        getBindingPlan(userObj.getClass(), fields).bind(this, userObj, objectToReturn, excelRowData);
         logger.exiting(objectToReturn);
         return objectToReturn;
     }
 
+    /**
+     * Returns the {@link FieldBindingPlan} of a user defined type, compiling it the first time the type is
+     * encountered. The plans are discarded whenever a new {@link DefaultCustomType} is added.
+     */
+    private FieldBindingPlan getBindingPlan(Class<?> type, Field[] fields) {
+        FieldBindingPlan plan = bindingPlans.get(type);
+        if (plan == null || !plan.isFor(fields)) {
+            plan = FieldBindingPlan.compile(fields, customTypes);
+            bindingPlans.put(type, plan);
+        }
+        return plan;
+    }
+
     private Object createObjectToUse(Object userObject) throws IllegalAccessException {
         try {
             // Create a new instance of the data so we can
@@ -306,119 +286,6 @@ public abstract class AbstractExcelDataProvider {
 
     }
 
-    /**
-     * A utility method that setups up data members which are arrays.
-     * 
-     * @param memberInfo
-     *            - A {@link DataMemberInformation} object that represents values pertaining to every data member.
-     * @throws IllegalAccessException
-     * @throws ArrayIndexOutOfBoundsException
-     * @throws IllegalArgumentException
-     * @throws InstantiationException
-     */
-    private void setValueForArrayType(DataMemberInformation memberInfo) throws IllegalAccessException,
-            ArrayIndexOutOfBoundsException, IllegalArgumentException, InstantiationException {
-        logger.entering(memberInfo);
-        Field eachField = memberInfo.getField();
-        Object objectToSetDataInto = memberInfo.getObjectToSetDataInto();
-        String data = memberInfo.getDataToUse();
-        Class<?> eachFieldType = eachField.getType();
-
-        // We are dealing with arrays
-        String[] arrayData = data.split(",");
-        Object arrayObject = null;
-        // Check if its an array of primitive data type
-        if (ReflectionUtils.isPrimitiveArray(eachFieldType)) {
-            arrayObject = ReflectionUtils.instantiatePrimitiveArray(eachFieldType, arrayData);
-            eachField.set(objectToSetDataInto, arrayObject);
-            logger.exiting();
-            return;
-        }
-        if (ReflectionUtils.isWrapperArray(eachFieldType)
-                || ReflectionUtils.hasOneArgStringConstructor(eachFieldType.getComponentType())) {
-            // Check if its an array of either Wrapper classes or classes that have a 1 arg string constructor
-            arrayObject = ReflectionUtils.instantiateWrapperArray(eachFieldType, arrayData);
-            eachField.set(objectToSetDataInto, arrayObject);
-            logger.exiting();
-            return;
-        }
-        DefaultCustomType customType = fetchMatchingCustomType(eachFieldType);
-        if (customType != null) {
-            // Maybe it belongs to one of the custom types
-            arrayObject = ReflectionUtils.instantiateDefaultCustomTypeArray(customType, arrayData);
-            eachField.set(objectToSetDataInto, arrayObject);
-            logger.exiting();
-            return;
-        }
-        // If we are here then it means that the field is a Pojo class that points to another sheet in the excel sheet
-        arrayObject = Array.newInstance(eachFieldType.getComponentType(), arrayData.length);
-        for (int counter = 0; counter < arrayData.length; counter++) {
-            Array.set(arrayObject, counter,
-                    getSingleExcelRow(eachFieldType.getComponentType().newInstance(), arrayData[counter].trim(), true));
-        }
-        eachField.set(objectToSetDataInto, arrayObject);
-        logger.exiting();
-    }
-
-    /**
-     * A utility method that setups up data members which are NOT arrays.
-     * 
-     * @param memberInfo
-     *            - A {@link DataMemberInformation} object that represents values pertaining to every data member.
-     * 
-     * @throws IllegalAccessException
-     * @throws InstantiationException
-     * @throws IllegalArgumentException
-     * @throws InvocationTargetException
-     * @throws NoSuchMethodException
-     * @throws SecurityException
-     */
-    private void setValueForNonArrayType(DataMemberInformation memberInfo) throws IllegalAccessException,
-            InstantiationException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException,
-            SecurityException {
-        logger.entering(memberInfo);
-        Field eachField = memberInfo.getField();
-        Class<?> eachFieldType = eachField.getType();
-        Object objectToSetDataInto = memberInfo.getObjectToSetDataInto();
-        Object userProvidedObject = memberInfo.getUserProvidedObject();
-        String data = memberInfo.getDataToUse();
-
-        boolean isPrimitive = eachFieldType.isPrimitive();
-        if (isPrimitive) {
-            // We found a primitive data type such as int, float, char etc.,
-            eachField.set(objectToSetDataInto,
-                    ReflectionUtils.instantiatePrimitiveObject(eachFieldType, userProvidedObject, data));
-            logger.exiting();
-            return;
-        }
-        if (ClassUtils.isPrimitiveWrapper(eachFieldType)) {
-            // We found a wrapper data type such as Float, Integer, Character etc.,
-            eachField.set(objectToSetDataInto,
-                    ReflectionUtils.instantiateWrapperObject(eachFieldType, userProvidedObject, data));
-            logger.exiting();
-            return;
-        }
-        if (ReflectionUtils.hasOneArgStringConstructor(eachFieldType)) {
-            // We found a class that has a 1 arg constructor. String.class is an example for that.
-            Object objToSet = eachFieldType.getConstructor(new Class<?>[] { String.class }).newInstance(data);
-            eachField.set(objectToSetDataInto, objToSet);
-            logger.exiting();
-            return;
-        }
-        DefaultCustomType customType = fetchMatchingCustomType(eachFieldType);
-        if (customType != null) {
-            // If we are here then it means that the field is one of the predefined custom types that was given to us.
-            eachField.set(objectToSetDataInto, customType.instantiateObject(data));
-            logger.exiting();
-            return;
-        }
-        // If eventually we land here, then we have found a pojo class given by the user that points to another
-        // sheet in the excel sheet.
-        eachField.set(objectToSetDataInto, getSingleExcelRow(eachFieldType.newInstance(), data, true));
-        logger.exiting();
-        return;
-    }
-
     /**
      * Using the specified rowIndex to search for the row from the specified Excel sheet, then return the row contents
      * in a list of string format.
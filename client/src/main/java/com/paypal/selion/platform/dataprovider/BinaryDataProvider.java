@@ -0,0 +1,237 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import com.google.common.base.Preconditions;
+import com.paypal.selion.logger.SeLionLogger;
+import com.paypal.selion.platform.dataprovider.filter.DataProviderFilter;
+import com.paypal.test.utilities.logging.SimpleLogger;
+
+/**
+ * Reads test data that was pre-compiled from a yaml or json data file by {@link BinaryDataWriter} (for instance by the
+ * <code>compile-data</code> goal of the SeLion code generator). Nothing is parsed up front: the file is memory mapped
+ * and a row is decoded only when it is asked for, so reading a handful of rows out of a large file costs no more than
+ * reading those rows. <br>
+ * <br>
+ * When the {@link FileSystemResource} has a class, every row is bound to it. Otherwise rows which were objects of a
+ * known type in the source file are bound to that type if it is available, and all other rows are returned as
+ * associative arrays, lists and scalars, just like {@link YamlDataProvider} does. Binding to a type is done by field,
+ * the same way {@link JsonDataProvider} does it. <br>
+ * <br>
+ * Example dataprovider:
+ * 
+ * <pre>
+ * &#064;DataProvider(name = &quot;users&quot;)
+ * public static Iterator&lt;Object[]&gt; dataProviderGetUsers() throws IOException {
+ *     FileSystemResource resource = new FileSystemResource(pathName, &quot;users.sdp&quot;, USER.class);
+ *     return BinaryDataProvider.getAllDataLazily(resource);
+ * }
+ * </pre>
+ */
+public final class BinaryDataProvider {
+
+    /**
+     * The extension used for pre-compiled data files.
+     */
+    public static final String EXTENSION = BinaryDataWriter.EXTENSION;
+
+    private static SimpleLogger logger = SeLionLogger.getLogger();
+
+    private BinaryDataProvider() {
+        // Hiding the constructor
+    }
+
+    /**
+     * Reads every row of a binary data file.
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a binary data file.
+     * @return Object[][] two dimensional object to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Object[][] getAllData(FileSystemResource resource) throws IOException {
+        logger.entering(resource);
+        BinaryDataFile file = open(resource);
+        Object[][] data = new Object[file.getRowCount()][];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = new Object[] { file.getRow(i, resource.getCls()) };
+        }
+        logger.exiting(data);
+        return data;
+    }
+
+    /**
+     * Lazy counterpart of {@link #getAllData(FileSystemResource)}. Every row is decoded as TestNG asks for it.
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a binary data file.
+     * @return A lazy iterator over Object Arrays to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Iterator<Object[]> getAllDataLazily(FileSystemResource resource) throws IOException {
+        return getDataByFilter(resource, null);
+    }
+
+    /**
+     * Gets the rows that fall in the filter criteria. Rows are decoded and filtered one at a time, as the returned
+     * {@link Iterator} is advanced.
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a binary data file.
+     * @param dataFilter
+     *            an implementation class of {@link DataProviderFilter}. A <code>null</code> filter includes all rows.
+     * @return A lazy iterator over Object Arrays to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Iterator<Object[]> getDataByFilter(FileSystemResource resource, DataProviderFilter dataFilter)
+            throws IOException {
+        logger.entering(new Object[] { resource, dataFilter });
+        Iterator<Object[]> iterator = new RowIterator(open(resource), resource.getCls(), dataFilter);
+        logger.exiting(iterator);
+        return iterator;
+    }
+
+    /**
+     * Gets the rows at the requested indexes. Only the requested rows are decoded.
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a binary data file.
+     * @param indexes
+     *            - The one based indexes of the rows, in the format accepted by
+     *            {@link DataProviderHelper#parseIndexString(String)}.
+     * @return Object[][] two dimensional object to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Object[][] getDataByIndex(FileSystemResource resource, String indexes) throws IOException {
+        Preconditions.checkArgument(!StringUtils.isEmpty(indexes), "Indexes cannot be empty");
+        logger.entering(new Object[] { resource, indexes });
+        BinaryDataFile file = open(resource);
+        int[] arrayIndex = DataProviderHelper.parseIndexString(indexes);
+        Object[][] data = new Object[arrayIndex.length][];
+        for (int i = 0; i < arrayIndex.length; i++) {
+            data[i] = new Object[] { file.getRow(arrayIndex[i] - 1, resource.getCls()) };
+        }
+        logger.exiting(data);
+        return data;
+    }
+
+    /**
+     * Gets the rows known by the given keys. Only rows compiled from a yaml file whose root is an associative array
+     * have keys. Rows are looked up in the key index built when the file is opened, and only the requested rows are
+     * decoded.
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a binary data file.
+     * @param keys
+     *            - A String array that represents the keys.
+     * @return Object[][] two dimensional object to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Object[][] getDataByKeys(FileSystemResource resource, String[] keys) throws IOException {
+        logger.entering(new Object[] { resource, Arrays.toString(keys) });
+        BinaryDataFile file = open(resource);
+        Object[][] data = new Object[keys.length][];
+        for (int k = 0; k < keys.length; k++) {
+            int index = file.indexOf(keys[k]);
+            if (index < 0) {
+                throw new DataProviderException("Key not found in " + resource + ": " + keys[k]);
+            }
+            data[k] = new Object[] { file.getRow(index, resource.getCls()) };
+        }
+        logger.exiting(data);
+        return data;
+    }
+
+    /**
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a binary data file.
+     * @return the number of rows in the binary data file. No row is decoded.
+     * @throws IOException
+     */
+    public static int getRowCount(FileSystemResource resource) throws IOException {
+        return open(resource).getRowCount();
+    }
+
+    private static BinaryDataFile open(FileSystemResource resource) throws IOException {
+        Preconditions.checkArgument(resource != null, "File resource cannot be null");
+        Preconditions.checkArgument(resource.getFileName() != null,
+                "The resource must have a filename. filename cannot be null");
+        // locate the file the same way FileSystemResource#getInputStream() does
+        String path = (resource.getPathName() == null) ? resource.getFileName() : new File(resource.getPathName()
+                + resource.getFileName()).getAbsolutePath();
+        File file = ExcelReader.locateFile(path);
+        if (file != null) {
+            return BinaryDataFile.map(file);
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return BinaryDataFile.wrap(path, IOUtils.toByteArray(in));
+        }
+    }
+
+    /**
+     * Decodes the rows of a {@link BinaryDataFile} in order, skipping the ones rejected by the filter.
+     */
+    private static final class RowIterator implements Iterator<Object[]> {
+        private final BinaryDataFile file;
+        private final Class<?> type;
+        private final DataProviderFilter dataFilter;
+        private int index;
+        private Object[] nextRow;
+
+        RowIterator(BinaryDataFile file, Class<?> type, DataProviderFilter dataFilter) {
+            this.file = file;
+            this.type = type;
+            this.dataFilter = dataFilter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextRow == null && index < file.getRowCount()) {
+                Object row = file.getRow(index++, type);
+                if (dataFilter == null || dataFilter.filter(row)) {
+                    nextRow = new Object[] { row };
+                }
+            }
+            return nextRow != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = nextRow;
+            nextRow = null;
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Rows of a binary data file cannot be removed.");
+        }
+    }
+}
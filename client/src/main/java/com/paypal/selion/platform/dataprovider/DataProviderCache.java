@@ -0,0 +1,242 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.paypal.selion.logger.SeLionLogger;
+import com.paypal.test.utilities.logging.SimpleLogger;
+
+/**
+ * A process wide cache of parsed data, shared by {@link YamlDataProvider}, {@link JsonDataProvider} and
+ * {@link XmlDataProvider}. When several data providers in a suite point at the same file, the file is parsed only once
+ * and every later data provider reuses the parsed objects. <br>
+ * <br>
+ * Entries are keyed by the location of the {@link FileSystemResource}, the type the data is mapped to and the last
+ * modified time and size of the file, so an edited file is parsed afresh. The least recently used entry is evicted
+ * once the cache holds {@link #getMaximumSize()} entries. <br>
+ * <br>
+ * The cache is <b>disabled</b> by default, because every data provider that hits the cache hands out the very same
+ * objects. Tests which modify the objects they receive would see each other's changes. To enable it, either set the
+ * system property <code>SELION_DATA_PROVIDER_CACHE_SIZE</code> to the number of files to hold or call
+ * {@link #setMaximumSize(int)}.
+ */
+public final class DataProviderCache {
+
+    private static SimpleLogger logger = SeLionLogger.getLogger();
+
+    private static int maximumSize = Integer.getInteger("SELION_DATA_PROVIDER_CACHE_SIZE", 0);
+
+    private static final Map<CacheKey, Object> CACHE = new LinkedHashMap<CacheKey, Object>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Object> eldest) {
+            return size() > maximumSize;
+        }
+    };
+
+    private static long hitCount;
+    private static long missCount;
+
+    private DataProviderCache() {
+        // Hiding constructor for class that contains only static methods
+    }
+
+    /**
+     * @return the maximum number of parsed files held by the cache. <code>0</code> means the cache is disabled.
+     */
+    public static synchronized int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of parsed files held by the cache, evicting the least recently used entries if needed.
+     * 
+     * @param size
+     *            the maximum number of entries. <code>0</code> disables the cache.
+     */
+    public static synchronized void setMaximumSize(int size) {
+        Preconditions.checkArgument(size >= 0, "Cache size cannot be negative.");
+        maximumSize = size;
+        while (CACHE.size() > maximumSize) {
+            CACHE.remove(CACHE.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * @return the number of entries currently held by the cache.
+     */
+    public static synchronized int size() {
+        return CACHE.size();
+    }
+
+    /**
+     * @return the number of lookups that were served from the cache.
+     */
+    public static synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that had to parse the file.
+     */
+    public static synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Removes all entries and resets the hit and miss counters.
+     */
+    public static synchronized void clear() {
+        CACHE.clear();
+        hitCount = 0;
+        missCount = 0;
+    }
+
+    /**
+     * Computes the key under which the parsed data of a resource is cached.
+     * 
+     * @param resource
+     *            the {@link FileSystemResource} being parsed.
+     * @param format
+     *            identifies how the data was parsed, so that different data providers (or different methods of one data
+     *            provider) reading the same file do not share entries.
+     * @param type
+     *            the type the data is mapped to. May be <code>null</code>.
+     * @return the key, or <code>null</code> when the cache is disabled or the resource cannot be located.
+     */
+    static CacheKey keyFor(FileSystemResource resource, String format, Class<?> type) {
+        if (getMaximumSize() == 0) {
+            return null;
+        }
+        try {
+            return locate(resource, format, type);
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            logger.fine("Not caching " + resource + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param key
+     *            a key returned by {@link #keyFor(FileSystemResource, String, Class)}. May be <code>null</code>.
+     * @return the cached data, or <code>null</code> if there is none.
+     */
+    static synchronized Object get(CacheKey key) {
+        if (key == null) {
+            return null;
+        }
+        Object data = CACHE.get(key);
+        if (data == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return data;
+    }
+
+    /**
+     * @param key
+     *            a key returned by {@link #keyFor(FileSystemResource, String, Class)}. May be <code>null</code>, in which
+     *            case nothing is cached.
+     * @param data
+     *            the parsed data.
+     */
+    static synchronized void put(CacheKey key, Object data) {
+        if (key != null && data != null && maximumSize > 0) {
+            CACHE.put(key, data);
+        }
+    }
+
+    private static CacheKey locate(FileSystemResource resource, String format, Class<?> type) throws IOException,
+            URISyntaxException {
+        File file = null;
+        if (resource.getPathName() != null) {
+            file = new File(resource.getPathName() + resource.getFileName());
+            if (!file.exists()) {
+                file = new File(resource.getPathName(), resource.getFileName());
+            }
+        } else {
+            URL url = Thread.currentThread().getContextClassLoader().getResource(resource.getFileName());
+            if (url == null) {
+                file = new File(resource.getFileName());
+            } else if ("file".equals(url.getProtocol())) {
+                file = new File(url.toURI());
+            } else {
+                URLConnection connection = url.openConnection();
+                connection.setUseCaches(false);
+                CacheKey key = new CacheKey(url.toExternalForm(), format, type, connection.getLastModified(),
+                        connection.getContentLengthLong());
+                connection.getInputStream().close();
+                return key;
+            }
+        }
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("[" + file + "] is not a file");
+        }
+        return new CacheKey(file.getCanonicalPath(), format, type, file.lastModified(), file.length());
+    }
+
+    /**
+     * Identifies a parsed file.
+     */
+    static final class CacheKey {
+        private final String location;
+        private final String format;
+        private final Class<?> type;
+        private final long lastModified;
+        private final long length;
+
+        CacheKey(String location, String format, Class<?> type, long lastModified, long length) {
+            this.location = location;
+            this.format = format;
+            this.type = type;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return location.equals(other.location) && format.equals(other.format)
+                    && Objects.equal(type, other.type) && lastModified == other.lastModified
+                    && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(location, format, type, lastModified, length);
+        }
+
+        @Override
+        public String toString() {
+            return "CacheKey [location=" + location + ", format=" + format + ", type=" + type + ", lastModified="
+                    + lastModified + ", length=" + length + "]";
+        }
+    }
+}
@@ -15,16 +15,28 @@
 
 package com.paypal.selion.platform.dataprovider;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.ArrayUtils;
 
+import com.google.common.base.Throwables;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.paypal.selion.logger.SeLionLogger;
 import com.paypal.selion.platform.dataprovider.filter.DataProviderFilter;
 import com.paypal.test.utilities.logging.SimpleLogger;
@@ -86,6 +98,56 @@ public final class DataProviderHelper {
         return indexArray;
     }
 
+    /**
+     * Converts the one based indexes returned by {@link #parseIndexString(String)} into the set of zero based row
+     * numbers a data source needs to read.
+     * 
+     * @param indexes
+     *            the one based indexes.
+     * @return the zero based row numbers.
+     */
+    static BitSet toRowSelection(int[] indexes) {
+        BitSet selection = new BitSet();
+        for (int index : indexes) {
+            if (index < 1) {
+                throw new ArrayIndexOutOfBoundsException("Index '" + index + "' is invalid. Indexes start at 1.");
+            }
+            selection.set(index - 1);
+        }
+        return selection;
+    }
+
+    /**
+     * Arranges the rows read for a selection in the order, and with the repetitions, the indexes ask for them.
+     * 
+     * @param selectedRows
+     *            the rows of the selection, in the order they appear in the data source.
+     * @param selection
+     *            the selection, as returned by {@link #toRowSelection(int[])}.
+     * @param indexes
+     *            the one based indexes the selection was made of.
+     * @return Object[][] two dimensional object to be used with TestNG DataProvider
+     */
+    static Object[][] arrangeSelectedRows(Iterator<Object[]> selectedRows, BitSet selection, int[] indexes) {
+        Map<Integer, Object[]> rows = new HashMap<>();
+        // The iterator is read to its end (right after the last selected row), so that it releases the data source.
+        int i = selection.nextSetBit(0);
+        while (selectedRows.hasNext()) {
+            rows.put(i, selectedRows.next());
+            i = selection.nextSetBit(i + 1);
+        }
+        Object[][] data = new Object[indexes.length][];
+        for (int j = 0; j < indexes.length; j++) {
+            data[j] = rows.get(indexes[j] - 1);
+            if (data[j] == null) {
+                // Same exception as picking the row out of the fully loaded data would raise.
+                throw new ArrayIndexOutOfBoundsException("Index '" + indexes[j]
+                        + "' is out of the range of the data source.");
+            }
+        }
+        return data;
+    }
+
     /**
      * Converts any object into 2 dimensional array representing TestNG DataProvider.
      * 
@@ -155,23 +217,7 @@ public final class DataProviderHelper {
 
             int i = 0;
             for (Object eachArrayListObject : objAsArrayList) {
-
-                /*
-                 * Handles LinkedHashMap nested in a LinkedHashMap (e.g. Yaml associative array). This block removes the
-                 * first mapping since that data serves as visual organization of data within a Yaml. If the parent is a
-                 * LinkedHashMap and the child is a LinkedHashMap or an ArrayList, then assign the child to the Object
-                 * double array instead of the parent.
-                 */
-                objArray[i][0] = eachArrayListObject;
-                if (eachArrayListObject.getClass().equals(LinkedHashMap.class)) {
-                    LinkedHashMap<?, ?> eachArrayListObjectAsHashMap = (LinkedHashMap<?, ?>) eachArrayListObject;
-                    for (Object eachEntry : eachArrayListObjectAsHashMap.values()) {
-                        if (eachEntry.getClass().equals(LinkedHashMap.class)
-                                || eachEntry.getClass().equals(ArrayList.class)) {
-                            objArray[i][0] = eachEntry;
-                        }
-                    }
-                }
+                objArray[i][0] = getRowObject(eachArrayListObject);
                 i++;
             }
         }
@@ -238,6 +284,33 @@ public final class DataProviderHelper {
         return objArray;
     }
 
+    /**
+     * Returns the object that represents a data provider row for an item of a list (e.g. Yaml List or a Yaml document).
+     * 
+     * @param item
+     *            an item of the list.
+     * @return the item itself, or its child when the item is a {@link LinkedHashMap} whose child value is a
+     *         {@link LinkedHashMap} or an {@link ArrayList}.
+     */
+    static Object getRowObject(Object item) {
+        Object row = item;
+        /*
+         * Handles LinkedHashMap nested in a LinkedHashMap (e.g. Yaml associative array). This block removes the first
+         * mapping since that data serves as visual organization of data within a Yaml. If the parent is a LinkedHashMap
+         * and the child is a LinkedHashMap or an ArrayList, then assign the child to the Object double array instead of
+         * the parent.
+         */
+        if (item != null && item.getClass().equals(LinkedHashMap.class)) {
+            LinkedHashMap<?, ?> itemAsHashMap = (LinkedHashMap<?, ?>) item;
+            for (Object eachEntry : itemAsHashMap.values()) {
+                if (eachEntry.getClass().equals(LinkedHashMap.class) || eachEntry.getClass().equals(ArrayList.class)) {
+                    row = eachEntry;
+                }
+            }
+        }
+        return row;
+    }
+
     /**
      * Converts in particular LinkedHashMap of Objects, ArrayList of Objects, Array of Object into ArrayList after
      * applying the given filter.
@@ -461,4 +534,108 @@ public final class DataProviderHelper {
         logger.exiting();
         return data;
     }
+
+    /**
+     * Lazy counterpart of {@link #getAllDataMultipleArgs(Object[][]...)}. Rows are assembled one at a time as the
+     * returned {@link Iterator} is advanced, so the combined data provider is never allocated as a whole. The n-th row
+     * holds the first column of the n-th row of every data provider, or <code>null</code> for the data providers that
+     * have fewer rows.
+     * 
+     * @param dataproviders
+     *            the data providers to combine.
+     * @return An iterator over a collection of Object Array to be used with TestNG DataProvider
+     */
+    public static Iterator<Object[]> getAllDataMultipleArgsLazily(final Object[][]... dataproviders) {
+        logger.entering();
+        int length = 0;
+        for (Object[][] d : dataproviders) {
+            length = Math.max(length, d.length);
+        }
+        final int maxLength = length;
+        Iterator<Object[]> data = new Iterator<Object[]>() {
+            private int row = 0;
+
+            @Override
+            public boolean hasNext() {
+                return row < maxLength;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object[] combined = new Object[dataproviders.length];
+                for (int i = 0; i < dataproviders.length; i++) {
+                    Object[][] d = dataproviders[i];
+                    combined[i] = (row < d.length && d[row].length > 0) ? d[row][0] : null;
+                }
+                row++;
+                return combined;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        logger.exiting(data);
+        return data;
+    }
+
+    /**
+     * Runs the given loading tasks concurrently on a pool of at most as many threads as there are processors, and
+     * returns their results in the order of the tasks.
+     * 
+     * @param tasks
+     *            the tasks that load a data source each.
+     * @return the results of the tasks.
+     * @throws IOException
+     *             if any of the tasks failed with an {@link IOException}.
+     */
+    static <T> List<T> loadInParallel(List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() <= 1) {
+            // Not worth a thread pool
+            for (Callable<T> task : tasks) {
+                results.add(callLoadingTask(task));
+            }
+            return results;
+        }
+        int poolSize = Math.min(tasks.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, new ThreadFactoryBuilder()
+                .setNameFormat("SeLion-DataProvider-Loader-%d").setDaemon(true).build());
+        try {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataProviderException("Interrupted while loading data sources.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            Throwables.propagateIfPossible(cause);
+            throw new DataProviderException("Error while loading data sources.", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static <T> T callLoadingTask(Callable<T> task) throws IOException {
+        try {
+            return task.call();
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DataProviderException("Error while loading data sources.", e);
+        }
+    }
 }
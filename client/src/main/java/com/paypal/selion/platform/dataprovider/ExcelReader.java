@@ -15,13 +15,23 @@
 
 package com.paypal.selion.platform.dataprovider;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -34,6 +44,11 @@ import com.paypal.test.utilities.logging.SimpleLogger;
 
 /**
  * A utility class to read rows of excel files.
+ * 
+ * When created in streaming mode, an .xlsx file is not loaded as a {@link Workbook} up front. Instead
+ * {@link #getAllExcelRowContents(String, boolean, int)} parses the sheet one row at a time, so memory stays bounded
+ * regardless of the size of the sheet. The {@link Workbook} is then only built if one of the methods that need random
+ * access to the rows (for e.g., {@link #getRowIndex(String, String)}) is invoked.
  */
 class ExcelReader {
 
@@ -42,6 +57,23 @@ class ExcelReader {
      */
     private Workbook workBook;
 
+    /**
+     * The path of the excel file as it is to be resolved by {@link FileAssistant#loadFile(String)}.
+     */
+    private String resourcePath;
+
+    /**
+     * The excel file on the file system, when streaming and the file is not packaged within a jar.
+     */
+    private File resourceFile;
+
+    private boolean streaming;
+
+    /**
+     * Key to row number index of each sheet of {@link #workBook} that was searched by {@link #getRowIndex(String, String)}
+     */
+    private final Map<Sheet, Map<String, Integer>> rowKeyIndexes = new IdentityHashMap<>();
+
     /**
      * Logging object
      */
@@ -58,8 +90,24 @@ class ExcelReader {
      *             If the file cannot be located, or cannot read by the method.
      */
     public ExcelReader(String pathName, String fileName) throws IOException {
+        this(pathName, fileName, false);
+    }
+
+    /**
+     * @param pathName
+     *            - the path where the excel file is located. If the path is <code>null</code>, then we attempt to load
+     *            the file from the current classpath.
+     * @param fileName
+     *            the name of the excel file to be read.
+     * @param streaming
+     *            if <code>true</code> and the file is an .xlsx file, rows are parsed on demand instead of loading the
+     *            whole workbook in memory. .xls files are always loaded in memory.
+     * @throws IOException
+     *             If the file cannot be located, or cannot read by the method.
+     */
+    public ExcelReader(String pathName, String fileName, boolean streaming) throws IOException {
 
-        logger.entering(new Object[] { pathName, fileName });
+        logger.entering(new Object[] { pathName, fileName, streaming });
 
         if ((fileName == null) || (fileName.trim().isEmpty())) {
             throw new IllegalArgumentException("fileName cannot be null/empty");
@@ -77,15 +125,19 @@ class ExcelReader {
             resourcePath = pathName + pad + fileName;
         }
         logger.info("resourcePath: " + resourcePath);
+        this.resourcePath = resourcePath;
+        this.streaming = streaming && fileName.toLowerCase().endsWith("xlsx");
 
         try {
-            InputStream fileStream = FileAssistant.loadFile(resourcePath);
-            if (fileName.toLowerCase().endsWith("xlsx")) {
-                workBook = new XSSFWorkbook(fileStream);
-            } else if (fileName.toLowerCase().endsWith("xls")) {
-                workBook = new HSSFWorkbook(fileStream);
+            if (this.streaming) {
+                resourceFile = locateFile(resourcePath);
+                if (resourceFile == null) {
+                    // Not a plain file. Let FileAssistant tell us if the resource exists at all.
+                    IOUtils.closeQuietly(FileAssistant.loadFile(resourcePath));
+                }
+            } else {
+                workBook = loadWorkbook(resourcePath, fileName);
             }
-            IOUtils.closeQuietly(fileStream);
         } catch (IOException e) {
             // We are never going to end up with an IOException because FileAssistant.loadFile() tests this part
             // explicitly and throws a RuntimeException. So no point in throwing an IOException when it is never
@@ -116,6 +168,114 @@ class ExcelReader {
         this(null, fileName);
     }
 
+    private static Workbook loadWorkbook(String resourcePath, String fileName) throws IOException {
+        Workbook workbook = null;
+        InputStream fileStream = FileAssistant.loadFile(resourcePath);
+        try {
+            if (fileName.toLowerCase().endsWith("xlsx")) {
+                workbook = new XSSFWorkbook(fileStream);
+            } else if (fileName.toLowerCase().endsWith("xls")) {
+                workbook = new HSSFWorkbook(fileStream);
+            }
+        } finally {
+            IOUtils.closeQuietly(fileStream);
+        }
+        return workbook;
+    }
+
+    /**
+     * Resolves the resource the same way {@link FileAssistant#loadFile(String)} does, but only returns a {@link File}
+     * when the resource can be opened as a plain file (so that it can be read as a zip file without buffering it).
+     */
+    static File locateFile(String resourcePath) {
+        URL url = Thread.currentThread().getContextClassLoader().getResource(resourcePath);
+        if (url != null) {
+            if (!"file".equals(url.getProtocol())) {
+                return null;
+            }
+            try {
+                return new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+        File file = new File(resourcePath);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * @return the in memory representation of the excel file. In streaming mode it is built the first time it is
+     *         needed.
+     */
+    private synchronized Workbook getWorkbook() {
+        if (workBook == null && streaming) {
+            try {
+                workBook = loadWorkbook(resourcePath, resourcePath);
+            } catch (IOException e) {
+                throw new DataProviderException("Unable to read the excel file '" + resourcePath + "'", e);
+            }
+        }
+        return workBook;
+    }
+
+    /**
+     * Get the contents of all excel rows from a specified sheet. The rows are the same as the ones returned by
+     * {@link #getAllExcelRows(String, boolean)} and the contents of each row are the same as the ones returned by
+     * {@link #getRowContents(Row, int)}.
+     * 
+     * In streaming mode the rows are parsed only as the returned {@link Iterator} is advanced and the underlying file
+     * is closed once all rows are consumed.
+     * 
+     * @param sheetName
+     *            A String that represents the Sheet name
+     * @param heading
+     *            If true, will return all rows along with the heading row. If false, will return all rows except the
+     *            heading row.
+     * @param size
+     *            - The number of columns to read, including empty and blank column.
+     * @return an {@link Iterator} over the contents of the rows that are read.
+     */
+    public Iterator<List<String>> getAllExcelRowContents(String sheetName, boolean heading, final int size) {
+        logger.entering(new Object[] { sheetName, heading, size });
+        Iterator<List<String>> contents;
+        if (streaming) {
+            contents = new StreamingSheetRowIterator(openPackage(), sheetName, heading, size);
+        } else {
+            final Iterator<Row> rows = getAllExcelRows(sheetName, heading).iterator();
+            contents = new Iterator<List<String>>() {
+                @Override
+                public boolean hasNext() {
+                    return rows.hasNext();
+                }
+
+                @Override
+                public List<String> next() {
+                    return getRowContents(rows.next(), size);
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+        logger.exiting(contents);
+        return contents;
+    }
+
+    private OPCPackage openPackage() {
+        try {
+            if (resourceFile != null) {
+                return OPCPackage.open(resourceFile.getAbsolutePath(), PackageAccess.READ);
+            }
+            try (InputStream fileStream = FileAssistant.loadFile(resourcePath)) {
+                return OPCPackage.open(fileStream);
+            }
+        } catch (OpenXML4JException | IOException e) {
+            throw new DataProviderException("Unable to read the excel file '" + resourcePath + "'", e);
+        }
+    }
+
     /**
      * Get all excel rows from a specified sheet.
      * 
@@ -162,7 +322,7 @@ class ExcelReader {
      */
     protected Sheet fetchSheet(String sheetName) {
         logger.entering(sheetName);
-        Sheet sheet = workBook.getSheet(sheetName);
+        Sheet sheet = getWorkbook().getSheet(sheetName);
         if (sheet == null) {
             IllegalArgumentException e = new IllegalArgumentException("Sheet '" + sheetName + "' is not found.");
             throw e;
@@ -178,7 +338,7 @@ class ExcelReader {
      * @return true if the sheet exists, false otherwise
      */
     public boolean sheetExists(String sheetName) {
-        return (workBook.getSheet(sheetName) != null);
+        return (getWorkbook().getSheet(sheetName) != null);
     }
 
     /**
@@ -232,7 +392,8 @@ class ExcelReader {
 
     /**
      * Search for the input key from the specified sheet name and return the index position of the row that contained
-     * the key
+     * the key. The rows of a sheet are indexed by their keys the first time the sheet is searched, so that subsequent
+     * searches don't have to scan the sheet again.
      * 
      * @param sheetName
      *            - A String that represents the Sheet name from which data is to be read
@@ -244,22 +405,39 @@ class ExcelReader {
      */
     public int getRowIndex(String sheetName, String key) {
         logger.entering(new Object[] { sheetName, key });
-        int index = -1;
         Sheet sheet = fetchSheet(sheetName);
+        Integer rowIndex = getRowKeyIndex(sheet).get(key);
+        int index = (rowIndex == null) ? -1 : rowIndex;
+        logger.exiting(index);
+        return index;
+    }
 
+    /**
+     * Returns the key to row number index of the given sheet, building it the first time the sheet is searched. The
+     * index holds the first row for every key and leaves out rows whose key contains a "#".
+     * 
+     * @param sheet
+     *            - A {@link Sheet} of the current {@link Workbook}
+     * @return - A map of the keys of the sheet to the row numbers that hold them.
+     */
+    private synchronized Map<String, Integer> getRowKeyIndex(Sheet sheet) {
+        Map<String, Integer> index = rowKeyIndexes.get(sheet);
+        if (index != null) {
+            return index;
+        }
+        index = new HashMap<>();
         int rowCount = sheet.getPhysicalNumberOfRows();
         for (int i = 0; i < rowCount; i++) {
             Row row = sheet.getRow(i);
-            if (row == null) {
+            if (row == null || row.getCell(0) == null) {
                 continue;
             }
             String cellValue = row.getCell(0).toString();
-            if ((key.compareTo(cellValue) == 0) && (cellValue.contains("#") == false)) {
-                index = i;
-                break;
+            if (!cellValue.contains("#") && !index.containsKey(cellValue)) {
+                index.put(cellValue, i);
             }
         }
-        logger.exiting(index);
+        rowKeyIndexes.put(sheet, index);
         return index;
     }
 
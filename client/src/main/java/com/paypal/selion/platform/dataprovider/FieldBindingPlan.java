@@ -0,0 +1,314 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang3.ClassUtils;
+
+import com.paypal.selion.platform.dataprovider.ReflectionUtils.ReflectionException;
+
+/**
+ * The steps to populate an object of a user defined type from a row of an excel sheet, worked out once per type. For
+ * every data member the plan knows upfront how the cell value is to be converted and holds {@link MethodHandle}s for
+ * the conversion and for the assignment, so that populating a row doesn't have to look up fields, parser methods,
+ * constructors or custom types again. The conversions are the same as the ones documented in
+ * {@link AbstractExcelDataProvider#prepareObject(Object, Field[], List)}.
+ */
+final class FieldBindingPlan {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * How a data member is populated. The order in which the kinds are determined mirrors the order in which the data
+     * types are checked for by {@link AbstractExcelDataProvider#prepareObject(Object, Field[], List)}.
+     */
+    private enum Kind {
+        INTERFACE, PRIMITIVE, WRAPPER, STRING_CONSTRUCTOR, CUSTOM_TYPE, POJO, PRIMITIVE_ARRAY, WRAPPER_ARRAY,
+        CUSTOM_TYPE_ARRAY, POJO_ARRAY
+    }
+
+    private static final class FieldBinding {
+        private Field field;
+        private Kind kind;
+        private MethodHandle setter;
+        private MethodHandle converter;
+        private DefaultCustomType customType;
+    }
+
+    private final Field[] fields;
+    private final FieldBinding[] bindings;
+
+    private FieldBindingPlan(Field[] fields, FieldBinding[] bindings) {
+        this.fields = fields;
+        this.bindings = bindings;
+    }
+
+    /**
+     * @param fields
+     *            the data members of the user defined type, in the order of the columns of the excel sheet.
+     * @param customTypes
+     *            the {@link DefaultCustomType}s known to the data provider.
+     * @return a {@link FieldBindingPlan} for the given data members.
+     */
+    static FieldBindingPlan compile(Field[] fields, List<DefaultCustomType> customTypes) {
+        FieldBinding[] bindings = new FieldBinding[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            bindings[i] = compile(fields[i], customTypes);
+        }
+        return new FieldBindingPlan(fields.clone(), bindings);
+    }
+
+    private static FieldBinding compile(Field field, List<DefaultCustomType> customTypes) {
+        FieldBinding binding = new FieldBinding();
+        binding.field = field;
+        Class<?> type = field.getType();
+        if (type.isInterface()) {
+            binding.kind = Kind.INTERFACE;
+            return binding;
+        }
+        field.setAccessible(true);
+        binding.setter = setterFor(field);
+
+        if (type.isArray()) {
+            Class<?> componentType = type.getComponentType();
+            if (ReflectionUtils.isPrimitiveArray(type)) {
+                binding.kind = Kind.PRIMITIVE_ARRAY;
+                binding.converter = parserFor(componentType);
+            } else if (ReflectionUtils.isWrapperArray(type) || ReflectionUtils.hasOneArgStringConstructor(componentType)) {
+                binding.kind = Kind.WRAPPER_ARRAY;
+                binding.converter = stringConstructorFor(componentType);
+            } else if ((binding.customType = fetchMatchingCustomType(type, customTypes)) != null) {
+                binding.kind = Kind.CUSTOM_TYPE_ARRAY;
+            } else {
+                binding.kind = Kind.POJO_ARRAY;
+            }
+            return binding;
+        }
+
+        if (type.isPrimitive()) {
+            binding.kind = Kind.PRIMITIVE;
+            binding.converter = parserFor(type);
+        } else if (ClassUtils.isPrimitiveWrapper(type)) {
+            binding.kind = Kind.WRAPPER;
+            binding.converter = stringConstructorFor(type);
+        } else if (ReflectionUtils.hasOneArgStringConstructor(type)) {
+            binding.kind = Kind.STRING_CONSTRUCTOR;
+            binding.converter = stringConstructorFor(type);
+        } else if ((binding.customType = fetchMatchingCustomType(type, customTypes)) != null) {
+            binding.kind = Kind.CUSTOM_TYPE;
+        } else {
+            binding.kind = Kind.POJO;
+        }
+        return binding;
+    }
+
+    /**
+     * @return <code>true</code> if this plan was compiled for the given data members.
+     */
+    boolean isFor(Field[] fieldsToCheck) {
+        if (fieldsToCheck.length != fields.length) {
+            return false;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (!fields[i].equals(fieldsToCheck[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Populates the data members of an object with the values of a row.
+     * 
+     * @param provider
+     *            the data provider, used to fetch the rows of other sheets that data members may refer to.
+     * @param userObj
+     *            the object provided by the user.
+     * @param objectToSetDataInto
+     *            the object to populate.
+     * @param excelRowData
+     *            the values of the row, one per data member.
+     */
+    void bind(AbstractExcelDataProvider provider, Object userObj, Object objectToSetDataInto,
+            List<String> excelRowData) throws IllegalAccessException {
+        for (int index = 0; index < bindings.length; index++) {
+            // If the data is not present in excel sheet then skip it
+            String data = excelRowData.get(index);
+            if (StringUtils.isEmpty(data)) {
+                continue;
+            }
+            FieldBinding binding = bindings[index];
+            if (binding.kind == Kind.INTERFACE) {
+                // We cannot work with Interfaces because for instantiating them we would need to use Proxy
+                // and also build in assumptions on what type of the implementation we are going to be providing back
+                // to the user. So lets just throw an error and bail out.
+                throw new IllegalArgumentException(binding.field.getName()
+                        + " is an interface. Interfaces are not supported.");
+            }
+            Object value;
+            try {
+                value = valueOf(binding, provider, userObj, data);
+            } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException | InstantiationException e) {
+                throw new DataProviderException(e.getMessage(), e);
+            }
+            set(binding, objectToSetDataInto, value);
+        }
+    }
+
+    private static Object valueOf(FieldBinding binding, AbstractExcelDataProvider provider, Object userObj,
+            String data) throws IllegalAccessException, InstantiationException {
+        Class<?> type = binding.field.getType();
+        switch (binding.kind) {
+        case PRIMITIVE:
+            if (binding.converter == null) {
+                return ReflectionUtils.instantiatePrimitiveObject(type, userObj, data);
+            }
+            return convert(binding.converter, data);
+        case WRAPPER:
+            if (binding.converter == null) {
+                return ReflectionUtils.instantiateWrapperObject(type, userObj, data);
+            }
+            return convert(binding.converter, data);
+        case STRING_CONSTRUCTOR:
+            try {
+                if (binding.converter == null) {
+                    return type.getConstructor(String.class).newInstance(data);
+                }
+                return convert(binding.converter, data);
+            } catch (InvocationTargetException | NoSuchMethodException | SecurityException e) {
+                throw new DataProviderException(e.getMessage(), e);
+            } catch (ReflectionException e) {
+                throw new DataProviderException(e.getCause().getMessage(), e.getCause());
+            }
+        case CUSTOM_TYPE:
+            return binding.customType.instantiateObject(data);
+        case POJO:
+            // A pojo class given by the user that points to another sheet in the excel sheet.
+            return provider.getSingleExcelRow(type.newInstance(), data, true);
+        case CUSTOM_TYPE_ARRAY:
+            return ReflectionUtils.instantiateDefaultCustomTypeArray(binding.customType, data.split(","));
+        default:
+            return arrayOf(binding, provider, data.split(","));
+        }
+    }
+
+    private static Object arrayOf(FieldBinding binding, AbstractExcelDataProvider provider, String[] arrayData)
+            throws IllegalAccessException, InstantiationException {
+        Class<?> type = binding.field.getType();
+        Class<?> componentType = type.getComponentType();
+        if (binding.kind == Kind.PRIMITIVE_ARRAY && binding.converter == null) {
+            return ReflectionUtils.instantiatePrimitiveArray(type, arrayData);
+        }
+        if (binding.kind == Kind.WRAPPER_ARRAY && binding.converter == null) {
+            return ReflectionUtils.instantiateWrapperArray(type, arrayData);
+        }
+        Object arrayObject = Array.newInstance(componentType, arrayData.length);
+        for (int counter = 0; counter < arrayData.length; counter++) {
+            Object element;
+            if (binding.kind == Kind.POJO_ARRAY) {
+                // The component type is a pojo class that points to another sheet in the excel sheet
+                element = provider.getSingleExcelRow(componentType.newInstance(), arrayData[counter].trim(), true);
+            } else {
+                element = convert(binding.converter, arrayData[counter]);
+            }
+            Array.set(arrayObject, counter, element);
+        }
+        return arrayObject;
+    }
+
+    private static Object convert(MethodHandle converter, String data) {
+        try {
+            return (Object) converter.invokeExact(data);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new ReflectionException(e);
+        }
+    }
+
+    private static void set(FieldBinding binding, Object objectToSetDataInto, Object value)
+            throws IllegalAccessException {
+        if (binding.setter == null) {
+            binding.field.set(objectToSetDataInto, value);
+            return;
+        }
+        try {
+            binding.setter.invokeExact(objectToSetDataInto, value);
+        } catch (Error | RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new DataProviderException(e.getMessage(), e);
+        }
+    }
+
+    private static MethodHandle setterFor(Field field) {
+        if (Modifier.isStatic(field.getModifiers())) {
+            return null;
+        }
+        try {
+            return LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) { // NOSONAR
+            // Final fields can only be assigned via reflection.
+            return null;
+        }
+    }
+
+    /**
+     * @return a handle to the parse method of the wrapper of a primitive type (for e.g., Integer.parseInt(String) for
+     *         int), or <code>null</code> if there is none.
+     */
+    private static MethodHandle parserFor(Class<?> primitiveType) {
+        Class<?> wrapperType = ClassUtils.primitiveToWrapper(primitiveType);
+        String name = "parse" + StringUtils.capitalize(primitiveType.getName());
+        try {
+            return LOOKUP.findStatic(wrapperType, name, MethodType.methodType(primitiveType, String.class)).asType(
+                    CONVERTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException e) { // NOSONAR
+            return null;
+        }
+    }
+
+    /**
+     * @return a handle to the 1 argument String constructor of the type, or <code>null</code> if there is none.
+     */
+    private static MethodHandle stringConstructorFor(Class<?> type) {
+        try {
+            return LOOKUP.unreflectConstructor(type.getConstructor(String.class)).asType(CONVERTER_TYPE);
+        } catch (NoSuchMethodException | IllegalAccessException | SecurityException e) { // NOSONAR
+            return null;
+        }
+    }
+
+    private static DefaultCustomType fetchMatchingCustomType(Class<?> type, List<DefaultCustomType> customTypes) {
+        for (DefaultCustomType eachCustomType : customTypes) {
+            if (type.equals(eachCustomType.getCustomTypeClass())) {
+                return eachCustomType;
+            }
+        }
+        return null;
+    }
+}
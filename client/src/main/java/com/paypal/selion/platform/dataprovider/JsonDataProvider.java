@@ -19,6 +19,7 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.apache.commons.lang.StringUtils;
 
 import com.google.common.base.Preconditions;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.stream.JsonReader;
 import com.paypal.selion.logger.SeLionLogger;
 import com.paypal.selion.platform.dataprovider.filter.DataProviderFilter;
@@ -104,24 +106,23 @@ public final class JsonDataProvider {
         logger.entering(resource);
         Class<?> arrayType = null;
         Object[][] dataToBeReturned = null;
-        JsonReader reader = new JsonReader(resource.getReader());
         try {
             // The type specified must be converted to array type for the parser
             // to deal with array of JSON objects
             arrayType = Array.newInstance(resource.getCls(), 0).getClass();
             logger.log(Level.FINE, "The Json Data is mapped as", arrayType);
-            dataToBeReturned = mapJsonData(reader, arrayType);
-        } catch (Exception e) {
+            dataToBeReturned = mapJsonData(resource, arrayType);
+        } catch (IOException | JsonParseException e) {
             throw new DataProviderException("Error while parsing Json Data", e);
-        } finally {
-            IOUtils.closeQuietly(reader);
         }
         logger.exiting(dataToBeReturned);
         return dataToBeReturned;
     }
 
     /**
-     * Gets JSON data from a resource for the specified indexes.
+     * Gets JSON data from a resource for the specified indexes. Elements that are not requested are skipped without
+     * being mapped, and the file is not read any further than the highest requested index. When the
+     * {@link DataProviderCache} is enabled, the whole array is mapped (or fetched from the cache) instead.
      * 
      * 
      * @param jsonResource
@@ -138,32 +139,40 @@ public final class JsonDataProvider {
         int[] indexList = null;
         Object[][] requestedData = null;
         Class<?> arrayType = null;
-        JsonReader reader = null;
         try {
 
             indexList = DataProviderHelper.parseIndexString(indexes);
-            requestedData = new Object[indexList.length][1];
-            reader = new JsonReader(jsonResource.getReader());
             arrayType = Array.newInstance(jsonResource.getCls(), 0).getClass();
             logger.log(Level.FINE, "The Json Data is mapped as", arrayType);
-            Object[][] mappedData = mapJsonData(reader, arrayType);
-            int i = 0;
-            for (int indexVal : indexList) {
-                indexVal--;
-                requestedData[i] = mappedData[indexVal];
-                i++;
+            if (DataProviderCache.keyFor(jsonResource, "json", arrayType) == null) {
+                // Only the requested elements are deserialized, and nothing past the highest index is read.
+                BitSet selection = DataProviderHelper.toRowSelection(indexList);
+                JsonRowIterator rows = new JsonRowIterator(new JsonReader(jsonResource.getReader()),
+                        jsonResource.getCls(), null);
+                rows.selectRows(selection);
+                requestedData = DataProviderHelper.arrangeSelectedRows(rows, selection, indexList);
+            } else {
+                requestedData = new Object[indexList.length][1];
+                Object[][] mappedData = mapJsonData(jsonResource, arrayType);
+                int i = 0;
+                for (int indexVal : indexList) {
+                    indexVal--;
+                    requestedData[i] = mappedData[indexVal];
+                    i++;
+                }
             }
         } catch (IOException e) {
             throw new DataProviderException("Error while getting the data by index from Json file", e);
-        } finally {
-            IOUtils.closeQuietly(reader);
         }
         logger.exiting(requestedData);
         return requestedData;
     }
 
     /**
-     * Gets JSON data from a resource by applying the given filter.
+     * Gets JSON data from a resource by applying the given filter. The top level array of the resource is read one
+     * element at a time, as the returned {@link Iterator} is advanced, and elements that are rejected by the filter are
+     * discarded as soon as they are read. When the {@link DataProviderCache} is enabled, the whole array is mapped (or
+     * fetched from the cache) upfront instead.
      * 
      * 
      * @param jsonResource
@@ -180,17 +189,18 @@ public final class JsonDataProvider {
                 "The resource must have a filename. filename cannot be null");
         logger.entering(new Object[] { jsonResource, dataFilter });
         Class<?> arrayType = null;
-        JsonReader reader = null;
         try {
-            reader = new JsonReader(jsonResource.getReader());
             arrayType = Array.newInstance(jsonResource.getCls(), 0).getClass();
-            Gson myJson = new Gson();
-            Object[] mappedData = myJson.fromJson(reader, arrayType);
+            if (DataProviderCache.keyFor(jsonResource, "json", arrayType) == null) {
+                Iterator<Object[]> rows = new JsonRowIterator(new JsonReader(jsonResource.getReader()),
+                        jsonResource.getCls(), dataFilter);
+                logger.exiting(rows);
+                return rows;
+            }
+            Object[] mappedData = loadJsonData(jsonResource, arrayType);
             return prepareDataAsObjectArrayList(mappedData, dataFilter).iterator();
         } catch (Exception e) {
             throw new DataProviderException(e.getMessage(), e);
-        } finally {
-            IOUtils.closeQuietly(reader);
         }
     }
 
@@ -233,10 +243,8 @@ public final class JsonDataProvider {
         // can give a type
         jsonResource.setCls(Hashtable[].class);
         Hashtable<String, Hashtable<?, ?>> dataAsHashTable = null;
-        JsonReader reader = null;
         try {
-            reader = new JsonReader(jsonResource.getReader());
-            Object[][] dataObject = mapJsonData(reader, jsonResource.getCls());
+            Object[][] dataObject = mapJsonData(jsonResource, jsonResource.getCls());
             dataAsHashTable = new Hashtable<String, Hashtable<?, ?>>();
             for (int i = 0; i < dataObject.length; i++) {
                 Object currentData = dataObject[i][0];
@@ -260,8 +268,6 @@ public final class JsonDataProvider {
                     n);
         } catch (Exception e) {
             throw new DataProviderException("Error while parsing Json Data as a Hash table", e);
-        } finally {
-            IOUtils.closeQuietly(reader);
         }
         logger.exiting(dataAsHashTable);
         return dataAsHashTable;
@@ -287,13 +293,32 @@ public final class JsonDataProvider {
         return parsedData;
     }
 
-    private static Object[][] mapJsonData(JsonReader reader, Type typeToMatch) throws IOException {
-        logger.entering(new Object[] { reader, typeToMatch });
-        Gson myJson = new Gson();
-        Object[] mappedData = myJson.fromJson(reader, typeToMatch);
+    private static Object[][] mapJsonData(FileSystemResource jsonResource, Class<?> typeToMatch) throws IOException {
+        logger.entering(new Object[] { jsonResource, typeToMatch });
+        Object[] mappedData = loadJsonData(jsonResource, typeToMatch);
         return prepareDataAsObjectArray(mappedData);
     }
 
+    /**
+     * Maps the json array of a resource into an array of the given type, parsing the file only if the mapped data is
+     * not available from the {@link DataProviderCache}.
+     */
+    private static Object[] loadJsonData(FileSystemResource jsonResource, Class<?> arrayType) throws IOException {
+        DataProviderCache.CacheKey key = DataProviderCache.keyFor(jsonResource, "json", arrayType);
+        Object[] mappedData = (Object[]) DataProviderCache.get(key);
+        if (mappedData == null) {
+            JsonReader reader = new JsonReader(jsonResource.getReader());
+            try {
+                Gson myJson = new Gson();
+                mappedData = myJson.fromJson(reader, arrayType);
+            } finally {
+                IOUtils.closeQuietly(reader);
+            }
+            DataProviderCache.put(key, mappedData);
+        }
+        return mappedData;
+    }
+
     private static Object[][] prepareDataAsObjectArray(Object[] dataToPack) {
         logger.entering(dataToPack);
         int entitySize = dataToPack.length;
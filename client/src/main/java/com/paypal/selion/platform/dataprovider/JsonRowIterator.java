@@ -0,0 +1,140 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.paypal.selion.platform.dataprovider.filter.DataProviderFilter;
+
+/**
+ * A lazy {@link Iterator} over the elements of the top level array of a json data source. Elements are deserialized
+ * one at a time, as TestNG asks for them, and those that are rejected by the {@link DataProviderFilter} are discarded
+ * right away, so that the memory footprint is bounded by a single element rather than by the size of the file. The
+ * underlying reader is closed once the last element has been read. This is internally used by
+ * {@link JsonDataProvider#getJsonObjectByFilter(FileSystemResource, DataProviderFilter)}.
+ */
+final class JsonRowIterator implements Iterator<Object[]> {
+
+    private final JsonReader reader;
+    private final Class<?> type;
+    private final DataProviderFilter dataFilter;
+    private final Gson gson = new Gson();
+
+    private BitSet selectedRows;
+    private int index;
+    private Object[] nextRow;
+    private boolean exhausted;
+
+    /**
+     * @param reader
+     *            the json reader positioned before the top level array.
+     * @param type
+     *            the type each element of the array is to be mapped to.
+     * @param dataFilter
+     *            an optional {@link DataProviderFilter}. May be <code>null</code>.
+     * @throws IOException
+     *             if the data source does not start with an array.
+     */
+    JsonRowIterator(JsonReader reader, Class<?> type, DataProviderFilter dataFilter) throws IOException {
+        this.reader = reader;
+        this.type = type;
+        this.dataFilter = dataFilter;
+        try {
+            reader.beginArray();
+        } catch (IOException | IllegalStateException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Restricts the rows to the elements at the given positions. The other elements are skipped without being
+     * deserialized, and the reader is closed right after the last selected element. Must be called before the first row
+     * is read.
+     * 
+     * @param selectedRows
+     *            the zero based positions of the elements to read.
+     */
+    void selectRows(BitSet selectedRows) {
+        this.selectedRows = selectedRows;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null && !exhausted) {
+            advance();
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object[] row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Rows of a json data source cannot be removed.");
+    }
+
+    private void advance() {
+        try {
+            while (reader.hasNext()) {
+                if (selectedRows != null) {
+                    if (selectedRows.nextSetBit(index) < 0) {
+                        // Nothing selected beyond this point.
+                        break;
+                    }
+                    if (!selectedRows.get(index++)) {
+                        reader.skipValue();
+                        continue;
+                    }
+                }
+                Object row = gson.fromJson(reader, type);
+                if (dataFilter == null || dataFilter.filter(row)) {
+                    nextRow = new Object[] { row };
+                    return;
+                }
+            }
+            if (reader.peek() == JsonToken.END_ARRAY) {
+                reader.endArray();
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            close();
+            throw new DataProviderException("Error while parsing Json Data", e);
+        }
+        close();
+    }
+
+    private void close() {
+        exhausted = true;
+        IOUtils.closeQuietly(reader);
+    }
+}
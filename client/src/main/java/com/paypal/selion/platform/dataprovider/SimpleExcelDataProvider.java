@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
@@ -76,6 +77,35 @@ public class SimpleExcelDataProvider extends AbstractExcelDataProvider {
         super(pathName, fileName);
     }
 
+    /**
+     * Use this constructor to read large .xlsx workbooks. In streaming mode {@link #getAllExcelRows(Object)} and
+     * {@link #getExcelRowsByFilter(Object, DataProviderFilter)} parse the sheet one row at a time instead of loading
+     * the whole workbook in memory, so memory stays bounded regardless of the size of the sheet. The workbook is still
+     * loaded in memory the first time a row has to be looked up by its key or index, for e.g., to resolve a data member
+     * that refers to a row of another sheet. .xls workbooks are always loaded in memory.
+     * 
+     * <h3>Sample usage:</h3>
+     * 
+     * <pre>
+     * '@DataProvider(name = "dataProvider1")'
+     * public Iterator&lt;Object[]&gt; createData1() throws Exception {
+     *     SimpleExcelDataProvider dataProvider = new SimpleExcelDataProvider(pathName, fileName, true);
+     *     return dataProvider.getExcelRowsByFilter(new LOCAL_DATA(), new SimpleIndexInclusionFilter("1-1000"));
+     * }
+     * </pre>
+     * 
+     * @param pathName
+     *            the path where the excel file is located.
+     * @param fileName
+     *            the name of the excel file to be read.
+     * @param streaming
+     *            <code>true</code> to parse the rows of an .xlsx file on demand.
+     * @throws IOException
+     */
+    public SimpleExcelDataProvider(String pathName, String fileName, boolean streaming) throws IOException {
+        super(pathName, fileName, streaming);
+    }
+
     /**
      * Use this constructor when a file that is available in the classpath is to be read by the SimpleExcelDataProvider
      * for supporting Data Driven Tests.
@@ -269,7 +299,6 @@ public class SimpleExcelDataProvider extends AbstractExcelDataProvider {
     @Override
     public Object[][] getAllExcelRows(Object myObj) {
         logger.entering(myObj);
-        int i;
         Object[][] obj = null;
         Field[] fields = myObj.getClass().getDeclaredFields();
 
@@ -278,20 +307,23 @@ public class SimpleExcelDataProvider extends AbstractExcelDataProvider {
         // number of non-blank rows. Thus if there are
         // blank rows in the sheet then we will miss
         // some last rows of data.
-        List<Row> rowToBeRead = excelReader.getAllExcelRows(myObj.getClass().getSimpleName(), false);
-        if (!rowToBeRead.isEmpty()) {
-            i = 0;
-            obj = new Object[rowToBeRead.size()][1];
-            for (Row row : rowToBeRead) {
-                List<String> excelRowData = excelReader.getRowContents(row, fields.length);
-                if (excelRowData.size() != 0) {
-                    try {
-                        obj[i++][0] = prepareObject(myObj, fields, excelRowData);
-                    } catch (IllegalAccessException e) {
-                        throw new DataProviderException("Unable to create instance of type '"
-                                + myObj.getClass().getName() + "'", e);
-                    }
-                }
+        Iterator<List<String>> rowsToBeRead = excelReader.getAllExcelRowContents(myObj.getClass().getSimpleName(),
+                false, fields.length);
+        // Rows without any content to read still take up an entry (left null, at the end of the array), like they did
+        // when the whole sheet was read up front.
+        List<Object> rows = new ArrayList<>();
+        int rowsRead = 0;
+        while (rowsToBeRead.hasNext()) {
+            List<String> excelRowData = rowsToBeRead.next();
+            rowsRead++;
+            if (excelRowData.size() != 0) {
+                rows.add(prepareRowObject(myObj, fields, excelRowData));
+            }
+        }
+        if (rowsRead > 0) {
+            obj = new Object[rowsRead][1];
+            for (int i = 0; i < rows.size(); i++) {
+                obj[i][0] = rows.get(i);
             }
         }
         logger.exiting(obj);
@@ -299,7 +331,8 @@ public class SimpleExcelDataProvider extends AbstractExcelDataProvider {
     }
 
     /**
-     * Gets data from Excel sheet by applying the given filter.
+     * Gets data from Excel sheet by applying the given filter. Rows are read and filtered only as the returned
+     * {@link Iterator} is advanced.
      * 
      * @param myObj
      *            the user defined type object which provide details structure to this function.
@@ -307,31 +340,58 @@ public class SimpleExcelDataProvider extends AbstractExcelDataProvider {
      *            an implementation class of {@link DataProviderFilter}
      * @return An iterator over a collection of Object Array to be used with TestNG DataProvider
      */
-    public Iterator<Object[]> getExcelRowsByFilter(Object myObj, DataProviderFilter dataFilter) {
+    public Iterator<Object[]> getExcelRowsByFilter(final Object myObj, final DataProviderFilter dataFilter) {
         logger.entering(new Object[] { myObj, dataFilter });
-        List<Object[]> objs = new ArrayList<>();
-        Field[] fields = myObj.getClass().getDeclaredFields();
+        final Field[] fields = myObj.getClass().getDeclaredFields();
 
         // Extracting number of rows of data to read
         // Notice that numRows is returning the actual number of non-blank rows.
         // Thus if there are blank rows in the sheet then we will miss some last rows of data.
-        List<Row> rowToBeRead = excelReader.getAllExcelRows(myObj.getClass().getSimpleName(), false);
-        for (Row row : rowToBeRead) {
-            List<String> excelRowData = excelReader.getRowContents(row, fields.length);
-            if (excelRowData.size() != 0) {
-                try {
-                    Object temp = prepareObject(myObj, fields, excelRowData);
-                    if (dataFilter.filter(temp)) {
-                        objs.add(new Object[] { temp });
+        final Iterator<List<String>> rowsToBeRead = excelReader.getAllExcelRowContents(myObj.getClass()
+                .getSimpleName(), false, fields.length);
+        Iterator<Object[]> objs = new Iterator<Object[]>() {
+            private Object[] nextRow;
+
+            @Override
+            public boolean hasNext() {
+                while (nextRow == null && rowsToBeRead.hasNext()) {
+                    List<String> excelRowData = rowsToBeRead.next();
+                    if (excelRowData.size() != 0) {
+                        Object temp = prepareRowObject(myObj, fields, excelRowData);
+                        if (dataFilter.filter(temp)) {
+                            nextRow = new Object[] { temp };
+                        }
                     }
-                } catch (IllegalAccessException e) {
-                    throw new DataProviderException("Unable to create instance of type '" + myObj.getClass().getName()
-                            + "'", e);
                 }
+                return nextRow != null;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object[] row = nextRow;
+                nextRow = null;
+                return row;
             }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        logger.exiting(objs);
+        return objs;
+    }
+
+    private Object prepareRowObject(Object myObj, Field[] fields, List<String> excelRowData) {
+        try {
+            return prepareObject(myObj, fields, excelRowData);
+        } catch (IllegalAccessException e) {
+            throw new DataProviderException("Unable to create instance of type '" + myObj.getClass().getName() + "'",
+                    e);
         }
-        logger.exiting(objs.iterator());
-        return objs.iterator();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,335 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * A lazy {@link Iterator} over the rows of a sheet of an .xlsx file. The sheet is read with a pull parser, one row at a
+ * time, so that only the shared strings table and the current row are held in memory. Cell values are rendered the
+ * same way <code>Cell.toString()</code> renders them, so every row is equal to what
+ * {@link ExcelReader#getRowContents(org.apache.poi.ss.usermodel.Row, int)} returns for the corresponding in memory
+ * row. Just like {@link ExcelReader#getAllExcelRows(String, boolean)}, rows without a key in their first column and
+ * rows whose key contains a "#" are skipped. The file is closed once the last row has been read.
+ */
+final class StreamingSheetRowIterator implements Iterator<List<String>> {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private final OPCPackage excelPackage;
+    private final boolean heading;
+    private final int size;
+    private final List<String> sharedStrings;
+    private final StylesTable styles;
+
+    private InputStream sheetStream;
+    private XMLStreamReader sheetReader;
+    private int lastRowIndex = -1;
+    private List<String> nextRow;
+    private boolean exhausted;
+
+    /**
+     * @param excelPackage
+     *            the opened .xlsx file. It is closed by this iterator.
+     * @param sheetName
+     *            the name of the sheet to read. Just like <code>Workbook.getSheet(String)</code> the name is matched
+     *            ignoring case.
+     * @param heading
+     *            if <code>true</code> the heading row is returned as well.
+     * @param size
+     *            the number of columns to read, not counting the key column.
+     */
+    StreamingSheetRowIterator(OPCPackage excelPackage, String sheetName, boolean heading, int size) {
+        this.excelPackage = excelPackage;
+        this.heading = heading;
+        this.size = size;
+        try {
+            XSSFReader reader = new XSSFReader(excelPackage);
+            this.sharedStrings = readSharedStrings(reader);
+            this.styles = readStyles(reader);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext() && sheetStream == null) {
+                InputStream eachSheet = sheets.next();
+                if (sheets.getSheetName().equalsIgnoreCase(sheetName)) {
+                    sheetStream = eachSheet;
+                } else {
+                    IOUtils.closeQuietly(eachSheet);
+                }
+            }
+            if (sheetStream == null) {
+                throw new IllegalArgumentException("Sheet '" + sheetName + "' is not found.");
+            }
+            sheetReader = XML_INPUT_FACTORY.createXMLStreamReader(sheetStream);
+        } catch (OpenXML4JException | IOException | XMLStreamException e) {
+            close();
+            throw new DataProviderException("Unable to read sheet '" + sheetName + "'", e);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null && !exhausted) {
+            advance();
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public List<String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Removing rows from an excel sheet is not supported.");
+    }
+
+    private void advance() {
+        try {
+            while (sheetReader.hasNext()) {
+                if (sheetReader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                if (!"row".equals(sheetReader.getLocalName())) {
+                    continue;
+                }
+                String rowReference = sheetReader.getAttributeValue(null, "r");
+                int rowIndex = (rowReference == null) ? lastRowIndex + 1 : Integer.parseInt(rowReference) - 1;
+                lastRowIndex = rowIndex;
+                List<String> cells = readRow();
+                if (rowIndex == 0 && !heading) {
+                    continue;
+                }
+                // Did the user mark the current row to be excluded by adding a # ?
+                if (cells.isEmpty() || cells.get(0) == null || cells.get(0).contains("#")) {
+                    continue;
+                }
+                nextRow = toRowContents(cells);
+                return;
+            }
+        } catch (XMLStreamException e) {
+            close();
+            throw new DataProviderException("Unable to read the excel sheet.", e);
+        }
+        close();
+    }
+
+    /**
+     * @return the values of the cells of the current row, indexed by their column. Missing cells are <code>null</code>
+     */
+    private List<String> readRow() throws XMLStreamException {
+        List<String> cells = new ArrayList<>();
+        while (sheetReader.hasNext()) {
+            int event = sheetReader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(sheetReader.getLocalName())) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(sheetReader.getLocalName())) {
+                String cellReference = sheetReader.getAttributeValue(null, "r");
+                int column = (cellReference == null) ? cells.size() : columnIndex(cellReference);
+                while (cells.size() <= column) {
+                    cells.add(null);
+                }
+                cells.set(column, readCell());
+            }
+        }
+        return cells;
+    }
+
+    private String readCell() throws XMLStreamException {
+        String type = sheetReader.getAttributeValue(null, "t");
+        String style = sheetReader.getAttributeValue(null, "s");
+        String value = null;
+        String formula = null;
+        StringBuilder inlineString = null;
+        while (sheetReader.hasNext()) {
+            int event = sheetReader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "c".equals(sheetReader.getLocalName())) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String element = sheetReader.getLocalName();
+            if ("v".equals(element)) {
+                value = sheetReader.getElementText();
+            } else if ("f".equals(element)) {
+                formula = sheetReader.getElementText();
+            } else if ("t".equals(element)) {
+                if (inlineString == null) {
+                    inlineString = new StringBuilder();
+                }
+                inlineString.append(sheetReader.getElementText());
+            } else if ("rPh".equals(element)) {
+                skipElement(sheetReader);
+            }
+        }
+
+        // A cell that holds a formula renders the formula itself rather than its cached value.
+        if (formula != null) {
+            return formula;
+        }
+        if ("inlineStr".equals(type)) {
+            return (inlineString == null) ? "" : inlineString.toString();
+        }
+        if (value == null) {
+            return "";
+        }
+        if ("s".equals(type)) {
+            return sharedStrings.get(Integer.parseInt(value.trim()));
+        }
+        if ("b".equals(type)) {
+            return "1".equals(value.trim()) ? "TRUE" : "FALSE";
+        }
+        if ("e".equals(type) || "str".equals(type)) {
+            return value;
+        }
+        return formatNumber(value, style);
+    }
+
+    private String formatNumber(String value, String style) {
+        double number = Double.parseDouble(value);
+        if (style != null && styles != null && DateUtil.isValidExcelDate(number)) {
+            XSSFCellStyle cellStyle = styles.getStyleAt(Integer.parseInt(style));
+            if (cellStyle != null && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString())) {
+                return new SimpleDateFormat("dd-MMM-yyyy").format(DateUtil.getJavaDate(number));
+            }
+        }
+        return Double.toString(number);
+    }
+
+    private List<String> toRowContents(List<String> cells) {
+        List<String> rowData = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            rowData.add(i < cells.size() ? cells.get(i) : null);
+        }
+        return rowData;
+    }
+
+    private void close() {
+        exhausted = true;
+        if (sheetReader != null) {
+            try {
+                sheetReader.close();
+            } catch (XMLStreamException e) { // NOSONAR
+                // Nothing to do here. We are done with the sheet anyway.
+            }
+        }
+        IOUtils.closeQuietly(sheetStream);
+        // Closing a package that was opened for reading would attempt to save it. revert() just releases it.
+        excelPackage.revert();
+    }
+
+    /**
+     * Converts a cell reference such as "AB12" into a zero based column index.
+     */
+    static int columnIndex(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (!Character.isLetter(c)) {
+                break;
+            }
+            column = column * 26 + (Character.toUpperCase(c) - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    private static List<String> readSharedStrings(XSSFReader reader) throws IOException, XMLStreamException {
+        InputStream stream;
+        try {
+            stream = reader.getSharedStringsData();
+        } catch (OpenXML4JException | RuntimeException e) { // NOSONAR
+            // A workbook that has no text in it need not have a shared strings table.
+            return Collections.emptyList();
+        }
+        List<String> strings = new ArrayList<>();
+        XMLStreamReader stringsReader = XML_INPUT_FACTORY.createXMLStreamReader(stream);
+        try {
+            StringBuilder current = null;
+            while (stringsReader.hasNext()) {
+                int event = stringsReader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String element = stringsReader.getLocalName();
+                    if ("si".equals(element)) {
+                        current = new StringBuilder();
+                    } else if ("t".equals(element) && current != null) {
+                        current.append(stringsReader.getElementText());
+                    } else if ("rPh".equals(element)) {
+                        // Phonetic runs are not part of the text of the cell.
+                        skipElement(stringsReader);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "si".equals(stringsReader.getLocalName())) {
+                    strings.add(current.toString());
+                    current = null;
+                }
+            }
+        } finally {
+            stringsReader.close();
+            IOUtils.closeQuietly(stream);
+        }
+        return strings;
+    }
+
+    private static StylesTable readStyles(XSSFReader reader) {
+        try {
+            return reader.getStylesTable();
+        } catch (OpenXML4JException | IOException | RuntimeException e) { // NOSONAR
+            // Without styles no cell is date formatted, which is what we assume then.
+            return null;
+        }
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+}
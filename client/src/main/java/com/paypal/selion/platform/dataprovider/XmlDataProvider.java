@@ -16,24 +16,42 @@
 package com.paypal.selion.platform.dataprovider;
 
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.JAXBIntrospector;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
 
 import org.apache.commons.jxpath.JXPathContext;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
 import org.dom4j.Node;
 import org.dom4j.dom.DOMDocumentFactory;
 import org.dom4j.io.SAXReader;
+import org.dom4j.io.SAXWriter;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 import com.google.common.base.Preconditions;
 import com.paypal.selion.logger.SeLionLogger;
@@ -53,6 +71,25 @@ public final class XmlDataProvider {
 
     private static SimpleLogger logger = SeLionLogger.getLogger();
 
+    /**
+     * {@link JAXBContext}s are thread safe and expensive to create, so one is created per set of bound classes.
+     */
+    private static final ConcurrentMap<List<Class<?>>, JAXBContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    /**
+     * {@link Unmarshaller}s are cheap compared to their {@link JAXBContext} but are not thread safe, so every thread
+     * reuses its own.
+     */
+    private static final ThreadLocal<Map<List<Class<?>>, Unmarshaller>> UNMARSHALLERS =
+            new ThreadLocal<Map<List<Class<?>>, Unmarshaller>>() {
+        @Override
+        protected Map<List<Class<?>>, Unmarshaller> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
     // Hiding constructor for class that contains only static methods
     private XmlDataProvider() {
     }
@@ -73,7 +110,7 @@ public final class XmlDataProvider {
             Object[][][] multipleObjectDataProviders = new Object[xmlResource.getXpathMap().size()][][];
             int i = 0;
             for (Entry<String, Class<?>> entry : xmlResource.getXpathMap().entrySet()) {
-                String xml = getFilteredXml(doc, entry.getKey());
+                Source xml = getFilteredXml(doc, entry.getKey());
                 List<?> object = loadDataFromXml(xml, entry.getValue());
                 Object[][] objectDataProvider = DataProviderHelper.convertToObjectArray(object);
                 multipleObjectDataProviders[i++] = objectDataProvider;
@@ -105,7 +142,7 @@ public final class XmlDataProvider {
         if ((null == xmlResource.getCls()) && (null != xmlResource.getXpathMap())) {
             Document doc = getDocument(xmlResource);
             for (Entry<String, Class<?>> entry : xmlResource.getXpathMap().entrySet()) {
-                String xml = getFilteredXml(doc, entry.getKey());
+                Source xml = getFilteredXml(doc, entry.getKey());
                 List<?> objectList = loadDataFromXml(xml, entry.getValue());
                 List<Object[]> singleResourceObjs = DataProviderHelper.filterToListOfObjects(objectList, dataFilter);
                 allObjs.addAll(singleResourceObjs);
@@ -132,8 +169,8 @@ public final class XmlDataProvider {
     public static Iterator<Object[]> getDataByIndex(XmlFileSystemResource xmlResource, String filterIndexes) {
         logger.entering(new Object[] { xmlResource, filterIndexes });
 
-        SimpleIndexInclusionFilter filter = new SimpleIndexInclusionFilter(filterIndexes);
-        Iterator<Object[]> xmlObjFiltered = XmlDataProvider.getDataByFilter(xmlResource, filter);
+        Iterator<Object[]> xmlObjFiltered = getDataByIndex(xmlResource,
+                DataProviderHelper.parseIndexString(filterIndexes));
 
         logger.exiting(xmlObjFiltered);
         return xmlObjFiltered;
@@ -142,7 +179,11 @@ public final class XmlDataProvider {
     /**
      * Generates an object array in iterator as TestNG DataProvider from the XML data filtered per given indexes. This
      * method may throw {@link DataProviderException} when an unexpected error occurs during data provision from XML
-     * file.
+     * file. <br>
+     * <br>
+     * When the {@link XmlFileSystemResource} has a type, the elements that are not requested are skipped without being
+     * unmarshalled, and the file is not read any further than the highest requested index (unless the
+     * {@link DataProviderCache} is enabled, in which case the whole file is unmarshalled or fetched from the cache).
      * 
      * @param xmlResource
      *            A {@link XmlFileSystemResource} that represents a data source.
@@ -155,8 +196,15 @@ public final class XmlDataProvider {
     public static Iterator<Object[]> getDataByIndex(XmlFileSystemResource xmlResource, int[] indexes) {
         logger.entering(new Object[] { xmlResource, indexes });
 
-        SimpleIndexInclusionFilter filter = new SimpleIndexInclusionFilter(indexes);
-        Iterator<Object[]> xmlObjFiltered = XmlDataProvider.getDataByFilter(xmlResource, filter);
+        Iterator<Object[]> xmlObjFiltered;
+        if ((null != xmlResource.getCls())
+                && (null == DataProviderCache.keyFor(xmlResource, "xml", xmlResource.getCls()))) {
+            xmlObjFiltered = loadSelectedDataFromXmlFile(xmlResource, DataProviderHelper.toRowSelection(indexes))
+                    .iterator();
+        } else {
+            SimpleIndexInclusionFilter filter = new SimpleIndexInclusionFilter(indexes);
+            xmlObjFiltered = XmlDataProvider.getDataByFilter(xmlResource, filter);
+        }
 
         logger.exiting(xmlObjFiltered);
         return xmlObjFiltered;
@@ -200,11 +248,7 @@ public final class XmlDataProvider {
 
         Object[][] objectArray = null;
         try {
-            JAXBContext context = JAXBContext.newInstance(xmlResource.getCls());
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            StreamSource xmlStreamSource = new StreamSource(xmlResource.getInputStream());
-            LinkedHashMap<String, KeyValuePair> keyValueItems = unmarshaller
-                    .unmarshal(xmlStreamSource, KeyValueMap.class).getValue().getMap();
+            LinkedHashMap<String, KeyValuePair> keyValueItems = loadKeyValueItems(xmlResource);
             objectArray = DataProviderHelper.convertToObjectArray(keyValueItems);
         } catch (JAXBException excp) {
             throw new DataProviderException("Error unmarshalling XML file.", excp);
@@ -254,11 +298,7 @@ public final class XmlDataProvider {
 
         Object[][] objectArray = null;
         try {
-            JAXBContext context = JAXBContext.newInstance(xmlResource.getCls());
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            StreamSource xmlStreamSource = new StreamSource(xmlResource.getInputStream());
-            LinkedHashMap<String, KeyValuePair> keyValueItems = unmarshaller
-                    .unmarshal(xmlStreamSource, KeyValueMap.class).getValue().getMap();
+            LinkedHashMap<String, KeyValuePair> keyValueItems = loadKeyValueItems(xmlResource);
             objectArray = DataProviderHelper.getDataByKeys(keyValueItems, keys);
         } catch (JAXBException excp) {
             logger.exiting(excp.getMessage());
@@ -270,6 +310,30 @@ public final class XmlDataProvider {
         return objectArray;
     }
 
+    /**
+     * Generates a map of name value items after parsing the XML file.
+     * 
+     * @param xmlResource
+     *            A {@link XmlFileSystemResource} object containing the XML file location and representing type.
+     * @return A {@link LinkedHashMap} of the {@link KeyValuePair} items keyed by their key.
+     * @throws JAXBException
+     */
+    @SuppressWarnings("unchecked")
+    private static LinkedHashMap<String, KeyValuePair> loadKeyValueItems(XmlFileSystemResource xmlResource)
+            throws JAXBException {
+        DataProviderCache.CacheKey key = DataProviderCache.keyFor(xmlResource, "xml-key-value",
+                xmlResource.getCls());
+        LinkedHashMap<String, KeyValuePair> keyValueItems = (LinkedHashMap<String, KeyValuePair>) DataProviderCache
+                .get(key);
+        if (keyValueItems == null) {
+            Unmarshaller unmarshaller = getUnmarshaller(xmlResource.getCls());
+            StreamSource xmlStreamSource = new StreamSource(xmlResource.getInputStream());
+            keyValueItems = unmarshaller.unmarshal(xmlStreamSource, KeyValueMap.class).getValue().getMap();
+            DataProviderCache.put(key, keyValueItems);
+        }
+        return keyValueItems;
+    }
+
     /**
      * Generates a list of the declared type after parsing the XML file.
      * 
@@ -280,14 +344,19 @@ public final class XmlDataProvider {
     private static List<?> loadDataFromXmlFile(XmlFileSystemResource xmlResource) {
         logger.entering(xmlResource);
         Preconditions.checkArgument(xmlResource.getCls() != null, "Please provide a valid type.");
-        List<?> returned = null;
+        DataProviderCache.CacheKey key = DataProviderCache.keyFor(xmlResource, "xml", xmlResource.getCls());
+        List<?> returned = (List<?>) DataProviderCache.get(key);
+        if (returned != null) {
+            logger.exiting(returned);
+            return returned;
+        }
 
         try {
-            JAXBContext context = JAXBContext.newInstance(Wrapper.class, xmlResource.getCls());
-            Unmarshaller unmarshaller = context.createUnmarshaller();
+            Unmarshaller unmarshaller = getUnmarshaller(Wrapper.class, xmlResource.getCls());
             StreamSource xmlStreamSource = new StreamSource(xmlResource.getInputStream());
             Wrapper<?> wrapper = unmarshaller.unmarshal(xmlStreamSource, Wrapper.class).getValue();
             returned = wrapper.getList();
+            DataProviderCache.put(key, returned);
         } catch (JAXBException excp) {
             logger.exiting(excp.getMessage());
             throw new DataProviderException("Error unmarshalling XML file.", excp);
@@ -298,25 +367,117 @@ public final class XmlDataProvider {
     }
 
     /**
-     * Generates a list of the declared type after parsing the XML data string.
+     * Unmarshals the selected child elements of the root of the XML file, in document order. The XML file is read as a
+     * stream: the other child elements are skipped over, and reading stops once the last selected one is reached.
+     * Indexes past the last child element are ignored, as {@link SimpleIndexInclusionFilter} does.
+     * 
+     * @param xmlResource
+     *            A {@link XmlFileSystemResource} object containing the XML file location and representing type.
+     * @param selection
+     *            The zero based positions of the child elements to unmarshal.
+     * @return The rows, in the order the elements appear in the file.
+     */
+    private static List<Object[]> loadSelectedDataFromXmlFile(XmlFileSystemResource xmlResource, BitSet selection) {
+        logger.entering(new Object[] { xmlResource, selection });
+        List<Object[]> rows = new ArrayList<>();
+        XMLStreamReader reader = null;
+        try (InputStream inputStream = xmlResource.getInputStream()) {
+            Unmarshaller unmarshaller = getUnmarshaller(Wrapper.class, xmlResource.getCls());
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            reader.nextTag();
+            reader.next();
+            int row = 0;
+            while (reader.getEventType() != XMLStreamConstants.END_ELEMENT && selection.nextSetBit(row) >= 0) {
+                if (reader.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                    if (selection.get(row++)) {
+                        // Leaves the reader on the event right after the end of the element.
+                        rows.add(new Object[] { JAXBIntrospector.getValue(unmarshaller.unmarshal(reader)) });
+                        continue;
+                    }
+                    skipElement(reader);
+                }
+                reader.next();
+            }
+        } catch (JAXBException | XMLStreamException | IOException excp) {
+            logger.exiting(excp.getMessage());
+            throw new DataProviderException("Error unmarshalling XML file.", excp);
+        } finally {
+            closeQuietly(reader);
+        }
+
+        // Passing no arguments to exiting() because implementation to print the rows could be highly recursive.
+        logger.exiting();
+        return rows;
+    }
+
+    /**
+     * Moves the reader from the start of an element to its end, without looking at the content of the element.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static void closeQuietly(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) { // NOSONAR
+                // Nothing more can be done with the reader.
+            }
+        }
+    }
+
+    /**
+     * Returns an {@link Unmarshaller} for the given bound classes. The {@link JAXBContext} is created once per set of
+     * bound classes and the {@link Unmarshaller} once per thread.
+     * 
+     * @param classes
+     *            The classes to be recognized by the {@link JAXBContext}.
+     * @return An {@link Unmarshaller} that is to be used only by the current thread.
+     * @throws JAXBException
+     */
+    private static Unmarshaller getUnmarshaller(Class<?>... classes) throws JAXBException {
+        List<Class<?>> boundClasses = Arrays.asList(classes);
+        Map<List<Class<?>>, Unmarshaller> unmarshallers = UNMARSHALLERS.get();
+        Unmarshaller unmarshaller = unmarshallers.get(boundClasses);
+        if (unmarshaller == null) {
+            JAXBContext context = CONTEXTS.get(boundClasses);
+            if (context == null) {
+                context = JAXBContext.newInstance(classes);
+                JAXBContext existing = CONTEXTS.putIfAbsent(boundClasses, context);
+                context = (existing == null) ? context : existing;
+            }
+            unmarshaller = context.createUnmarshaller();
+            unmarshallers.put(boundClasses, unmarshaller);
+        }
+        return unmarshaller;
+    }
+
+    /**
+     * Generates a list of the declared type after parsing the XML data.
      * 
      * @param xml
-     *            String containing the XML data.
+     *            A {@link Source} of the XML data.
      * @param cls
      *            The declared type modeled by the XML content.
      * @return A {@link List} of object of declared type {@link XmlFileSystemResource#getCls()}.
      */
-    private static List<?> loadDataFromXml(String xml, Class<?> cls) {
+    private static List<?> loadDataFromXml(Source xml, Class<?> cls) {
         logger.entering(new Object[] { xml, cls });
         Preconditions.checkArgument(cls != null, "Please provide a valid type.");
         List<?> returned = null;
 
         try {
-            JAXBContext context = JAXBContext.newInstance(Wrapper.class, cls);
-            Unmarshaller unmarshaller = context.createUnmarshaller();
-            StringReader xmlStringReader = new StringReader(xml);
-            StreamSource streamSource = new StreamSource(xmlStringReader);
-            Wrapper<?> wrapper = unmarshaller.unmarshal(streamSource, Wrapper.class).getValue();
+            Unmarshaller unmarshaller = getUnmarshaller(Wrapper.class, cls);
+            Wrapper<?> wrapper = unmarshaller.unmarshal(xml, Wrapper.class).getValue();
             returned = wrapper.getList();
         } catch (JAXBException excp) {
             logger.exiting(excp.getMessage());
@@ -336,44 +497,71 @@ public final class XmlDataProvider {
      */
     private static Document getDocument(XmlFileSystemResource xmlResource) {
         logger.entering(xmlResource);
+        DataProviderCache.CacheKey key = DataProviderCache.keyFor(xmlResource, "xml-document", null);
+        Document doc = (Document) DataProviderCache.get(key);
+        if (doc != null) {
+            logger.exiting(doc);
+            return doc;
+        }
         DOMDocumentFactory domFactory = new DOMDocumentFactory();
         SAXReader reader = new SAXReader(domFactory);
-        Document doc = null;
 
         try {
             doc = reader.read(xmlResource.getInputStream());
+            DataProviderCache.put(key, doc);
         } catch (DocumentException excp) {
             logger.exiting(excp.getMessage());
             throw new DataProviderException("Error reading XML data.", excp);
         }
 
-        logger.exiting(doc.asXML());
+        logger.exiting(doc);
         return doc;
     }
 
     /**
-     * Generates an XML string containing only the nodes filtered by the XPath expression.
+     * Generates a {@link Source} of XML data containing only the nodes filtered by the XPath expression. The matched
+     * nodes are fed to the consumer of the {@link Source} as SAX events, rather than being serialized into a string that
+     * would have to be parsed again.
      * 
      * @param document
      *            An XML {@link org.dom4j.Document}
      * @param xpathExpression
      *            A string indicating the XPath expression to be evaluated.
-     * @return A string of XML data with root node named "root".
+     * @return A {@link Source} of XML data with root node named "root".
      */
     @SuppressWarnings("unchecked")
-    private static String getFilteredXml(Document document, String xpathExpression) {
+    private static Source getFilteredXml(Document document, String xpathExpression) {
         logger.entering(new Object[] { document, xpathExpression });
 
         List<Node> nodes = (List<Node>) document.selectNodes(xpathExpression);
-        StringBuilder newDocument = new StringBuilder(document.asXML().length());
-        newDocument.append("<root>");
-        for (Node n : nodes) {
-            newDocument.append(n.asXML());
-        }
-        newDocument.append("</root>");
+        SAXSource newDocument = new SAXSource(new FilteredNodesReader(nodes), new InputSource());
 
         logger.exiting(newDocument);
-        return newDocument.toString();
+        return newDocument;
+    }
+
+    /**
+     * An {@link org.xml.sax.XMLReader} that generates the SAX events of a document made of a "root" node that contains
+     * the given nodes.
+     */
+    private static final class FilteredNodesReader extends SAXWriter {
+        private final List<Node> nodes;
+
+        FilteredNodesReader(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public void parse(InputSource input) throws SAXException {
+            Element root = DocumentHelper.createElement("root");
+            startDocument();
+            writeOpen(root);
+            for (Node node : nodes) {
+                write(node);
+            }
+            writeClose(root);
+            getContentHandler().endDocument();
+        }
     }
 
     /**
@@ -19,12 +19,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
 
 import org.yaml.snakeyaml.TypeDescription;
 import org.yaml.snakeyaml.Yaml;
@@ -250,26 +252,7 @@ public final class YamlDataProvider {
     public static Object[][] getAllData(FileSystemResource resource) throws IOException {
         logger.entering(resource);
 
-        InputStream inputStream = resource.getInputStream();
-        Yaml yaml = constructYaml(resource.getCls());
-
-        Object yamlObject;
-
-        // Mark the input stream in case multiple documents has been detected
-        // so we can reset it.
-        inputStream.mark(100);
-
-        try {
-            yamlObject = yaml.load(inputStream);
-        } catch (ComposerException composerException) {
-            if (composerException.getMessage().contains("expected a single document")) {
-                inputStream.reset();
-                yamlObject = loadDataFromDocuments(yaml, inputStream);
-            } else {
-                throw new DataProviderException("Error reading YAML data", composerException);
-            }
-        }
-
+        Object yamlObject = loadYamlObject(resource);
         Object[][] objArray = DataProviderHelper.convertToObjectArray(yamlObject);
 
         logger.exiting(objArray);
@@ -290,28 +273,63 @@ public final class YamlDataProvider {
     public static Iterator<Object[]> getDataByFilter(FileSystemResource resource, DataProviderFilter dataFilter)
             throws IOException {
         logger.entering(new Object[] { resource, dataFilter });
-        InputStream inputStream = resource.getInputStream();
-        Yaml yaml = constructYaml(resource.getCls());
-
-        Object yamlObject;
+        Object yamlObject = loadYamlObject(resource);
+        return DataProviderHelper.filterToListOfObjects(yamlObject, dataFilter).iterator();
+    }
 
-        // Mark the input stream in case multiple documents has been detected
-        // so we can reset it.
-        inputStream.mark(100);
+    /**
+     * Streaming counterpart of {@link #getAllData(FileSystemResource)}. Instead of loading the entire yaml file and
+     * converting it into an Object 2D array, the returned iterator constructs one row at a time as TestNG consumes it,
+     * so that the memory used is bounded by a single row. This is meant for very large data files. <br>
+     * <br>
+     * Rows are the same as the ones returned by {@link #getAllData(FileSystemResource)}, except that every key of a
+     * root level associative array results in a row, even when the same key is repeated. Aliases that point to an
+     * anchor in an earlier row result in an equal copy of the anchored object instead of the very same instance. The
+     * file is read once, as the rows are consumed. Whether it holds several documents is found from what follows the
+     * first one, so a file whose first document is very large (several thousand yaml events) and is followed by
+     * other documents cannot be read lazily. <br>
+     * <br>
+     * Example dataprovider:
+     * 
+     * <pre>
+     * &#064;DataProvider(name = &quot;users&quot;)
+     * public static Iterator&lt;Object[]&gt; dataProviderGetUsers() throws IOException {
+     *     FileSystemResource resource = new FileSystemResource(pathName, fileName, USER.class);
+     *     return YamlDataProvider.getAllDataLazily(resource);
+     * }
+     * </pre>
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a data source.
+     * @return A lazy iterator over Object Arrays to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Iterator<Object[]> getAllDataLazily(FileSystemResource resource) throws IOException {
+        logger.entering(resource);
+        Iterator<Object[]> iterator = getDataByFilterLazily(resource, null);
+        logger.exiting(iterator);
+        return iterator;
+    }
 
-        try {
-            yamlObject = yaml.load(inputStream);
-        } catch (ComposerException composerException) {
-            String msg = composerException.getMessage();
-            msg = (msg == null) ? "" : msg;
-            if (msg.toLowerCase().contains("expected a single document")) {
-                inputStream.reset();
-                yamlObject = loadDataFromDocuments(yaml, inputStream);
-            } else {
-                throw new DataProviderException("Error reading YAML data", composerException);
-            }
-        }
-        return DataProviderHelper.filterToListOfObjects(yamlObject, dataFilter).iterator();
+    /**
+     * Streaming counterpart of {@link #getDataByFilter(FileSystemResource, DataProviderFilter)}. The filter is applied
+     * to every row right after it is constructed, and rows that do not fall in the filter criteria are discarded before
+     * the next one is read. See {@link #getAllDataLazily(FileSystemResource)} for how rows are formed.
+     * 
+     * @param resource
+     *            A {@link FileSystemResource} that represents a data source.
+     * @param dataFilter
+     *            an implementation class of {@link DataProviderFilter}. A <code>null</code> filter includes all rows.
+     * @return A lazy iterator over Object Arrays to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Iterator<Object[]> getDataByFilterLazily(FileSystemResource resource, DataProviderFilter dataFilter)
+            throws IOException {
+        logger.entering(new Object[] { resource, dataFilter });
+        Iterator<Object[]> iterator = new YamlRowIterator(resource.getInputStream(), constructConstructor(resource
+                .getCls()), dataFilter);
+        logger.exiting(iterator);
+        return iterator;
     }
 
     /**
@@ -340,10 +358,7 @@ public final class YamlDataProvider {
     public static Object[][] getDataByKeys(FileSystemResource resource, String[] keys) {
         logger.entering(new Object[] { resource, Arrays.toString(keys) });
 
-        InputStream inputStream = resource.getInputStream();
-        Yaml yaml = constructYaml(resource.getCls());
-
-        LinkedHashMap<?, ?> map = (LinkedHashMap<?, ?>) yaml.load(inputStream);
+        LinkedHashMap<?, ?> map = (LinkedHashMap<?, ?>) loadYamlObject(resource);
 
         Object[][] objArray = DataProviderHelper.getDataByKeys(map, keys);
 
@@ -375,12 +390,9 @@ public final class YamlDataProvider {
     public static Hashtable<String, Object> getDataAsHashtable(FileSystemResource resource) {
         logger.entering(resource);
 
-        InputStream inputStream = resource.getInputStream();
-        Yaml yaml = constructYaml(resource.getCls());
-
         Hashtable<String, Object> yamlHashTable = new Hashtable<>();
 
-        LinkedHashMap<?, ?> yamlObject = (LinkedHashMap<?, ?>) yaml.load(inputStream);
+        LinkedHashMap<?, ?> yamlObject = (LinkedHashMap<?, ?>) loadYamlObject(resource);
 
         for (Entry<?, ?> entry : yamlObject.entrySet()) {
             yamlHashTable.put((String) entry.getKey(), entry.getValue());
@@ -391,7 +403,9 @@ public final class YamlDataProvider {
     }
 
     /**
-     * Gets yaml data for requested indexes.
+     * Gets yaml data for requested indexes. Rows that are not requested are skipped without being constructed, and the
+     * file is not read any further than the highest requested index. When the {@link DataProviderCache} is enabled, the
+     * whole file is loaded (or fetched from the cache) instead.
      * 
      * @param resource
      * @param indexes
@@ -404,14 +418,23 @@ public final class YamlDataProvider {
         logger.entering(new Object[] { resource, indexes });
         int[] arrayIndex = DataProviderHelper.parseIndexString(indexes);
 
-        Object[][] yamlObj = getAllData(resource);
-        Object[][] yamlObjRequested = new Object[arrayIndex.length][yamlObj[0].length];
-
-        int i = 0;
-        for (Integer index : arrayIndex) {
-            index--;
-            yamlObjRequested[i] = yamlObj[index];
-            i++;
+        Object[][] yamlObjRequested;
+        if (DataProviderCache.keyFor(resource, "yaml", resource.getCls()) == null) {
+            BitSet selection = DataProviderHelper.toRowSelection(arrayIndex);
+            YamlRowIterator rows = new YamlRowIterator(resource.getInputStream(),
+                    constructConstructor(resource.getCls()), null);
+            rows.selectRows(selection);
+            yamlObjRequested = DataProviderHelper.arrangeSelectedRows(rows, selection, arrayIndex);
+        } else {
+            Object[][] yamlObj = getAllData(resource);
+            yamlObjRequested = new Object[arrayIndex.length][yamlObj[0].length];
+
+            int i = 0;
+            for (Integer index : arrayIndex) {
+                index--;
+                yamlObjRequested[i] = yamlObj[index];
+                i++;
+            }
         }
 
         logger.exiting(yamlObjRequested);
@@ -452,37 +475,88 @@ public final class YamlDataProvider {
      */
     public static Object[][] getAllDataMultipleArgs(List<FileSystemResource> resources) throws IOException {
         logger.entering(resources);
-        List<Object[][]> dataproviders = new ArrayList<>();
-        Object[][] data;
+        List<Object[][]> dataproviders = loadAllData(resources);
+        Object[][] data = DataProviderHelper.getAllDataMultipleArgs(dataproviders.toArray(new Object[0][][]));
+        logger.exiting(data);
+        return data;
+    }
+
+    /**
+     * Lazy counterpart of {@link #getAllDataMultipleArgs(List)}. The resources are loaded concurrently and the rows
+     * combining them are assembled one at a time, as TestNG asks for them.
+     * 
+     * @param resources
+     *            - A List of {@link FileSystemResource} that represents data sources.
+     * @return An iterator over a collection of Object Array to be used with TestNG DataProvider
+     * @throws IOException
+     */
+    public static Iterator<Object[]> getAllDataMultipleArgsLazily(List<FileSystemResource> resources)
+            throws IOException {
+        logger.entering(resources);
+        List<Object[][]> dataproviders = loadAllData(resources);
+        Iterator<Object[]> data = DataProviderHelper.getAllDataMultipleArgsLazily(dataproviders
+                .toArray(new Object[0][][]));
+        logger.exiting(data);
+        return data;
+    }
 
-        for (FileSystemResource r : resources) {
-            Object[][] resourceData = getAllData(r);
-            dataproviders.add(resourceData);
+    /**
+     * Loads every resource with {@link #getAllData(FileSystemResource)}. Resources are independent of each other, so
+     * they are loaded concurrently.
+     */
+    private static List<Object[][]> loadAllData(List<FileSystemResource> resources) throws IOException {
+        List<Callable<Object[][]>> tasks = new ArrayList<>(resources.size());
+        for (final FileSystemResource r : resources) {
+            tasks.add(new Callable<Object[][]>() {
+                @Override
+                public Object[][] call() throws IOException {
+                    return getAllData(r);
+                }
+            });
         }
+        return DataProviderHelper.loadInParallel(tasks);
+    }
 
-        int maxLength = 0;
-        for (Object[][] d : dataproviders) {
-            if (d.length > maxLength) {
-                maxLength = d.length;
-            }
+    /**
+     * Loads a yaml file that contains one or more documents. Multiple documents are returned as a {@link List}.
+     * 
+     * @param resource
+     *            - A {@link FileSystemResource} that represents a data source.
+     * @return the object loaded by Snakeyaml, possibly shared with other callers through {@link DataProviderCache}.
+     */
+    private static Object loadYamlObject(FileSystemResource resource) {
+        DataProviderCache.CacheKey key = DataProviderCache.keyFor(resource, "yaml", resource.getCls());
+        Object yamlObject = DataProviderCache.get(key);
+        if (yamlObject != null) {
+            return yamlObject;
         }
 
-        data = new Object[maxLength][resources.size()];
+        InputStream inputStream = resource.getInputStream();
+        Yaml yaml = constructYaml(resource.getCls());
 
-        int i = 0;
-        for (Object[][] d : dataproviders) {
-            for (int j = 0; j < maxLength; j++) {
+        // Mark the input stream in case multiple documents has been detected
+        // so we can reset it.
+        inputStream.mark(100);
+
+        try {
+            yamlObject = yaml.load(inputStream);
+        } catch (ComposerException composerException) {
+            String msg = composerException.getMessage();
+            msg = (msg == null) ? "" : msg;
+            if (msg.toLowerCase().contains("expected a single document")) {
                 try {
-                    data[j][i] = d[j][0];
-                } catch (ArrayIndexOutOfBoundsException ex) {
-                    data[j][i] = null;
+                    inputStream.reset();
+                } catch (IOException e) {
+                    throw new DataProviderException("Error reading YAML data", e);
                 }
+                yamlObject = loadDataFromDocuments(yaml, inputStream);
+            } else {
+                throw new DataProviderException("Error reading YAML data", composerException);
             }
-            i++;
         }
 
-        logger.exiting(data);
-        return data;
+        DataProviderCache.put(key, yamlObject);
+        return yamlObject;
     }
 
     /**
@@ -542,13 +616,15 @@ public final class YamlDataProvider {
     }
 
     private static Yaml constructYaml(Class<?> cls) {
+        return new Yaml(constructConstructor(cls));
+    }
+
+    private static Constructor constructConstructor(Class<?> cls) {
+        Constructor constructor = new Constructor();
         if (cls != null) {
-            Constructor constructor = new Constructor();
             constructor.addTypeDescription(new TypeDescription(cls, "!" + cls.getSimpleName()));
-            return new Yaml(constructor);
         }
-
-        return new Yaml();
+        return constructor;
     }
 
     /**
@@ -0,0 +1,118 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.yaml.snakeyaml.composer.Composer;
+import org.yaml.snakeyaml.constructor.BaseConstructor;
+import org.yaml.snakeyaml.parser.ParserImpl;
+import org.yaml.snakeyaml.reader.StreamReader;
+import org.yaml.snakeyaml.reader.UnicodeReader;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+import com.paypal.selion.platform.dataprovider.filter.DataProviderFilter;
+
+/**
+ * A lazy {@link Iterator} over the rows of a yaml data source. Rows are constructed one at a time, as TestNG asks for
+ * them, so that the memory footprint is bounded by a single row rather than by the size of the file. The rows are the
+ * items of the root of a stream that holds a single document, or the documents of a stream of several. The underlying
+ * stream is closed once the last row has been read. This is internally used by
+ * {@link YamlDataProvider#getAllDataLazily(FileSystemResource)} and
+ * {@link YamlDataProvider#getDataByFilterLazily(FileSystemResource, DataProviderFilter)}.
+ */
+final class YamlRowIterator implements Iterator<Object[]> {
+
+    private final InputStream inputStream;
+    private final BaseConstructor constructor;
+    private final YamlRowParser parser;
+    private final DataProviderFilter dataFilter;
+
+    private Object[] nextRow;
+    private boolean exhausted;
+
+    /**
+     * @param inputStream
+     *            the yaml stream to read rows from.
+     * @param constructor
+     *            the {@link BaseConstructor} used to build the objects of each row.
+     * @param dataFilter
+     *            an optional {@link DataProviderFilter}. Rows for which it returns <code>false</code> are discarded as
+     *            soon as they are constructed. May be <code>null</code>.
+     */
+    YamlRowIterator(InputStream inputStream, BaseConstructor constructor, DataProviderFilter dataFilter) {
+        this.inputStream = inputStream;
+        this.constructor = constructor;
+        this.dataFilter = dataFilter;
+        this.parser = new YamlRowParser(new ParserImpl(new StreamReader(new UnicodeReader(inputStream))));
+        this.constructor.setComposer(new Composer(parser, new Resolver()));
+    }
+
+    /**
+     * Restricts the rows to the given ones. The rows that are not selected are never constructed, and the stream is
+     * not read any further than the last selected row. Must be called before the first row is read.
+     * 
+     * @param selectedRows
+     *            the zero based numbers of the rows to read.
+     */
+    void selectRows(BitSet selectedRows) {
+        parser.selectRows(selectedRows);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow == null && !exhausted) {
+            advance();
+        }
+        return nextRow != null;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object[] row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Rows of a yaml data source cannot be removed.");
+    }
+
+    private void advance() {
+        while (constructor.checkData()) {
+            Object data = constructor.getData();
+            Object row = parser.isSplittingMapping() ? data : DataProviderHelper.getRowObject(data);
+            if (dataFilter == null || dataFilter.filter(row)) {
+                nextRow = new Object[] { row };
+                return;
+            }
+        }
+        exhausted = true;
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            throw new DataProviderException("Error closing the YAML data source", e);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.error.YAMLException;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.DocumentEndEvent;
+import org.yaml.snakeyaml.events.DocumentStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.StreamEndEvent;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.Parser;
+
+/**
+ * A SnakeYaml {@link Parser} which sits between the real event parser and a
+ * {@link org.yaml.snakeyaml.composer.Composer}. When the stream holds a single document, the items of its root level
+ * list (or the values of its root level associative array) are handed out as individual documents, so that the
+ * constructor builds one data provider row at a time instead of the object graph of the entire file. The documents of a
+ * stream of several, and documents whose root is not a plain list or associative array, are passed through untouched.
+ * <br>
+ * <br>
+ * Whether another document follows the first one is found by reading the events of the first document ahead, up to
+ * {@link #FIRST_DOCUMENT_LOOKAHEAD} of them. A first document larger than that is taken to be the only one, and a
+ * {@link DataProviderException} is thrown if its root was split and another document follows it after all. A first
+ * document that cannot be parsed to its end is taken to be the only one too, and its rows are handed out up to the
+ * parse error. <br>
+ * <br>
+ * Yaml files dumped by Snakeyaml frequently refer to an anchor (<code>&amp;id001</code>) of an earlier row from a later
+ * one (<code>*id001</code>). To keep such files loadable, the events of every anchored node are remembered and replayed
+ * in place of an alias that points outside of the current row. The replayed alias results in an equal copy of the
+ * anchored object instead of the very same instance.
+ */
+final class YamlRowParser implements Parser {
+
+    private enum State {
+        STREAM_START, DOCUMENT, DOCUMENT_BODY, ROW_START, ROW, STREAM_END
+    }
+
+    /**
+     * Events of an anchored node that is still being read.
+     */
+    private static final class Recording {
+        private final String anchor;
+        private final int depth;
+        private final List<Event> events = new ArrayList<>();
+
+        Recording(String anchor, int depth) {
+            this.anchor = anchor;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * The maximum number of events of the first document that are read ahead.
+     */
+    static final int FIRST_DOCUMENT_LOOKAHEAD = 4096;
+
+    private final Parser parser;
+
+    private final Deque<Event> lookahead = new ArrayDeque<>();
+    private YAMLException lookaheadFailure;
+    private final Deque<Event> pending = new ArrayDeque<>();
+    private final Deque<Iterator<Event>> replays = new ArrayDeque<>();
+    private final Map<String, List<Event>> anchoredEvents = new HashMap<>();
+    private final List<Recording> recordings = new ArrayList<>();
+    private final Set<String> rowAnchors = new HashSet<>();
+
+    private State state = State.STREAM_START;
+    private boolean firstDocumentReadAhead;
+    private boolean splitRoot;
+    private boolean splitDocument;
+    private boolean splittingMapping;
+    private int depth;
+
+    private BitSet selectedRows;
+    private int row;
+    private Mark lastMark;
+
+    /**
+     * @param parser
+     *            the {@link Parser} that reads the actual yaml stream.
+     */
+    YamlRowParser(Parser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Restricts the rows handed out to the given ones. The events of any other row are read and dropped, so that it is
+     * never composed nor constructed, and the stream is ended right after the last selected row without reading the
+     * rest of it.
+     * 
+     * @param selectedRows
+     *            the zero based numbers of the rows to hand out, counted in the order the rows appear in the stream.
+     */
+    void selectRows(BitSet selectedRows) {
+        this.selectedRows = selectedRows;
+    }
+
+    /**
+     * @return <code>true</code> when the documents being handed out are the values of a root level associative array.
+     */
+    boolean isSplittingMapping() {
+        return splittingMapping;
+    }
+
+    @Override
+    public boolean checkEvent(Event.ID choice) {
+        Event event = peekEvent();
+        return (event != null) && event.is(choice);
+    }
+
+    @Override
+    public Event peekEvent() {
+        while (pending.isEmpty() && (state != State.STREAM_END)) {
+            produce();
+        }
+        return pending.peek();
+    }
+
+    @Override
+    public Event getEvent() {
+        peekEvent();
+        Event event = pending.poll();
+        if (event != null) {
+            lastMark = event.getEndMark();
+        }
+        return event;
+    }
+
+    /**
+     * Reads the stream further, adding the events to be handed out to the pending queue. Nothing is added while
+     * skipping a row that is not selected.
+     */
+    private void produce() {
+        switch (state) {
+        case STREAM_START:
+            pending.add(getSourceEvent());
+            state = State.DOCUMENT;
+            break;
+        case DOCUMENT:
+            if (isPastSelectedRows()) {
+                endStream();
+                break;
+            }
+            if (checkSourceEvent(Event.ID.StreamEnd)) {
+                pending.add(getSourceEvent());
+                state = State.STREAM_END;
+                break;
+            }
+            if (!firstDocumentReadAhead) {
+                readFirstDocumentAhead();
+            } else if (splitDocument) {
+                throw new DataProviderException("The first document of the yaml stream holds more than "
+                        + FIRST_DOCUMENT_LOOKAHEAD + " events and was read as the only one, but another document "
+                        + "follows it at " + peekSourceEvent().getStartMark());
+            }
+            Event documentStart = getSourceEvent();
+            if (splitRoot && isSplittable(peekSourceEvent())) {
+                splitDocument = true;
+                splittingMapping = getSourceEvent().is(Event.ID.MappingStart);
+                state = State.ROW_START;
+                produce();
+                break;
+            }
+            if (!isSelected(row++)) {
+                // Aliases cannot refer to an anchor of another document, so a document is simply dropped.
+                Event dropped;
+                do {
+                    dropped = getSourceEvent();
+                } while (!dropped.is(Event.ID.DocumentEnd));
+                break;
+            }
+            pending.add(documentStart);
+            state = State.DOCUMENT_BODY;
+            break;
+        case DOCUMENT_BODY:
+            Event event = getSourceEvent();
+            pending.add(event);
+            if (event.is(Event.ID.DocumentEnd)) {
+                state = State.DOCUMENT;
+            }
+            break;
+        case ROW_START:
+            if (isPastSelectedRows()) {
+                endStream();
+                break;
+            }
+            if (checkSourceEvent(Event.ID.SequenceEnd) || checkSourceEvent(Event.ID.MappingEnd)) {
+                // End of the root collection and of the document that holds it.
+                getSourceEvent();
+                getSourceEvent();
+                anchoredEvents.clear();
+                state = State.DOCUMENT;
+                produce();
+                break;
+            }
+            if (splittingMapping) {
+                // The key only serves as visual organization of the data, so it is not handed out.
+                do {
+                    nextNodeEvent();
+                } while (depth > 0);
+            }
+            rowAnchors.clear();
+            if (!isSelected(row++)) {
+                // Still tracked, since a later row may refer to an anchor of this one.
+                do {
+                    nextNodeEvent();
+                } while (depth > 0);
+                break;
+            }
+            Event rowStart = peekSourceEvent();
+            pending.add(new DocumentStartEvent(rowStart.getStartMark(), rowStart.getStartMark(), false, null, null));
+            state = State.ROW;
+            break;
+        case ROW:
+            Event rowEvent = nextNodeEvent();
+            pending.add(rowEvent);
+            if (depth == 0) {
+                pending.add(new DocumentEndEvent(rowEvent.getEndMark(), rowEvent.getEndMark(), false));
+                state = State.ROW_START;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Reads the events of the first document ahead to find whether another document follows it: the items of the root
+     * of the only document are rows, whereas every document of a stream of several is a row. A first document that
+     * cannot be parsed to its end is taken to be the only one, and the error is only raised once the events before it
+     * are handed out, so that the rows that precede it can still be read.
+     */
+    private void readFirstDocumentAhead() {
+        firstDocumentReadAhead = true;
+        splitRoot = true;
+        try {
+            while (lookahead.size() < FIRST_DOCUMENT_LOOKAHEAD) {
+                Event event = parser.getEvent();
+                lookahead.add(event);
+                if (event.is(Event.ID.DocumentEnd)) {
+                    splitRoot = !parser.checkEvent(Event.ID.DocumentStart);
+                    return;
+                }
+            }
+        } catch (YAMLException e) {
+            lookaheadFailure = e;
+        }
+    }
+
+    /**
+     * @return the next event of the actual stream, starting with the events that were read ahead.
+     */
+    private Event getSourceEvent() {
+        if (lookahead.isEmpty()) {
+            throwLookaheadFailure();
+            return parser.getEvent();
+        }
+        return lookahead.poll();
+    }
+
+    private Event peekSourceEvent() {
+        if (lookahead.isEmpty()) {
+            throwLookaheadFailure();
+            return parser.peekEvent();
+        }
+        return lookahead.peek();
+    }
+
+    private void throwLookaheadFailure() {
+        if (lookaheadFailure != null) {
+            throw lookaheadFailure;
+        }
+    }
+
+    private boolean checkSourceEvent(Event.ID choice) {
+        Event event = peekSourceEvent();
+        return (event != null) && event.is(choice);
+    }
+
+    private boolean isSelected(int rowNumber) {
+        return (selectedRows == null) || selectedRows.get(rowNumber);
+    }
+
+    private boolean isPastSelectedRows() {
+        return (selectedRows != null) && (selectedRows.nextSetBit(row) < 0);
+    }
+
+    /**
+     * Ends the stream handed out, without reading the rest of the actual stream.
+     */
+    private void endStream() {
+        pending.add(new StreamEndEvent(lastMark, lastMark));
+        state = State.STREAM_END;
+    }
+
+    private boolean isSplittable(Event event) {
+        if (!event.is(Event.ID.SequenceStart) && !event.is(Event.ID.MappingStart)) {
+            return false;
+        }
+        String tag = ((CollectionStartEvent) event).getTag();
+        return (tag == null) || "!".equals(tag) || Tag.SEQ.getValue().equals(tag) || Tag.MAP.getValue().equals(tag);
+    }
+
+    /**
+     * @return the next event of the current row, with aliases to anchors outside of the row replaced by the events of
+     *         the anchored node.
+     */
+    private Event nextNodeEvent() {
+        while (true) {
+            Event event = nextRawEvent();
+            if (event.is(Event.ID.Alias)) {
+                String anchor = ((AliasEvent) event).getAnchor();
+                if (!rowAnchors.contains(anchor)) {
+                    List<Event> events = anchoredEvents.get(anchor);
+                    if (events == null) {
+                        throw new DataProviderException("Found undefined alias '" + anchor + "' at "
+                                + event.getStartMark());
+                    }
+                    replays.push(events.iterator());
+                    continue;
+                }
+            }
+            track(event);
+            return event;
+        }
+    }
+
+    private Event nextRawEvent() {
+        while (!replays.isEmpty()) {
+            Iterator<Event> replay = replays.peek();
+            if (replay.hasNext()) {
+                return replay.next();
+            }
+            replays.pop();
+        }
+        return getSourceEvent();
+    }
+
+    private void track(Event event) {
+        for (Recording recording : recordings) {
+            recording.events.add(event);
+        }
+        if ((event instanceof NodeEvent) && !event.is(Event.ID.Alias)) {
+            String anchor = ((NodeEvent) event).getAnchor();
+            if (anchor != null) {
+                rowAnchors.add(anchor);
+                Recording recording = new Recording(anchor, depth);
+                recording.events.add(event);
+                recordings.add(recording);
+            }
+        }
+        if (event.is(Event.ID.SequenceStart) || event.is(Event.ID.MappingStart)) {
+            depth++;
+        } else if (event.is(Event.ID.SequenceEnd) || event.is(Event.ID.MappingEnd)) {
+            depth--;
+        }
+        for (Iterator<Recording> iterator = recordings.iterator(); iterator.hasNext();) {
+            Recording recording = iterator.next();
+            if (recording.depth == depth) {
+                anchoredEvents.put(recording.anchor, recording.events);
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -24,8 +24,10 @@ package org.openqa.grid.web;
 
 import com.google.common.collect.Maps;
 
+import org.eclipse.jetty.server.AbstractConnector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.bio.SocketConnector;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
@@ -54,14 +56,40 @@ import javax.servlet.Servlet;
 /**
  * Jetty server. Main entry point for everything about the grid. <p/> Except for unit tests, this
  * should be a singleton.
+ * <p/>
+ * The connector can be tuned with the following hub parameters (in the hub JSON configuration or as
+ * <code>-name value</code> on the command line):
+ * <ul>
+ * <li><code>jettyConnector</code>: <code>bio</code> (the default) serves each connection from its own
+ * thread, <code>nio</code> uses a SelectChannelConnector so that idle keep-alive connections do not
+ * hold a thread.</li>
+ * <li><code>jettyAcceptQueueSize</code>: the size of the accept backlog.</li>
+ * <li><code>jettyAcceptors</code>: the number of threads accepting connections.</li>
+ * <li><code>jettyMaxIdleTime</code>: the milliseconds after which an idle connection is closed.</li>
+ * </ul>
+ * The thread pool sized by <code>jettyMaxThreads</code> is set up before the server starts, so it
+ * serves the connector as well.
  */
 public class Hub {
 
   private static final Logger log = Logger.getLogger(Hub.class.getName());
 
+  private static final String CONNECTOR = "jettyConnector";
+  private static final String ACCEPT_QUEUE_SIZE = "jettyAcceptQueueSize";
+  private static final String ACCEPTORS = "jettyAcceptors";
+  private static final String MAX_IDLE_TIME = "jettyMaxIdleTime";
+  private static final String NIO = "nio";
+
+  private static final int DEFAULT_MAX_IDLE_TIME = 60000;
+  private static final int LOW_RESOURCES_MAX_IDLE_TIME = 6000;
+
   private final int port;
   private final String host;
   private final int maxThread;
+  private final boolean nio;
+  private final int acceptQueueSize;
+  private final int acceptors;
+  private final int maxIdleTime;
   private final boolean isHostRestricted;
   private final Registry registry;
   private final Map<String, Class<? extends Servlet>> extraServlet = Maps.newHashMap();
@@ -85,6 +113,11 @@ public class Hub {
     registry = Registry.newInstance(this, config);
 
     maxThread = config.getJettyMaxThreads();
+    Map<String, Object> params = config.getAllParams();
+    nio = NIO.equalsIgnoreCase(String.valueOf(params.get(CONNECTOR)));
+    acceptQueueSize = getIntParam(params, ACCEPT_QUEUE_SIZE, -1);
+    acceptors = getIntParam(params, ACCEPTORS, -1);
+    maxIdleTime = getIntParam(params, MAX_IDLE_TIME, DEFAULT_MAX_IDLE_TIME);
 
     if (config.getHost() != null) {
       host = config.getHost();
@@ -109,17 +142,55 @@ public class Hub {
 
   }
 
+  private static int getIntParam(Map<String, Object> params, String key, int defaultValue) {
+    Object value = params.get(key);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(String.valueOf(value).trim());
+    } catch (NumberFormatException e) {
+      log.warning("Ignoring " + key + " " + value + ", it is not a number.");
+      return defaultValue;
+    }
+  }
+
+  private AbstractConnector createConnector() {
+    AbstractConnector connector;
+    if (nio) {
+      SelectChannelConnector selectChannelConnector = new SelectChannelConnector();
+      selectChannelConnector.setLowResourcesMaxIdleTime(LOW_RESOURCES_MAX_IDLE_TIME);
+      connector = selectChannelConnector;
+    } else {
+      SocketConnector socketConnector = new SocketConnector();
+      socketConnector.setLowResourcesMaxIdleTime(LOW_RESOURCES_MAX_IDLE_TIME);
+      connector = socketConnector;
+    }
+    connector.setMaxIdleTime(maxIdleTime);
+    if (acceptQueueSize > 0) {
+      connector.setAcceptQueueSize(acceptQueueSize);
+    }
+    if (acceptors > 0) {
+      connector.setAcceptors(acceptors);
+    }
+    if (isHostRestricted) {
+      connector.setHost(host);
+    }
+    connector.setPort(port);
+    return connector;
+  }
+
   private void initServer() {
     try {
       server = new Server();
-      SocketConnector socketListener = new SocketConnector();
-      socketListener.setMaxIdleTime(60000);
-      if (isHostRestricted) {
-        socketListener.setHost(host);
+      if (maxThread > 0) {
+        // the pool has to be in place before the server starts, the connector takes its threads
+        // from it
+        QueuedThreadPool pool = new QueuedThreadPool(maxThread);
+        pool.setName("hub-jetty");
+        server.setThreadPool(pool);
       }
-      socketListener.setPort(port);
-      socketListener.setLowResourcesMaxIdleTime(6000);
-      server.addConnector(socketListener);
+      server.addConnector(createConnector());
 
       ServletContextHandler root = new ServletContextHandler(ServletContextHandler.SESSIONS);
       root.setContextPath("/");
@@ -171,11 +242,6 @@ public class Hub {
   public void start() throws Exception {
     initServer();
     server.start();
-    if (maxThread>0){
-      QueuedThreadPool pool = new QueuedThreadPool();
-      pool.setMaxThreads(maxThread);
-      server.setThreadPool(pool);
-    }
   }
 
   public void stop() throws Exception {
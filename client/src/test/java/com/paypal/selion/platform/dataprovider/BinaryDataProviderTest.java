@@ -0,0 +1,191 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.platform.dataprovider;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.gson.Gson;
+import com.paypal.selion.platform.dataprovider.filter.CustomKeyFilter;
+import com.paypal.selion.platform.dataprovider.pojos.yaml.USER;
+
+public class BinaryDataProviderTest {
+    private static String pathName = "src/test/resources/";
+
+    private File folder;
+
+    @BeforeClass(groups = "unit")
+    public void compileDataFiles() throws IOException {
+        folder = File.createTempFile("selion-binary-data", "");
+        assertTrue(folder.delete() && folder.mkdirs());
+        compile("DocumentSeparatedUsers.yaml");
+        compile("AssociativeArrayOfUsers.yaml");
+        compile("List.yaml");
+        compile("ListOfLists.yaml");
+        compile("PojoArrayData.json");
+    }
+
+    @AfterClass(groups = "unit", alwaysRun = true)
+    public void deleteCompiledFiles() {
+        File[] files = folder.listFiles();
+        for (File file : files) {
+            file.delete();
+        }
+        folder.delete();
+    }
+
+    private void compile(String fileName) throws IOException {
+        BinaryDataWriter.compile(new File(pathName, fileName), compiled(fileName));
+    }
+
+    private File compiled(String fileName) {
+        return new File(folder, fileName + BinaryDataProvider.EXTENSION);
+    }
+
+    private FileSystemResource resource(String fileName, Class<?> cls) {
+        return new FileSystemResource(folder.getPath() + File.separator, fileName + BinaryDataProvider.EXTENSION, cls);
+    }
+
+    @Test(groups = "unit")
+    public void testTaggedYamlObjectsAreBoundToTheirClass() throws IOException {
+        Object[][] expected = YamlDataProvider.getAllData(new FileSystemResource(pathName,
+                "DocumentSeparatedUsers.yaml"));
+        Object[][] data = BinaryDataProvider.getAllData(resource("DocumentSeparatedUsers.yaml", null));
+
+        assertEquals(data.length, expected.length);
+        Gson gson = new Gson();
+        for (int i = 0; i < data.length; i++) {
+            assertTrue(data[i][0] instanceof USER);
+            assertEquals(gson.toJson(data[i][0]), gson.toJson(expected[i][0]));
+        }
+    }
+
+    @Test(groups = "unit")
+    public void testUntypedYamlRows() throws IOException {
+        assertEquals(BinaryDataProvider.getAllData(resource("List.yaml", null)),
+                YamlDataProvider.getAllData(new FileSystemResource(pathName, "List.yaml")));
+
+        Object[][] lists = BinaryDataProvider.getAllData(resource("ListOfLists.yaml", null));
+        Object[][] expected = YamlDataProvider.getAllData(new FileSystemResource(pathName, "ListOfLists.yaml"));
+        assertEquals(lists.length, expected.length);
+        assertEquals((List<?>) lists[0][0], (List<?>) expected[0][0]);
+    }
+
+    @Test(groups = "unit")
+    public void testJsonRowsAreBoundToTheResourceClass() throws IOException {
+        Object[][] expected = JsonDataProvider.getAllJsonData(new FileSystemResource(pathName, "PojoArrayData.json",
+                USER.class));
+        Object[][] data = BinaryDataProvider.getAllData(resource("PojoArrayData.json", USER.class));
+
+        assertEquals(data.length, expected.length);
+        for (int i = 0; i < data.length; i++) {
+            assertEquals(((USER) data[i][0]).getName(), ((USER) expected[i][0]).getName());
+            assertEquals(((USER) data[i][0]).getBank().getName(), ((USER) expected[i][0]).getBank().getName());
+        }
+
+        Object[][] untyped = BinaryDataProvider.getAllData(resource("PojoArrayData.json", null));
+        assertEquals(((Map<?, ?>) untyped[0][0]).get("name"), "Optimus Prime");
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByIndexAndByKeys() throws IOException {
+        FileSystemResource users = resource("AssociativeArrayOfUsers.yaml", USER.class);
+        Object[][] all = BinaryDataProvider.getAllData(users);
+        assertEquals(BinaryDataProvider.getRowCount(users), all.length);
+
+        Object[][] data = BinaryDataProvider.getDataByIndex(users, "3,1");
+        assertEquals(((USER) data[0][0]).getName(), ((USER) all[2][0]).getName());
+        assertEquals(((USER) data[1][0]).getName(), ((USER) all[0][0]).getName());
+
+        data = BinaryDataProvider.getDataByKeys(users, new String[] { "1", "tom" });
+        assertEquals(((USER) data[0][0]).getName(), ((USER) all[1][0]).getName());
+        assertEquals(((USER) data[1][0]).getName(), "Thomas");
+    }
+
+    @Test(groups = "unit", expectedExceptions = DataProviderException.class)
+    public void testGetDataByKeysWithUnknownKey() throws IOException {
+        BinaryDataProvider.getDataByKeys(resource("AssociativeArrayOfUsers.yaml", USER.class), new String[] { "k2" });
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByFilter() throws IOException {
+        Iterator<Object[]> data = BinaryDataProvider.getDataByFilter(resource("AssociativeArrayOfUsers.yaml",
+                USER.class), new CustomKeyFilter("name", "Thomas,suri"));
+        int count = 0;
+        while (data.hasNext()) {
+            String name = ((USER) data.next()[0]).getName();
+            assertTrue(name.equals("Thomas") || name.equals("suri"), name);
+            count++;
+        }
+        assertEquals(count, 2);
+        assertFalse(data.hasNext());
+    }
+
+    @Test(groups = "unit")
+    public void testWriteRows() throws IOException {
+        File file = new File(folder, "rows" + BinaryDataProvider.EXTENSION);
+        USER user = new USER();
+        user.setName("binary");
+        try (BinaryDataWriter writer = new BinaryDataWriter(file)) {
+            writer.writeRows(new Object[][] { { user }, { null }, { 12L } });
+        }
+        Object[][] data = BinaryDataProvider.getAllData(resource("rows", null));
+        assertEquals(((USER) data[0][0]).getName(), "binary");
+        assertNull(data[1][0]);
+        assertEquals(data[2][0], 12L);
+    }
+
+    @Test(groups = "unit", expectedExceptions = DataProviderException.class)
+    public void testNotABinaryDataFile() throws IOException {
+        File file = new File(folder, "invalid" + BinaryDataProvider.EXTENSION);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("- not a binary data file".getBytes("UTF-8"));
+        }
+        BinaryDataProvider.getAllData(resource("invalid", null));
+    }
+
+    @Test(groups = "unit")
+    public void testFailedCompileLeavesTheTargetAlone() throws IOException {
+        File source = new File(folder, "broken.json");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            out.write("[ { \"name\" : \"first\" }, { \"name\" : ".getBytes("UTF-8"));
+        }
+        File target = new File(folder, "broken" + BinaryDataProvider.EXTENSION);
+        try {
+            BinaryDataWriter.compile(source, target);
+            fail("A truncated data file was compiled");
+        } catch (DataProviderException e) {
+            // expected
+        }
+        assertFalse(target.exists(), "A partially compiled file was published");
+        assertFalse(new File(target.getPath() + ".partial").exists(), "The partially compiled file was not deleted");
+    }
+}
@@ -0,0 +1,123 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.paypal.selion.platform.dataprovider.pojos.yaml.USER;
+
+/**
+ * The cache is process wide, so these tests belong to the <code>unit-single-threaded</code> group, which runs on its own
+ * once the parallel unit tests are done.
+ */
+public class DataProviderCacheTest {
+    private static String pathName = "src/test/resources/";
+
+    private int defaultSize;
+
+    @BeforeClass(groups = "unit-single-threaded")
+    public void rememberDefaultSize() {
+        defaultSize = DataProviderCache.getMaximumSize();
+    }
+
+    @AfterClass(groups = "unit-single-threaded", alwaysRun = true)
+    public void restoreDefaultSize() {
+        DataProviderCache.setMaximumSize(defaultSize);
+        DataProviderCache.clear();
+    }
+
+    @BeforeMethod(groups = "unit-single-threaded")
+    public void enableCache() {
+        DataProviderCache.clear();
+        DataProviderCache.setMaximumSize(2);
+    }
+
+    @AfterMethod(groups = "unit-single-threaded", alwaysRun = true)
+    public void disableCache() {
+        DataProviderCache.setMaximumSize(0);
+        DataProviderCache.clear();
+    }
+
+    @Test(groups = "unit-single-threaded")
+    public void testYamlDataIsParsedOnce() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, "ListOfUsers.yaml", USER.class);
+        Object[][] first = YamlDataProvider.getAllData(resource);
+        long hits = DataProviderCache.getHitCount();
+        Object[][] second = YamlDataProvider.getAllData(resource);
+        assertTrue(DataProviderCache.getHitCount() > hits);
+        assertSame(second[0][0], first[0][0]);
+    }
+
+    @Test(groups = "unit-single-threaded")
+    public void testJsonDataIsParsedOnce() {
+        FileSystemResource resource = new FileSystemResource(pathName, "PojoArrayData.json", USER.class);
+        Object[][] first = JsonDataProvider.getAllJsonData(resource);
+        Object[][] second = JsonDataProvider.getAllJsonData(resource);
+        assertSame(second[0][0], first[0][0]);
+    }
+
+    @Test(groups = "unit-single-threaded")
+    public void testMappedTypeIsPartOfTheKey() throws IOException {
+        YamlDataProvider.getAllData(new FileSystemResource(pathName, "ListOfUsers.yaml", USER.class));
+        YamlDataProvider.getAllData(new FileSystemResource(pathName, "ListOfUsers.yaml"));
+        assertEquals(DataProviderCache.size(), 2);
+    }
+
+    @Test(groups = "unit-single-threaded")
+    public void testLeastRecentlyUsedEntryIsEvicted() throws IOException {
+        FileSystemResource list = new FileSystemResource(pathName, "List.yaml");
+        Object[][] first = YamlDataProvider.getAllData(list);
+        YamlDataProvider.getAllData(new FileSystemResource(pathName, "ListOfLists.yaml"));
+        YamlDataProvider.getAllData(new FileSystemResource(pathName, "ListOfUsers.yaml"));
+        assertEquals(DataProviderCache.size(), 2);
+
+        Object[][] second = YamlDataProvider.getAllData(list);
+        assertNotSame(second[0][0], first[0][0]);
+    }
+
+    @Test(groups = "unit-single-threaded")
+    public void testModifiedFileIsParsedAgain() throws IOException {
+        File file = File.createTempFile("DataProviderCacheTest", ".yaml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "- string1\n- string2\n");
+        FileSystemResource resource = new FileSystemResource(file.getParent() + File.separator, file.getName());
+        assertEquals(YamlDataProvider.getAllData(resource).length, 2);
+
+        FileUtils.writeStringToFile(file, "- string1\n- string2\n- string3\n");
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertEquals(YamlDataProvider.getAllData(resource).length, 3);
+    }
+
+    @Test(groups = "unit-single-threaded")
+    public void testDisabledCacheHoldsNothing() throws IOException {
+        DataProviderCache.setMaximumSize(0);
+        YamlDataProvider.getAllData(new FileSystemResource(pathName, "List.yaml"));
+        assertEquals(DataProviderCache.size(), 0);
+    }
+}
@@ -19,10 +19,16 @@ import static org.apache.commons.lang.ArrayUtils.contains;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 import org.testng.annotations.Test;
 
@@ -207,6 +213,40 @@ public class DataProviderHelperTest {
         assertEquals((int) data[2][2], 1);
     }
 
+    @Test(groups = "unit")
+    public void testGetAllDataMultipleArgsLazily() {
+        Object[][] dividends = { { 2 }, { 12 }, { 5 }, { 7 } };
+        Object[][] divisors = { { 1 }, { 3 } };
+
+        Object[][] expected = DataProviderHelper.getAllDataMultipleArgs(dividends, divisors);
+        Iterator<Object[]> data = DataProviderHelper.getAllDataMultipleArgsLazily(dividends, divisors);
+
+        int row = 0;
+        while (data.hasNext()) {
+            assertEquals(data.next(), expected[row++]);
+        }
+        assertEquals(row, 4);
+        assertNull(expected[3][1]);
+    }
+
+    @Test(groups = "unit", expectedExceptions = IOException.class)
+    public void testLoadInParallelPropagatesIOException() throws IOException {
+        List<Callable<Object[][]>> tasks = new ArrayList<>();
+        tasks.add(new Callable<Object[][]>() {
+            @Override
+            public Object[][] call() {
+                return new Object[][] { { 1 } };
+            }
+        });
+        tasks.add(new Callable<Object[][]>() {
+            @Override
+            public Object[][] call() throws IOException {
+                throw new IOException("unreadable");
+            }
+        });
+        DataProviderHelper.loadInParallel(tasks);
+    }
+
     @Test(groups = "unit")
     public void testGetDataByKeys() {
         LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
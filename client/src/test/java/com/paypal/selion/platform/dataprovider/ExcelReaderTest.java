@@ -22,6 +22,8 @@ import static org.testng.Assert.assertTrue;
 
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.poi.ss.usermodel.Row;
@@ -115,6 +117,14 @@ public class ExcelReaderTest {
         assertEquals(index, 1);
     }
 
+    @Test(groups = "unit")
+    public void testGetRowIndexRepeatedLookups() {
+        assertEquals(excelReader.getRowIndex(USER.class.getSimpleName(), "binh"), 3);
+        assertEquals(excelReader.getRowIndex("user", "binh"), 3);
+        assertEquals(excelReader.getRowIndex(USER.class.getSimpleName(), "tom"), 1);
+        assertEquals(excelReader.getRowIndex("Sheet1", "binh"), -1);
+    }
+
     @Test(groups = "unit")
     public void testGetRowIndexInvalidKey() {
         int index = excelReader.getRowIndex(USER.class.getSimpleName(), "harry");
@@ -126,4 +136,55 @@ public class ExcelReaderTest {
         int index = excelReader.getRowIndex("Sheet1", "#1");
         assertEquals(index, -1);
     }
+
+    @Test(groups = "unit")
+    public void testStreamingRowContentsMatchInMemoryRowContents() throws IOException {
+        ExcelReader streamingReader = new ExcelReader(pathName, fileName_User, true);
+        for (String sheetName : new String[] { "USER", "BANK", "AREA_CODE", "ADDRESS", "Sheet1" }) {
+            for (boolean heading : new boolean[] { true, false }) {
+                assertEquals(toList(streamingReader.getAllExcelRowContents(sheetName, heading, 16)),
+                        toList(excelReader.getAllExcelRowContents(sheetName, heading, 16)), sheetName);
+            }
+        }
+    }
+
+    @Test(groups = "unit")
+    public void testStreamingSheetNameIgnoresCase() throws IOException {
+        ExcelReader streamingReader = new ExcelReader(pathName, fileName_User, true);
+        List<List<String>> rows = toList(streamingReader.getAllExcelRowContents("User", false, 1));
+        assertEquals(rows.size(), 5);
+        assertEquals(rows.get(0).get(0), "Thomas");
+    }
+
+    @Test(groups = "unit", expectedExceptions = { IllegalArgumentException.class })
+    public void testStreamingInvalidSheetName() throws IOException {
+        new ExcelReader(pathName, fileName_User, true).getAllExcelRowContents("IAmNotThere", false, 1);
+    }
+
+    @Test(groups = "unit", expectedExceptions = { IOException.class })
+    public void testStreamingFileDoesntExist() throws IOException {
+        new ExcelReader(null, "YouCantSeeMe.xlsx", true);
+    }
+
+    @Test(groups = "unit")
+    public void testStreamingFallsBackToWorkbookForRandomAccess() throws IOException {
+        ExcelReader streamingReader = new ExcelReader(pathName, fileName_User, true);
+        assertEquals(streamingReader.getRowIndex(USER.class.getSimpleName(), "tom"), 1);
+        assertTrue(streamingReader.sheetExists("USER"));
+    }
+
+    @Test(groups = "unit")
+    public void testColumnIndex() {
+        assertEquals(StreamingSheetRowIterator.columnIndex("A1"), 0);
+        assertEquals(StreamingSheetRowIterator.columnIndex("N7"), 13);
+        assertEquals(StreamingSheetRowIterator.columnIndex("AB12"), 27);
+    }
+
+    private static List<List<String>> toList(Iterator<List<String>> rows) {
+        List<List<String>> list = new ArrayList<List<String>>();
+        while (rows.hasNext()) {
+            list.add(rows.next());
+        }
+        return list;
+    }
 }
@@ -0,0 +1,104 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.platform.dataprovider;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.annotations.Test;
+
+import com.paypal.selion.platform.dataprovider.ReflectionUtils.ReflectionException;
+
+public class FieldBindingPlanTest {
+
+    public static class Sample {
+        private int count;
+        private Integer boxedCount;
+        private boolean flag;
+        private String name;
+        private BigDecimal amount;
+        private double[] ratios;
+        private Integer[] boxedValues;
+        private Colors color;
+        private final String constant = "initial";
+        private List<String> unsupported;
+    }
+
+    private static final Field[] FIELDS = Sample.class.getDeclaredFields();
+
+    private Sample bind(FieldBindingPlan plan, String... values) throws IllegalAccessException {
+        Sample sample = new Sample();
+        plan.bind(null, new Sample(), sample, Arrays.asList(values));
+        return sample;
+    }
+
+    private FieldBindingPlan compile() throws NoSuchMethodException {
+        List<DefaultCustomType> customTypes = new ArrayList<>();
+        customTypes.add(new DefaultCustomType(Colors.class, Colors.class.getMethod("whatColor", String.class)));
+        return FieldBindingPlan.compile(FIELDS, customTypes);
+    }
+
+    @Test(groups = "unit")
+    public void testBindAllKinds() throws Exception {
+        Sample sample = bind(compile(), "12", "13", "true", "selion", "100.50", "1.5,2.5", "3,4", "white", "changed",
+                null);
+        assertEquals(sample.count, 12);
+        assertEquals(sample.boxedCount, Integer.valueOf(13));
+        assertTrue(sample.flag);
+        assertEquals(sample.name, "selion");
+        assertEquals(sample.amount, new BigDecimal("100.50"));
+        assertEquals(sample.ratios, new double[] { 1.5, 2.5 });
+        assertEquals(sample.boxedValues, new Integer[] { 3, 4 });
+        assertEquals(sample.color, Colors.White);
+        // Final fields can only be read back via reflection, since reads of a constant are inlined.
+        Field constant = Sample.class.getDeclaredField("constant");
+        constant.setAccessible(true);
+        assertEquals(constant.get(sample), "changed");
+    }
+
+    @Test(groups = "unit")
+    public void testPlanIsReusedAcrossRows() throws Exception {
+        FieldBindingPlan plan = compile();
+        assertEquals(bind(plan, "1", null, null, "a", null, null, null, null, null, null).name, "a");
+        Sample second = bind(plan, "2", null, null, "", null, null, null, null, null, null);
+        assertEquals(second.count, 2);
+        assertNull(second.name);
+    }
+
+    @Test(groups = "unit")
+    public void testIsFor() throws Exception {
+        FieldBindingPlan plan = compile();
+        assertTrue(plan.isFor(Sample.class.getDeclaredFields()));
+        assertTrue(!plan.isFor(String.class.getDeclaredFields()));
+    }
+
+    @Test(groups = "unit", expectedExceptions = { IllegalArgumentException.class })
+    public void testInterfacesAreNotSupported() throws Exception {
+        bind(compile(), null, null, null, null, null, null, null, null, null, "a,b");
+    }
+
+    @Test(groups = "unit", expectedExceptions = { ReflectionException.class })
+    public void testInvalidPrimitiveValue() throws Exception {
+        bind(compile(), "twelve", null, null, null, null, null, null, null, null, null);
+    }
+}
@@ -19,14 +19,22 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 
+import org.apache.commons.io.FileUtils;
 import org.testng.annotations.Test;
 
 import com.google.gson.internal.LinkedTreeMap;
+import com.google.gson.stream.JsonReader;
 import com.paypal.selion.platform.dataprovider.filter.CustomKeyFilter;
+import com.paypal.selion.platform.dataprovider.filter.DataProviderFilter;
 import com.paypal.selion.platform.dataprovider.filter.SimpleIndexInclusionFilter;
 import com.paypal.selion.platform.dataprovider.pojos.yaml.USER;
 
@@ -150,6 +158,35 @@ public class JsonDataProviderTest {
         assertEquals(i, 2);
     }
 
+    @Test(groups = "unit")
+    public void testJsonRowIteratorFiltersOneElementAtATime() throws IOException {
+        FileSystemResource resource = new FileSystemResource(filePathPrefix, jsonPojoArrayDataFile, USER.class);
+        final List<String> filtered = new ArrayList<String>();
+        DataProviderFilter filter = new DataProviderFilter() {
+            @Override
+            public boolean filter(Object data) {
+                filtered.add(((USER) data).getName());
+                return !"Megatron".equals(((USER) data).getName());
+            }
+        };
+        Iterator<Object[]> rows = new JsonRowIterator(new JsonReader(resource.getReader()), USER.class, filter);
+        assertEquals(((USER) rows.next()[0]).getName(), "Optimus Prime");
+        assertEquals(filtered.size(), 1);
+        assertEquals(((USER) rows.next()[0]).getName(), "Alonso");
+        assertEquals(filtered, Arrays.asList("Optimus Prime", "Megatron", "Alonso"));
+        int remaining = 0;
+        while (rows.hasNext()) {
+            rows.next();
+            remaining++;
+        }
+        assertEquals(remaining, filtered.size() - 3);
+    }
+
+    @Test(groups = "unit", expectedExceptions = { IllegalStateException.class })
+    public void testJsonRowIteratorRequiresAnArray() throws IOException {
+        new JsonRowIterator(new JsonReader(new StringReader("{\"name\":\"Optimus Prime\"}")), USER.class, null);
+    }
+
     // Negative use cases
     @Test(expectedExceptions = { DataProviderException.class }, expectedExceptionsMessageRegExp = "Error while parsing Json Data as a Hash table. Root cause: Unable to find a key named id. Please refer Javadoc", groups = "unit")
     public void getDataAsHashTableTest_invalidKey() throws IOException {
@@ -169,6 +206,20 @@ public class JsonDataProviderTest {
         JsonDataProvider.getAllJsonData(resource);
     }
 
+    @Test(groups = "unit")
+    public void testGetDataByIndex_StopsAfterHighestIndex() throws IOException {
+        File file = File.createTempFile("IndexedUsers", ".json");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "[{\"name\":\"one\"},{\"name\":\"two\",\"bank\":{\"name\":\"b\"}},"
+                + "{\"name\":\"three\"},{\"name\": unterminated");
+        FileSystemResource resource = new FileSystemResource(file.getParent(), file.getName(), USER.class);
+
+        Object[][] data = JsonDataProvider.getJsonObjectByIndex(resource, "3,1");
+        assertEquals(data.length, 2);
+        assertEquals(((USER) data[0][0]).getName(), "three");
+        assertEquals(((USER) data[1][0]).getName(), "one");
+    }
+
     @Test(expectedExceptions = { IndexOutOfBoundsException.class }, groups = "unit")
     public void testGetDataByIndex_OutOfBoundsIndex() throws IOException {
         FileSystemResource resource = new FileSystemResource(filePathPrefix, jsonPojoArrayDataFile, USER.class);
@@ -334,6 +334,54 @@ public class SimpleExcelDataProviderTest {
                 "Failed reading all rows from spreadsheet");
     }
 
+    @Test(groups = "unit")
+    public void testGetAllExcelRowsStreaming() throws IOException {
+        SimpleExcelDataProvider streamingSource = new SimpleExcelDataProvider(pathName, fileName, true);
+        Object[][] allUsers = streamingSource.getAllExcelRows(new USER());
+        assertEquals(transformExcelDataIntoList(allUsers),
+                transformExcelDataIntoList(dataSource.getAllExcelRows(new USER())));
+        for (Object[] eachUser : allUsers) {
+            assertData((USER) eachUser[0]);
+        }
+    }
+
+    /**
+     * A type without any data member, read from the "ADDRESS" sheet.
+     */
+    public static class ADDRESS {
+    }
+
+    @Test(groups = "unit")
+    public void testGetAllExcelRowsKeepsRowsWithoutContents() throws IOException {
+        int rowCount = new ExcelReader(pathName, fileName).getAllExcelRows("ADDRESS", false).size();
+        SimpleExcelDataProvider streamingSource = new SimpleExcelDataProvider(pathName, fileName, true);
+        for (SimpleExcelDataProvider source : new SimpleExcelDataProvider[] { dataSource, streamingSource }) {
+            Object[][] addresses = source.getAllExcelRows(new ADDRESS());
+            assertEquals(addresses.length, rowCount);
+            for (Object[] address : addresses) {
+                assertNull(address[0]);
+            }
+        }
+    }
+
+    @Test(groups = "unit")
+    public void testGetExcelRowsByFilterStreaming() throws IOException {
+        SimpleExcelDataProvider streamingSource = new SimpleExcelDataProvider(pathName, fileName, true);
+        CustomKeyFilter filter = new CustomKeyFilter("accountNumber", "78901,124567");
+        Iterator<Object[]> allUsers = streamingSource.getExcelRowsByFilter(new USER(), filter);
+        assertEquals(transformExcelDataIntoList(allUsers), Arrays.asList("Thomas", "binh"));
+    }
+
+    @Test(groups = "unit")
+    public void testInjectCustomDataStreaming() throws IOException, NoSuchMethodException, SecurityException {
+        SimpleExcelDataProvider provider = new SimpleExcelDataProvider(null, "src/test/resources/sampleData.xlsx",
+                true);
+        DefaultCustomType type = new DefaultCustomType(Colors.class, Colors.class.getMethod("whatColor", String.class));
+        provider.addCustomTypes(type);
+        Object[][] data = provider.getAllExcelRows(new ColorsData());
+        assertEquals(data.length, 3);
+    }
+
     @Test(groups = "unit")
     public void testGetAllRowsAsHashTable() {
         Hashtable<String, Object> allValues = dataSource.getAllRowsAsHashTable(new USER());
@@ -16,9 +16,11 @@
 package com.paypal.selion.platform.dataprovider;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Iterator;
@@ -28,6 +30,7 @@ import java.util.Map;
 
 import javax.xml.xpath.XPathExpressionException;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.jxpath.JXPathNotFoundException;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -218,4 +221,26 @@ public class XmlDataProviderTest {
         assertTrue(street.equals(addr1));
     }
 
+    @Test(groups = "unit")
+    public void testGetDataByIndex() {
+        XmlFileSystemResource resource = new XmlFileSystemResource(pathName, listOfAddresses, Address.class);
+        Iterator<Object[]> data = XmlDataProvider.getDataByIndex(resource, "2,5");
+        assertEquals(((Address) data.next()[0]).getStreet(), addr2);
+        assertFalse(data.hasNext());
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByIndexStopsAfterHighestIndex() throws IOException {
+        File file = File.createTempFile("IndexedAddresses", ".xml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "<addresses><address><street>one</street></address>"
+                + "<address><street>two</street></address><address><street>three</street></address><address>");
+        XmlFileSystemResource resource = new XmlFileSystemResource(file.getParent() + File.separator,
+                file.getName(), Address.class);
+
+        Iterator<Object[]> data = XmlDataProvider.getDataByIndex(resource, new int[] { 3, 1 });
+        assertEquals(((Address) data.next()[0]).getStreet(), "one");
+        assertEquals(((Address) data.next()[0]).getStreet(), "three");
+        assertFalse(data.hasNext());
+    }
 }
@@ -23,11 +23,14 @@ import com.paypal.selion.platform.dataprovider.pojos.yaml.AREA_CODE;
 import com.paypal.selion.platform.dataprovider.pojos.yaml.BANK;
 import com.paypal.selion.platform.dataprovider.pojos.yaml.USER;
 
+import org.apache.commons.io.FileUtils;
 import org.testng.annotations.BeforeSuite;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -343,6 +346,40 @@ public class YamlDataProviderTest {
         arrayComparer(new String[] { "Thomas", "rama", "suri", "suri" }, fetchedNames.toArray());
     }
 
+    @Test(groups = "unit")
+    public void testGetDataByIndex_SkippedRowHoldsAnchor() throws IOException {
+        // The second user refers to an area code anchored in the first one, which is not requested.
+        FileSystemResource resource = new FileSystemResource(pathName, associativeArrayOfUsers, USER.class);
+        Object[][] allUsers = YamlDataProvider.getDataByIndex(resource, "2");
+        USER user = (USER) allUsers[0][0];
+        assertEquals(user.getAreaCode()[0].getAreaCode(), "501");
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByIndex_StopsAfterHighestIndex() throws IOException {
+        File file = File.createTempFile("IndexedList", ".yaml");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "- one\n- two\n- three\n- four\n- {unterminated: [\n");
+        FileSystemResource resource = new FileSystemResource(file.getParent() + File.separator, file.getName());
+
+        Object[][] data = YamlDataProvider.getDataByIndex(resource, "3,1,3");
+        assertEquals(data, new Object[][] { { "three" }, { "one" }, { "three" } });
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByIndex_SkippedDocuments() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, documentSeparatedUsers, USER.class);
+        Object[][] allUsers = YamlDataProvider.getDataByIndex(resource, "4,2");
+        List<String> fetchedNames = transferUserDataIteratorIntoList(allUsers);
+        arrayComparer(new String[] { "suri", "rama" }, fetchedNames.toArray());
+    }
+
+    @Test(expectedExceptions = { IndexOutOfBoundsException.class }, groups = "unit")
+    public void testGetDataByIndex_OutOfBoundsIndex() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, documentSeparatedUsers, USER.class);
+        YamlDataProvider.getDataByIndex(resource, "1,50");
+    }
+
     @Test(groups = "unit")
     public void testGetDataByIndex_NullData() throws IOException {
         FileSystemResource resource = new FileSystemResource(pathName, documentSeparatedUsers, USER.class);
@@ -363,6 +400,135 @@ public class YamlDataProviderTest {
 
     }
 
+    @Test(groups = "unit")
+    public void testGetAllDataLazilyFromList() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, listOfUsers, USER.class);
+        Iterator<Object[]> allUsers = YamlDataProvider.getAllDataLazily(resource);
+        List<String> fetchedNames = transferUserDataIteratorIntoList(allUsers);
+        assertEquals(fetchedNames.toArray(), new String[] { "Thomas", "rama", "binh", "suri", null, "suri" });
+    }
+
+    @Test(groups = "unit")
+    public void testGetAllDataLazilyFromMap() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, associativeArrayOfUsers, USER.class);
+        Iterator<Object[]> allUsers = YamlDataProvider.getAllDataLazily(resource);
+        List<String> fetchedNames = transferUserDataIteratorIntoList(allUsers);
+        assertEquals(fetchedNames.toArray(), new String[] { "Thomas", "rama", "binh", "suri", null });
+    }
+
+    @Test(groups = "unit")
+    public void testGetAllDataLazilyFromDocuments() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, documentSeparatedUsers, USER.class);
+        Iterator<Object[]> allUsers = YamlDataProvider.getAllDataLazily(resource);
+        List<String> fetchedNames = transferUserDataIteratorIntoList(allUsers);
+        assertEquals(fetchedNames.toArray(), new String[] { "Thomas", "rama", "binh", "suri", null, "suri" });
+    }
+
+    @Test(groups = "unit")
+    public void testGetAllDataLazilyMatchesGetAllData() throws IOException {
+        for (String fileName : new String[] { list, listOfLists, listOfAssociativeArrays, associativeArrays,
+                associativeArrayOfLists, associativeArrayOfArrays, documentSeparatedLists,
+                documentSeparatedAssociativeArrays, userTaggedList }) {
+            FileSystemResource resource = new FileSystemResource(pathName, fileName, USER.class);
+            Object[][] expected = YamlDataProvider.getAllData(resource);
+            Iterator<Object[]> actual = YamlDataProvider.getAllDataLazily(resource);
+            for (Object[] row : expected) {
+                assertTrue(actual.hasNext(), fileName);
+                Object[] actualRow = actual.next();
+                if (row[0] instanceof USER) {
+                    assertEquals(((USER) actualRow[0]).getName(), ((USER) row[0]).getName(), fileName);
+                } else {
+                    assertEquals(actualRow, row, fileName);
+                }
+            }
+            assertFalse(actual.hasNext(), fileName);
+        }
+    }
+
+    /**
+     * Counts how many times the data source is opened.
+     */
+    private static final class CountingResource extends FileSystemResource {
+        private int opened;
+
+        CountingResource(String pathName, String fileName, Class<?> cls) {
+            super(pathName, fileName, cls);
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            opened++;
+            return super.getInputStream();
+        }
+    }
+
+    @Test(groups = "unit")
+    public void testLazyReadsOpenTheFileOnce() throws IOException {
+        for (String fileName : new String[] { listOfUsers, documentSeparatedUsers }) {
+            CountingResource resource = new CountingResource(pathName, fileName, USER.class);
+            transferUserDataIteratorIntoList(YamlDataProvider.getAllDataLazily(resource));
+            assertEquals(resource.opened, 1, fileName);
+
+            resource = new CountingResource(pathName, fileName, USER.class);
+            YamlDataProvider.getDataByIndex(resource, "1");
+            assertEquals(resource.opened, 1, fileName);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByIndexFromLargeFile() throws IOException {
+        File yaml = File.createTempFile("large", ".yaml");
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < YamlRowParser.FIRST_DOCUMENT_LOOKAHEAD; i++) {
+            rows.append("- row").append(i).append("\n");
+        }
+        FileUtils.write(yaml, rows.toString());
+        FileSystemResource resource = new FileSystemResource(yaml.getParent() + File.separator, yaml.getName());
+
+        Object[][] data = YamlDataProvider.getDataByIndex(resource, "2,4");
+        assertEquals(data, new Object[][] { { "row1" }, { "row3" } });
+        FileUtils.deleteQuietly(yaml);
+    }
+
+    @Test(groups = "unit", expectedExceptions = DataProviderException.class)
+    public void testLargeFirstDocumentFollowedByAnotherOneCannotBeReadLazily() throws IOException {
+        File yaml = File.createTempFile("large", ".yaml");
+        StringBuilder documents = new StringBuilder("---\n");
+        for (int i = 0; i < YamlRowParser.FIRST_DOCUMENT_LOOKAHEAD; i++) {
+            documents.append("- row").append(i).append("\n");
+        }
+        documents.append("---\n- other\n");
+        FileUtils.write(yaml, documents.toString());
+        FileSystemResource resource = new FileSystemResource(yaml.getParent() + File.separator, yaml.getName());
+
+        try {
+            Iterator<Object[]> data = YamlDataProvider.getAllDataLazily(resource);
+            while (data.hasNext()) {
+                data.next();
+            }
+        } finally {
+            FileUtils.deleteQuietly(yaml);
+        }
+    }
+
+    @Test(groups = "unit")
+    public void testGetDataByFilterLazily() throws IOException {
+        FileSystemResource resource = new FileSystemResource(pathName, listOfUsers, USER.class);
+        SimpleIndexInclusionFilter filter = new SimpleIndexInclusionFilter("1-2,4");
+        Iterator<Object[]> allUsers = YamlDataProvider.getDataByFilterLazily(resource, filter);
+        List<String> fetchedNames = transferUserDataIteratorIntoList(allUsers);
+        assertEquals(fetchedNames.toArray(), new String[] { "Thomas", "rama", "suri" });
+    }
+
+    private synchronized List<String> transferUserDataIteratorIntoList(Iterator<Object[]> allUsers) {
+        List<String> fetchedNames = new ArrayList<String>();
+        while (allUsers.hasNext()) {
+            USER user = (USER) allUsers.next()[0];
+            fetchedNames.add(user.getName());
+        }
+        return fetchedNames;
+    }
+
     private synchronized List<String> transferUserDataIteratorIntoList(Object[][] allUsers) {
         List<String> fetchedNames = new ArrayList<String>();
         for (Object[] object : allUsers) {
@@ -575,6 +741,25 @@ public class YamlDataProviderTest {
         return data;
     }
 
+    @Test(groups = "unit")
+    public void testGetAllDataMultipleArgsLazily() throws IOException {
+        List<FileSystemResource> yamlResources = new ArrayList<FileSystemResource>();
+        yamlResources.add(new FileSystemResource(pathName, documentSeparatedUsers, USER.class));
+        yamlResources.add(new FileSystemResource(pathName, documentSeparatedUsers2, USER.class));
+
+        Object[][] expected = YamlDataProvider.getAllDataMultipleArgs(yamlResources);
+        Iterator<Object[]> data = YamlDataProvider.getAllDataMultipleArgsLazily(yamlResources);
+
+        int rows = 0;
+        while (data.hasNext()) {
+            Object[] row = data.next();
+            assertEquals(row.length, 2);
+            assertEquals(((USER) row[0]).getName(), ((USER) expected[rows][0]).getName());
+            rows++;
+        }
+        assertEquals(rows, expected.length);
+    }
+
     @Test(groups = "unit", dataProvider = "getList")
     public void testDataProviderGetList(String str) {
         assertNotNull(str);
@@ -0,0 +1,173 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.platform.grid;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.web.Hub;
+import org.testng.Reporter;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Opens many concurrent keep-alive client connections to a local {@link Hub}, the way a large number of WebDriver
+ * clients polling the Hub does, and reports how many of them the Hub served and how long it took, once with each
+ * Jetty connector. Not part of any regular suite; run it with <code>-DsuiteXmlFile=Hub-Load-Benchmark.xml</code>. The
+ * number of connections and the size of the Hub's thread pool can be changed with the
+ * <code>hubBenchmark.connections</code> and <code>hubBenchmark.maxThreads</code> system properties.
+ */
+public class HubLoadBenchmark {
+
+    private static final int CONNECTIONS = Integer.getInteger("hubBenchmark.connections", 500);
+    private static final int MAX_THREADS = Integer.getInteger("hubBenchmark.maxThreads", 100);
+    private static final int CLIENT_THREADS = 50;
+    private static final int READ_TIMEOUT = 5000;
+    private static final byte[] REQUEST = ("HEAD /grid/api/hub HTTP/1.1\r\nHost: localhost\r\n"
+            + "Connection: keep-alive\r\n\r\n").getBytes();
+
+    @DataProvider(name = "connectors")
+    public Object[][] connectors() {
+        return new Object[][] { { "bio" }, { "nio" } };
+    }
+
+    @Test(groups = "benchmark", dataProvider = "connectors", singleThreaded = true)
+    public void openConcurrentClients(String connector) throws Exception {
+        GridHubConfiguration config = new GridHubConfiguration();
+        config.loadDefault();
+        config.loadFromCommandLine(new String[] { "-jettyMaxThreads", Integer.toString(MAX_THREADS),
+                "-jettyConnector", connector, "-jettyMaxIdleTime", "30000" });
+        config.setHost("localhost");
+        config.setPort(getFreePort());
+        final Hub hub = new Hub(config);
+        hub.start();
+
+        final List<Socket> sockets = Collections.synchronizedList(new ArrayList<Socket>());
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENT_THREADS);
+        try {
+            List<Future<Long>> requests = new ArrayList<Future<Long>>();
+            long started = System.nanoTime();
+            for (int i = 0; i < CONNECTIONS; i++) {
+                requests.add(clients.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        Socket socket = new Socket();
+                        sockets.add(socket);
+                        return request(socket, config(socket, hubAddress(hub)));
+                    }
+                }));
+            }
+            List<Long> latencies = new ArrayList<Long>();
+            int timedOut = 0;
+            for (Future<Long> request : requests) {
+                Long latency = request.get();
+                if (latency < 0) {
+                    timedOut++;
+                } else {
+                    latencies.add(latency);
+                }
+            }
+            long elapsed = (System.nanoTime() - started) / 1000000;
+
+            // every connection is open and idle now, see how long a new client waits
+            Socket probe = new Socket();
+            sockets.add(probe);
+            long probeLatency = request(probe, config(probe, hubAddress(hub)));
+
+            Collections.sort(latencies);
+            report(String.format("%s connector, %d threads: %d/%d connections served (%d timed out) in %d ms, "
+                    + "p50 %d ms, p99 %d ms, new client after that %s", connector, MAX_THREADS, latencies.size(),
+                    CONNECTIONS, timedOut, elapsed, percentile(latencies, 50), percentile(latencies, 99),
+                    (probeLatency < 0) ? "timed out" : probeLatency + " ms"));
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            clients.shutdownNow();
+            hub.stop();
+        }
+    }
+
+    private static InetSocketAddress hubAddress(Hub hub) {
+        return new InetSocketAddress(hub.getHost(), hub.getPort());
+    }
+
+    private static InetSocketAddress config(Socket socket, InetSocketAddress address) throws IOException {
+        socket.setSoTimeout(READ_TIMEOUT);
+        socket.setTcpNoDelay(true);
+        return address;
+    }
+
+    /**
+     * Connects, sends a request and reads the response headers, leaving the connection open.
+     * 
+     * @return the milli seconds it took, or -1 if the Hub did not answer in time.
+     */
+    private static long request(Socket socket, InetSocketAddress address) throws IOException {
+        long started = System.nanoTime();
+        try {
+            socket.connect(address, READ_TIMEOUT);
+            OutputStream out = socket.getOutputStream();
+            out.write(REQUEST);
+            out.flush();
+            InputStream in = socket.getInputStream();
+            // the response to a HEAD request ends with the blank line after its headers
+            int matched = 0;
+            byte[] end = "\r\n\r\n".getBytes();
+            while (matched < end.length) {
+                int read = in.read();
+                if (read == -1) {
+                    throw new IOException("The Hub closed the connection");
+                }
+                matched = (read == end[matched]) ? matched + 1 : ((read == end[0]) ? 1 : 0);
+            }
+            return (System.nanoTime() - started) / 1000000;
+        } catch (SocketTimeoutException e) {
+            return -1;
+        }
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return -1;
+        }
+        return sorted.get(Math.min(sorted.size() - 1, sorted.size() * percentile / 100));
+    }
+
+    private static int getFreePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void report(String result) {
+        Reporter.log(result, true);
+    }
+}
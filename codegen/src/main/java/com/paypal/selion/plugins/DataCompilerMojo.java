@@ -0,0 +1,117 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import com.paypal.selion.platform.dataprovider.BinaryDataWriter;
+
+/**
+ * Goal used to pre-compile yaml and json test data files into the binary format read by the
+ * <code>BinaryDataProvider</code> of the SeLion client, so that the data files are not parsed every time the tests
+ * run. Every data file found under the source folder is written to the same relative location under the output
+ * folder, with the {@link BinaryDataWriter#EXTENSION} appended to its name.
+ * 
+ * @goal compile-data
+ * 
+ * @phase generate-test-resources
+ */
+public class DataCompilerMojo extends AbstractMojo {
+
+    /**
+     * Represents the folder that holds the yaml and json data files to be compiled.
+     * 
+     * @parameter expression="${selion-data-compiler.sourceFolder}" default-value="${basedir}/src/test/resources/testdata"
+     */
+    private File sourceFolder;
+
+    /**
+     * Represents the folder the compiled data files are written to.
+     * 
+     * @parameter expression="${selion-data-compiler.outputFolder}"
+     *            default-value="${project.build.testOutputDirectory}/testdata"
+     */
+    private File outputFolder;
+
+    public void setSourceFolder(File sourceFolder) {
+        this.sourceFolder = sourceFolder;
+    }
+
+    public void setOutputFolder(File outputFolder) {
+        this.outputFolder = outputFolder;
+    }
+
+    /*
+     * (non-Javadoc)
+     * 
+     * @see org.apache.maven.plugin.AbstractMojo#execute()
+     */
+    public void execute() throws MojoExecutionException {
+        Logger.setLogger(getLog());
+        Log logger = Logger.getLogger();
+
+        List<File> allDataFiles = loadFiles(sourceFolder);
+        String prefix = sourceFolder.getAbsolutePath();
+        for (File dataFile : allDataFiles) {
+            String relativePath = dataFile.getAbsolutePath().substring(prefix.length() + 1);
+            File binaryFile = new File(outputFolder, relativePath + BinaryDataWriter.EXTENSION);
+            // Same rule as the page objects: only compile what changed since the last build.
+            if (binaryFile.lastModified() >= dataFile.lastModified()) {
+                logger.debug("Skipped compiling data file [" + relativePath + "] as it is up to date");
+                continue;
+            }
+            try {
+                int rows = BinaryDataWriter.compile(dataFile, binaryFile);
+                logger.info("Compiled data file [" + relativePath + "] into " + rows + " rows");
+            } catch (IOException | RuntimeException e) {
+                String errorMsg = " \n SeLion data compiler failed when compiling " + dataFile.getAbsolutePath()
+                        + "\n" + "Root Cause : \n" + e.toString();
+                throw new MojoExecutionException(errorMsg, e);
+            }
+        }
+    }
+
+    /**
+     * This method will return all the yaml and json data files available in the base directory.
+     * 
+     * @param workingDir
+     *            - Base directory
+     * @return List<File>
+     */
+    private List<File> loadFiles(File workingDir) {
+        List<File> dataFile = new ArrayList<File>();
+        if (workingDir.exists()) {
+            File[] files = workingDir.listFiles();
+            for (File eachFile : files) {
+                String name = eachFile.getName().toLowerCase();
+                if (eachFile.isDirectory()) {
+                    dataFile.addAll(loadFiles(eachFile));
+                } else if (name.endsWith(".yaml") || name.endsWith(".yml") || name.endsWith(".json")) {
+                    dataFile.add(eachFile);
+                }
+            }
+        }
+        return dataFile;
+    }
+}
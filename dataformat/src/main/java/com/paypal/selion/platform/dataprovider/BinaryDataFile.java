@@ -0,0 +1,330 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.platform.dataprovider;
+
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.DOUBLE;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.FALSE;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.FOOTER_LENGTH;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.HEADER_LENGTH;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.INT;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.LIST;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.LONG;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.MAGIC;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.MAP;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.MAX_LENGTH;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.NULL;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.OBJECT;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.STRING;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.TRUE;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.UTF8;
+import static com.paypal.selion.platform.dataprovider.BinaryDataWriter.VERSION;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Random access to the rows of a file written by {@link BinaryDataWriter}. The file is memory mapped when it can be
+ * opened as a plain file (and read into memory otherwise, e.g. when it sits inside a jar). Only the offset table and
+ * the keys of the rows are looked at up front, the latter to index the rows by key. A row is decoded when it is asked
+ * for, by jumping straight to its offset. <br>
+ * <br>
+ * Instances are immutable and may be shared between threads.
+ */
+final class BinaryDataFile {
+
+    private static final Gson GSON = new Gson();
+
+    private final String name;
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final long tableOffset;
+    private final Map<String, Integer> keyIndex = new HashMap<>();
+
+    private BinaryDataFile(String name, ByteBuffer buffer) {
+        this.name = name;
+        this.buffer = buffer;
+        int limit = buffer.limit();
+        if (limit < HEADER_LENGTH + FOOTER_LENGTH || buffer.getInt(0) != MAGIC
+                || buffer.getInt(limit - 4) != MAGIC) {
+            throw new DataProviderException(name + " is not a SeLion binary data file.");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new DataProviderException(name + " was written with the unsupported version " + buffer.getInt(4)
+                    + " of the binary data format.");
+        }
+        this.tableOffset = buffer.getLong(limit - FOOTER_LENGTH);
+        this.rowCount = buffer.getInt(limit - 8);
+        if (rowCount < 0 || tableOffset < HEADER_LENGTH || tableOffset + 8L * rowCount != limit - FOOTER_LENGTH) {
+            throw new DataProviderException(name + " is a truncated or corrupt SeLion binary data file.");
+        }
+        indexKeys();
+    }
+
+    /**
+     * Reads the contents of a binary data file that is not available as a plain file.
+     * 
+     * @param name
+     *            the name to report the file by.
+     * @param contents
+     *            the contents of the file.
+     */
+    static BinaryDataFile wrap(String name, byte[] contents) {
+        return new BinaryDataFile(name, ByteBuffer.wrap(contents));
+    }
+
+    static BinaryDataFile map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            if (channel.size() > MAX_LENGTH) {
+                throw new DataProviderException(file + " is larger than the " + MAX_LENGTH
+                        + " bytes a SeLion binary data file can hold.");
+            }
+            // The mapping stays valid after the channel is closed.
+            return new BinaryDataFile(file.getPath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @return the (zero based) index of the row known by the key in the source file, or -1 when no row has that key.
+     */
+    int indexOf(String key) {
+        Integer index = keyIndex.get(key);
+        return (index == null) ? -1 : index;
+    }
+
+    private void indexKeys() {
+        for (int i = 0; i < rowCount; i++) {
+            ByteBuffer row = row(i);
+            try {
+                // only the key is read, the rest of the row is left alone
+                String key = (String) readValue(row);
+                if (key != null && !keyIndex.containsKey(key)) {
+                    keyIndex.put(key, i);
+                }
+            } catch (BufferUnderflowException | ClassCastException e) {
+                throw new DataProviderException(name + " is a truncated or corrupt SeLion binary data file.", e);
+            }
+        }
+    }
+
+    /**
+     * Decodes the row at the (zero based) index.
+     * 
+     * @param index
+     *            the index of the row.
+     * @param type
+     *            the type to bind the row to. When <code>null</code>, objects are bound to the class they were written
+     *            with (if that class is available), and everything else is returned as associative arrays, lists and
+     *            scalars.
+     * @return the row.
+     */
+    Object getRow(int index, Class<?> type) {
+        ByteBuffer row = row(index);
+        try {
+            skipValue(row);
+            if (type == null) {
+                return readValue(row);
+            }
+            return GSON.fromJson(readJson(row), type);
+        } catch (JsonParseException | BufferUnderflowException | ClassCastException e) {
+            throw new DataProviderException("Unable to read row " + index + " of " + name, e);
+        }
+    }
+
+    private ByteBuffer row(int index) {
+        if (index < 0 || index >= rowCount) {
+            throw new DataProviderException("Row " + (index + 1) + " is out of the " + rowCount + " rows of " + name);
+        }
+        // files are at most MAX_LENGTH bytes long, so every valid offset fits in an int
+        long rowOffset = buffer.getLong((int) (tableOffset + 8L * index));
+        if (rowOffset < HEADER_LENGTH || rowOffset + 4 > tableOffset) {
+            throw new DataProviderException(name + " is a truncated or corrupt SeLion binary data file.");
+        }
+        int offset = (int) rowOffset;
+        ByteBuffer row = buffer.duplicate();
+        row.position(offset + 4);
+        row.limit(offset + 4 + buffer.getInt(offset));
+        return row;
+    }
+
+    private Object readValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+        case NULL:
+            return null;
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case INT:
+            return in.getInt();
+        case LONG:
+            return in.getLong();
+        case DOUBLE:
+            return in.getDouble();
+        case STRING:
+            return readString(in);
+        case LIST:
+            int size = in.getInt();
+            List<Object> list = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(in));
+            }
+            return list;
+        case MAP:
+            int entries = in.getInt();
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (int i = 0; i < entries; i++) {
+                Object key = readValue(in);
+                map.put(key, readValue(in));
+            }
+            return map;
+        case OBJECT:
+            Class<?> cls = loadClass((String) readValue(in));
+            return (cls == null) ? readValue(in) : GSON.fromJson(readJson(in), cls);
+        default:
+            throw new DataProviderException("Unknown value type " + type + " in " + name);
+        }
+    }
+
+    private JsonElement readJson(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+        case NULL:
+            return JsonNull.INSTANCE;
+        case TRUE:
+            return new JsonPrimitive(true);
+        case FALSE:
+            return new JsonPrimitive(false);
+        case INT:
+            return new JsonPrimitive(in.getInt());
+        case LONG:
+            return new JsonPrimitive(in.getLong());
+        case DOUBLE:
+            return new JsonPrimitive(in.getDouble());
+        case STRING:
+            return new JsonPrimitive(readString(in));
+        case LIST:
+            int size = in.getInt();
+            JsonArray array = new JsonArray();
+            for (int i = 0; i < size; i++) {
+                array.add(readJson(in));
+            }
+            return array;
+        case MAP:
+            int entries = in.getInt();
+            JsonObject object = new JsonObject();
+            for (int i = 0; i < entries; i++) {
+                Object key = readValue(in);
+                object.add(String.valueOf(key), readJson(in));
+            }
+            return object;
+        case OBJECT:
+            // The requested type takes precedence over the class the object was written with.
+            skipValue(in);
+            return readJson(in);
+        default:
+            throw new DataProviderException("Unknown value type " + type + " in " + name);
+        }
+    }
+
+    private void skipValue(ByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+        case NULL:
+        case TRUE:
+        case FALSE:
+            break;
+        case INT:
+            in.position(in.position() + 4);
+            break;
+        case LONG:
+        case DOUBLE:
+            in.position(in.position() + 8);
+            break;
+        case STRING:
+            int length = in.getInt();
+            in.position(in.position() + length);
+            break;
+        case LIST:
+            int size = in.getInt();
+            for (int i = 0; i < size; i++) {
+                skipValue(in);
+            }
+            break;
+        case MAP:
+            int entries = in.getInt();
+            for (int i = 0; i < entries * 2; i++) {
+                skipValue(in);
+            }
+            break;
+        case OBJECT:
+            skipValue(in);
+            skipValue(in);
+            break;
+        default:
+            throw new DataProviderException("Unknown value type " + type + " in " + name);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        String value;
+        if (in.hasArray()) {
+            value = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            value = new String(bytes, UTF8);
+        }
+        return value;
+    }
+
+    private static Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className, true, Thread.currentThread().getContextClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryDataFile [" + name + ", rows = " + rowCount + "]";
+    }
+}
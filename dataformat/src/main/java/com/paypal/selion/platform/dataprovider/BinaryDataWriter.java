@@ -0,0 +1,475 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.platform.dataprovider;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.AbstractConstruct;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+import org.yaml.snakeyaml.nodes.MappingNode;
+import org.yaml.snakeyaml.nodes.Node;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.SequenceNode;
+import org.yaml.snakeyaml.nodes.Tag;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Writes data provider rows into the pre-compiled binary format read by the <code>BinaryDataProvider</code> of the
+ * SeLion client. Reading a
+ * pre-compiled file skips parsing the yaml or json source on every run, and any single row can be read without
+ * reading the ones before it. <br>
+ * <br>
+ * The layout of a file is:
+ * 
+ * <pre>
+ * header : int magic, int version
+ * rows   : for every row, int length followed by length bytes holding the key value and the row value
+ * table  : long offset of every row record, in row order
+ * footer : long offset of the table, int row count, int magic
+ * </pre>
+ * 
+ * All numbers are big endian. A file is at most {@link #MAX_LENGTH} bytes long, so that it can be memory mapped as a
+ * whole when it is read. A value is a one byte type followed by its payload: nothing for null, true and false,
+ * four bytes for an int, eight bytes for a long or a double, a length prefixed UTF-8 string, a count prefixed list of
+ * values, a count prefixed list of key/value pairs for an associative array, or a class name followed by an
+ * associative array for an object of a known type. The key of a row is either null or a string (the key of a root
+ * level yaml associative array). <br>
+ * <br>
+ * Source files are converted with {@link #compile(File, File)}, which is also what the
+ * <code>compile-data</code> goal of the SeLion code generator uses at build time.
+ */
+public final class BinaryDataWriter implements Closeable {
+
+    /**
+     * The extension used for pre-compiled data files.
+     */
+    public static final String EXTENSION = ".sdp";
+
+    static final int MAGIC = 0x53454C44; // "SELD"
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 8;
+    static final int FOOTER_LENGTH = 16;
+    static final long MAX_LENGTH = Integer.MAX_VALUE;
+
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte STRING = 6;
+    static final byte LIST = 7;
+    static final byte MAP = 8;
+    static final byte OBJECT = 9;
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final Gson GSON = new Gson();
+
+    private final File target;
+    private final File partial;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+    private final DataOutputStream row = new DataOutputStream(rowBytes);
+    private final List<Long> offsets = new ArrayList<>();
+    private long position;
+    private boolean closed;
+
+    /**
+     * Starts a new binary data file. The file is written next to the target and only replaces it once
+     * {@link #close()} has completed, so that readers never see a partially written file. A file that should not
+     * replace the target is thrown away with {@link #abort()}.
+     * 
+     * @param target
+     *            the file to write.
+     * @throws IOException
+     */
+    public BinaryDataWriter(File target) throws IOException {
+        if (target == null) {
+            throw new IllegalArgumentException("The target file cannot be null.");
+        }
+        this.target = target.getAbsoluteFile();
+        File parent = this.target.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create the folder " + parent);
+        }
+        this.partial = new File(this.target.getPath() + ".partial");
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = HEADER_LENGTH;
+    }
+
+    /**
+     * Appends a row.
+     * 
+     * @param key
+     *            the key of the row, if it is known by one. May be <code>null</code>.
+     * @param value
+     *            the row. Associative arrays, lists, arrays, strings, numbers, booleans, <code>null</code> and
+     *            {@link JsonElement}s are written as they are. Any other object is written along with its class name,
+     *            as the associative array of its fields.
+     * @throws IOException
+     * @throws DataProviderException
+     *             when the file would grow past {@link #MAX_LENGTH} bytes.
+     */
+    public void writeRow(String key, Object value) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The writer is already closed.");
+        }
+        rowBytes.reset();
+        writeValue(row, key);
+        writeValue(row, value);
+        row.flush();
+
+        long length = position + 4 + rowBytes.size() + 8L * (offsets.size() + 1) + FOOTER_LENGTH;
+        if (length > MAX_LENGTH) {
+            throw new DataProviderException("Unable to write row " + (offsets.size() + 1) + " to " + target
+                    + ". A binary data file cannot be larger than " + MAX_LENGTH + " bytes.");
+        }
+        offsets.add(position);
+        out.writeInt(rowBytes.size());
+        rowBytes.writeTo(out);
+        position += 4 + rowBytes.size();
+    }
+
+    /**
+     * Appends every row of a data provider. Only the first column of every row is written, which is the one all the
+     * SeLion data providers populate.
+     * 
+     * @param rows
+     *            the rows, as returned by any of the data providers.
+     * @throws IOException
+     */
+    public void writeRows(Object[][] rows) throws IOException {
+        for (Object[] eachRow : rows) {
+            writeRow(null, eachRow.length > 0 ? eachRow[0] : null);
+        }
+    }
+
+    /**
+     * @return the number of rows written so far.
+     */
+    public int getRowCount() {
+        return offsets.size();
+    }
+
+    /**
+     * Writes the row offset table and moves the completed file in place of the target. Does nothing once the writer
+     * was {@link #abort() aborted}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            try {
+                long tableOffset = position;
+                for (Long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                out.writeLong(tableOffset);
+                out.writeInt(offsets.size());
+                out.writeInt(MAGIC);
+            } finally {
+                out.close();
+            }
+            Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partial.toPath());
+            throw e;
+        }
+    }
+
+    /**
+     * Throws away the rows written so far. The partially written file is deleted and the target is left as it was.
+     * 
+     * @throws IOException
+     */
+    public void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            out.close();
+        } finally {
+            Files.deleteIfExists(partial.toPath());
+        }
+    }
+
+    /**
+     * Converts a yaml (<code>.yaml</code>, <code>.yml</code>) or json (<code>.json</code>) data file into the binary
+     * format. Rows are formed the same way the yaml and json data providers of the SeLion client form them. The classes of the objects in the data
+     * file need not be available: objects are kept as the associative arrays of their fields, and bound to their
+     * type when they are read. When the source cannot be compiled, the target is left as it was.
+     * 
+     * @param source
+     *            the yaml or json data file.
+     * @param target
+     *            the binary file to write.
+     * @return the number of rows written.
+     * @throws IOException
+     */
+    public static int compile(File source, File target) throws IOException {
+        String name = source.getName().toLowerCase();
+        int rows;
+        try (InputStream in = new FileInputStream(source); BinaryDataWriter writer = new BinaryDataWriter(target)) {
+            try {
+                if (name.endsWith(".json")) {
+                    compileJson(new InputStreamReader(in, UTF8), writer);
+                } else if (name.endsWith(".yaml") || name.endsWith(".yml")) {
+                    compileYaml(in, writer);
+                } else {
+                    throw new DataProviderException("Unsupported data file " + source
+                            + ". Only yaml and json data files can be compiled.");
+                }
+            } catch (IOException | RuntimeException e) {
+                // never publish a truncated file, a build would consider it up to date from then on
+                writer.abort();
+                throw e;
+            }
+            rows = writer.getRowCount();
+        }
+        return rows;
+    }
+
+    private static void compileYaml(InputStream in, BinaryDataWriter writer) throws IOException {
+        Yaml yaml = new Yaml(new UntypedConstructor());
+        List<Object> documents = new ArrayList<>();
+        for (Object document : yaml.loadAll(in)) {
+            documents.add(document);
+        }
+        // Same shapes as DataProviderHelper.convertToObjectArray(), where multiple documents form a list.
+        Object root = documents.size() == 1 ? documents.get(0) : documents;
+        if (root != null && root.getClass().equals(LinkedHashMap.class)) {
+            for (Entry<?, ?> entry : ((Map<?, ?>) root).entrySet()) {
+                writer.writeRow(String.valueOf(entry.getKey()), entry.getValue());
+            }
+        } else if (root != null && root.getClass().equals(ArrayList.class)) {
+            for (Object item : (List<?>) root) {
+                writer.writeRow(null, getRowObject(item));
+            }
+        } else {
+            writer.writeRow(null, root);
+        }
+    }
+
+    /**
+     * Same as <code>DataProviderHelper.getRowObject()</code> of the SeLion client: an associative array that only
+     * labels a nested associative array or list is replaced by what it labels.
+     */
+    private static Object getRowObject(Object item) {
+        Object row = item;
+        if (item != null && item.getClass().equals(LinkedHashMap.class)) {
+            for (Object eachEntry : ((Map<?, ?>) item).values()) {
+                if (eachEntry.getClass().equals(LinkedHashMap.class) || eachEntry.getClass().equals(ArrayList.class)) {
+                    row = eachEntry;
+                }
+            }
+        }
+        return row;
+    }
+
+    private static void compileJson(Reader in, BinaryDataWriter writer) throws IOException {
+        JsonParser parser = new JsonParser();
+        try (JsonReader reader = new JsonReader(in)) {
+            if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                writer.writeRow(null, parser.parse(reader));
+                return;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                writer.writeRow(null, parser.parse(reader));
+            }
+            reader.endArray();
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new DataProviderException("Error while parsing Json Data", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(INT);
+            out.writeInt(((Number) value).intValue());
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof CharSequence || value instanceof Character || value instanceof Number
+                || value instanceof Enum) {
+            writeString(out, value.toString());
+        } else if (value instanceof TaggedMap) {
+            out.writeByte(OBJECT);
+            writeString(out, ((TaggedMap) value).className);
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof Map) {
+            writeMap(out, (Map<?, ?>) value);
+        } else if (value instanceof Collection) {
+            Collection<?> items = (Collection<?>) value;
+            out.writeByte(LIST);
+            out.writeInt(items.size());
+            for (Object item : items) {
+                writeValue(out, item);
+            }
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            out.writeByte(LIST);
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                writeValue(out, Array.get(value, i));
+            }
+        } else if (value instanceof JsonElement) {
+            writeJson(out, (JsonElement) value);
+        } else {
+            out.writeByte(OBJECT);
+            writeString(out, value.getClass().getName());
+            writeJson(out, GSON.toJsonTree(value));
+        }
+    }
+
+    private static void writeMap(DataOutputStream out, Map<?, ?> map) throws IOException {
+        out.writeByte(MAP);
+        out.writeInt(map.size());
+        for (Entry<?, ?> entry : map.entrySet()) {
+            writeValue(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static void writeJson(DataOutputStream out, JsonElement element) throws IOException {
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            out.writeByte(MAP);
+            out.writeInt(object.entrySet().size());
+            for (Entry<String, JsonElement> entry : object.entrySet()) {
+                writeString(out, entry.getKey());
+                writeJson(out, entry.getValue());
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            out.writeByte(LIST);
+            out.writeInt(array.size());
+            for (JsonElement item : array) {
+                writeJson(out, item);
+            }
+        } else if (element.isJsonPrimitive()) {
+            writeValue(out, toScalar(element.getAsJsonPrimitive()));
+        } else {
+            out.writeByte(NULL);
+        }
+    }
+
+    private static Object toScalar(JsonPrimitive primitive) {
+        if (primitive.isBoolean()) {
+            return primitive.getAsBoolean();
+        }
+        if (!primitive.isNumber()) {
+            return primitive.getAsString();
+        }
+        String number = primitive.getAsString();
+        try {
+            long asLong = Long.parseLong(number);
+            return (asLong == (int) asLong) ? Integer.valueOf((int) asLong) : Long.valueOf(asLong);
+        } catch (NumberFormatException e) {
+            return primitive.getAsDouble();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeByte(STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * An associative array that was tagged with a class name in the yaml file.
+     */
+    private static final class TaggedMap extends LinkedHashMap<Object, Object> {
+        private static final long serialVersionUID = 1L;
+        private final String className;
+
+        TaggedMap(String className, Map<Object, Object> values) {
+            super(values);
+            this.className = className;
+        }
+    }
+
+    /**
+     * Builds associative arrays, lists and scalars out of a yaml file without requiring the classes it refers to.
+     * Timestamps are kept as strings, so that they are bound to their type when the row is read.
+     */
+    private static final class UntypedConstructor extends SafeConstructor {
+        UntypedConstructor() {
+            this.yamlConstructors.put(Tag.TIMESTAMP, new ConstructYamlStr());
+            this.yamlConstructors.put(null, new AbstractConstruct() {
+                @Override
+                public Object construct(Node node) {
+                    if (node instanceof MappingNode) {
+                        Map<Object, Object> values = constructMapping((MappingNode) node);
+                        String tag = node.getTag().getValue();
+                        return tag.startsWith(Tag.PREFIX) ? new TaggedMap(node.getTag().getClassName(), values)
+                                : values;
+                    }
+                    if (node instanceof SequenceNode) {
+                        return constructSequence((SequenceNode) node);
+                    }
+                    return constructScalar((ScalarNode) node);
+                }
+            });
+        }
+    }
+}
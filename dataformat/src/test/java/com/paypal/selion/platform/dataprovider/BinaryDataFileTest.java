@@ -0,0 +1,90 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.platform.dataprovider;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class BinaryDataFileTest {
+
+    private File file;
+
+    @BeforeClass
+    public void writeFile() throws IOException {
+        file = File.createTempFile("selion-binary-data", BinaryDataWriter.EXTENSION);
+        try (BinaryDataWriter writer = new BinaryDataWriter(file)) {
+            writer.writeRow(null, "no key");
+            writer.writeRow("first", Arrays.asList(1, 2));
+            writer.writeRow("second", null);
+            writer.writeRow("first", "listed again");
+        }
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void testRowsAreReadBack() throws IOException {
+        BinaryDataFile data = BinaryDataFile.map(file);
+        assertEquals(data.getRowCount(), 4);
+        assertEquals(data.getRow(0, null), "no key");
+        assertEquals(data.getRow(1, null), Arrays.asList(1, 2));
+        assertNull(data.getRow(2, null));
+        assertEquals(data.getRow(3, String.class), "listed again");
+    }
+
+    @Test
+    public void testRowsAreIndexedByKey() throws IOException {
+        BinaryDataFile data = BinaryDataFile.map(file);
+        assertEquals(data.indexOf("first"), 1, "The first row with a key is the one known by it");
+        assertEquals(data.indexOf("second"), 2);
+        assertEquals(data.indexOf("third"), -1);
+    }
+
+    @Test
+    public void testCompiledYamlAssociativeArrayIsIndexedByKey() throws IOException {
+        File source = File.createTempFile("selion-binary-data", ".yaml");
+        File target = new File(source.getPath() + BinaryDataWriter.EXTENSION);
+        try {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(source), "UTF-8")) {
+                out.write("1:\n  name: One\ntom:\n  name: Thomas\n");
+            }
+            BinaryDataWriter.compile(source, target);
+            BinaryDataFile data = BinaryDataFile.map(target);
+            assertEquals(data.getRowCount(), 2);
+            assertEquals(((Map<?, ?>) data.getRow(data.indexOf("tom"), null)).get("name"), "Thomas");
+            assertEquals(data.indexOf("1"), 0);
+        } finally {
+            source.delete();
+            target.delete();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.logging.Level;
+
+import org.apache.commons.codec.binary.Hex;
+
+import com.paypal.selion.logging.SeLionGridLogger;
+
+/**
+ * Remembers the checksums of local files, keyed by the size and the modification time of the file, so that files that
+ * did not change are not read again to validate them. The checksums are persisted in a properties file.
+ */
+final class ChecksumCache {
+
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(ChecksumCache.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheFile;
+    private final Properties entries = new Properties();
+    private boolean loaded = false;
+    private boolean dirty = false;
+
+    /**
+     * @param cacheFile
+     *            the properties file that persists the checksums
+     */
+    ChecksumCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @param algorithm
+     *            the name of a {@link MessageDigest} algorithm
+     * @return a new {@link MessageDigest} for the algorithm
+     */
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Unsupported checksum algorithm " + algorithm, e);
+        }
+    }
+
+    /**
+     * Updates a digest with the contents of a file.
+     * 
+     * @param file
+     *            the file to read
+     * @param digest
+     *            the {@link MessageDigest} to update
+     * @throws IOException
+     */
+    static void update(File file, MessageDigest digest) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buf = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = is.read(buf)) != -1) {
+                digest.update(buf, 0, bytesRead);
+            }
+        }
+    }
+
+    /**
+     * @param file
+     *            the file to get the checksum of
+     * @param algorithm
+     *            the name of a {@link MessageDigest} algorithm
+     * @return the checksum of the file as a lower case hex string, read from the cache if the file did not change
+     *         since it was computed
+     * @throws IOException
+     */
+    String getChecksum(File file, String algorithm) throws IOException {
+        String key = keyOf(file, algorithm);
+        String stamp = stampOf(file);
+        String cached = get(key);
+        if (cached != null && cached.startsWith(stamp)) {
+            return cached.substring(stamp.length());
+        }
+        MessageDigest digest = newDigest(algorithm);
+        update(file, digest);
+        String checksum = Hex.encodeHexString(digest.digest());
+        put(key, stamp + checksum);
+        return checksum;
+    }
+
+    /**
+     * Records the checksum of a file that was just written.
+     * 
+     * @param file
+     *            the file
+     * @param algorithm
+     *            the name of the {@link MessageDigest} algorithm the checksum was computed with
+     * @param checksum
+     *            the checksum as a hex string
+     */
+    void putChecksum(File file, String algorithm, String checksum) {
+        put(keyOf(file, algorithm), stampOf(file) + checksum.toLowerCase());
+    }
+
+    /**
+     * Writes the cache to its properties file, leaving out the files that no longer exist.
+     */
+    synchronized void save() {
+        load();
+        for (Iterator<Entry<Object, Object>> iterator = entries.entrySet().iterator(); iterator.hasNext();) {
+            String key = (String) iterator.next().getKey();
+            if (!new File(key.substring(key.indexOf(':') + 1)).exists()) {
+                iterator.remove();
+                dirty = true;
+            }
+        }
+        if (!dirty) {
+            return;
+        }
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try {
+            cacheFile.getAbsoluteFile().getParentFile().mkdirs();
+            try (OutputStream os = new FileOutputStream(temp)) {
+                entries.store(os, "Checksums of the files downloaded by SeLion Grid, keyed by size and modification time");
+            }
+            try {
+                Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) { // NOSONAR
+                Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            // the cache only saves time, the checksums will be computed again
+            LOGGER.log(Level.WARNING, "Unable to save the checksums to " + cacheFile, e);
+        }
+    }
+
+    private synchronized String get(String key) {
+        load();
+        return entries.getProperty(key);
+    }
+
+    private synchronized void put(String key, String value) {
+        load();
+        if (!value.equals(entries.setProperty(key, value))) {
+            dirty = true;
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try (InputStream is = new FileInputStream(cacheFile)) {
+            entries.load(is);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, "Ignoring the checksums in " + cacheFile, e);
+            entries.clear();
+        }
+    }
+
+    private static String keyOf(File file, String algorithm) {
+        return algorithm + ":" + file.getAbsolutePath();
+    }
+
+    private static String stampOf(File file) {
+        return file.length() + ":" + file.lastModified() + ":";
+    }
+}
@@ -0,0 +1,231 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.ConsoleHandler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecuteResultHandler;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.PumpStreamHandler;
+import org.apache.commons.exec.ShutdownHookProcessDestroyer;
+import org.apache.commons.exec.environment.EnvironmentUtils;
+
+import com.paypal.selion.logging.SeLionGridLogger;
+
+/**
+ * A {@link SeLionGridLauncher} process spawned by the {@link JarSpawner}. <br>
+ * <br>
+ * A child can be started as a warm standby: it then gets ready to run, but does not bind its port nor register itself
+ * until the {@link JarSpawner} activates it with {@link #activate()}, which writes {@value #ACTIVATE} to its standard
+ * input. The standby child finds out that it is one with {@link #isStandby()} and waits for its activation with
+ * {@link #awaitActivation()}. It only writes the log files once it is activated, see {@link #suspendFileLogging()}.
+ */
+final class ChildProcess {
+
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(ChildProcess.class);
+
+    /**
+     * The environment variable that tells a child that it is a warm standby.
+     */
+    static final String STANDBY_ENV = "SELION_WARM_STANDBY";
+
+    /**
+     * The line that activates a warm standby child.
+     */
+    static final String ACTIVATE = "activate";
+
+    private static final String LOGGING_CONFIG_FILE = "java.util.logging.config.file";
+
+    private final CommandLine cmdLine;
+    private final DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler();
+    private final ExecuteWatchdog watchdog = new ExecuteWatchdog(ExecuteWatchdog.INFINITE_TIMEOUT);
+    private final PipedOutputStream activation;
+
+    @SuppressWarnings("unchecked")
+    private ChildProcess(CommandLine cmdLine, boolean standby) throws IOException {
+        this.cmdLine = cmdLine;
+        DefaultExecutor executor = new DefaultExecutor();
+        executor.setWatchdog(watchdog);
+        executor.setProcessDestroyer(new ShutdownHookProcessDestroyer());
+        Map<String, String> environment = null;
+        if (standby) {
+            activation = new PipedOutputStream();
+            executor.setStreamHandler(new PumpStreamHandler(System.out, System.err, new PipedInputStream(activation)));
+            environment = EnvironmentUtils.getProcEnvironment();
+            environment.put(STANDBY_ENV, Boolean.TRUE.toString());
+        } else {
+            activation = null;
+            executor.setStreamHandler(new PumpStreamHandler());
+        }
+        executor.execute(cmdLine, environment, handler);
+    }
+
+    /**
+     * @param cmdLine
+     *            the command that runs the {@link SeLionGridLauncher}.
+     * @param standby
+     *            <code>true</code> to start the child as a warm standby.
+     * @return the started child.
+     * @throws IOException
+     */
+    static ChildProcess start(CommandLine cmdLine, boolean standby) throws IOException {
+        return new ChildProcess(cmdLine, standby);
+    }
+
+    /**
+     * @return <code>true</code> if the current process was started as a warm standby.
+     */
+    static boolean isStandby() {
+        return Boolean.parseBoolean(System.getenv(STANDBY_ENV));
+    }
+
+    /**
+     * Keeps the current, warm standby, process from writing the log files until it is activated. The process it stands
+     * by for holds the lock of the log files, so the standby would log to files of its own, and would keep doing so once
+     * activated. Until {@link #resumeFileLogging()} is called, only the handlers that do not write the log files (the
+     * console) are used.
+     */
+    static void suspendFileLogging() {
+        String configFile = System.getProperty(LOGGING_CONFIG_FILE);
+        if (configFile == null) {
+            return;
+        }
+        Properties config = new Properties();
+        try (InputStream in = new FileInputStream(configFile)) {
+            config.load(in);
+            config.setProperty("handlers", ConsoleHandler.class.getName());
+            ByteArrayOutputStream consoleOnly = new ByteArrayOutputStream();
+            config.store(consoleOnly, null);
+            LogManager.getLogManager().readConfiguration(new ByteArrayInputStream(consoleOnly.toByteArray()));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to suspend the file logging of the warm standby", e);
+        }
+    }
+
+    /**
+     * Sets the logging up again from its configuration file, once the warm standby was activated.
+     */
+    static void resumeFileLogging() {
+        if (System.getProperty(LOGGING_CONFIG_FILE) == null) {
+            return;
+        }
+        try {
+            LogManager.getLogManager().readConfiguration();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to resume the file logging of the warm standby", e);
+        }
+    }
+
+    /**
+     * Waits for the {@link JarSpawner} to activate the current, warm standby, process.
+     * 
+     * @return <code>true</code> if the process was activated, <code>false</code> if it is no longer needed.
+     */
+    static boolean awaitActivation() {
+        BufferedReader input = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (ACTIVATE.equals(line.trim())) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to read the activation of the warm standby", e);
+        }
+        return false;
+    }
+
+    /**
+     * Activates a warm standby child.
+     * 
+     * @throws IOException
+     */
+    void activate() throws IOException {
+        if (activation == null) {
+            throw new IllegalStateException("The child process is not a warm standby");
+        }
+        activation.write((ACTIVATE + "\n").getBytes(StandardCharsets.UTF_8));
+        // closing the pipe flushes the line to the child
+        activation.close();
+    }
+
+    /**
+     * @return the command that runs the child.
+     */
+    CommandLine getCommandLine() {
+        return cmdLine;
+    }
+
+    /**
+     * @return <code>true</code> if the child exited.
+     */
+    boolean hasExited() {
+        return handler.hasResult();
+    }
+
+    /**
+     * Waits for the child to exit.
+     * 
+     * @param timeout
+     *            the milli seconds to wait for at most.
+     * @return <code>true</code> if the child exited.
+     * @throws InterruptedException
+     */
+    boolean waitFor(long timeout) throws InterruptedException {
+        handler.waitFor(timeout);
+        return handler.hasResult();
+    }
+
+    /**
+     * @return the failure the child exited with, or <code>null</code>.
+     */
+    ExecuteException getException() {
+        return handler.getException();
+    }
+
+    /**
+     * Kills the child.
+     */
+    void destroy() {
+        watchdog.destroyProcess();
+        if (activation != null) {
+            try {
+                activation.close();
+            } catch (IOException e) {// NOSONAR
+                // Gobble exceptions and chose to do nothing with it.
+            }
+        }
+    }
+}
@@ -16,25 +16,38 @@
 package com.paypal.selion.grid;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.compress.archivers.ArchiveStreamFactory;
 import org.openqa.selenium.Platform;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.paypal.selion.logging.SeLionGridLogger;
 import com.paypal.selion.pojos.ArtifactDetails;
 import com.paypal.selion.pojos.ArtifactDetails.URLChecksumEntity;
@@ -43,6 +56,12 @@ import com.paypal.selion.pojos.SeLionGridConstants;
 /**
  * File downloader is used to clean up files already downloaded and download all the files specified in the
  * download.json file
+ * <p>
+ * Artifacts are downloaded in parallel. A download that is interrupted leaves a <code>.part</code> file behind, which
+ * the next attempt resumes with an HTTP Range request. Failed attempts are retried with an exponential backoff, up to
+ * a maximum number of attempts. The checksums of local files are cached by their size and modification time, so a
+ * file that was validated before is not read again. download.json is only taken as handled once all its artifacts were
+ * downloaded, so artifacts that could not be downloaded are tried again on the next check.
  */
 final class FileDownloader {
 
@@ -52,6 +71,16 @@ final class FileDownloader {
     private static List<String> supportedTypes = Arrays.asList(ArchiveStreamFactory.ZIP, ArchiveStreamFactory.TAR,
             ArchiveStreamFactory.JAR, "bz2");
 
+    private static final int MAX_PARALLEL_DOWNLOADS = 4;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long INITIAL_BACKOFF = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_BACKOFF = TimeUnit.SECONDS.toMillis(30);
+    private static final int TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PARTIAL_EXTENSION = ".part";
+    private static final ChecksumCache CHECKSUMS = new ChecksumCache(new File(SeLionGridConstants.SELION_HOME_DIR,
+            "checksums.properties"));
+
     private FileDownloader() {
         // Utility class. Hide the constructor
     }
@@ -74,16 +103,24 @@ final class FileDownloader {
     /**
      * This method will check whether the download.json file got modified and download all the files in
      * download.json
+     * 
+     * @return <code>true</code> if the download.json file got modified and its files were downloaded.
+     * @throws RuntimeException
+     *             if download.json cannot be read or one of its files cannot be downloaded. The files are downloaded
+     *             again on the next call.
      */
-    static void checkForDownloads() {
-        LOGGER.entering();
+    static boolean checkForDownloads() {
+        return checkForDownloads(new File(SeLionGridConstants.DOWNLOAD_JSON_FILE), MAX_ATTEMPTS, INITIAL_BACKOFF);
+    }
 
-        File downloadFile = new File(SeLionGridConstants.DOWNLOAD_JSON_FILE);
+    static boolean checkForDownloads(File downloadFile, int maxAttempts, long initialBackoff) {
+        LOGGER.entering();
 
-        if (lastModifiedTime == downloadFile.lastModified()) {
-            return;
+        long modified = downloadFile.lastModified();
+        if (lastModifiedTime == modified) {
+            LOGGER.exiting(false);
+            return false;
         }
-        lastModifiedTime = downloadFile.lastModified();
 
         cleanup();
 
@@ -97,72 +134,130 @@ final class FileDownloader {
             throw new RuntimeException(e);
         }
 
-        for (Iterator<URLChecksumEntity> iterator = artifactDetails.iterator(); iterator.hasNext();) {
-            URLChecksumEntity entity = (URLChecksumEntity) iterator.next();
-            String url = entity.getUrl().getValue();
-            String checksum = entity.getChecksum().getValue();
-            StringBuilder msg = new StringBuilder();
-            msg.append("Downloading from URL: ").append(url).append("...");
-            msg.append("[").append(checksum).append("] will be used for checksum validation.");
-            LOGGER.fine(msg.toString());
-            String result;
-            while ((result = downloadFile(url, checksum)) == null) {
-                // TODO: Need to add a measurable wait to skip downloading after 'n' tries
-                LOGGER.warning("Error downloading the file " + url + ". Retrying....");
-            }
-            files.add(result);
-            if (!result.endsWith(".jar")) {
-                List<String> extractedFileList = FileExtractor.extractArchive(result);
-                files.addAll(extractedFileList);
+        try {
+            for (String result : downloadAll(artifactDetails, maxAttempts, initialBackoff)) {
+                files.add(result);
+                if (!result.endsWith(".jar")) {
+                    List<String> extractedFileList = FileExtractor.extractArchive(result);
+                    files.addAll(extractedFileList);
+                }
             }
+        } finally {
+            CHECKSUMS.save();
         }
+        // only now, so that a failed download is tried again
+        lastModifiedTime = modified;
         LOGGER.fine("Files after download and extract: " + files.toString());
-        LOGGER.exiting();
+        LOGGER.exiting(true);
+        return true;
     }
 
-    private static boolean checkLocalFile(String filename, String checksum, String algorithm) {
-        InputStream is = null;
-        MessageDigest md = null;
-        StringBuffer sb = new StringBuffer("");
-        try {
-            md = MessageDigest.getInstance(algorithm);
-        } catch (NoSuchAlgorithmException e1) {
-            // NOSONAR
+    /**
+     * Downloads artifacts in parallel, retrying each one with an exponential backoff. Artifacts that are listed more
+     * than once with the same url and checksum are downloaded once.
+     * 
+     * @param artifactDetails
+     *            the artifacts to download
+     * @param maxAttempts
+     *            the number of times an artifact is tried before giving up
+     * @param initialBackoff
+     *            the time to wait after the first failed attempt, in milli seconds
+     * @return the downloaded file paths, in the order of the artifacts
+     * @throws IllegalArgumentException
+     *             if two different artifacts would be downloaded to the same file.
+     */
+    static List<String> downloadAll(List<URLChecksumEntity> artifactDetails, final int maxAttempts,
+            final long initialBackoff) {
+        List<String> results = new ArrayList<String>();
+        if (artifactDetails.isEmpty()) {
+            return results;
         }
-
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(MAX_PARALLEL_DOWNLOADS, artifactDetails.size()), new ThreadFactoryBuilder()
+                        .setDaemon(true).setNameFormat("SeLion-Downloader-%d").build());
         try {
-            int bytesRead;
-
-            is = new FileInputStream(filename);
-
-            byte[] buf = new byte[1024];
-            while ((bytesRead = is.read(buf)) != -1) {
-                md.update(buf, 0, bytesRead);
+            List<Future<String>> downloads = new ArrayList<Future<String>>();
+            for (URLChecksumEntity entity : getDistinctArtifacts(artifactDetails)) {
+                final String url = entity.getUrl().getValue();
+                final String checksum = entity.getChecksum().getValue();
+                StringBuilder msg = new StringBuilder();
+                msg.append("Downloading from URL: ").append(url).append("...");
+                msg.append("[").append(checksum).append("] will be used for checksum validation.");
+                LOGGER.fine(msg.toString());
+                downloads.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws InterruptedException {
+                        return downloadFile(url, checksum, maxAttempts, initialBackoff);
+                    }
+                }));
             }
-
-            byte[] mdbytes = md.digest();
-
-            for (int i = 0; i < mdbytes.length; i++) {
-                sb.append(Integer.toString((mdbytes[i] & 0xff) + 0x100, 16).substring(1));
+            for (Future<String> download : downloads) {
+                results.add(download.get());
             }
-
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        } finally {
-            try {
-                if (is != null) {
-                    is.close();
-                }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            return results;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
         }
-        if (checksum.equals(sb.toString())) {
-            LOGGER.fine("checksum matched for " + filename);
-            return true;
+    }
+
+    /**
+     * Drops the artifacts that are listed again, and rejects different artifacts that would be downloaded to the same
+     * file (and so to the same <code>.part</code> file, concurrently).
+     */
+    private static List<URLChecksumEntity> getDistinctArtifacts(List<URLChecksumEntity> artifactDetails) {
+        Map<String, URLChecksumEntity> byFile = new LinkedHashMap<String, URLChecksumEntity>();
+        for (URLChecksumEntity entity : artifactDetails) {
+            String url = entity.getUrl().getValue();
+            String filename = decideFilePath(url.substring(url.lastIndexOf("/") + 1));
+            URLChecksumEntity listed = byFile.get(filename);
+            if (listed == null) {
+                byFile.put(filename, entity);
+            } else if (!listed.getUrl().getValue().equals(url)
+                    || !listed.getChecksum().getValue().equalsIgnoreCase(entity.getChecksum().getValue())) {
+                throw new IllegalArgumentException("Both " + listed.getUrl().getValue() + " and " + url
+                        + " would be downloaded to " + filename);
+            }
         }
-        return false;
+        return new ArrayList<URLChecksumEntity>(byFile.values());
+    }
 
+    /**
+     * Downloads a file, retrying with an exponential backoff until it is downloaded with the right checksum.
+     * 
+     * @param artifactUrl
+     *            - url of the file to be downloaded.
+     * @param checksum
+     *            - checksum to downloaded file.
+     * @param maxAttempts
+     *            - the number of times the file is tried before giving up
+     * @param initialBackoff
+     *            - the time to wait after the first failed attempt, in milli seconds
+     * @return the downloaded file path.
+     * @throws InterruptedException
+     */
+    static String downloadFile(String artifactUrl, String checksum, int maxAttempts, long initialBackoff)
+            throws InterruptedException {
+        long backoff = initialBackoff;
+        for (int attempt = 1;; attempt++) {
+            String result = downloadFile(artifactUrl, checksum);
+            if (result != null) {
+                return result;
+            }
+            if (attempt >= maxAttempts) {
+                throw new RuntimeException("Unable to download " + artifactUrl + " after " + attempt + " attempts");
+            }
+            LOGGER.warning("Error downloading the file " + artifactUrl + ". Retrying in " + backoff + " ms....");
+            Thread.sleep(backoff);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF);
+        }
     }
 
     private static String decideFilePath(String fileName) {
@@ -177,63 +272,100 @@ final class FileDownloader {
     private static String downloadFile(String url, String checksum, String algorithm) {
 
         String filename = decideFilePath(url.substring(url.lastIndexOf("/") + 1));
-        if (new File(filename).exists()) {
-            // local file exist. no need to download
-            if (checkLocalFile(filename, checksum, algorithm)) {
+        File file = new File(filename);
+        try {
+            if (file.exists() && checksum.equalsIgnoreCase(CHECKSUMS.getChecksum(file, algorithm))) {
+                // local file exist. no need to download
+                LOGGER.fine("checksum matched for " + filename);
                 return filename;
             }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
         LOGGER.info("Downloading from " + url + " with checksum " + checksum + "[" + algorithm + "]");
-        OutputStream outStream = null;
-        URLConnection uCon = null;
 
-        InputStream is = null;
-        MessageDigest md = null;
-        StringBuffer sb = new StringBuffer("");
+        File partial = new File(filename + PARTIAL_EXTENSION);
+        MessageDigest md = ChecksumCache.newDigest(algorithm);
         try {
-            md = MessageDigest.getInstance(algorithm);
-        } catch (NoSuchAlgorithmException e1) {
-            // NOSONAR
+            transfer(new URL(url), partial, md);
+        } catch (IOException e) {
+            // the partial file is kept, the next attempt resumes from where this one stopped
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            return null;
         }
 
+        String actual = Hex.encodeHexString(md.digest());
+        if (!checksum.equalsIgnoreCase(actual)) {
+            LOGGER.fine("checksum did not match for " + url);
+            partial.delete();
+            return null;
+        }
         try {
-            int bytesRead;
-            URL Url = new URL(url);
-            outStream = new FileOutputStream(filename);
-
-            uCon = Url.openConnection();
-            is = uCon.getInputStream();
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            return null;
+        }
+        CHECKSUMS.putChecksum(file, algorithm, actual);
+        LOGGER.fine("checksum matched for " + url);
+        return filename;
+    }
 
-            byte[] buf = new byte[1024];
-            while ((bytesRead = is.read(buf)) != -1) {
-                md.update(buf, 0, bytesRead);
-                outStream.write(buf, 0, bytesRead);
+    /**
+     * Downloads the contents of the url to the partial file, resuming from the end of the partial file when the server
+     * supports ranges. The digest is updated with the complete contents of the partial file.
+     */
+    private static void transfer(URL url, File partial, MessageDigest md) throws IOException {
+        long resumeFrom = partial.length();
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        if (resumeFrom > 0 && connection instanceof HttpURLConnection) {
+            connection.setRequestProperty("Range", "bytes=" + resumeFrom + "-");
+        }
+        if (connection instanceof HttpURLConnection) {
+            int status = ((HttpURLConnection) connection).getResponseCode();
+            if (status == 416) {
+                // the partial file is already as long as the artifact, its checksum tells if it is complete
+                ChecksumCache.update(partial, md);
+                return;
             }
-            outStream.close();
-
-            byte[] mdbytes = md.digest();
-
-            for (int i = 0; i < mdbytes.length; i++) {
-                sb.append(Integer.toString((mdbytes[i] & 0xff) + 0x100, 16).substring(1));
+            if (status >= 400) {
+                throw new IOException("Server returned HTTP response code: " + status + " for URL: " + url);
             }
+            if (status != HttpURLConnection.HTTP_PARTIAL) {
+                resumeFrom = 0;
+            }
+        } else {
+            resumeFrom = 0;
+        }
+        if (resumeFrom > 0) {
+            LOGGER.info("Resuming the download of " + url + " from byte " + resumeFrom);
+            ChecksumCache.update(partial, md);
+        }
 
-        } catch (Exception e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        } finally {
-            try {
-                if (is != null) {
-                    is.close();
+        StandardOpenOption mode = (resumeFrom > 0) ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+        try (InputStream is = connection.getInputStream();
+                ReadableByteChannel in = Channels.newChannel(is);
+                FileChannel out = FileChannel.open(partial.toPath(), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, mode)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            long transferred = 0;
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                md.update(buffer.array(), 0, buffer.limit());
+                transferred += buffer.limit();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
                 }
-            } catch (Exception e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                buffer.clear();
+            }
+            // a dropped connection does not always surface as an exception
+            long expected = connection.getContentLengthLong();
+            if (expected >= 0 && transferred < expected) {
+                throw new IOException("Received " + transferred + " of " + expected + " bytes from " + url);
             }
         }
-        if (checksum.equals(sb.toString())) {
-            LOGGER.fine("checksum matched for " + url);
-            return filename;
-        }
-        LOGGER.fine("checksum did not match for " + url);
-        return null;
     }
 
     /**
@@ -259,6 +391,7 @@ final class FileDownloader {
         } else if (isValidMD5(checksum)) {
             algorithm = "MD5";
         }
+        Preconditions.checkArgument(algorithm != null, "Invalid CheckSum: Must be a SHA1 or MD5 hex string");
         String result = downloadFile(artifactUrl, checksum, algorithm);
         LOGGER.exiting(result);
         return result;
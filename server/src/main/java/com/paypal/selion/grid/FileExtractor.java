@@ -78,7 +78,7 @@ final class FileExtractor {
     }
 
     static List<String> extractArchive(String archiveFile) {
-        LOGGER.entering(archiveFile);
+        LOGGER.traceEntry("extractArchive", archiveFile);
 
         LOGGER.info("Extracting " + archiveFile);
 
@@ -170,7 +170,7 @@ final class FileExtractor {
             }
         }
 
-        LOGGER.exiting(files.toString());
+        LOGGER.traceExit("extractArchive", files);
         return files;
     }
 }
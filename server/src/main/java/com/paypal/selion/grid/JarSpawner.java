@@ -19,6 +19,11 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashSet;
@@ -27,13 +32,10 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecuteResultHandler;
-import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.ExecuteException;
-import org.apache.commons.exec.PumpStreamHandler;
-import org.apache.commons.exec.ShutdownHookProcessDestroyer;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.SystemUtils;
 
 import static com.paypal.selion.pojos.SeLionGridConstants.*;
@@ -46,7 +48,18 @@ import com.paypal.selion.utils.ConfigParser;
  * This is a stand alone class which sets up SeLion dependencies and spawns {@link SeLionGridLauncher}. It also
  * continuously restarts {@link SeLionGridLauncher}, if it exits in an unexpected fashion. Heath checks for the
  * {@link SeLionGridLauncher} process are configurable via the property 'restartCycle' in the SeLion Grid JSON config
- * file.
+ * file. <br>
+ * <br>
+ * Two more properties of the SeLion Grid JSON config file make the restarts faster:
+ * <ul>
+ * <li>'warmStandby': when <code>true</code>, the next node process is started as soon as the current one is, and
+ * waits with its classes loaded and its configuration parsed. Once the current node exits, the standby binds the port
+ * and registers with the hub right away, instead of a new JVM being started from scratch.</li>
+ * <li>'classDataSharingArchive': the path of a class data sharing archive that the spawned JVMs map their classes
+ * from. When the archive does not exist, it is dumped by the next JVM to exit, into a temporary file that is moved in
+ * place once the JVM is gone. Warm standby processes never dump the archive. This needs a JVM that supports dynamic
+ * archives (Java 13 or newer); older JVMs ignore the options.</li>
+ * </ul>
  */
 public class JarSpawner {
 
@@ -56,8 +69,18 @@ public class JarSpawner {
     private static final String STANDALONE = "standalone";
     private static final String SAUCE = "sauce";
 
+    private static final String WARM_STANDBY = "warmStandby";
+    private static final String CLASS_DATA_SHARING_ARCHIVE = "classDataSharingArchive";
+    private static final String DUMP_SUFFIX = ".dump";
+    private static final String[] CLASS_DATA_SHARING_OPTIONS = { "-XX:+IgnoreUnrecognizedVMOptions", "-Xshare:",
+            "-XX:SharedArchiveFile=", "-XX:ArchiveClassesAtExit=" };
+
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(JarSpawner.class);
 
+    private boolean warmStandby;
+    private String classDataSharingArchive;
+    private ChildProcess standby;
+
     public static void main(String[] args) throws IOException, InterruptedException {
         List<String> commands = Arrays.asList(args);
         JarSpawner spawner = new JarSpawner();
@@ -69,10 +92,20 @@ public class JarSpawner {
             ConfigParser.setConfigFile(commands.get(commands.indexOf(SELION_CONFIG_ARG) + 1));
         }
 
-        long interval = ConfigParser.parse().getLong("restartCycle", 60000L);
+        ConfigParser config = ConfigParser.parse();
+        long interval = config.getLong("restartCycle", 60000L);
+        spawner.warmStandby = config.getBoolean(WARM_STANDBY, false);
+        spawner.classDataSharingArchive = config.getString(CLASS_DATA_SHARING_ARCHIVE, "");
         LOGGER.info("Restart cycle will check every " + interval + " ms");
         while (true) {
-            FileDownloader.checkForDownloads();
+            try {
+                if (FileDownloader.checkForDownloads()) {
+                    spawner.discardStartedFromPreviousArtifacts();
+                }
+            } catch (RuntimeException e) {
+                // Keep running with the artifacts at hand, the downloads are tried again on the next cycle.
+                LOGGER.log(Level.SEVERE, "Unable to download the artifacts of download.json: " + e.getMessage(), e);
+            }
             if (commands.contains(HELP_ARG) || commands.contains("-h")) {
                 spawner.continuouslyRestart(commands, 100, true);
                 spawner.printUsageInfo();
@@ -132,28 +165,32 @@ public class JarSpawner {
             InterruptedException {
         LOGGER.entering(new Object[] { commands.toString(), interval, squelch });
 
-        CommandLine cmdLine = createJavaCommandForChildProcess(commands);
+        CommandLine cmdLine = createJavaCommandForChildProcess(commands, false);
 
-        if (!squelch) {
-            LOGGER.info("Executing command " + cmdLine.toString());
+        ChildProcess child = takeStandby(cmdLine);
+        if (child != null) {
+            LOGGER.info("Activating the warm standby process");
+            child.activate();
+        } else {
+            if (!squelch) {
+                LOGGER.info("Executing command " + cmdLine.toString());
+            }
+            child = ChildProcess.start(cmdLine, false);
         }
 
-        DefaultExecutor executor = new DefaultExecutor();
-        executor.setStreamHandler(new PumpStreamHandler());
-        executor.setProcessDestroyer(new ShutdownHookProcessDestroyer());
-        DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler();
-        executor.execute(cmdLine, handler);
+        if (warmStandby && !squelch && NODE.equals(getType(commands))) {
+            LOGGER.info("Starting a warm standby process for the next restart");
+            standby = ChildProcess.start(createJavaCommandForChildProcess(commands, true), true);
+        }
 
-        while (!handler.hasResult()) {
+        while (!child.waitFor(interval)) {
             LOGGER.fine("Child process still running. Going back to sleep.");
-            Thread.sleep(interval);
         }
+        publishClassDataSharingArchive();
 
-        if (handler.hasResult()) {
-            ExecuteException e = handler.getException();
-            if (e != null) {
-                LOGGER.log(Level.SEVERE, handler.getException().getMessage(), handler.getException());
-            }
+        ExecuteException e = child.getException();
+        if (e != null) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
         if (!squelch) {
             LOGGER.info("Child process quit.");
@@ -163,16 +200,85 @@ public class JarSpawner {
     }
 
     /**
-     * This method load the default arguments required to spawn SeLion Grid/Node
-     *
-     * @param commands
-     *            command line arguments passed from User
-     * @return {@link CommandLine}
-     * @throws IOException
+     * @return the warm standby process if it can take over from a process spawned with the given command, or
+     *         <code>null</code>. The class data sharing options do not matter, the standby already loaded its classes.
      */
-    private CommandLine createJavaCommandForChildProcess(List<String> commands) throws IOException {
-        LOGGER.entering(commands.toString());
+    private ChildProcess takeStandby(CommandLine cmdLine) {
+        ChildProcess next = standby;
+        standby = null;
+        if (next == null) {
+            return null;
+        }
+        if (next.hasExited()
+                || !withoutClassDataSharing(next.getCommandLine()).equals(withoutClassDataSharing(cmdLine))) {
+            LOGGER.info("Discarding the warm standby process, it can no longer take over");
+            next.destroy();
+            return null;
+        }
+        return next;
+    }
+
+    /**
+     * Discards the warm standby process and the class data sharing archive once new artifacts were downloaded, since
+     * they were made from the previous ones.
+     */
+    private void discardStartedFromPreviousArtifacts() {
+        if (standby != null) {
+            standby.destroy();
+            standby = null;
+        }
+        if (StringUtils.isNotBlank(classDataSharingArchive)) {
+            FileUtils.deleteQuietly(new File(classDataSharingArchive));
+            FileUtils.deleteQuietly(new File(classDataSharingArchive + DUMP_SUFFIX));
+        }
+    }
+
+    /**
+     * Moves the class data sharing archive dumped by the process that just exited in place, so that the spawned JVMs
+     * never map a partially written archive.
+     */
+    private void publishClassDataSharingArchive() {
+        if (StringUtils.isBlank(classDataSharingArchive)) {
+            return;
+        }
+        File dump = new File(classDataSharingArchive + DUMP_SUFFIX);
+        if (!dump.isFile()) {
+            return;
+        }
+        try {
+            Path archive = new File(classDataSharingArchive).toPath();
+            try {
+                Files.move(dump.toPath(), archive, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {// NOSONAR
+                Files.move(dump.toPath(), archive, StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.info("Dumped the class data sharing archive " + archive);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Unable to move the class data sharing archive in place: " + e.getMessage(), e);
+            FileUtils.deleteQuietly(dump);
+        }
+    }
+
+    private static List<String> withoutClassDataSharing(CommandLine cmdLine) {
+        List<String> arguments = new ArrayList<String>();
+        for (String argument : cmdLine.toStrings()) {
+            if (!isClassDataSharingOption(argument)) {
+                arguments.add(argument);
+            }
+        }
+        return arguments;
+    }
+
+    private static boolean isClassDataSharingOption(String argument) {
+        for (String option : CLASS_DATA_SHARING_OPTIONS) {
+            if (argument.startsWith(option)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    private String getType(List<String> commands) {
         String type = STANDALONE;
         if (commands.contains(ROLE_ARG) && commands.contains(NODE)) {
             type = NODE;
@@ -180,6 +286,23 @@ public class JarSpawner {
         if (commands.contains(ROLE_ARG) && commands.contains(HUB)) {
             type = HUB;
         }
+        return type;
+    }
+
+    /**
+     * This method load the default arguments required to spawn SeLion Grid/Node
+     *
+     * @param commands
+     *            command line arguments passed from User
+     * @param standby
+     *            whether the command starts a warm standby process
+     * @return {@link CommandLine}
+     * @throws IOException
+     */
+    private CommandLine createJavaCommandForChildProcess(List<String> commands, boolean standby) throws IOException {
+        LOGGER.entering(commands.toString());
+
+        String type = getType(commands);
 
         // start command with java
         // TODO what if java is not in the PATH?
@@ -188,6 +311,9 @@ public class JarSpawner {
         // add the -D system properties
         cmdLine = addSystemPropertiesToCommandLine(type, cmdLine);
 
+        // map the classes from the class data sharing archive
+        cmdLine = addClassDataSharingToCommandLine(cmdLine, standby);
+
         // Set the classpath
         cmdLine = addClassPathToCommanLine(cmdLine);
 
@@ -257,6 +383,34 @@ public class JarSpawner {
         return cmdLine;
     }
 
+    /**
+     * Make the child process use the class data sharing archive, or dump it when it does not exist yet. The archive is
+     * dumped to a temporary file, see {@link #publishClassDataSharingArchive()}. A warm standby never dumps it: it
+     * shares the archive with the process it stands by for, and may be destroyed at any time. The options are ignored
+     * by the JVMs that do not know them.
+     * 
+     * @param cmdLine
+     *            the cmdLine we are building
+     * @param standby
+     *            whether the command starts a warm standby process
+     * @return the changed {@link CommandLine}
+     */
+    private CommandLine addClassDataSharingToCommandLine(CommandLine cmdLine, boolean standby) {
+        if (StringUtils.isBlank(classDataSharingArchive)) {
+            return cmdLine;
+        }
+        File archive = new File(classDataSharingArchive);
+        if (archive.isFile()) {
+            cmdLine.addArgument("-XX:+IgnoreUnrecognizedVMOptions");
+            cmdLine.addArgument("-Xshare:auto");
+            cmdLine.addArgument("-XX:SharedArchiveFile=" + archive.getAbsolutePath());
+        } else if (!standby) {
+            cmdLine.addArgument("-XX:+IgnoreUnrecognizedVMOptions");
+            cmdLine.addArgument("-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath() + DUMP_SUFFIX);
+        }
+        return cmdLine;
+    }
+
     /**
      * Configure required system properties to launch SeLion Grid/Node
      * 
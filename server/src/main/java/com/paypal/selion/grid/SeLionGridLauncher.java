@@ -21,7 +21,9 @@
 
 package com.paypal.selion.grid;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Logger;
 
 import org.openqa.grid.common.CommandLineOptionHelper;
@@ -52,12 +54,44 @@ public class SeLionGridLauncher {
 
     private static final Logger LOGGER = SeLionGridLogger.getLogger(SeLionGridLauncher.class);
 
+    private static final String[] WARM_UP_CLASSES = { "org.openqa.selenium.server.SeleniumServer",
+            "org.openqa.selenium.remote.server.DriverServlet", "org.openqa.selenium.remote.server.DefaultDriverFactory",
+            "org.openqa.selenium.remote.server.DefaultDriverSessions", "org.openqa.selenium.remote.BeanToJsonConverter",
+            "org.openqa.selenium.remote.JsonToBeanConverter", "org.openqa.selenium.firefox.FirefoxDriver",
+            "org.openqa.selenium.chrome.ChromeDriver", "org.openqa.selenium.ie.InternetExplorerDriver",
+            "org.openqa.selenium.safari.SafariDriver", "org.openqa.selenium.phantomjs.PhantomJSDriver",
+            "com.paypal.selion.node.servlets.NodeForceRestartServlet" };
+
     public static void printEnvironment() {
         LOGGER.info("Environment Variables: " + Arrays.asList(System.getenv()));
         LOGGER.info("JVM System Properties: " + Arrays.asList(System.getProperties()));
     }
 
+    /**
+     * Loads and initializes the classes that a node needs to serve its first session, so that a warm standby node does
+     * not have to once it is activated.
+     */
+    private static void warmUp(RegistrationRequest rr) {
+        List<String> classNames = new ArrayList<String>(Arrays.asList(WARM_UP_CLASSES));
+        Object servlets = rr.getConfiguration().get(RegistrationRequest.SERVLETS);
+        if (servlets != null) {
+            classNames.addAll(Arrays.asList(servlets.toString().split(",")));
+        }
+        for (String className : classNames) {
+            try {
+                Class.forName(className.trim());
+            } catch (ClassNotFoundException | LinkageError e) {// NOSONAR
+                // Not on the classpath of this node, so it will not be needed either.
+                LOGGER.fine("Unable to warm up " + className + ": " + e.getMessage());
+            }
+        }
+    }
+
     public static void main(String[] args) throws Exception {
+        if (ChildProcess.isStandby()) {
+            // before anything is logged, the log files belong to the active process for now
+            ChildProcess.suspendFileLogging();
+        }
         CommandLineOptionHelper helper = new CommandLineOptionHelper(args);
         
         if (helper.isParamPresent("-help") || helper.isParamPresent("-h")) {
@@ -92,6 +126,16 @@ public class SeLionGridLauncher {
                 LOGGER.info("Launching a selenium grid node");
                 final RegistrationRequest rr = RegistrationRequest.build(args);
                 final SelfRegisteringRemote remote = new SelfRegisteringRemote(rr);
+                if (ChildProcess.isStandby()) {
+                    warmUp(rr);
+                    LOGGER.info("Waiting as a warm standby");
+                    if (!ChildProcess.awaitActivation()) {
+                        LOGGER.info("The warm standby is no longer needed");
+                        return;
+                    }
+                    ChildProcess.resumeFileLogging();
+                    LOGGER.info("Warm standby activated");
+                }
                 remote.startRemoteServer();
                 remote.startRegistrationProcess();
                 break;
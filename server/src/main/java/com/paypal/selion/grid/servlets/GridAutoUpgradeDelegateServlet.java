@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 
 import javax.servlet.ServletException;
@@ -33,9 +34,13 @@ import org.openqa.grid.internal.Registry;
 import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.web.servlet.RegistryBasedServlet;
 
+import com.google.gson.JsonObject;
 import com.paypal.selion.logging.SeLionGridLogger;
 import com.paypal.selion.node.servlets.NodeAutoUpgradeServlet;
 import com.paypal.selion.pojos.SeLionGridConstants;
+import com.paypal.selion.proxy.NodeUpgradeOrchestrator;
+import com.paypal.selion.proxy.NodeUpgradeOrchestrator.Status;
+import com.paypal.selion.proxy.NodeUpgradeOrchestrator.Upgrade;
 import com.paypal.selion.proxy.SeLionRemoteProxy;
 import com.paypal.selion.utils.ServletHelper;
 
@@ -49,12 +54,19 @@ import com.paypal.selion.utils.ServletHelper;
  * <li>The checksum associated with the each of the artifacts so that it can be cross checked to ascertain validity of
  * the same.
  * </ul>
+ * The upgrade is rolled out in the background by the {@link NodeUpgradeOrchestrator}, a few nodes at a time (a tenth
+ * of the nodes unless the <code>maxDraining</code> parameter says otherwise). Its progress is available as json with
+ * the <code>status</code> parameter.
  * 
  */
 public class GridAutoUpgradeDelegateServlet extends RegistryBasedServlet {
 
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(GridAutoUpgradeDelegateServlet.class);
     private static final String IDS = "ids";
+    private static final String STATUS = "status";
+    private static final String CANCEL = "cancel";
+    private static final String MAX_DRAINING = "maxDraining";
+    private static final int DEFAULT_DRAINING_SHARE = 10;
     public static final String PARAM_JSON = "downloadJSON";
     private static final long serialVersionUID = 1L;
 
@@ -95,6 +107,17 @@ public class GridAutoUpgradeDelegateServlet extends RegistryBasedServlet {
             return;
         }
 
+        if (request.getParameter(CANCEL) != null) {
+            NodeUpgradeOrchestrator.getInstance().cancel();
+            showStatus(response);
+            return;
+        }
+
+        if (request.getParameter(STATUS) != null) {
+            showStatus(response);
+            return;
+        }
+
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
         response.setStatus(HttpStatus.SC_OK);
@@ -110,14 +133,11 @@ public class GridAutoUpgradeDelegateServlet extends RegistryBasedServlet {
             // only if the user has provided all
             // information for performing the upgrade.
 
-            List<String> pendingProxy = new ArrayList<String>();
+            List<SeLionRemoteProxy> proxies = new ArrayList<SeLionRemoteProxy>();
             if (idList == null) {
                 // there were no nodes that failed to auto upgrade
                 for (RemoteProxy eachProxy : this.getRegistry().getAllProxies()) {
-                    SeLionRemoteProxy proxy = (SeLionRemoteProxy) eachProxy;
-                    if (!proxy.release(downloadJSON)) {
-                        pendingProxy.add(proxy.getId());
-                    }
+                    proxies.add((SeLionRemoteProxy) eachProxy);
                 }
             } else {
                 // hmm.. there were one or more nodes that didn't go through
@@ -126,33 +146,25 @@ public class GridAutoUpgradeDelegateServlet extends RegistryBasedServlet {
                 for (String eachId : idList.split(",")) {
                     if (!eachId.trim().isEmpty()) {
                         SeLionRemoteProxy proxy = (SeLionRemoteProxy) getRegistry().getProxyById(eachId.trim());
-                        if ((proxy != null) && (!proxy.release(downloadJSON))) {
-                            pendingProxy.add(proxy.getId());
+                        if (proxy != null) {
+                            proxies.add(proxy);
                         }
                     }
                 }
             }
 
-            if (pendingProxy.size() > 0) {
-                writer.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Transitional//EN\" \"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd\">");
-                writer.write("<html xmlns=\"http://www.w3.org/1999/xhtml\">");
-                writer.write("<body id='main_body'>");
-                writer.write("<form id='myForm' name='myForm' class='appnitro' method='post' onsubmit='validateForm()' action='"
-                        + GridAutoUpgradeDelegateServlet.class.getSimpleName() + "' >");
-                String ids = "";
-                for (String temp : pendingProxy) {
-                    ids = ids + temp + ",";
-                }
-                writer.write("The following nodes were not auto upgraded: " + ids.substring(0, ids.length() - 2));
-                writer.write("<br>Click the Submit button to retry.");
-                writer.write("<input type='hidden' name='" + IDS + "' value='" + ids + "'>");
-                writer.write("<input type='hidden' name='" + PARAM_JSON + "' value='" + downloadJSON + "'>");
-                writer.write("<input id='saveForm' class='button_text' type='submit' name='submit' value='Submit' />");
-                writer.write("</form>");
-                writer.write("</body>");
-                writer.write("</html>");
+            int maxDraining = getMaxDraining(request.getParameter(MAX_DRAINING), proxies.size());
+            Upgrade upgrade = NodeUpgradeOrchestrator.getInstance().start(getRegistry(), proxies, downloadJSON,
+                    maxDraining);
+            String statusLink = "<a href='" + GridAutoUpgradeDelegateServlet.class.getSimpleName() + "?" + STATUS
+                    + "=true'>progress</a>";
+            if (upgrade == null) {
+                ServletHelper.displayMessageOnRedirect(writer, "An auto upgrade is already in progress, "
+                        + "please wait for it to complete. Check its " + statusLink + ".");
             } else {
-                ServletHelper.displayMessageOnRedirect(writer, "Auto upgrade process initiated on all nodes.");
+                ServletHelper.displayMessageOnRedirect(writer, "Auto upgrade process initiated on "
+                        + proxies.size() + " node(s), " + Math.min(maxDraining, proxies.size())
+                        + " at a time. Check its " + statusLink + ".");
             }
         } else {
             /*
@@ -163,6 +175,42 @@ public class GridAutoUpgradeDelegateServlet extends RegistryBasedServlet {
         }
     }
 
+    /**
+     * Writes the progress of the last auto upgrade as json. The nodes that did not go through with the upgrade can be
+     * upgraded again by posting their ids, comma separated, as the <code>ids</code> parameter. An upgrade that is in
+     * progress can be stopped with the <code>cancel</code> parameter.
+     */
+    private void showStatus(HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setStatus(HttpStatus.SC_OK);
+        Upgrade upgrade = NodeUpgradeOrchestrator.getInstance().getCurrent();
+        JsonObject status = (upgrade == null) ? new JsonObject() : upgrade.toJson();
+        if (upgrade != null) {
+            StringBuilder pending = new StringBuilder();
+            for (Map.Entry<String, Status> each : upgrade.getStatuses().entrySet()) {
+                if (each.getValue() == Status.REJECTED || each.getValue() == Status.FAILED
+                        || each.getValue() == Status.CANCELLED) {
+                    pending.append(each.getKey()).append(",");
+                }
+            }
+            status.addProperty(IDS, pending.toString());
+        }
+        response.getWriter().write(status.toString());
+    }
+
+    private int getMaxDraining(String maxDraining, int nodes) {
+        if (maxDraining != null && !maxDraining.trim().isEmpty()) {
+            try {
+                return Integer.parseInt(maxDraining.trim());
+            } catch (NumberFormatException e) { // NOSONAR
+                LOGGER.warning("Ignoring the invalid number of nodes to upgrade at once: " + maxDraining);
+            }
+        }
+        // by default a tenth of the grid is upgraded at once
+        return Math.max(1, (nodes + DEFAULT_DRAINING_SHARE - 1) / DEFAULT_DRAINING_SHARE);
+    }
+
     private void showDefaultPage(PrintWriter writer) throws IOException {
         String downloadJSON = "";
         try {
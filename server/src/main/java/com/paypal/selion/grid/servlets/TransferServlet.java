@@ -54,7 +54,7 @@ public class TransferServlet extends HttpServlet {
 
     public void doPost(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
             throws ServletException, java.io.IOException {
-        LOGGER.entering((Object)new Object[] { httpServletRequest, httpServletResponse });
+        LOGGER.traceEntry("doPost", new Object[] { httpServletRequest, httpServletResponse });
         try {
             TransferContext transferContext = new TransferContext(httpServletRequest, httpServletResponse);
             UploadRequestProcessor<ManagedArtifact> requestProcessor = getUploadRequestProcessor(transferContext);
@@ -70,12 +70,12 @@ public class TransferServlet extends HttpServlet {
              */
             handleExceptions(exe);
         }
-        LOGGER.exiting();
+        LOGGER.traceExit("doPost");
     }
 
     public void doGet(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse)
             throws ServletException, java.io.IOException {
-        LOGGER.entering((Object)new Object[] { httpServletRequest, httpServletResponse });
+        LOGGER.traceEntry("doGet", new Object[] { httpServletRequest, httpServletResponse });
         try {
             TransferContext transferContext = new TransferContext(httpServletRequest, httpServletResponse);
             DownloadRequestProcessor downloadRequestProcessor = new DownloadRequestProcessor();
@@ -91,7 +91,7 @@ public class TransferServlet extends HttpServlet {
              */
             handleExceptions(exe);
         }
-        LOGGER.exiting();
+        LOGGER.traceExit("doGet");
     }
 
     private void handleExceptions(Exception exe) throws IOException, ServletException {
@@ -110,7 +110,7 @@ public class TransferServlet extends HttpServlet {
      * @return Instance of {@link AbstractUploadRequestProcessor}.
      */
     private UploadRequestProcessor<ManagedArtifact> getUploadRequestProcessor(TransferContext transferContext) {
-        LOGGER.entering(transferContext);
+        LOGGER.traceEntry("getUploadRequestProcessor", transferContext);
         String contentType = transferContext.getHttpServletRequest().getContentType() != null ? transferContext
                 .getHttpServletRequest().getContentType().toLowerCase() : "unknown";
         if (contentType.contains(AbstractUploadRequestProcessor.MULTIPART_CONTENT_TYPE)) {
@@ -118,7 +118,7 @@ public class TransferServlet extends HttpServlet {
             // Return a Multipart request processor
             UploadRequestProcessor<ManagedArtifact> uploadRequestProcessor = new MultipartUploadRequestProcessor(
                     transferContext);
-            LOGGER.exiting(uploadRequestProcessor);
+            LOGGER.traceExit("getUploadRequestProcessor", uploadRequestProcessor);
             return uploadRequestProcessor;
         }
         if (contentType.contains(AbstractUploadRequestProcessor.APPLICATION_URLENCODED_CONTENT_TYPE)) {
@@ -126,7 +126,7 @@ public class TransferServlet extends HttpServlet {
             // Return normal Urlencoded request processor
             UploadRequestProcessor<ManagedArtifact> uploadRequestProcessor = new ApplicationUploadRequestProcessor(
                     transferContext);
-            LOGGER.exiting(uploadRequestProcessor);
+            LOGGER.traceExit("getUploadRequestProcessor", uploadRequestProcessor);
             return uploadRequestProcessor;
         }
         throw new ArtifactUploadException("Content-Type should be either: "
@@ -144,21 +144,21 @@ public class TransferServlet extends HttpServlet {
      * @return Instance of {@link AbstractUploadResponder}.
      */
     private UploadResponder<ManagedArtifact> getUploadResponder(TransferContext transferContext) {
-        LOGGER.entering(transferContext);
+        LOGGER.traceEntry("getUploadResponder", transferContext);
         UploadResponder<ManagedArtifact> uploadResponder = null;
         Class<? extends UploadResponder<ManagedArtifact>> uploadResponderClass = getResponderClass(transferContext
                 .getHttpServletRequest().getHeader("accept"));
         try {
             uploadResponder = uploadResponderClass.getConstructor(new Class[] { TransferContext.class }).newInstance(
                     new Object[] { transferContext });
-            LOGGER.exiting(uploadResponder);
+            LOGGER.traceExit("getUploadResponder", uploadResponder);
             return uploadResponder;
         } catch (Exception e) {
 
             // We cannot do any meaningful operation to handle this; catching exception and returning
             // default responder
             uploadResponder = new JsonUploadResponder(transferContext);
-            LOGGER.exiting(uploadResponder);
+            LOGGER.traceExit("getUploadResponder", uploadResponder);
             return uploadResponder;
         }
     }
@@ -21,12 +21,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.attribute.FileTime;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
@@ -40,7 +42,7 @@ import com.paypal.selion.utils.ConfigParser;
  * artifact is set to 'application/zip'. Expiry of the artifact is based on TTL (Time To Live) specified in milli
  * seconds. The configuration is read from Grid configuration system.
  */
-public class DefaultManagedArtifact implements ManagedArtifact {
+public class DefaultManagedArtifact implements FileBackedArtifact {
 
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(DefaultManagedArtifact.class);
 
@@ -60,15 +62,20 @@ public class DefaultManagedArtifact implements ManagedArtifact {
 
     private byte[] contents = null;
 
-    private final long timeToLiveInMillis;
+    /*
+     * SHA-1 digest of the contents, along with the last modified time and length of the file it was computed for
+     */
+    private volatile String[] digest = null;
+
+    /*
+     * When the artifact was last saved, once known. Artifacts may be hard links to contents shared with other artifacts,
+     * whose last modified time tells when the contents were first stored rather than when this artifact was saved.
+     */
+    private volatile long savedAt = 0;
 
     public DefaultManagedArtifact(String pathName) {
         this.filePath = pathName;
         artifactFile = new File(this.filePath);
-        timeToLiveInMillis = ConfigParser.parse().getLong(EXPIRY_CONFIG_PROPERTY);
-        if (LOGGER.isLoggable(Level.FINE)) {
-            LOGGER.log(Level.FINE, "Time To Live configured in Grid: " + timeToLiveInMillis + " milli seconds.");
-        }
     }
 
     public String getArtifactName() {
@@ -92,6 +99,58 @@ public class DefaultManagedArtifact implements ManagedArtifact {
         return parentFolderName;
     }
 
+    @Override
+    public File getArtifactFile() {
+        return artifactFile;
+    }
+
+    @Override
+    public String getDigest() {
+        String[] current = digest;
+        String version = artifactFile.lastModified() + ":" + artifactFile.length();
+        if (current == null || !current[1].equals(version)) {
+            try (InputStream is = new FileInputStream(artifactFile)) {
+                current = new String[] { DigestUtils.sha1Hex(is), version };
+            } catch (FileNotFoundException exe) {
+                throw new ArtifactDownloadException("FileNotFoundException in computing digest", exe);
+            } catch (IOException exe) {
+                throw new ArtifactDownloadException("IOException in computing digest", exe);
+            }
+            digest = current;
+        }
+        return current[0];
+    }
+
+    /**
+     * Remembers the digest computed while the contents were written, so that they are not read again to compute it.
+     */
+    void setDigest(String sha1Hex) {
+        digest = new String[] { sha1Hex, artifactFile.lastModified() + ":" + artifactFile.length() };
+    }
+
+    /**
+     * Remembers when the artifact was saved; its expiry is counted from then on rather than from the last modified time
+     * of its file.
+     */
+    void setSavedAt(long millis) {
+        savedAt = millis;
+    }
+
+    /**
+     * Returns when the artifact was saved, as recorded by {@link ManagedArtifactRepository} when it was saved, so that it
+     * is still known after the Hub restarted.
+     */
+    @Override
+    public long getSavedAt() {
+        long saved = savedAt;
+        if (saved == 0) {
+            File record = ManagedArtifactRepository.getInstance().getSaveRecord(artifactFile);
+            saved = (record == null) ? 0 : record.lastModified();
+            savedAt = saved;
+        }
+        return saved;
+    }
+
     @Override
     public byte[] getArtifactContents() {
         if (contents == null) {
@@ -102,30 +161,37 @@ public class DefaultManagedArtifact implements ManagedArtifact {
 
     @Override
     public <T extends Criteria> boolean matches(T criteria) {
-        LOGGER.entering(criteria);
+        LOGGER.traceEntry("matches", criteria);
         if (!criteria.getArtifactName().equals(getArtifactName())) {
-            LOGGER.exiting(false);
+            LOGGER.traceExit("matches", false);
             return false;
         }
         if (isApplicationFolderRequested(criteria) && applicationFolderAndUserIdMatches(criteria)) {
-            LOGGER.exiting(true);
+            LOGGER.traceExit("matches", true);
             return true;
         }
         boolean matches = !isApplicationFolderRequested(criteria) && userIdMatches(criteria);
-        LOGGER.exiting(matches);
+        LOGGER.traceExit("matches", matches);
         return matches;
     }
 
     @Override
     public boolean isExpired() {
-        boolean expired = (System.currentTimeMillis() - artifactFile.lastModified()) > timeToLiveInMillis;
+        // read on every check so that a reloaded configuration applies to artifacts that are already catalogued
+        long timeToLiveInMillis = ConfigParser.parse().getLong(EXPIRY_CONFIG_PROPERTY);
+        long created = getSavedAt();
+        if (created == 0) {
+            // saved before save times were recorded
+            created = artifactFile.lastModified();
+        }
+        boolean expired = (System.currentTimeMillis() - created) > timeToLiveInMillis;
         if (expired) {
             if (LOGGER.isLoggable(Level.INFO)) {
                 LOGGER.log(
                         Level.INFO,
                         "Artifact: " + getArtifactName() + " expired, time(now): "
                                 + FileTime.fromMillis(System.currentTimeMillis()) + ", created: "
-                                + FileTime.fromMillis(artifactFile.lastModified()));
+                                + FileTime.fromMillis(created));
             }
         }
         return expired;
@@ -173,8 +239,7 @@ public class DefaultManagedArtifact implements ManagedArtifact {
     }
 
     private void readContents() {
-        try {
-            BufferedInputStream bis = new BufferedInputStream(new FileInputStream(artifactFile));
+        try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(artifactFile))) {
             ByteArrayOutputStream bos = new ByteArrayOutputStream((int) artifactFile.length());
             IOUtils.copy(bis, bos);
             contents = bos.toByteArray();
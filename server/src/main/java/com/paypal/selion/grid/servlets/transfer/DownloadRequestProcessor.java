@@ -31,16 +31,16 @@ public class DownloadRequestProcessor {
     }
 
     public boolean isArtifactPresent(Criteria requestedCriteria) {
-        logger.entering();
+        logger.traceEntry("isArtifactPresent", requestedCriteria);
         boolean isPresentInRepository = serverRepository.isArtifactPresent(requestedCriteria);
-        logger.exiting(isPresentInRepository);
+        logger.traceExit("isArtifactPresent", isPresentInRepository);
         return isPresentInRepository;
     }
 
     public ManagedArtifact getArtifact(Criteria requestedCriteria) {
-        logger.entering(requestedCriteria);
+        logger.traceEntry("getArtifact", requestedCriteria);
         ManagedArtifact managedArtifact = serverRepository.getArtifact(requestedCriteria);
-        logger.exiting(managedArtifact);
+        logger.traceExit("getArtifact", managedArtifact);
         return managedArtifact;
     }
 
@@ -16,11 +16,20 @@
 package com.paypal.selion.grid.servlets.transfer;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.EnumMap;
 import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.io.IOUtils;
@@ -40,15 +49,27 @@ import com.paypal.selion.utils.ConfigParser;
  * URL = http://<domain-name>:<port>/servletPath/<userId>/<appliationFolder>/<artifactName>
  * }
  * </pre>
+ * 
+ * Artifacts stored as files ({@link FileBackedArtifact}) are served with an <code>ETag</code> (the digest of their
+ * contents) and, when the time they were saved is known, a <code>Last-Modified</code> header. Conditional requests (<code>If-None-Match</code>,
+ * <code>If-Modified-Since</code>) are answered with <code>304 Not Modified</code> when the client already has the
+ * artifact, and a single byte range (<code>Range</code>, optionally guarded by <code>If-Range</code>) is answered with
+ * <code>206 Partial Content</code> so that interrupted downloads can be resumed.
  */
 public class DownloadResponder {
 
     private static final String CONTENT_DISPOSITION = "Content-Disposition";
 
+    private static final String BYTES_UNIT = "bytes";
+
+    private static final Pattern BYTE_RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
     private static final String CRITERIA_CONFIG_PROPERTY = "managedCriteria";
 
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(DownloadResponder.class);
 
+    private HttpServletRequest httpServletRequest;
+
     private HttpServletResponse httpServletResponse;
 
     private DownloadRequestProcessor downloadRequestProcessor;
@@ -61,25 +82,170 @@ public class DownloadResponder {
 
     private byte[] contents;
 
+    private long contentLength;
+
     public DownloadResponder(TransferContext transferContext) {
         super();
+        this.httpServletRequest = transferContext.getHttpServletRequest();
         this.httpServletResponse = transferContext.getHttpServletResponse();
         this.downloadRequestProcessor = transferContext.getDownloadRequestProcessor();
         this.pathInfo = transferContext.getHttpServletRequest().getPathInfo();
     }
 
     public void respond() {
-        LOGGER.entering();
+        LOGGER.traceEntry("respond");
         formCriteria();
         managedArtifact = downloadRequestProcessor.getArtifact(requestedCriteria);
-        contents = managedArtifact.getArtifactContents();
-        setResponseMetadata();
         try {
-            IOUtils.copy(new ByteArrayInputStream(contents), httpServletResponse.getOutputStream());
+            if (managedArtifact instanceof FileBackedArtifact) {
+                respondWithFile((FileBackedArtifact) managedArtifact);
+            } else {
+                contents = managedArtifact.getArtifactContents();
+                contentLength = contents.length;
+                setResponseMetadata();
+                IOUtils.copy(new ByteArrayInputStream(contents), httpServletResponse.getOutputStream());
+            }
         } catch (IOException e) {
             throw new ArtifactDownloadException("IOException in writing to servlet response", e);
         }
-        LOGGER.exiting();
+        LOGGER.traceExit("respond");
+    }
+
+    /*
+     * Transfers the file to the response through its channel, so the artifact is never held in memory whatever its
+     * size.
+     */
+    private void respondWithFile(FileBackedArtifact fileBackedArtifact) throws IOException {
+        File file = fileBackedArtifact.getArtifactFile();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            String entityTag = "\"" + fileBackedArtifact.getDigest() + "\"";
+            // not the last modified time of the file, which is shared with every artifact of the same contents
+            long lastModified = fileBackedArtifact.getSavedAt();
+            httpServletResponse.setHeader("ETag", entityTag);
+            if (lastModified > 0) {
+                httpServletResponse.setDateHeader("Last-Modified", lastModified);
+            }
+            httpServletResponse.setHeader("Accept-Ranges", BYTES_UNIT);
+            if (isNotModified(entityTag, lastModified)) {
+                httpServletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            long first = 0;
+            long last = length - 1;
+            long[] range = getRequestedRange(entityTag, lastModified, length);
+            if (range != null) {
+                if (range.length == 0) {
+                    httpServletResponse.setHeader("Content-Range", BYTES_UNIT + " */" + length);
+                    httpServletResponse.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                first = range[0];
+                last = range[1];
+                httpServletResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                httpServletResponse.setHeader("Content-Range", BYTES_UNIT + " " + first + "-" + last + "/" + length);
+            }
+            contentLength = last - first + 1;
+            setResponseMetadata();
+            WritableByteChannel out = Channels.newChannel(httpServletResponse.getOutputStream());
+            long position = first;
+            while (position <= last) {
+                position += channel.transferTo(position, last - position + 1, out);
+            }
+        } catch (NoSuchFileException e) {
+            throw new ArtifactDownloadException("The requested artifact: " + managedArtifact.getArtifactName()
+                    + " was deleted", e);
+        }
+    }
+
+    /*
+     * If-None-Match takes precedence over If-Modified-Since, which has a granularity of one second and is only
+     * honoured when the time the artifact was saved is known.
+     */
+    private boolean isNotModified(String entityTag, long lastModified) {
+        String ifNoneMatch = httpServletRequest.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return matchesEntityTag(ifNoneMatch, entityTag);
+        }
+        long ifModifiedSince = getDateHeader("If-Modified-Since");
+        return lastModified > 0 && ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    private boolean matchesEntityTag(String headerValue, String entityTag) {
+        for (String candidate : headerValue.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if ("*".equals(candidate) || entityTag.equals(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns null to send the whole artifact, the first and last byte positions of a single satisfiable range, or an
+     * empty array when the range cannot be satisfied. Multiple ranges are not supported and get the whole artifact,
+     * which HTTP allows.
+     */
+    private long[] getRequestedRange(String entityTag, long lastModified, long length) {
+        String rangeHeader = httpServletRequest.getHeader("Range");
+        if (StringUtils.isBlank(rangeHeader) || !isRangeStillValid(entityTag, lastModified)) {
+            return null;
+        }
+        Matcher matcher = BYTE_RANGE.matcher(rangeHeader.trim());
+        if (!matcher.matches() || (matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+            return null;
+        }
+        try {
+            long first;
+            long last;
+            if (matcher.group(1).isEmpty()) {
+                // A suffix range: the last n bytes
+                long suffix = Long.parseLong(matcher.group(2));
+                if (suffix == 0) {
+                    return new long[0];
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(matcher.group(1));
+                last = matcher.group(2).isEmpty() ? length - 1 : Math.min(Long.parseLong(matcher.group(2)),
+                        length - 1);
+            }
+            if (first >= length || first > last) {
+                return new long[0];
+            }
+            return new long[] { first, last };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /*
+     * A range guarded with If-Range only applies when the client's copy is still the current one.
+     */
+    private boolean isRangeStillValid(String entityTag, long lastModified) {
+        String ifRange = httpServletRequest.getHeader("If-Range");
+        if (StringUtils.isBlank(ifRange)) {
+            return true;
+        }
+        if (ifRange.trim().startsWith("\"") || ifRange.trim().startsWith("W/")) {
+            return entityTag.equals(ifRange.trim());
+        }
+        long ifRangeDate = getDateHeader("If-Range");
+        return lastModified > 0 && ifRangeDate >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+    }
+
+    private long getDateHeader(String name) {
+        try {
+            return httpServletRequest.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            // Unparsable dates are ignored, as if the header was not sent.
+            return -1;
+        }
     }
 
     private Criteria formCriteria() {
@@ -138,7 +304,11 @@ public class DownloadResponder {
 
     private void setResponseMetadata() {
         httpServletResponse.setContentType(managedArtifact.getHttpContentType());
-        httpServletResponse.setContentLength(contents.length);
+        if (contentLength <= Integer.MAX_VALUE) {
+            httpServletResponse.setContentLength((int) contentLength);
+        } else {
+            httpServletResponse.setHeader("Content-Length", Long.toString(contentLength));
+        }
         httpServletResponse.setHeader(CONTENT_DISPOSITION, "attachment; filename=" + managedArtifact.getArtifactName());
     }
 
@@ -0,0 +1,52 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid.servlets.transfer;
+
+import java.io.File;
+
+/**
+ * A {@link ManagedArtifact} that is stored as a file of the repository. {@link DownloadResponder} streams such
+ * artifacts from their file instead of reading their contents in memory with
+ * {@link ManagedArtifact#getArtifactContents()}.
+ */
+public interface FileBackedArtifact extends ManagedArtifact {
+
+    /**
+     * Returns the file the artifact is stored in.
+     * 
+     * @return File of the artifact.
+     */
+    File getArtifactFile();
+
+    /**
+     * Returns a digest of the contents of the artifact. Two artifacts with the same digest have the same contents, so
+     * it is used as the entity tag of downloads.
+     * 
+     * @return Hex encoded digest of the contents.
+     */
+    String getDigest();
+
+    /**
+     * Returns when the artifact was saved. The file of the artifact may be shared with other artifacts of the same
+     * contents, so its last modified time tells when the contents were first stored rather than when the artifact was
+     * saved.
+     * 
+     * @return The time the artifact was saved in milliseconds since the epoch, or 0 when it is not known.
+     */
+    long getSavedAt();
+
+}
@@ -15,17 +15,39 @@
 
 package com.paypal.selion.grid.servlets.transfer;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.lang.reflect.InvocationTargetException;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.lang3.StringUtils;
 
@@ -38,8 +60,25 @@ import com.paypal.selion.utils.ConfigParser;
  * and {@link Criteria}. The class is essentially a Singleton pattern. The class implements a {@link Timer} task that
  * will run a cleaner thread that runs every hour to clean the artifacts inside the repository folder. All artifacts
  * that have {@link ManagedArtifact#isExpired()} returning true are considered for removal during the cleaning cycle.
+ * <br>
+ * <br>
+ * Lookups are served from an in-memory catalogue of the repository, keyed by user id, application folder and artifact
+ * name. The catalogue is built from the repository folder on first use, kept up to date as artifacts are saved, and
+ * rebuilt every time the cleaner runs.
+ * <br>
+ * <br>
+ * Contents are stored once per digest in a content-addressed blob store (the <code>.blobs</code> folder of the
+ * repository). The artifact of a user is a hard link to its blob, or a copy where the file system does not support hard
+ * links, so identical uploads of several users take the disk space of one. Once the cleaner has deleted the expired
+ * artifacts, it deletes the blobs that no artifact references anymore. Clients that know the digest of an artifact may
+ * ask for it to be saved by reference with {@link #saveReference(UploadedArtifact)} instead of uploading it again.
+ * <br>
+ * <br>
+ * Since the file of an artifact shares its last modified time with its blob, the time every artifact was saved is
+ * recorded separately, as the last modified time of an empty file at the same path under the <code>.saved</code>
+ * folder of the repository. It outlives restarts of the Hub, and the cleaner deletes it along with its artifact.
  */
-public class ManagedArtifactRepository implements ServerRepository<ManagedArtifact, Criteria> {
+public class ManagedArtifactRepository implements ReferenceSavingRepository<ManagedArtifact, Criteria> {
 
     /*
      * The folder used for storing artifacts. Make sure this folder is available in the classpath or this string is
@@ -52,16 +91,47 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
      */
     private static final String ARTIFACT_CONFIG_PROPERTY = "managedArtifact";
 
+    /*
+     * Suffix of the temporary files that uploads are written to before being renamed into place
+     */
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private static final String DIGEST_ALGORITHM = "SHA-1";
+
+    /*
+     * The folder of the repository where contents are stored by digest
+     */
+    private static final String BLOBS_FOLDER_NAME = ".blobs";
+
+    /*
+     * The folder of the repository where the time every artifact was saved is recorded
+     */
+    private static final String SAVE_RECORDS_FOLDER_NAME = ".saved";
+
+    private static final Pattern DIGEST_PATTERN = Pattern.compile("[0-9a-f]{40}");
+
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(ManagedArtifactRepository.class);
 
     private static ManagedArtifactRepository instance = new ManagedArtifactRepository();
 
     private File repoFolder = null;
 
+    private File blobsFolder = null;
+
+    private File saveRecordsFolder = null;
+
     /*
-     * Lock used for synchronizing reading and deletion cycles
+     * Lock used for synchronizing reading and deletion cycles. Lookups and saves share the read lock, the cleaner takes
+     * the write lock.
      */
-    private Lock repositorySynchronizationLock = null;
+    private ReadWriteLock repositorySynchronizationLock = null;
+
+    /*
+     * The artifacts of the repository by user id, application folder and artifact name
+     */
+    private final ConcurrentMap<ArtifactKey, ManagedArtifact> catalogue = new ConcurrentHashMap<>();
+
+    private volatile boolean catalogued = false;
 
     /*
      * Cleaner thread timer
@@ -74,7 +144,9 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
 
     private ManagedArtifactRepository() {
         repoFolder = new File(SeLionGridConstants.SELION_HOME_DIR + File.separator + REPO_FOLDER_NAME);
-        repositorySynchronizationLock = new ReentrantLock();
+        blobsFolder = new File(repoFolder, BLOBS_FOLDER_NAME);
+        saveRecordsFolder = new File(repoFolder, SAVE_RECORDS_FOLDER_NAME);
+        repositorySynchronizationLock = new ReentrantReadWriteLock();
         timer = new Timer();
 
         // Schedule the cleaner one hour from now and every hour thereafter
@@ -85,20 +157,71 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
 
     @Override
     public ManagedArtifact saveContents(UploadedArtifact uploadedArtifact) {
+        ensureCatalogued();
         synchronized (getMutex(uploadedArtifact)) {
-            LOGGER.entering(uploadedArtifact);
-            File file = createFileUsing(uploadedArtifact);
             try {
-                FileUtils.writeByteArrayToFile(file, uploadedArtifact.getArtifactContents());
-                ManagedArtifact managedArtifact = getManagedArtifact(file.getAbsolutePath());
-                LOGGER.exiting(managedArtifact);
+                repositorySynchronizationLock.readLock().lock();
+                LOGGER.traceEntry("saveContents", uploadedArtifact);
+                File blob = storeBlob(uploadedArtifact.getArtifactStream());
+                uploadedArtifact.setDigest(blob.getName());
+                ManagedArtifact managedArtifact = saveEntry(uploadedArtifact, blob);
+                LOGGER.traceExit("saveContents", managedArtifact);
                 return managedArtifact;
             } catch (IOException e) {
                 throw new ArtifactUploadException("IOException in writing file contents", e);
+            } finally {
+                repositorySynchronizationLock.readLock().unlock();
             }
         }
     }
 
+    @Override
+    public ManagedArtifact saveReference(UploadedArtifact uploadedArtifact) {
+        String digest = StringUtils.lowerCase(uploadedArtifact.getDigest());
+        if (digest == null || !DIGEST_PATTERN.matcher(digest).matches()) {
+            throw new ArtifactUploadException("Invalid " + DIGEST_ALGORITHM + " digest: " + digest);
+        }
+        ensureCatalogued();
+        synchronized (getMutex(uploadedArtifact)) {
+            try {
+                repositorySynchronizationLock.readLock().lock();
+                LOGGER.traceEntry("saveReference", uploadedArtifact);
+                File blob = new File(blobsFolder, digest);
+                if (!blob.isFile()) {
+                    LOGGER.traceExit("saveReference", (Object) null);
+                    return null;
+                }
+                uploadedArtifact.setDigest(digest);
+                ManagedArtifact managedArtifact = saveEntry(uploadedArtifact, blob);
+                LOGGER.traceExit("saveReference", managedArtifact);
+                return managedArtifact;
+            } catch (IOException e) {
+                throw new ArtifactUploadException("IOException in referencing file contents", e);
+            } finally {
+                repositorySynchronizationLock.readLock().unlock();
+            }
+        }
+    }
+
+    /*
+     * Makes the blob the artifact of the user and catalogues it. Must be called with the read lock held.
+     */
+    private ManagedArtifact saveEntry(UploadedArtifact uploadedArtifact, File blob) throws IOException {
+        File file = createFileUsing(uploadedArtifact);
+        // the file may be a link to contents stored long ago, the artifact itself is new
+        long savedAt = System.currentTimeMillis();
+        writeSaveRecord(file, savedAt);
+        linkAtomically(blob, file);
+        ManagedArtifact managedArtifact = getManagedArtifact(file.getAbsolutePath());
+        if (managedArtifact instanceof DefaultManagedArtifact) {
+            ((DefaultManagedArtifact) managedArtifact).setDigest(blob.getName());
+            ((DefaultManagedArtifact) managedArtifact).setSavedAt(savedAt);
+        }
+        catalogue.put(new ArtifactKey(uploadedArtifact.getUserId(), uploadedArtifact.getApplicationFolderName(),
+                file.getName()), managedArtifact);
+        return managedArtifact;
+    }
+
     @Override
     public boolean isArtifactPresent(Criteria requestedCriteria) {
 
@@ -109,18 +232,19 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
          * an artifact by caching the request for an artifact for a particular time (use cache of guava lib).
          */
         boolean artifactPresent = false;
+        ensureCatalogued();
         try {
-            repositorySynchronizationLock.lock();
-            LOGGER.entering(requestedCriteria);
+            repositorySynchronizationLock.readLock().lock();
+            LOGGER.traceEntry("isArtifactPresent", requestedCriteria);
             ManagedArtifact managedArtifact = getMatch(requestedCriteria);
             artifactPresent = !managedArtifact.isExpired();
-            LOGGER.exiting(artifactPresent);
+            LOGGER.traceExit("isArtifactPresent", artifactPresent);
         } catch (ArtifactDownloadException exe) {
 
             // Log and return false
             LOGGER.log(Level.WARNING, "No matching artifact", exe);
         } finally {
-            repositorySynchronizationLock.unlock();
+            repositorySynchronizationLock.readLock().unlock();
         }
         return artifactPresent;
     }
@@ -132,18 +256,19 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
          * This method does not guarantee the presence of an artifact after isArtifactPresent() is called on an
          * artifact. This is because the cleaner thread could have deleted a expired artifact in between the calls.
          */
+        ensureCatalogued();
         try {
-            repositorySynchronizationLock.lock();
-            LOGGER.entering(requestedCriteria);
+            repositorySynchronizationLock.readLock().lock();
+            LOGGER.traceEntry("getArtifact", requestedCriteria);
             ManagedArtifact managedArtifact = getMatch(requestedCriteria);
             if (managedArtifact.isExpired()) {
                 throw new ArtifactDownloadException("The requested artifact: " + managedArtifact.getArtifactName()
                         + " has expired");
             }
-            LOGGER.exiting(managedArtifact);
+            LOGGER.traceExit("getArtifact", managedArtifact);
             return managedArtifact;
         } finally {
-            repositorySynchronizationLock.unlock();
+            repositorySynchronizationLock.readLock().unlock();
         }
     }
 
@@ -157,33 +282,182 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
     }
 
     private ManagedArtifact getMatch(final Criteria criteria) {
-        List<File> files = (List<File>) FileUtils.listFiles(repoFolder, TrueFileFilter.INSTANCE,
-                TrueFileFilter.INSTANCE);
-        for (File file : files) {
-            ManagedArtifact managedArtifact = getManagedArtifact(file.getAbsolutePath());
-            if (managedArtifact.matches(criteria)) {
-                return managedArtifact;
-            }
+        ManagedArtifact managedArtifact = catalogue.get(new ArtifactKey(criteria.getUserId(),
+                criteria.getApplicationFolder(), criteria.getArtifactName()));
+        if (managedArtifact != null && managedArtifact.matches(criteria)) {
+            return managedArtifact;
         }
         throw new ArtifactDownloadException("No artifact found for criteria, name: " + criteria.getArtifactName()
                 + ", userId: " + criteria.getUserId() + ", applicationFolder: " + criteria.getApplicationFolder());
     }
 
+    /*
+     * Builds the catalogue the first time the repository is used.
+     */
+    private void ensureCatalogued() {
+        if (catalogued) {
+            return;
+        }
+        try {
+            repositorySynchronizationLock.writeLock().lock();
+            if (!catalogued) {
+                buildCatalogue();
+                catalogued = true;
+            }
+        } finally {
+            repositorySynchronizationLock.writeLock().unlock();
+        }
+    }
+
+    /*
+     * Replaces the catalogue with the artifacts found in the repository folder. Must be called with the write lock held.
+     */
+    private void buildCatalogue() {
+        Map<ArtifactKey, ManagedArtifact> previous = new HashMap<>(catalogue);
+        catalogue.clear();
+        for (File file : listRepositoryFiles()) {
+            if (file.getName().endsWith(PARTIAL_SUFFIX)) {
+                // An upload in progress, or one that was interrupted and is left for the cleaner
+                continue;
+            }
+            ArtifactKey key = ArtifactKey.forFile(repoFolder, file);
+            if (key != null) {
+                // Keep the artifacts that are still around, along with whatever they cached (their digest for one)
+                ManagedArtifact managedArtifact = previous.get(key);
+                if (!(managedArtifact instanceof FileBackedArtifact)
+                        || !((FileBackedArtifact) managedArtifact).getArtifactFile().equals(file.getAbsoluteFile())) {
+                    managedArtifact = getManagedArtifact(file.getAbsolutePath());
+                }
+                catalogue.put(key, managedArtifact);
+            }
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.log(Level.FINE, "Catalogued " + catalogue.size() + " artifacts in " + repoFolder);
+        }
+    }
+
+    /*
+     * Returns the catalogued artifact of a file, which knows when it was saved, or a new artifact for files that are
+     * not catalogued.
+     */
+    private ManagedArtifact getCatalogued(File file) {
+        ArtifactKey key = ArtifactKey.forFile(repoFolder, file);
+        ManagedArtifact managedArtifact = (key == null) ? null : catalogue.get(key);
+        if (managedArtifact instanceof FileBackedArtifact
+                && ((FileBackedArtifact) managedArtifact).getArtifactFile().equals(file.getAbsoluteFile())) {
+            return managedArtifact;
+        }
+        return getManagedArtifact(file.getAbsolutePath());
+    }
+
+    private Collection<File> listRepositoryFiles() {
+        if (!repoFolder.isDirectory()) {
+            return new ArrayList<File>();
+        }
+        return FileUtils.listFiles(repoFolder, TrueFileFilter.INSTANCE, FileFilterUtils.notFileFilter(FileFilterUtils
+                .or(FileFilterUtils.nameFileFilter(BLOBS_FOLDER_NAME),
+                        FileFilterUtils.nameFileFilter(SAVE_RECORDS_FOLDER_NAME))));
+    }
+
+    /**
+     * Returns the file whose last modified time records when an artifact of the repository was saved.
+     * 
+     * @param artifactFile
+     *            the file of the artifact.
+     * @return the record of the artifact, which may not exist, or <code>null</code> if the file is not in the
+     *         repository.
+     */
+    File getSaveRecord(File artifactFile) {
+        Path repoPath = repoFolder.getAbsoluteFile().toPath().normalize();
+        Path artifactPath = artifactFile.getAbsoluteFile().toPath().normalize();
+        if (!artifactPath.startsWith(repoPath) || artifactPath.equals(repoPath)) {
+            return null;
+        }
+        return new File(saveRecordsFolder, repoPath.relativize(artifactPath).toString());
+    }
+
+    private void writeSaveRecord(File file, long savedAt) throws IOException {
+        File record = getSaveRecord(file);
+        FileUtils.touch(record);
+        if (!record.setLastModified(savedAt)) {
+            throw new IOException("Unable to record when " + file.getName() + " was saved");
+        }
+    }
+
     private File createFileUsing(UploadedArtifact uploadedArtifact) {
-        String fileName = null;
+        String fileName = uploadedArtifact.getArtifactPartName();
+        File file = createUserFolder(uploadedArtifact.getUserId());
+        if (!StringUtils.isBlank(uploadedArtifact.getApplicationFolderName())) {
+            file = createApplicationFolder(file, uploadedArtifact.getApplicationFolderName());
+        }
+        if (!file.isDirectory()) {
+            throw new ArtifactUploadException("Cannot create folder for file with name: " + fileName);
+        }
+        return new File(file, fileName);
+    }
+
+    /*
+     * Copies the contents to a temporary file of the blob store, digesting them on the way, then renames the temporary
+     * file to its digest unless a blob with the same digest is already stored. Returns the blob.
+     */
+    private File storeBlob(InputStream contents) throws IOException {
+        if (!(blobsFolder.isDirectory() || blobsFolder.mkdirs())) {
+            throw new ArtifactUploadException("Cannot create folder: " + blobsFolder);
+        }
+        Path partial = Files.createTempFile(blobsFolder.toPath(), "upload", PARTIAL_SUFFIX);
         try {
-            fileName = uploadedArtifact.getArtifactPartName();
-            File file = createUserFolder(uploadedArtifact.getUserId());
-            if (!StringUtils.isBlank(uploadedArtifact.getApplicationFolderName())) {
-                file = createApplicationFolder(file, uploadedArtifact.getApplicationFolderName());
+            MessageDigest messageDigest = newDigest();
+            try (OutputStream out = new DigestOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(partial)), messageDigest)) {
+                IOUtils.copyLarge(contents, out);
             }
-            file = new File(file, fileName);
-            if (!(file.exists() || file.createNewFile())) {
-                throw new ArtifactUploadException("Cannot create file with name: " + fileName);
+            File blob = new File(blobsFolder, Hex.encodeHexString(messageDigest.digest()));
+            if (!blob.isFile()) {
+                moveAtomically(partial, blob.toPath());
+            } else if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Contents already stored as " + blob.getName());
             }
-            return file;
-        } catch (IOException e) {
-            throw new ArtifactUploadException("IOException in creating file: " + fileName, e);
+            return blob;
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /*
+     * Links (or copies) the blob to a temporary file next to the target, then renames it over the target. Readers see
+     * either the previous artifact or the new one, never a partial file. The blob is left untouched: hard links share
+     * their last modified time, so touching it would extend the life of every other artifact linked to it. The expiry
+     * of the new artifact is tracked by the catalogue instead.
+     */
+    private void linkAtomically(File blob, File file) throws IOException {
+        Path partial = Files.createTempFile(file.getParentFile().toPath(), "." + file.getName(), PARTIAL_SUFFIX);
+        try {
+            Files.delete(partial);
+            try {
+                Files.createLink(partial, blob.toPath());
+            } catch (UnsupportedOperationException | FileSystemException e) {// NOSONAR
+                // No hard links here, settle for a copy
+                Files.copy(blob.toPath(), partial, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moveAtomically(partial, file.toPath());
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new ArtifactUploadException(DIGEST_ALGORITHM + " is not available", e);
         }
     }
 
@@ -228,26 +502,95 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
         @Override
         public void run() {
             try {
-                repositorySynchronizationLock.lock();
+                repositorySynchronizationLock.writeLock().lock();
                 deleteExpiredFiles();
+                deleteOrphanedSaveRecords();
                 deleteEmptyDirectories(repoFolder);
+                // Pick up whatever changed in the repository folder behind our back.
+                buildCatalogue();
+                catalogued = true;
+                deleteUnreferencedBlobs();
             } finally {
-                repositorySynchronizationLock.unlock();
+                repositorySynchronizationLock.writeLock().unlock();
             }
         }
 
         private void deleteExpiredFiles() {
-            List<File> files = (List<File>) FileUtils.listFiles(repoFolder, TrueFileFilter.INSTANCE,
-                    TrueFileFilter.INSTANCE);
-            for (File file : files) {
-                ManagedArtifact managedArtifact = getManagedArtifact(file.getAbsolutePath());
+            for (File file : listRepositoryFiles()) {
+                ManagedArtifact managedArtifact = getCatalogued(file);
                 if (managedArtifact.isExpired() && !file.delete()) {
                     LOGGER.log(Level.WARNING, "File: " + file.getName() + " not deleted from repository");
                 }
             }
         }
 
+        private void deleteOrphanedSaveRecords() {
+            if (!saveRecordsFolder.isDirectory()) {
+                return;
+            }
+            for (File record : FileUtils.listFiles(saveRecordsFolder, TrueFileFilter.INSTANCE, TrueFileFilter.INSTANCE)) {
+                File file = new File(repoFolder, saveRecordsFolder.toPath().relativize(record.toPath()).toString());
+                if (!file.exists() && !record.delete()) {
+                    LOGGER.log(Level.WARNING, "Record: " + record.getName() + " not deleted from repository");
+                }
+            }
+        }
+
+        /*
+         * A blob is referenced as long as an artifact is a hard link to it. Where link counts are not available, or the
+         * artifacts are copies, the digests of the catalogued artifacts tell.
+         */
+        private void deleteUnreferencedBlobs() {
+            File[] blobs = blobsFolder.listFiles();
+            if (blobs == null) {
+                return;
+            }
+            Set<String> referencedDigests = null;
+            for (File blob : blobs) {
+                if (getLinkCount(blob) > 1) {
+                    continue;
+                }
+                if (!blob.getName().endsWith(PARTIAL_SUFFIX)) {
+                    if (referencedDigests == null) {
+                        referencedDigests = getReferencedDigests();
+                    }
+                    if (referencedDigests.contains(blob.getName())) {
+                        continue;
+                    }
+                }
+                if (!blob.delete()) {
+                    LOGGER.log(Level.WARNING, "Blob: " + blob.getName() + " not deleted from repository");
+                }
+            }
+        }
+
+        private int getLinkCount(File blob) {
+            try {
+                return ((Number) Files.getAttribute(blob.toPath(), "unix:nlink")).intValue();
+            } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {// NOSONAR
+                // Not a unix file system; fall back on digests.
+                return 0;
+            }
+        }
+
+        private Set<String> getReferencedDigests() {
+            Set<String> digests = new HashSet<>();
+            for (ManagedArtifact managedArtifact : catalogue.values()) {
+                if (managedArtifact instanceof FileBackedArtifact) {
+                    try {
+                        digests.add(((FileBackedArtifact) managedArtifact).getDigest());
+                    } catch (ArtifactDownloadException e) {
+                        LOGGER.log(Level.WARNING, "No digest for " + managedArtifact, e);
+                    }
+                }
+            }
+            return digests;
+        }
+
         private void deleteEmptyDirectories(File directory) {
+            if (!directory.isDirectory()) {
+                return;
+            }
             for (File file : directory.listFiles()) {
                 if (file.isDirectory()) {
                     if (!isDirectoryEmpty(file)) {
@@ -268,4 +611,65 @@ public class ManagedArtifactRepository implements ServerRepository<ManagedArtifa
 
     }
 
+    /**
+     * Identifies an artifact of the repository the way a {@link Criteria} does: by user id, optional application folder
+     * and artifact name.
+     */
+    private static final class ArtifactKey {
+
+        private final String userId;
+
+        private final String applicationFolder;
+
+        private final String artifactName;
+
+        ArtifactKey(String userId, String applicationFolder, String artifactName) {
+            this.userId = userId;
+            this.applicationFolder = StringUtils.isBlank(applicationFolder) ? null : applicationFolder;
+            this.artifactName = artifactName;
+        }
+
+        /**
+         * Returns the key of a file saved in the repository as <code>userId/artifactName</code> or
+         * <code>userId/applicationFolder/artifactName</code>, or <code>null</code> for any other file.
+         */
+        static ArtifactKey forFile(File repoFolder, File file) {
+            File folder = file.getParentFile();
+            if (folder == null || folder.equals(repoFolder)) {
+                return null;
+            }
+            File parentFolder = folder.getParentFile();
+            if (repoFolder.equals(parentFolder)) {
+                return new ArtifactKey(folder.getName(), null, file.getName());
+            }
+            if (parentFolder != null && repoFolder.equals(parentFolder.getParentFile())) {
+                return new ArtifactKey(parentFolder.getName(), folder.getName(), file.getName());
+            }
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ArtifactKey)) {
+                return false;
+            }
+            ArtifactKey otherKey = (ArtifactKey) other;
+            return StringUtils.equals(userId, otherKey.userId)
+                    && StringUtils.equals(applicationFolder, otherKey.applicationFolder)
+                    && StringUtils.equals(artifactName, otherKey.artifactName);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 17;
+            result = 31 * result + (userId != null ? userId.hashCode() : 0);
+            result = 31 * result + (applicationFolder != null ? applicationFolder.hashCode() : 0);
+            result = 31 * result + (artifactName != null ? artifactName.hashCode() : 0);
+            return result;
+        }
+    }
+
 }
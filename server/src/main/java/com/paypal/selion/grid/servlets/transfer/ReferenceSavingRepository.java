@@ -0,0 +1,42 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+package com.paypal.selion.grid.servlets.transfer;
+
+/**
+ * <code>ReferenceSavingRepository</code> is a {@link ServerRepository} that can save an artifact by reference to
+ * contents it already stores, so that clients need not upload the same contents again. Implementing it is optional;
+ * uploads that carry a digest are saved by reference only when the repository in use implements it.
+ * 
+ * @param <T>
+ *            Saved artifact type that is an extension of {@link ManagedArtifact}
+ * @param <U>
+ *            Extension of {@link Criteria} type for matching artifacts.
+ */
+public interface ReferenceSavingRepository<T extends ManagedArtifact, U extends Criteria> extends
+        ServerRepository<T, U> {
+
+    /**
+     * Saves the {@link UploadedArtifact} by reference to contents the repository already stores, identified by the
+     * digest of the uploaded artifact. The contents of the uploaded artifact are not read.
+     * 
+     * @param uploadedArtifact
+     *            {@link UploadedArtifact} received by from the upload request, with a digest.
+     * @return Type of the stored artifact, or <code>null</code> if the repository does not store contents with that
+     *         digest; the contents must then be uploaded with {@link #saveContents(UploadedArtifact)}.
+     */
+    T saveReference(UploadedArtifact uploadedArtifact);
+
+}
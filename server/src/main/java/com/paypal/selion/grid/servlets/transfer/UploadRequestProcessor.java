@@ -16,6 +16,7 @@
 package com.paypal.selion.grid.servlets.transfer;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
@@ -26,7 +27,6 @@ import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
 import com.paypal.selion.grid.servlets.transfer.UploadedArtifact.UploadedArtifactBuilder;
@@ -73,7 +73,12 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
         /**
          * Application folder in HTTP header, header name is applicationFolder
          */
-        APPLICATIONFOLDER("applicationFolder");
+        APPLICATIONFOLDER("applicationFolder"),
+
+        /**
+         * Hex encoded SHA-1 digest of the artifact in HTTP header, header name is contentDigest
+         */
+        CONTENTDIGEST("contentDigest");
 
         private String parameterName;
 
@@ -135,11 +140,25 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
 
         protected UploadedArtifact createUploadedArtifactUsing(EnumMap<RequestHeaders, String> headerMap,
                 byte[] contents) {
-            UploadedArtifactBuilder uploadedArtifactBuilder = new UploadedArtifactBuilder(
-                    headerMap.get(RequestHeaders.FILENAME), contents).withUserId(headerMap.get(RequestHeaders.USERID));
+            return withHeaders(new UploadedArtifactBuilder(headerMap.get(RequestHeaders.FILENAME), contents),
+                    headerMap);
+        }
+
+        protected UploadedArtifact createUploadedArtifactUsing(EnumMap<RequestHeaders, String> headerMap,
+                InputStream contents) {
+            return withHeaders(new UploadedArtifactBuilder(headerMap.get(RequestHeaders.FILENAME), contents),
+                    headerMap);
+        }
+
+        private UploadedArtifact withHeaders(UploadedArtifactBuilder uploadedArtifactBuilder,
+                EnumMap<RequestHeaders, String> headerMap) {
+            uploadedArtifactBuilder.withUserId(headerMap.get(RequestHeaders.USERID));
             if (headerMap.containsKey(RequestHeaders.APPLICATIONFOLDER)) {
                 uploadedArtifactBuilder.withApplicationFolderName(headerMap.get(RequestHeaders.APPLICATIONFOLDER));
             }
+            if (headerMap.containsKey(RequestHeaders.CONTENTDIGEST)) {
+                uploadedArtifactBuilder.withDigest(headerMap.get(RequestHeaders.CONTENTDIGEST));
+            }
             UploadedArtifact uploadedArtifact = uploadedArtifactBuilder.build();
             return uploadedArtifact;
         }
@@ -164,6 +183,16 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
      * curl -v -H 'filename:<fileName>' -H 'userId:<userId>' -H 'applicationFolder:<applicationFolder>' --data-binary @/path/tofile http://[hostname]:[port]/[upload-context-path]
      * }
      * </pre>
+     * 
+     * Clients may first probe the grid with the optional HTTP header 'contentDigest' (the hex encoded SHA-1 digest of the
+     * file) and an empty body. When the grid already stores the same contents, the artifact is saved by reference and
+     * nothing has to be uploaded; otherwise the request fails and the file must be uploaded.
+     * 
+     * <pre>
+     * {@code
+     * curl -v -H 'filename:<fileName>' -H 'userId:<userId>' -H 'contentDigest:<sha1>' -d '' http://[hostname]:[port]/[upload-context-path]
+     * }
+     * </pre>
      */
     public final class ApplicationUploadRequestProcessor extends AbstractUploadRequestProcessor {
 
@@ -181,10 +210,35 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
 
         private void saveUploadedData() throws IOException {
             populateHeadersMap();
-            byte[] contents = parseFileContents();
-            UploadedArtifact uploadedArtifact = createUploadedArtifactUsing(transferContext.getHeadersMap(), contents);
-            ManagedArtifact managedArtifact = repository.saveContents(uploadedArtifact);
-            managedArtifactList.add(managedArtifact);
+            if (transferContext.getHeadersMap().containsKey(RequestHeaders.CONTENTDIGEST)) {
+                ManagedArtifact managedArtifact = saveReference(createUploadedArtifactUsing(
+                        transferContext.getHeadersMap(), (InputStream) null));
+                if (managedArtifact != null) {
+                    managedArtifactList.add(managedArtifact);
+                    return;
+                }
+                if (httpServletRequest.getContentLength() <= 0) {
+                    throw new ArtifactUploadException("No artifact with digest "
+                            + transferContext.getHeadersMap().get(RequestHeaders.CONTENTDIGEST)
+                            + " is stored, upload its contents");
+                }
+            }
+            try (InputStream contents = parseFileContents()) {
+                UploadedArtifact uploadedArtifact = createUploadedArtifactUsing(transferContext.getHeadersMap(),
+                        contents);
+                ManagedArtifact managedArtifact = repository.saveContents(uploadedArtifact);
+                managedArtifactList.add(managedArtifact);
+            }
+        }
+
+        /*
+         * Repositories which cannot save by reference ask for the contents, as if they did not store them.
+         */
+        private ManagedArtifact saveReference(UploadedArtifact uploadedArtifact) {
+            if (repository instanceof ReferenceSavingRepository) {
+                return ((ReferenceSavingRepository<?, ?>) repository).saveReference(uploadedArtifact);
+            }
+            return null;
         }
 
         private void populateHeadersMap() {
@@ -198,6 +252,10 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
                 headersMap.put(RequestHeaders.APPLICATIONFOLDER,
                         httpServletRequest.getHeader(RequestHeaders.APPLICATIONFOLDER.getParameterName()));
             }
+            if (!StringUtils.isBlank(httpServletRequest.getHeader(RequestHeaders.CONTENTDIGEST.getParameterName()))) {
+                headersMap.put(RequestHeaders.CONTENTDIGEST,
+                        httpServletRequest.getHeader(RequestHeaders.CONTENTDIGEST.getParameterName()).trim());
+            }
             transferContext.setHeadersMap(headersMap);
         }
 
@@ -212,13 +270,13 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
             }
         }
 
-        private byte[] parseFileContents() throws IOException {
+        private InputStream parseFileContents() throws IOException {
             int fileSize = httpServletRequest.getContentLength();
             if (fileSize <= 0) {
                 throw new ArtifactUploadException("File is empty");
             }
-            byte[] bytes = IOUtils.toByteArray(httpServletRequest.getInputStream());
-            return bytes;
+            // Streamed straight into the repository, the request body is never held in memory.
+            return httpServletRequest.getInputStream();
         }
 
     }
@@ -257,10 +315,12 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
                 saveUploadedData();
             } catch (FileUploadException e) {
                 throw new ArtifactUploadException(e.getMessage());
+            } catch (IOException e) {
+                throw new ArtifactUploadException("IOException in reading file contents", e);
             }
         }
 
-        private void saveUploadedData() throws FileUploadException {
+        private void saveUploadedData() throws FileUploadException, IOException {
             LOGGER.entering(this.getClass().getName(), "saveUploadedData");
             int count = parseRequestAsFileItems();
             if (count > 1) {
@@ -272,10 +332,14 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
             populateHeadersMap();
             for (FileItem fileItem : fileItems) {
                 if (!fileItem.isFormField()) {
-                    UploadedArtifact uploadedArtifact = createUploadedArtifactUsing(transferContext.getHeadersMap(),
-                            fileItem.get());
-                    ManagedArtifact managedArtifact = repository.saveContents(uploadedArtifact);
-                    managedArtifactList.add(managedArtifact);
+                    try (InputStream contents = fileItem.getInputStream()) {
+                        UploadedArtifact uploadedArtifact = createUploadedArtifactUsing(
+                                transferContext.getHeadersMap(), contents);
+                        ManagedArtifact managedArtifact = repository.saveContents(uploadedArtifact);
+                        managedArtifactList.add(managedArtifact);
+                    } finally {
+                        fileItem.delete();
+                    }
                 }
             }
             LOGGER.exiting(this.getClass().getName(), "saveUploadedData");
@@ -339,8 +403,9 @@ public interface UploadRequestProcessor<T extends ManagedArtifact> {
         }
 
         private void initializeApacheCommonsSystem() {
+            // Anything but small artifacts is spooled to disk instead of being buffered in memory.
             DiskFileItemFactory diskFileItemFactory = new DiskFileItemFactory();
-            diskFileItemFactory.setSizeThreshold(MAX_FILE_SIZE);
+            diskFileItemFactory.setSizeThreshold(DiskFileItemFactory.DEFAULT_SIZE_THRESHOLD);
             servletFileUpload = new ServletFileUpload(diskFileItemFactory);
             servletFileUpload.setFileSizeMax(MAX_FILE_SIZE);
         }
@@ -15,11 +15,15 @@
 
 package com.paypal.selion.grid.servlets.transfer;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 /**
  * <code>UploadedArtifact</code> is data structure to hold uploaded information through HTTP POST method call. The class
  * stores the uploaded artifact name, the user id which essentially is the folder name under which the artifact is
  * stored. The application folder name is the name of an optional folder name under the user id folder for storing the
- * artifact. Stores the contents as a byte array.
+ * artifact. Stores the contents either as a byte array or as a stream that the repository copies to disk, so that large
+ * artifacts never have to be held in memory.
  */
 public class UploadedArtifact {
 
@@ -31,12 +35,22 @@ public class UploadedArtifact {
 
     private byte[] artifactContents;
 
+    private InputStream artifactStream;
+
+    private String digest;
+
     private UploadedArtifact(String artifactPartName, byte[] artifactContents) {
         super();
         this.artifactPartName = artifactPartName;
         this.artifactContents = artifactContents;
     }
 
+    private UploadedArtifact(String artifactPartName, InputStream artifactStream) {
+        super();
+        this.artifactPartName = artifactPartName;
+        this.artifactStream = artifactStream;
+    }
+
     /**
      * Returns the artifact name.
      * 
@@ -49,12 +63,38 @@ public class UploadedArtifact {
     /**
      * Returns the content of the artifact as a byte array.
      * 
-     * @return the artifactContents
+     * @return the artifactContents, or <code>null</code> if the artifact was uploaded as a stream.
      */
     public byte[] getArtifactContents() {
         return artifactContents;
     }
 
+    /**
+     * Returns the content of the artifact as a stream, whichever way it was uploaded. The stream can only be read once.
+     * 
+     * @return the artifact stream
+     */
+    public InputStream getArtifactStream() {
+        if (artifactStream == null) {
+            return new ByteArrayInputStream(artifactContents);
+        }
+        return artifactStream;
+    }
+
+    /**
+     * Returns the hex encoded SHA-1 digest of the contents, as declared by the client or computed by the repository
+     * while saving the artifact.
+     * 
+     * @return the digest, or <code>null</code> if the artifact has not been saved yet.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    void setDigest(String digest) {
+        this.digest = digest;
+    }
+
     /**
      * Returns the User id which is essentially the name of a folder containing the artifact.
      * 
@@ -99,6 +139,18 @@ public class UploadedArtifact {
             uploadedArtifact = new UploadedArtifact(artifactPartName, artifactContents);
         }
 
+        /**
+         * Create a {@link UploadedArtifact} with basic artifact name and a stream of the artifact contents.
+         * 
+         * @param artifactPartName
+         *            Artifact name
+         * @param artifactStream
+         *            Artifact contents
+         */
+        public UploadedArtifactBuilder(String artifactPartName, InputStream artifactStream) {
+            uploadedArtifact = new UploadedArtifact(artifactPartName, artifactStream);
+        }
+
         /**
          * Build with user id.
          * 
@@ -123,6 +175,18 @@ public class UploadedArtifact {
             return this;
         }
 
+        /**
+         * Build with the digest of the contents, to save the artifact by reference.
+         * 
+         * @param digest
+         *            Hex encoded SHA-1 digest of the contents.
+         * @return Instance of {@link UploadedArtifactBuilder}
+         */
+        public UploadedArtifactBuilder withDigest(String digest) {
+            uploadedArtifact.digest = digest;
+            return this;
+        }
+
         /**
          * Returns an instance of {@link UploadedArtifact}
          * 
@@ -0,0 +1,200 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.ErrorManager;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+
+/**
+ * A {@link Handler} that hands the records over to another handler on a background thread, so that the threads that
+ * log do not wait for the records to be formatted and written. <br>
+ * <br>
+ * When the background thread falls behind and its queue is full, the records below {@link Level#INFO} are dropped and
+ * the number of dropped records is logged later on, while the other records wait for room in the queue. Closing the
+ * handler writes the records that are still queued before closing the target handler; when the background thread is
+ * stuck, the thread that closes the handler writes them. <br>
+ * <br>
+ * It can be set up in the logging.properties file with the following properties:
+ * <ul>
+ * <li><code>com.paypal.selion.logging.AsyncHandler.target</code>: the class of the handler that writes the records,
+ * {@link FileHandler} by default. The target handler reads its own properties.</li>
+ * <li><code>com.paypal.selion.logging.AsyncHandler.queueSize</code>: the number of records that can be queued, 10000 by
+ * default.</li>
+ * <li><code>com.paypal.selion.logging.AsyncHandler.level</code>: the level of the records that are queued,
+ * {@link Level#ALL} by default.</li>
+ * </ul>
+ */
+public class AsyncHandler extends Handler {
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final long CLOSE_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+    private static final LogRecord END = new LogRecord(Level.OFF, "");
+
+    private final Handler target;
+    private final long closeTimeout;
+    private final BlockingQueue<LogRecord> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean closed;
+
+    /**
+     * Creates a handler that is set up by the {@link LogManager} properties.
+     */
+    public AsyncHandler() {
+        this(createTarget(getProperty("target", FileHandler.class.getName())), Integer.parseInt(getProperty(
+                "queueSize", Integer.toString(DEFAULT_QUEUE_SIZE))));
+        setLevel(Level.parse(getProperty("level", Level.ALL.getName())));
+    }
+
+    /**
+     * @param target
+     *            the handler that writes the records.
+     * @param queueSize
+     *            the number of records that can be queued.
+     */
+    public AsyncHandler(Handler target, int queueSize) {
+        this(target, queueSize, CLOSE_TIMEOUT);
+    }
+
+    AsyncHandler(Handler target, int queueSize, long closeTimeout) {
+        this.target = target;
+        this.closeTimeout = closeTimeout;
+        this.queue = new ArrayBlockingQueue<LogRecord>(queueSize);
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "SeLion-Log-Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        // The caller is inferred from the stack of the thread that logs, so this cannot be left to the writer.
+        record.getSourceClassName();
+        if (queue.offer(record)) {
+            return;
+        }
+        if (record.getLevel().intValue() < Level.INFO.intValue()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        try {
+            queue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes the target handler. The records that are still queued are not waited for.
+     */
+    @Override
+    public void flush() {
+        target.flush();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (queue.offer(END, closeTimeout, TimeUnit.MILLISECONDS)) {
+                writer.join(closeTimeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // the writer is stuck, write what is left from here
+            writer.interrupt();
+            List<LogRecord> records = new ArrayList<LogRecord>();
+            queue.drainTo(records);
+            for (LogRecord record : records) {
+                if (record != END) {
+                    write(record);
+                }
+            }
+        }
+        target.close();
+    }
+
+    /**
+     * @return the number of records that were dropped and are yet to be reported.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    private void write() {
+        while (true) {
+            LogRecord record;
+            try {
+                record = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (record == END) {
+                return;
+            }
+            write(record);
+        }
+    }
+
+    private void write(LogRecord record) {
+        try {
+            long count = dropped.getAndSet(0);
+            if (count > 0) {
+                target.publish(new LogRecord(Level.WARNING, count
+                        + " log records were dropped because the log writer fell behind."));
+            }
+            target.publish(record);
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private static String getProperty(String name, String defaultValue) {
+        String value = LogManager.getLogManager().getProperty(AsyncHandler.class.getName() + "." + name);
+        return (value == null) ? defaultValue : value.trim();
+    }
+
+    private static Handler createTarget(String className) {
+        try {
+            return (Handler) ClassLoader.getSystemClassLoader().loadClass(className).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+            throw new IllegalStateException("Unable to create the log handler " + className, e);
+        }
+    }
+}
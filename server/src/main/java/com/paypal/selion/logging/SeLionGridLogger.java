@@ -21,13 +21,20 @@ import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import com.google.common.base.Supplier;
+
 /**
- * A wrapper around JUL {@link Logger} which adds additional entering / exiting methods
+ * A wrapper around JUL {@link Logger} which adds additional entering / exiting methods. <br>
+ * <br>
+ * The {@link #entering()} and {@link #exiting()} family of methods find the calling class and method by walking the
+ * stack whenever {@link Level#FINER} is enabled. Code that runs for every request should rather use
+ * {@link #traceEntry(String)} and {@link #traceExit(String)}, which take the name of the calling method and use the
+ * name of this logger as the calling class, and pass a {@link Supplier} for any parameter that is costly to compute. A
+ * disabled trace then costs a single level check.
  */
 public class SeLionGridLogger extends Logger {
-    private static final String CLASS_NAME = SeLionGridLogger.class.getSimpleName();
+    private static final String CLASS_NAME = SeLionGridLogger.class.getName();
 
-    private String loggerName = SeLionGridLogger.class.getName();
     private static Map<String, SeLionGridLogger> loggerMap;
     static {
         loggerMap = new ConcurrentHashMap<String, SeLionGridLogger>();
@@ -35,19 +42,19 @@ public class SeLionGridLogger extends Logger {
 
     private SeLionGridLogger(String name) {
         super(name, null);
-        this.loggerName = name;
     }
 
     public static SeLionGridLogger getLogger(Class<?> clazz) {
         return getLogger(clazz.getName());
     }
 
-    private SeLionGridLogger getLogger() {
-        return getLogger(this.loggerName);
+    public static SeLionGridLogger getLogger(String name) {
+        // first look for the logger on our internal ConcurrentHashMap
+        SeLionGridLogger gridLogger = loggerMap.get(name);
+        return (gridLogger != null) ? gridLogger : createLogger(name);
     }
 
-    public static synchronized SeLionGridLogger getLogger(String name) {
-        // first look for the logger on our internal ConcurrentHashMap
+    private static synchronized SeLionGridLogger createLogger(String name) {
         SeLionGridLogger gridLogger = loggerMap.get(name);
         if (gridLogger == null) {
             gridLogger = new SeLionGridLogger(name);
@@ -61,15 +68,22 @@ public class SeLionGridLogger extends Logger {
         return gridLogger;
     }
 
+    /**
+     * @return <code>true</code> if the entering / exiting traces of this logger are logged.
+     */
+    public boolean isTracing() {
+        return isLoggable(Level.FINER);
+    }
+
     /**
      * Function entry log convenience method.
      */
     public void entering() {
-        if (!getLogger().isLoggable(Level.FINER)) {
+        if (!isTracing()) {
             return;
         }
         FrameInfo fi = getLoggingFrame();
-        getLogger().entering(fi.className, fi.methodName);
+        entering(fi.className, fi.methodName);
     }
 
     /**
@@ -79,11 +93,11 @@ public class SeLionGridLogger extends Logger {
      *            additional parm
      */
     public void entering(Object object) {
-        if (!getLogger().isLoggable(Level.FINER)) {
+        if (!isTracing()) {
             return;
         }
         FrameInfo fi = getLoggingFrame();
-        getLogger().entering(fi.className, fi.methodName, object);
+        entering(fi.className, fi.methodName, object);
     }
 
     /**
@@ -93,22 +107,22 @@ public class SeLionGridLogger extends Logger {
      *            additional parms
      */
     public void entering(Object ... object) {
-        if (!getLogger().isLoggable(Level.FINER)) {
+        if (!isTracing()) {
             return;
         }
         FrameInfo fi = getLoggingFrame();
-        getLogger().entering(fi.className, fi.methodName, object);
+        entering(fi.className, fi.methodName, object);
     }
 
     /**
      * Function exit log convenience method.
      */
     public void exiting() {
-        if (!getLogger().isLoggable(Level.FINER)) {
+        if (!isTracing()) {
             return;
         }
         FrameInfo fi = getLoggingFrame();
-        getLogger().exiting(fi.className, fi.methodName);
+        exiting(fi.className, fi.methodName);
     }
 
     /**
@@ -118,11 +132,107 @@ public class SeLionGridLogger extends Logger {
      *            return value
      */
     public void exiting(Object object) {
-        if (!getLogger().isLoggable(Level.FINER)) {
+        if (!isTracing()) {
             return;
         }
         FrameInfo fi = getLoggingFrame();
-        getLogger().exiting(fi.className, fi.methodName, object);
+        exiting(fi.className, fi.methodName, object);
+    }
+
+    /**
+     * Function entry log method that does not walk the stack.
+     * 
+     * @param sourceMethod
+     *            the name of the calling method.
+     */
+    public void traceEntry(String sourceMethod) {
+        if (!isTracing()) {
+            return;
+        }
+        entering(getName(), sourceMethod);
+    }
+
+    /**
+     * Function entry log method that does not walk the stack.
+     * 
+     * @param sourceMethod
+     *            the name of the calling method.
+     * @param params
+     *            the parameter of the calling method, or an <code>Object[]</code> of its parameters.
+     */
+    public void traceEntry(String sourceMethod, Object params) {
+        if (!isTracing()) {
+            return;
+        }
+        logEntry(sourceMethod, params);
+    }
+
+    /**
+     * Function entry log method that does not walk the stack, and only computes the parameters when the trace is
+     * logged.
+     * 
+     * @param sourceMethod
+     *            the name of the calling method.
+     * @param params
+     *            supplies the parameter of the calling method, or an <code>Object[]</code> of its parameters.
+     */
+    public void traceEntry(String sourceMethod, Supplier<?> params) {
+        if (!isTracing()) {
+            return;
+        }
+        logEntry(sourceMethod, params.get());
+    }
+
+    /**
+     * Function exit log method that does not walk the stack.
+     * 
+     * @param sourceMethod
+     *            the name of the calling method.
+     */
+    public void traceExit(String sourceMethod) {
+        if (!isTracing()) {
+            return;
+        }
+        exiting(getName(), sourceMethod);
+    }
+
+    /**
+     * Function exit log method that does not walk the stack.
+     * 
+     * @param sourceMethod
+     *            the name of the calling method.
+     * @param result
+     *            the return value of the calling method.
+     */
+    public void traceExit(String sourceMethod, Object result) {
+        if (!isTracing()) {
+            return;
+        }
+        exiting(getName(), sourceMethod, result);
+    }
+
+    /**
+     * Function exit log method that does not walk the stack, and only computes the return value when the trace is
+     * logged.
+     * 
+     * @param sourceMethod
+     *            the name of the calling method.
+     * @param result
+     *            supplies the return value of the calling method.
+     */
+    public void traceExit(String sourceMethod, Supplier<?> result) {
+        if (!isTracing()) {
+            return;
+        }
+        exiting(getName(), sourceMethod, result.get());
+    }
+
+    private void logEntry(String sourceMethod, Object params) {
+        if (params instanceof Object[]) {
+            entering(getName(), sourceMethod, (Object[]) params);
+        } else {
+            entering(getName(), sourceMethod, params);
+        }
     }
 
     /**
@@ -140,10 +250,10 @@ public class SeLionGridLogger extends Logger {
         // Skip stackTrace[0], which is getStackTrace() on Win32 JDK 1.6.
         for (int ix = 1; ix < stackTrace.length; ix++) {
             loggingFrame = stackTrace[ix];
-            if (loggingFrame.getClassName().contains(CLASS_NAME)) {
+            if (loggingFrame.getClassName().equals(CLASS_NAME)) {
                 for (int iy = ix; iy < stackTrace.length; iy++) {
                     loggingFrame = stackTrace[iy];
-                    if (!loggingFrame.getClassName().contains(CLASS_NAME)) {
+                    if (!loggingFrame.getClassName().equals(CLASS_NAME)) {
                         break;
                     }
                 }
@@ -0,0 +1,120 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.node.servlets;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of the rolled log files (segments) in a folder, keyed by their generation number. The folder is listed
+ * again only when its modification time changes, when a segment that is not indexed yet is asked for with
+ * {@link #getSegment(int)}, or once the index is a few seconds old, since the modification time of a folder may be too
+ * coarse to tell two changes apart.
+ */
+final class LogSegmentIndex {
+
+    private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+
+    private final File directory;
+    private final Pattern segmentPattern;
+    private final long refreshInterval;
+
+    private volatile SortedMap<Integer, File> segments = Collections
+            .unmodifiableSortedMap(new TreeMap<Integer, File>());
+    private volatile long indexedModification = Long.MIN_VALUE;
+    private volatile long indexedAt;
+
+    /**
+     * @param directory
+     *            the folder that holds the log files
+     * @param segmentPattern
+     *            the pattern that log file names match, whose first group is the generation number
+     */
+    LogSegmentIndex(File directory, Pattern segmentPattern) {
+        this(directory, segmentPattern, REFRESH_INTERVAL);
+    }
+
+    LogSegmentIndex(File directory, Pattern segmentPattern, long refreshInterval) {
+        this.directory = directory;
+        this.segmentPattern = segmentPattern;
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @return the segments in the folder, ordered by generation, starting with the current one
+     */
+    SortedMap<Integer, File> getSegments() {
+        if (directory.lastModified() != indexedModification
+                || System.currentTimeMillis() - indexedAt >= refreshInterval) {
+            refresh();
+        }
+        return segments;
+    }
+
+    /**
+     * @param generation
+     *            the generation number of the segment
+     * @return the segment or <code>null</code> if there is none for this generation
+     */
+    File getSegment(int generation) {
+        File segment = getSegments().get(generation);
+        if (segment == null || !segment.isFile()) {
+            segment = refresh().get(generation);
+        }
+        return segment;
+    }
+
+    /**
+     * @param fileName
+     *            the name of a log file
+     * @return the generation number of the file or -1 if the name is not the name of a segment
+     */
+    int getGeneration(String fileName) {
+        Matcher matcher = segmentPattern.matcher(fileName);
+        if (!matcher.matches()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) { // NOSONAR
+            return -1;
+        }
+    }
+
+    private synchronized SortedMap<Integer, File> refresh() {
+        long modification = directory.lastModified();
+        SortedMap<Integer, File> found = new TreeMap<Integer, File>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                int generation = getGeneration(file.getName());
+                if (generation >= 0 && file.isFile()) {
+                    found.put(generation, file);
+                }
+            }
+        }
+        segments = Collections.unmodifiableSortedMap(found);
+        indexedModification = modification;
+        indexedAt = System.currentTimeMillis();
+        return segments;
+    }
+}
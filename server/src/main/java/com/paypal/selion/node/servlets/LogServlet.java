@@ -16,28 +16,47 @@
 package com.paypal.selion.node.servlets;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import com.google.common.io.ByteStreams;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+
 import com.paypal.selion.pojos.SeLionGridConstants;
-import com.paypal.selion.utils.FileBackedStringBuffer;
 
 /**
  * This is simple servlet which basically display the logs of specified node connected to the grid. This servlet would
  * have to be injected into the Node. This class will get logs files from Logs folder in the Current directory of the
  * node machine.
+ * <p>
+ * Log files are streamed to the response, they are never loaded into memory as a whole. Besides the HTML view, a log
+ * file can be read in plain text a page at a time by passing a byte <code>offset</code> (a negative offset counts from
+ * the end of the file) and optionally a <code>length</code>. The response carries the offset to ask for next in the
+ * <code>X-SeLion-Log-Next-Offset</code> header. With <code>follow=true</code> the request waits for up to
+ * <code>timeout</code> milli seconds for the file to grow when there is nothing new to return, which allows to
+ * <code>tail -f</code> the log of a node:
+ * 
+ * <pre>
+ * curl 'http://node:5555/extra/LogServlet?fileName=selion-grid-node-0.log&amp;offset=-65536'
+ * curl 'http://node:5555/extra/LogServlet?fileName=selion-grid-node-0.log&amp;offset=1048576&amp;follow=true'
+ * </pre>
  * 
+ * An offset that lies beyond the end of the file, which happens when the log was rolled over, starts over at the
+ * beginning of the file. Offsets count bytes, so a page may begin or end in the middle of a multi-byte character.
  */
 public class LogServlet extends HttpServlet {
 
@@ -54,42 +73,57 @@ public class LogServlet extends HttpServlet {
     }
 
     private static final long serialVersionUID = -445566L;
-    private File logsDirectory = null;
+    private transient LogSegmentIndex segmentIndex = null;
 
     private static final String PREFIX = "selion-grid-node";
     private static final String EXTENSION = ".log";
+    private static final Pattern SEGMENT_PATTERN = Pattern.compile(Pattern.quote(PREFIX) + "-(\\d+)"
+            + Pattern.quote(EXTENSION));
+
+    private static final String OFFSET_PARAMETER = "offset";
+    private static final String LENGTH_PARAMETER = "length";
+    private static final String FOLLOW_PARAMETER = "follow";
+    private static final String TIMEOUT_PARAMETER = "timeout";
+    private static final String NEXT_OFFSET_HEADER = "X-SeLion-Log-Next-Offset";
+    private static final String SIZE_HEADER = "X-SeLion-Log-Size";
+
+    private static final long DEFAULT_LENGTH = 1024 * 1024;
+    private static final long MAX_LENGTH = 8 * 1024 * 1024;
+    private static final long DEFAULT_FOLLOW_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+    private static final long MAX_FOLLOW_TIMEOUT = TimeUnit.SECONDS.toMillis(120);
+    private static final long FOLLOW_POLL_INTERVAL = 250;
 
     /**
      * This method helps to display More log information of the node machine.
      * 
-     * @param fileName
-     *            - It is log file name available in node machine current directory Logs folder, it is used to identify
-     *            the current file to display in the web page.
+     * @param generation
+     *            - It is the generation of the last log file displayed in the web page.
      * @param url
      *            - It is node machine url (ex: http://10.232.88.10:5555)
-     * @return String vlaue to add Form in html page
-     * @throws IOException
+     * @param out
+     *            - the {@link PrintWriter} to add the Form in html page to
      */
-    private String appendMoreLogsLink(final String fileName, String url) throws IOException {
-        FileBackedStringBuffer buffer = new FileBackedStringBuffer();
-        int index = retrieveIndexValueFromFileName(fileName);
-        index++;
-        File logFileName = retrieveFileFromLogsFolder(Integer.toString(index));
+    private void appendMoreLogsLink(int generation, String url, PrintWriter out) {
+        // the last page has no next segment, looking it up must not list the folder on every render
+        File logFileName = getSegmentIndex().getSegments().get(generation + 1);
         if (logFileName == null) {
-            return "";
+            return;
         }
 
-        buffer.append("<form name ='myform' action=").append(url).append(" method= 'post'>");
-        buffer.append("<input type='hidden'").append(" name ='fileName'").append(" value ='")
+        out.append("<form name ='myform' action=").append(url).append(" method= 'post'>");
+        out.append("<input type='hidden'").append(" name ='fileName'").append(" value ='")
                 .append(logFileName.getName()).append("'>");
-        buffer.append("<a href= 'javascript: submitform();' > More Logs </a>");
-        buffer.append("</form>");
-        return buffer.toString();
+        out.append("<a href= 'javascript: submitform();' > More Logs </a>");
+        out.append("</form>");
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        process(req, resp, null);
+        if (req.getParameter(OFFSET_PARAMETER) != null || req.getParameter(FOLLOW_PARAMETER) != null) {
+            streamLogFile(req, resp, req.getParameter("fileName"));
+            return;
+        }
+        process(req, resp, req.getParameter("fileName"));
     }
 
     @Override
@@ -100,43 +134,18 @@ public class LogServlet extends HttpServlet {
 
     }
 
-    private void dumpStringToStream(FileBackedStringBuffer buffer, ServletOutputStream outputStream) throws IOException {
-        InputStream in = new ByteArrayInputStream(buffer.toString().getBytes("UTF-8"));
-        try {
-            ByteStreams.copy(in, outputStream);
-        } finally {
-            in.close();
-            outputStream.flush();
-        }
-
-    }
-
     /**
-     * This method get the Logs file directory
-     * 
-     * @return A {@link File} that represents the location where the logs can be found.
+     * @return the {@link LogSegmentIndex} of the Logs file directory
      */
-    private File getLogsDirectory() {
-        if (logsDirectory != null) {
-            return logsDirectory;
-        }
-        logsDirectory = new File(SeLionGridConstants.LOGS_DIR);
-
-        if (!logsDirectory.exists()) {
-            logsDirectory.mkdirs();
+    private synchronized LogSegmentIndex getSegmentIndex() {
+        if (segmentIndex == null) {
+            File logsDirectory = new File(SeLionGridConstants.LOGS_DIR);
+            if (!logsDirectory.exists()) {
+                logsDirectory.mkdirs();
+            }
+            segmentIndex = new LogSegmentIndex(logsDirectory, SEGMENT_PATTERN);
         }
-
-        return logsDirectory;
-    }
-
-    /**
-     * Check whether the Logs directory exist or not in the current directory.
-     * 
-     * @return a {@link boolean}
-     */
-    private boolean isLogsDirectoryEmpty() {
-        return (getLogsDirectory().listFiles(new LogFilesFilter()).length == 0);
-
+        return segmentIndex;
     }
 
     /**
@@ -152,89 +161,169 @@ public class LogServlet extends HttpServlet {
      */
     protected void process(HttpServletRequest request, HttpServletResponse response, String fileName)
             throws IOException {
+        int generation = retrieveIndexValueFromFileName(fileName);
+        if (generation < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Not a log file: " + fileName);
+            return;
+        }
         response.setContentType("text/html");
         response.setCharacterEncoding("UTF-8");
         response.setStatus(200);
-        FileBackedStringBuffer buffer = new FileBackedStringBuffer();
-
-        buffer.append("<html><head><title>");
-        buffer.append(request.getRemoteHost());
-        buffer.append("</title><script type=text/javascript>");
-        buffer.append("function submitform() { document.myform.submit(); } </script>");
-        buffer.append("</head><body><H1>View Logs on - ");
-        buffer.append(request.getRemoteHost()).append("</H1>");
-
-        if (isLogsDirectoryEmpty()) {
-            buffer.append("<br>No Logs available.</br></body></html>");
-            dumpStringToStream(buffer, response.getOutputStream());
+        PrintWriter out = response.getWriter();
+
+        out.append("<html><head><title>");
+        out.append(request.getRemoteHost());
+        out.append("</title><script type=text/javascript>");
+        out.append("function submitform() { document.myform.submit(); } </script>");
+        out.append("</head><body><H1>View Logs on - ");
+        out.append(request.getRemoteHost()).append("</H1>");
+
+        if (getSegmentIndex().getSegments().isEmpty()) {
+            out.append("<br>No Logs available.</br></body></html>");
+            out.flush();
             return;
         }
-        buffer.append(appendMoreLogsLink(fileName, request.getRequestURL().toString()));
-        buffer.append(renderLogFileContents(fileName));
-        buffer.append("</body></html>");
-        dumpStringToStream(buffer, response.getOutputStream());
+        appendMoreLogsLink(generation, request.getRequestURL().toString(), out);
+        renderLogFileContents(generation, out);
+        out.append("</body></html>");
+        out.flush();
     }
 
     /**
-     * This method read the content of the file and append into FileBackedStringBuffer
+     * This method streams the content of the log files, from the current one up to the requested one, to the web page
      * 
-     * @param fileName
-     *            - Read the content of the log file
-     * @return a {@link buffer} buffer string to display in web page
+     * @param generation
+     *            - the generation of the last log file to display
+     * @param out
+     *            - the {@link PrintWriter} of the web page
      * @throws IOException
      */
-    private String renderLogFileContents(String fileName) throws IOException {
-        FileBackedStringBuffer buffer = new FileBackedStringBuffer();
-        int index = retrieveIndexValueFromFileName(fileName);
+    private void renderLogFileContents(int generation, PrintWriter out) throws IOException {
         int runningIndex = 0;
         File eachFile = null;
-        while ((eachFile = retrieveFileFromLogsFolder(Integer.toString(runningIndex))) != null
-                && (runningIndex <= index)) {
-            BufferedReader reader = new BufferedReader(new FileReader(eachFile));
-            String line = "";
-            buffer.append("<pre>");
-            while ((line = reader.readLine()) != null) {
-                buffer.append("<br>").append(line).append("</br>");
+        while ((runningIndex <= generation) && (eachFile = getSegmentIndex().getSegment(runningIndex)) != null) {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(eachFile),
+                    "UTF-8"))) {
+                String line = "";
+                out.append("<pre>");
+                while ((line = reader.readLine()) != null) {
+                    out.append("<br>").append(StringEscapeUtils.escapeHtml(line)).append("</br>");
+                }
+                out.append("</pre>");
             }
-            buffer.append("</pre>");
-            reader.close();
             runningIndex++;
         }
-        return buffer.toString();
     }
 
     /**
-     * Get the log files from the directory
+     * This method writes a page of a log file as plain text, waiting for the file to grow first when asked to follow
+     * it.
      * 
-     * @param index
-     * @return A {@link File} that represent the file to read from current directory.
+     * @param request
+     *            - HttpServletRequest
+     * @param response
+     *            - HttpServletResponse
+     * @param fileName
+     *            - the log file to read from, the current one when not specified
+     * @throws IOException
      */
-    private File retrieveFileFromLogsFolder(String index) {
-        File[] logFiles = getLogsDirectory().listFiles(new LogFilesFilter());
-        File fileToReturn = null;
-        for (File eachLogFile : logFiles) {
-            String fileName = eachLogFile.getName().split("\\Q.\\E")[0];
-            if (fileName.endsWith(index)) {
-                fileToReturn = eachLogFile;
+    private void streamLogFile(HttpServletRequest request, HttpServletResponse response, String fileName)
+            throws IOException {
+        int generation = retrieveIndexValueFromFileName(fileName);
+        long offset, length, timeout;
+        try {
+            offset = getLongParameter(request, OFFSET_PARAMETER, 0);
+            length = Math.min(getLongParameter(request, LENGTH_PARAMETER, DEFAULT_LENGTH), MAX_LENGTH);
+            timeout = Math.min(getLongParameter(request, TIMEOUT_PARAMETER, DEFAULT_FOLLOW_TIMEOUT),
+                    MAX_FOLLOW_TIMEOUT);
+        } catch (NumberFormatException e) { // NOSONAR
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            return;
+        }
+        if (generation < 0 || length < 0) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Not a log file or length: " + fileName);
+            return;
+        }
+        File segment = getSegmentIndex().getSegment(generation);
+        if (segment == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "No log file " + fileName);
+            return;
+        }
+
+        long size = segment.length();
+        offset = startingOffset(offset, size);
+        if (Boolean.parseBoolean(request.getParameter(FOLLOW_PARAMETER)) && offset == size) {
+            size = awaitGrowth(segment, size, timeout);
+            offset = startingOffset(offset, size);
+        }
+
+        try (FileChannel channel = new FileInputStream(segment).getChannel()) {
+            // the file may have been rolled over since its length was looked at
+            size = channel.size();
+            offset = startingOffset(offset, size);
+            long count = Math.min(length, size - offset);
+
+            response.setContentType("text/plain");
+            response.setCharacterEncoding("UTF-8");
+            response.setStatus(200);
+            response.setHeader(NEXT_OFFSET_HEADER, Long.toString(offset + count));
+            response.setHeader(SIZE_HEADER, Long.toString(size));
+            response.setContentLength((int) count);
+
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = offset;
+            long remaining = count;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+        response.getOutputStream().flush();
+    }
+
+    private long startingOffset(long offset, long size) {
+        if (offset < 0) {
+            return Math.max(0, size + offset);
+        }
+        return (offset > size) ? 0 : offset;
+    }
+
+    private long awaitGrowth(File segment, long size, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        long current = segment.length();
+        while (current == size && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(FOLLOW_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 break;
             }
+            current = segment.length();
         }
-        return fileToReturn;
+        return current;
+    }
+
+    private long getLongParameter(HttpServletRequest request, String name, long defaultValue) {
+        String value = request.getParameter(name);
+        return StringUtils.isBlank(value) ? defaultValue : Long.parseLong(value.trim());
     }
 
     /**
-     * This method return index of the file name (example selion-grid-1.log)
+     * This method return index of the file name (example selion-grid-node-1.log)
      * 
      * @param fileName
      *            -log file name
-     * @return an {@link index} index value of the file
+     * @return an {@link index} index value of the file, -1 if it is not the name of a log file
      */
     private int retrieveIndexValueFromFileName(String fileName) {
         int index = 0;
         if (fileName != null && !fileName.trim().isEmpty()) {
-            index = Integer.parseInt(fileName.substring(fileName.lastIndexOf('-') + 1,
-                    fileName.length() - EXTENSION.length()));
+            index = getSegmentIndex().getGeneration(fileName.trim());
         }
         return index;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,249 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.apache.commons.io.FileUtils;
+
+import com.paypal.selion.logging.SeLionGridLogger;
+
+/**
+ * A per node log of the events seen by {@link SeLionRemoteProxy}. Appending an event never blocks and never touches
+ * the disk: events are put in a bounded ring buffer shared by all the nodes, which a single background thread drains
+ * in batches. Every batch is written with one append per log file, and a log file that grows beyond its maximum size
+ * is rotated (<code>machine.log</code> becomes <code>machine.log.1</code> and so on). <br>
+ * <br>
+ * When the writer falls so far behind that the ring buffer is full, events are dropped rather than holding up the
+ * caller, and the number of dropped events is noted in the log of the node they belong to. The logs are written in
+ * UTF-8.
+ */
+final class NodeEventJournal {
+
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(NodeEventJournal.class);
+
+    static final int CAPACITY = 8192;
+    static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+    static final int MAX_BACKUPS = 3;
+    private static final int MAX_BATCH = 1024;
+
+    private static final BlockingQueue<Event> EVENTS = new ArrayBlockingQueue<Event>(CAPACITY);
+
+    static {
+        Thread writer = new Thread(new Writer(), "SeLion-Node-Event-Journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private final File logFile;
+    private final long maxFileSize;
+    private final int maxBackups;
+    private final AtomicInteger dropped = new AtomicInteger();
+
+    /**
+     * Starts a fresh log, discarding the one a previous proxy of the same node may have left behind.
+     * 
+     * @param logFile
+     *            the log file of the node.
+     */
+    NodeEventJournal(File logFile) {
+        this(logFile, MAX_FILE_SIZE, MAX_BACKUPS);
+    }
+
+    NodeEventJournal(File logFile, long maxFileSize, int maxBackups) {
+        this.logFile = logFile;
+        this.maxFileSize = maxFileSize;
+        this.maxBackups = maxBackups;
+        if (logFile.exists()) {
+            FileUtils.deleteQuietly(logFile);
+        }
+    }
+
+    /**
+     * Queues an event to be written to the log. Returns right away.
+     * 
+     * @param msg
+     *            the message to log.
+     */
+    void append(String msg) {
+        if (!EVENTS.offer(new Event(this, System.currentTimeMillis(), msg))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until every event queued before this call has been written.
+     * 
+     * @param timeout
+     *            the maximum time to wait, in milliseconds.
+     * @return <code>true</code> if the events were written within the timeout.
+     * @throws InterruptedException
+     */
+    boolean flush(long timeout) throws InterruptedException {
+        CountDownLatch written = new CountDownLatch(1);
+        if (!EVENTS.offer(new Event(written), timeout, TimeUnit.MILLISECONDS)) {
+            return false;
+        }
+        return written.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    File getLogFile() {
+        return logFile;
+    }
+
+    /**
+     * Appends a batch of formatted events. Only ever called by the writer thread.
+     */
+    private void write(StringBuilder events) throws IOException {
+        int lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            events.append("\n").append(lost).append(" event(s) were dropped because the log could not keep up.\n");
+        }
+        byte[] bytes = events.toString().getBytes(StandardCharsets.UTF_8);
+        if (logFile.length() > 0 && logFile.length() + bytes.length > maxFileSize) {
+            rotate();
+        }
+        try (FileOutputStream fos = new FileOutputStream(logFile, true)) {
+            fos.write(bytes);
+        }
+    }
+
+    private void rotate() throws IOException {
+        File oldest = backup(maxBackups);
+        FileUtils.deleteQuietly(oldest);
+        for (int i = maxBackups - 1; i >= 1; i--) {
+            File backup = backup(i);
+            if (backup.exists() && !backup.renameTo(backup(i + 1))) {
+                throw new IOException("Unable to rotate " + backup);
+            }
+        }
+        if (maxBackups <= 0) {
+            FileUtils.deleteQuietly(logFile);
+        } else if (!logFile.renameTo(backup(1))) {
+            throw new IOException("Unable to rotate " + logFile);
+        }
+    }
+
+    private File backup(int generation) {
+        return new File(logFile.getPath() + "." + generation);
+    }
+
+    /**
+     * An event waiting to be written, or a marker that a {@link NodeEventJournal#flush(long)} waits for.
+     */
+    private static final class Event {
+        private final NodeEventJournal journal;
+        private final long time;
+        private final String msg;
+        private final CountDownLatch written;
+
+        Event(NodeEventJournal journal, long time, String msg) {
+            this.journal = journal;
+            this.time = time;
+            this.msg = msg;
+            this.written = null;
+        }
+
+        Event(CountDownLatch written) {
+            this.journal = null;
+            this.time = 0;
+            this.msg = null;
+            this.written = written;
+        }
+    }
+
+    /**
+     * Drains the ring buffer, grouping every batch of events by log file.
+     */
+    private static final class Writer implements Runnable {
+        private final MessageFormat timestamp = new MessageFormat("{0, date} {0, time} ");
+        private final Date date = new Date();
+        private final StringBuffer stamp = new StringBuffer();
+
+        @Override
+        public void run() {
+            List<Event> batch = new ArrayList<Event>(MAX_BATCH);
+            while (true) {
+                try {
+                    batch.add(EVENTS.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+                EVENTS.drainTo(batch, MAX_BATCH - 1);
+                try {
+                    write(batch);
+                } catch (RuntimeException | Error e) {// NOSONAR
+                    // The writer is shared by all the nodes, it must outlive whatever goes wrong with one batch.
+                    LOGGER.log(Level.SEVERE, "Unable to write a batch of " + batch.size() + " node event(s)", e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void write(List<Event> batch) {
+            Map<NodeEventJournal, StringBuilder> logs = new LinkedHashMap<NodeEventJournal, StringBuilder>();
+            List<CountDownLatch> markers = new ArrayList<CountDownLatch>();
+            for (Event event : batch) {
+                if (event.written != null) {
+                    markers.add(event.written);
+                    continue;
+                }
+                StringBuilder log = logs.get(event.journal);
+                if (log == null) {
+                    log = new StringBuilder();
+                    logs.put(event.journal, log);
+                }
+                date.setTime(event.time);
+                log.append("\n");
+                stamp.setLength(0);
+                timestamp.format(new Object[] { date }, stamp, null);
+                log.append(stamp).append(event.msg).append("\n");
+            }
+            try {
+                for (Entry<NodeEventJournal, StringBuilder> log : logs.entrySet()) {
+                    try {
+                        log.getKey().write(log.getValue());
+                    } catch (IOException | RuntimeException e) {// NOSONAR
+                        // Never let one node's log stop the others from being written.
+                        LOGGER.log(Level.WARNING, "Unable to write to " + log.getKey().getLogFile(), e);
+                    }
+                }
+            } finally {
+                for (CountDownLatch marker : markers) {
+                    marker.countDown();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.paypal.selion.logging.SeLionGridLogger;
+
+/**
+ * Issues the restart and upgrade calls that recycle the nodes of the Grid. The calls are made by a small pool of
+ * background threads over a shared, pooled HTTP client, so the threads that assign sessions on the Hub never wait for
+ * a node to answer. A call that fails is retried with an exponential backoff. Only one call at a time is made to a
+ * node: asking for the call that is already in flight shares it, asking for another one queues it after it. <br>
+ * <br>
+ * The recycle state of every node is kept around and can be queried with {@link #getState(String)} and
+ * {@link #getInFlight()}.
+ */
+public final class NodeRecycleCoordinator {
+
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(NodeRecycleCoordinator.class);
+
+    private static final int TIME_OUT = 30 * 1000;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF = 2000;
+    private static final int THREADS = 4;
+
+    /**
+     * The recycle states a node goes through.
+     */
+    public enum State {
+        /** The node no longer accepts new sessions and waits for its running sessions to complete. */
+        DRAINING,
+        /** A restart call is being made to the node. */
+        RESTARTING,
+        /** An upgrade call is being made to the node. */
+        UPGRADING,
+        /** The last call failed and is going to be retried. */
+        RETRY_SCHEDULED,
+        /** The node accepted the last call. */
+        COMPLETED,
+        /** The node could not be reached even after retrying. */
+        FAILED;
+
+        boolean isInFlight() {
+            return this != COMPLETED && this != FAILED;
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final NodeRecycleCoordinator INSTANCE = new NodeRecycleCoordinator(MAX_ATTEMPTS,
+                INITIAL_BACKOFF, THREADS);
+    }
+
+    private final int maxAttempts;
+    private final long initialBackoff;
+    private final PoolingHttpClientConnectionManager connections;
+    private final CloseableHttpClient client;
+    private final ScheduledExecutorService executor;
+    private final ConcurrentMap<String, Recycle> recycles = new ConcurrentHashMap<String, Recycle>();
+
+    NodeRecycleCoordinator(int maxAttempts, long initialBackoff, int threads) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        connections = new PoolingHttpClientConnectionManager();
+        connections.setMaxTotal(threads * 2);
+        connections.setDefaultMaxPerRoute(2);
+        RequestConfig config = RequestConfig.custom().setConnectTimeout(TIME_OUT).setSocketTimeout(TIME_OUT).build();
+        client = HttpClients.custom().setConnectionManager(connections).setDefaultRequestConfig(config).build();
+        executor = new ScheduledThreadPoolExecutor(threads, new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("SeLion-Node-Recycler-%d").build());
+    }
+
+    /**
+     * @return the coordinator shared by all the {@link SeLionRemoteProxy} instances of the Hub.
+     */
+    public static NodeRecycleCoordinator getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Records that a node stopped accepting new sessions so that it can be recycled. Has no effect when a call to the
+     * node is already in flight.
+     * 
+     * @param nodeId
+     *            the id of the node.
+     */
+    public void draining(String nodeId) {
+        Recycle drained = new Recycle(State.DRAINING);
+        while (true) {
+            Recycle current = recycles.get(nodeId);
+            if (current != null && current.state.isInFlight()) {
+                return;
+            }
+            // a call that started in between must not be overwritten
+            boolean replaced = (current == null) ? recycles.putIfAbsent(nodeId, drained) == null : recycles.replace(
+                    nodeId, current, drained);
+            if (replaced) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Asks a node to restart itself. When a restart of the node is already in flight, no new call is made and the
+     * pending one is returned. When an upgrade of the node is in flight, the restart is made once the upgrade completed,
+     * whatever its outcome.
+     * 
+     * @param nodeId
+     *            the id of the node.
+     * @param url
+     *            the url of the node's restart servlet.
+     * @return a future that is set to <code>true</code> once the node accepted the restart, or to <code>false</code> if
+     *         it could not be reached.
+     */
+    public ListenableFuture<Boolean> restart(String nodeId, String url) {
+        return submit(nodeId, new HttpPost(url), State.RESTARTING);
+    }
+
+    /**
+     * Asks a node to upgrade itself. When an upgrade of the node is already in flight, no new call is made and the
+     * pending one is returned. When a restart of the node is in flight, the upgrade is made once the restart completed,
+     * whatever its outcome.
+     * 
+     * @param nodeId
+     *            the id of the node.
+     * @param url
+     *            the url of the node's upgrade servlet.
+     * @param form
+     *            the parameters of the upgrade.
+     * @return a future that is set to <code>true</code> once the node accepted the upgrade, or to <code>false</code> if
+     *         it could not be reached.
+     */
+    public ListenableFuture<Boolean> upgrade(String nodeId, String url, List<NameValuePair> form) {
+        HttpPost post = new HttpPost(url);
+        try {
+            post.setEntity(new UrlEncodedFormEntity(form));
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            return failed();
+        }
+        return submit(nodeId, post, State.UPGRADING);
+    }
+
+    /**
+     * @param nodeId
+     *            the id of the node.
+     * @return the recycle state of the node, or <code>null</code> if the node was never recycled.
+     */
+    public State getState(String nodeId) {
+        Recycle recycle = recycles.get(nodeId);
+        return recycle == null ? null : recycle.state;
+    }
+
+    /**
+     * @param nodeId
+     *            the id of the node.
+     * @return the state of the restart of the node, or <code>null</code> if no restart was asked for since the node was
+     *         last drained or upgraded.
+     */
+    public State getRestartState(String nodeId) {
+        Recycle recycle = recycles.get(nodeId);
+        return (recycle == null || recycle.call != State.RESTARTING) ? null : recycle.state;
+    }
+
+    /**
+     * @return the state of every node that is being drained or has a call in flight.
+     */
+    public Map<String, State> getInFlight() {
+        Map<String, State> inFlight = new HashMap<String, State>();
+        for (Map.Entry<String, Recycle> each : recycles.entrySet()) {
+            State state = each.getValue().state;
+            if (state.isInFlight()) {
+                inFlight.put(each.getKey(), state);
+            }
+        }
+        return Collections.unmodifiableMap(inFlight);
+    }
+
+    /**
+     * Stops the background threads and closes the connections to the nodes.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+        try {
+            client.close();
+        } catch (IOException e) {// NOSONAR
+            // Gobble exceptions and chose to do nothing with it.
+        }
+    }
+
+    private static ListenableFuture<Boolean> failed() {
+        SettableFuture<Boolean> result = SettableFuture.create();
+        result.set(false);
+        return result;
+    }
+
+    private ListenableFuture<Boolean> submit(final String nodeId, final HttpPost post, final State state) {
+        Recycle recycle = new Recycle(state, post);
+        while (true) {
+            Recycle current = recycles.get(nodeId);
+            if (current != null && current.result != null && current.state.isInFlight()) {
+                // Only one call at a time per node; whoever asks again for the same call waits for the pending one.
+                if (current.call == state) {
+                    return current.result;
+                }
+                // Another call is made once the pending one completed.
+                return Futures.transform(current.result, new AsyncFunction<Boolean, Boolean>() {
+                    @Override
+                    public ListenableFuture<Boolean> apply(Boolean pending) {
+                        return submit(nodeId, post, state);
+                    }
+                }, executor);
+            }
+            boolean replaced = (current == null) ? recycles.putIfAbsent(nodeId, recycle) == null : recycles.replace(
+                    nodeId, current, recycle);
+            if (replaced) {
+                break;
+            }
+        }
+        executor.execute(new Attempt(nodeId, recycle));
+        return recycle.result;
+    }
+
+    /**
+     * Makes a call once, rescheduling itself when the call fails and attempts are left.
+     */
+    private final class Attempt implements Runnable {
+        private final String nodeId;
+        private final Recycle recycle;
+
+        Attempt(String nodeId, Recycle recycle) {
+            this.nodeId = nodeId;
+            this.recycle = recycle;
+        }
+
+        @Override
+        public void run() {
+            recycle.attempts += 1;
+            recycle.state = recycle.call;
+            if (call()) {
+                recycle.state = State.COMPLETED;
+                recycle.result.set(true);
+                return;
+            }
+            if (recycle.attempts >= maxAttempts) {
+                LOGGER.warning("Giving up on " + recycle.post.getURI() + " of node " + nodeId + " after "
+                        + recycle.attempts + " attempts.");
+                recycle.state = State.FAILED;
+                recycle.result.set(false);
+                return;
+            }
+            recycle.state = State.RETRY_SCHEDULED;
+            long backoff = initialBackoff << (recycle.attempts - 1);
+            executor.schedule(this, backoff, TimeUnit.MILLISECONDS);
+        }
+
+        private boolean call() {
+            try (CloseableHttpResponse response = client.execute(recycle.post)) {
+                EntityUtils.consume(response.getEntity());
+                int status = response.getStatusLine().getStatusCode();
+                if (status >= 500) {
+                    LOGGER.warning("Node " + nodeId + " answered " + status + " to " + recycle.post.getURI());
+                    return false;
+                }
+                return true;
+            } catch (NoHttpResponseException e) {
+                // The node went down before answering, which is what a restart is expected to do.
+                return recycle.call == State.RESTARTING;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Unable to reach node " + nodeId + ": " + e.getMessage(), e);
+                return false;
+            } finally {
+                recycle.post.reset();
+            }
+        }
+    }
+
+    /**
+     * The recycle of a node: the call made to it, its state and its eventual result.
+     */
+    private static final class Recycle {
+        private final State call;
+        private final HttpPost post;
+        private final SettableFuture<Boolean> result;
+        private volatile State state;
+        private int attempts;
+
+        Recycle(State state) {
+            this.call = state;
+            this.post = null;
+            this.result = null;
+            this.state = state;
+        }
+
+        Recycle(State call, HttpPost post) {
+            this.call = call;
+            this.post = post;
+            this.result = SettableFuture.create();
+            this.state = call;
+        }
+    }
+}
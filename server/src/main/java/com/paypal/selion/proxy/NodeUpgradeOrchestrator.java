@@ -0,0 +1,336 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.openqa.grid.internal.Registry;
+import org.openqa.grid.internal.RemoteProxy;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import com.paypal.selion.logging.SeLionGridLogger;
+import com.paypal.selion.proxy.NodeRecycleCoordinator.State;
+
+/**
+ * Rolls an upgrade out to the nodes of the Grid, a few nodes at a time. At most <code>maxDraining</code> nodes are
+ * asked to upgrade and then drain and restart at once; the next node is asked once one of them is back, i.e. once it
+ * registered with the Hub again. That keeps most of the capacity of the Grid available during an upgrade, and stops the
+ * roll out when upgraded nodes do not come back. The calls to the nodes are made by the {@link NodeRecycleCoordinator},
+ * so starting an upgrade returns right away and its progress can be polled with {@link #getCurrent()}. <br>
+ * <br>
+ * A node that does not register again within a few minutes of being asked to restart, or of leaving the Hub, is
+ * marked as {@link Status#FAILED}. An upgrade that is no longer wanted can be stopped with {@link #cancel()}.
+ */
+public final class NodeUpgradeOrchestrator {
+
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(NodeUpgradeOrchestrator.class);
+
+    private static final long POLL_INTERVAL = 2000;
+    private static final long RESTART_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * The progress of a node through an upgrade.
+     */
+    public enum Status {
+        /** The node waits for its turn. */
+        QUEUED,
+        /** The node is being asked to upgrade. */
+        UPGRADING,
+        /** The node accepted the upgrade and waits for its running sessions to complete. */
+        DRAINING,
+        /** The node was asked to restart and has not registered again yet. */
+        RESTARTING,
+        /** The node registered again after restarting. */
+        UPGRADED,
+        /** The node could not be reached or did not accept the upgrade. */
+        REJECTED,
+        /** The node could not be restarted, or did not register again in time. */
+        FAILED,
+        /** The upgrade was cancelled before the node was done. */
+        CANCELLED;
+
+        boolean isActive() {
+            return this == UPGRADING || this == DRAINING || this == RESTARTING;
+        }
+
+        boolean isDone() {
+            return this == UPGRADED || this == REJECTED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private static class InstanceHolder {
+        private static final NodeUpgradeOrchestrator INSTANCE = new NodeUpgradeOrchestrator(POLL_INTERVAL,
+                RESTART_TIMEOUT);
+    }
+
+    private final long pollInterval;
+    private final long restartTimeout;
+    private final ScheduledExecutorService executor;
+    private Upgrade current;
+
+    NodeUpgradeOrchestrator(long pollInterval, long restartTimeout) {
+        this.pollInterval = pollInterval;
+        this.restartTimeout = restartTimeout;
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("SeLion-Node-Upgrader-%d").build());
+    }
+
+    /**
+     * @return the orchestrator shared by the Hub.
+     */
+    public static NodeUpgradeOrchestrator getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Starts rolling an upgrade out to nodes, unless an upgrade is still in progress.
+     * 
+     * @param registry
+     *            the {@link Registry} the nodes registered with.
+     * @param proxies
+     *            the nodes to upgrade.
+     * @param downloadJSON
+     *            the json that describes the artifacts to upgrade to.
+     * @param maxDraining
+     *            the number of nodes that may be upgrading at the same time.
+     * @return the {@link Upgrade} that was started, or <code>null</code> if an upgrade is still in progress.
+     */
+    public synchronized Upgrade start(Registry registry, Collection<SeLionRemoteProxy> proxies, String downloadJSON,
+            int maxDraining) {
+        if (current != null && !current.isDone()) {
+            return null;
+        }
+        current = new Upgrade(registry, proxies, downloadJSON, Math.max(1, maxDraining), restartTimeout);
+        LOGGER.info("Upgrading " + proxies.size() + " node(s), " + current.maxDraining + " at a time.");
+        current.task = executor.scheduleWithFixedDelay(new Runnable() {
+            private final Upgrade upgrade = current;
+
+            @Override
+            public void run() {
+                try {
+                    upgrade.advance();
+                } catch (RuntimeException e) { // NOSONAR
+                    // keep polling, a failure to look at one node must not stall the upgrade
+                    LOGGER.log(Level.SEVERE, e.getMessage(), e);
+                }
+            }
+        }, 0, pollInterval, TimeUnit.MILLISECONDS);
+        return current;
+    }
+
+    /**
+     * Cancels the upgrade in progress. The nodes that were already asked to upgrade are not called back, but are no
+     * longer waited for, so that a new upgrade can be started.
+     * 
+     * @return the {@link Upgrade} that was cancelled, or <code>null</code> if no upgrade was in progress.
+     */
+    public synchronized Upgrade cancel() {
+        if (current == null || current.isDone()) {
+            return null;
+        }
+        current.cancel();
+        return current;
+    }
+
+    /**
+     * @return the last {@link Upgrade} that was started, or <code>null</code> if there was none.
+     */
+    public synchronized Upgrade getCurrent() {
+        return current;
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * The roll out of an upgrade to a set of nodes.
+     */
+    public static final class Upgrade {
+        private final Registry registry;
+        private final String downloadJSON;
+        private final int maxDraining;
+        private final long restartTimeout;
+        private final long startedAt = System.currentTimeMillis();
+        private final Map<String, SeLionRemoteProxy> proxies = new LinkedHashMap<String, SeLionRemoteProxy>();
+        private final Map<String, Status> statuses = new LinkedHashMap<String, Status>();
+        private final Map<String, Long> restartDeadlines = new HashMap<String, Long>();
+        private final Deque<String> queue = new ArrayDeque<String>();
+        private ScheduledFuture<?> task;
+
+        Upgrade(Registry registry, Collection<SeLionRemoteProxy> proxies, String downloadJSON, int maxDraining,
+                long restartTimeout) {
+            this.registry = registry;
+            this.downloadJSON = downloadJSON;
+            this.maxDraining = maxDraining;
+            this.restartTimeout = restartTimeout;
+            for (SeLionRemoteProxy proxy : proxies) {
+                this.proxies.put(proxy.getId(), proxy);
+                statuses.put(proxy.getId(), Status.QUEUED);
+                queue.add(proxy.getId());
+            }
+        }
+
+        /**
+         * @return <code>true</code> once every node is either upgraded or could not be upgraded.
+         */
+        public synchronized boolean isDone() {
+            for (Status status : statuses.values()) {
+                if (!status.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the status of every node of the upgrade, in the order they are upgraded.
+         */
+        public synchronized Map<String, Status> getStatuses() {
+            return new LinkedHashMap<String, Status>(statuses);
+        }
+
+        /**
+         * @return the progress of the upgrade as json.
+         */
+        public synchronized JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("startedAt", startedAt);
+            json.addProperty("maxDraining", maxDraining);
+            json.addProperty("done", isDone());
+            Map<Status, Integer> counts = new EnumMap<Status, Integer>(Status.class);
+            JsonObject nodes = new JsonObject();
+            for (Map.Entry<String, Status> each : statuses.entrySet()) {
+                nodes.addProperty(each.getKey(), each.getValue().name());
+                Integer count = counts.get(each.getValue());
+                counts.put(each.getValue(), (count == null) ? 1 : count + 1);
+            }
+            JsonObject summary = new JsonObject();
+            for (Status status : Status.values()) {
+                Integer count = counts.get(status);
+                summary.addProperty(status.name(), (count == null) ? 0 : count);
+            }
+            json.add("summary", summary);
+            json.add("nodes", nodes);
+            return json;
+        }
+
+        /**
+         * Looks at the nodes that are being upgraded and asks the next nodes in line when there is room.
+         */
+        synchronized void advance() {
+            int active = 0;
+            for (Map.Entry<String, Status> each : statuses.entrySet()) {
+                if (each.getValue() == Status.DRAINING || each.getValue() == Status.RESTARTING) {
+                    each.setValue(progressOf(each.getKey(), each.getValue()));
+                }
+                if (each.getValue().isActive()) {
+                    active += 1;
+                }
+            }
+            while (active < maxDraining && !queue.isEmpty()) {
+                dispatch(queue.poll());
+                active += 1;
+            }
+            if (isDone() && task != null) {
+                LOGGER.info("Upgrade completed: " + toJson().get("summary"));
+                task.cancel(false);
+            }
+        }
+
+        /**
+         * Stops asking nodes to upgrade and stops waiting for the nodes that were asked.
+         */
+        synchronized void cancel() {
+            queue.clear();
+            for (Map.Entry<String, Status> each : statuses.entrySet()) {
+                if (!each.getValue().isDone()) {
+                    each.setValue(Status.CANCELLED);
+                }
+            }
+            if (task != null) {
+                task.cancel(false);
+            }
+            LOGGER.info("Upgrade cancelled: " + toJson().get("summary"));
+        }
+
+        private Status progressOf(String id, Status status) {
+            SeLionRemoteProxy proxy = proxies.get(id);
+            RemoteProxy registered = registry.getProxyById(id);
+            if (registered != null && registered != proxy) {
+                // a new proxy means the node restarted and registered again
+                return Status.UPGRADED;
+            }
+            State restartState = proxy.getRestartState();
+            if (restartState == State.FAILED) {
+                return Status.FAILED;
+            }
+            // a node that left the Hub is restarting as well, whether it was asked to or not
+            if (restartState == null && registered != null) {
+                return status;
+            }
+            Long deadline = restartDeadlines.get(id);
+            if (deadline == null) {
+                restartDeadlines.put(id, System.currentTimeMillis() + restartTimeout);
+            } else if (System.currentTimeMillis() > deadline) {
+                LOGGER.warning("Node " + id + " did not register again within " + restartTimeout + " ms of restarting.");
+                return Status.FAILED;
+            }
+            return Status.RESTARTING;
+        }
+
+        private void dispatch(final String id) {
+            statuses.put(id, Status.UPGRADING);
+            Futures.addCallback(proxies.get(id).upgrade(downloadJSON), new FutureCallback<Boolean>() {
+                @Override
+                public void onSuccess(Boolean accepted) {
+                    update(id, accepted ? Status.DRAINING : Status.REJECTED);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    LOGGER.log(Level.SEVERE, t.getMessage(), t);
+                    update(id, Status.REJECTED);
+                }
+            });
+        }
+
+        private synchronized void update(String id, Status status) {
+            if (statuses.get(id) == Status.CANCELLED) {
+                return;
+            }
+            statuses.put(id, status);
+        }
+    }
+}
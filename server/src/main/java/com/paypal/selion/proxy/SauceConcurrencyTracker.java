@@ -0,0 +1,224 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.apache.http.HttpStatus;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.paypal.selion.logging.SeLionGridLogger;
+
+/**
+ * Keeps track of the number of tests running on Sauce Labs for an account, so that {@link SeLionSauceProxy} can decide
+ * whether a new session may start without calling the Sauce Labs REST api. <br>
+ * <br>
+ * The number of running tests is polled from the <code>/activity</code> api in the background. In between two polls,
+ * the sessions started and completed through the proxies are accounted for locally. Until the first poll succeeded the
+ * number is unknown, and no session is admitted. <br>
+ * <br>
+ * All the proxies of an account share one tracker, obtained with {@link #register(String, String, long)}, so that
+ * they do not admit more sessions than the account can run between them.
+ */
+class SauceConcurrencyTracker {
+
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(SauceConcurrencyTracker.class);
+
+    private static final Map<String, SauceConcurrencyTracker> TRACKERS = new HashMap<String, SauceConcurrencyTracker>();
+
+    private final String activityUrl;
+    private final String authKey;
+    private final long pollInterval;
+    private final ScheduledExecutorService poller;
+    /** The number of proxies using this tracker, guarded by the class. */
+    private int users;
+
+    /** The number of running tests as reported by the last successful poll. */
+    private volatile int reported;
+    private volatile boolean known;
+    /** The sessions started minus the sessions completed since the last successful poll was requested. */
+    private final AtomicInteger localDelta = new AtomicInteger();
+
+    /**
+     * @param activityUrl
+     *            the url of the <code>/activity</code> api of the account.
+     * @param authKey
+     *            the base64 encoded credentials of the account.
+     * @param pollInterval
+     *            the time between two polls, in milliseconds.
+     */
+    SauceConcurrencyTracker(String activityUrl, String authKey, long pollInterval) {
+        this.activityUrl = activityUrl;
+        this.authKey = authKey;
+        this.pollInterval = pollInterval;
+        poller = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+                .setNameFormat("SeLion-Sauce-Activity-Poller-%d").build());
+    }
+
+    /**
+     * Returns the tracker of an account, starting it if no proxy uses it yet. Every call must be matched by a call to
+     * {@link #unregister(SauceConcurrencyTracker)}.
+     * 
+     * @param activityUrl
+     *            the url of the <code>/activity</code> api of the account.
+     * @param authKey
+     *            the base64 encoded credentials of the account.
+     * @param pollInterval
+     *            the time between two polls, in milliseconds, should the tracker be started.
+     * @return the tracker shared by all the proxies of the account.
+     */
+    static synchronized SauceConcurrencyTracker register(String activityUrl, String authKey, long pollInterval) {
+        String account = activityUrl + "#" + authKey;
+        SauceConcurrencyTracker tracker = TRACKERS.get(account);
+        if (tracker == null) {
+            tracker = new SauceConcurrencyTracker(activityUrl, authKey, pollInterval);
+            TRACKERS.put(account, tracker);
+            tracker.start();
+        }
+        tracker.users += 1;
+        return tracker;
+    }
+
+    /**
+     * Gives back a tracker obtained with {@link #register(String, String, long)}. The tracker stops polling once no
+     * proxy uses it anymore.
+     */
+    static synchronized void unregister(SauceConcurrencyTracker tracker) {
+        tracker.users -= 1;
+        if (tracker.users <= 0) {
+            TRACKERS.remove(tracker.activityUrl + "#" + tracker.authKey);
+            tracker.stop();
+        }
+    }
+
+    /**
+     * Polls right away and then periodically, in the background. No session is admitted until the first poll
+     * succeeded.
+     */
+    void start() {
+        poller.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                refresh();
+            }
+        }, 0, pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Admits a new session if the number of running tests does not exceed the maximum.
+     * 
+     * @param maxRunning
+     *            the maximum number of running tests.
+     * @return <code>true</code> if the session was admitted. It must then be given back with {@link #release()}.
+     */
+    boolean tryAcquire(int maxRunning) {
+        if (!known) {
+            return false;
+        }
+        while (true) {
+            int delta = localDelta.get();
+            if (reported + delta > maxRunning) {
+                return false;
+            }
+            if (localDelta.compareAndSet(delta, delta + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a session admitted by {@link #tryAcquire(int)}.
+     */
+    void release() {
+        localDelta.decrementAndGet();
+    }
+
+    /**
+     * @return the estimated number of tests running, or <code>-1</code> while it is unknown.
+     */
+    int getRunning() {
+        return known ? Math.max(0, reported + localDelta.get()) : -1;
+    }
+
+    /**
+     * Polls the number of running tests. Sessions started or completed while the poll is in flight are kept in the
+     * local delta, since the poll may or may not have seen them.
+     */
+    void refresh() {
+        int deltaBeforePoll = localDelta.get();
+        try {
+            JsonObject activity = getJson(activityUrl, authKey);
+            JsonObject totals = activity.getAsJsonObject("totals");
+            if (totals == null || !totals.has("all")) {
+                throw new JsonParseException("No running totals in " + activity);
+            }
+            int running = totals.get("all").getAsInt();
+            localDelta.addAndGet(-deltaBeforePoll);
+            reported = running;
+            known = true;
+        } catch (IOException | JsonParseException | IllegalStateException e) {// NOSONAR
+            // Keep going with the local accounting until the next poll.
+            LOGGER.log(Level.WARNING, "Unable to poll the Sauce Labs activity: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Calls a Sauce Labs REST api.
+     * 
+     * @param urlString
+     *            the url of the api.
+     * @param authKey
+     *            the base64 encoded credentials of the account.
+     * @return the json returned by the api.
+     * @throws IOException
+     *             if the api could not be called or answered with an error.
+     */
+    static JsonObject getJson(String urlString, String authKey) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(urlString).openConnection();
+        try {
+            conn.setRequestMethod("GET");
+            conn.setRequestProperty("Accept", "application/json");
+            conn.setRequestProperty("Authorization", "Basic " + authKey);
+            if (conn.getResponseCode() != HttpStatus.SC_OK) {
+                throw new IOException("Failed : HTTP error code : " + conn.getResponseCode());
+            }
+            try (Reader reader = new InputStreamReader(conn.getInputStream(), "UTF-8")) {
+                return new JsonParser().parse(reader).getAsJsonObject();
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+}
@@ -16,29 +16,26 @@
 package com.paypal.selion.proxy;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.http.NameValuePair;
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.message.BasicNameValuePair;
 import org.openqa.grid.common.RegistrationRequest;
 import org.openqa.grid.internal.Registry;
 import org.openqa.grid.internal.TestSession;
 import org.openqa.grid.selenium.proxy.DefaultRemoteProxy;
 
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.paypal.selion.grid.servlets.GridAutoUpgradeDelegateServlet;
 import com.paypal.selion.logging.SeLionGridLogger;
 import com.paypal.selion.node.servlets.NodeAutoUpgradeServlet;
@@ -63,12 +60,13 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
 
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(SeLionRemoteProxy.class);
     private static final int MAX_SESSION_ALLOWED = 50;
+    private static final long RELEASE_TIMEOUT = 30 * 1000;
 
     private int maxSessionsAllowed, totalSessionsCompleted = 0, totalSessionsStarted = 0;
     private boolean shutDownInProgress = false, forceShutDown = false;
     private String machine;
     private List<String> errorSessions = new ArrayList<String>();
-    private File logFile = null;
+    private NodeEventJournal journal;
 
     private int getUniqueSessionCount() {
         try {
@@ -98,11 +96,7 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
         StringBuffer info = new StringBuffer();
         maxSessionsAllowed = getUniqueSessionCount();
         machine = getRemoteHost().getHost();
-        String logFileName = SeLionGridConstants.LOGS_DIR + machine + ".log";
-        logFile = new File(logFileName);
-        if (logFile.exists()) {
-            FileUtils.deleteQuietly(logFile);
-        }
+        journal = new NodeEventJournal(new File(SeLionGridConstants.LOGS_DIR + machine + ".log"));
         info.append("New proxy instantiated for the machine ").append(machine).append("\n");
         info.append("SeLionRemoteProxy will attempt to recycle the node [");
         info.append(machine).append("] after ").append(maxSessionsAllowed);
@@ -111,69 +105,60 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
     }
 
     private void appendMsgToCustomLog(String msg) {
-        FileOutputStream fos = null;
-        StringBuilder sb = new StringBuilder("\n");
-        sb.append(MessageFormat.format("{0, date} {0, time} ", new Object[] { new Date(System.currentTimeMillis()) }));
-        sb.append(msg).append("\n");
-        try {
-            fos = new FileOutputStream(logFile, true);
-            fos.write(sb.toString().getBytes());
-            fos.flush();
-        } catch (IOException e) {// NOSONAR
-            // Gobble exceptions and chose to do nothing with it.
-        } finally {
-            if (fos != null) {
-                try {
-                    fos.close();
-                } catch (IOException e) {// NOSONAR
-                    // Gobble exceptions and chose to do nothing with it.
-                }
-            }
-        }
+        journal.append(msg);
     }
 
+    /**
+     * Asks the node to upgrade itself, and to restart once it is idle. Waits up to 30 seconds for the node to accept the
+     * upgrade; use {@link #upgrade(String)} to not wait.
+     * 
+     * @param downloadJSON
+     *            the json that describes the artifacts to upgrade to.
+     * @return <code>true</code> if the node accepted the upgrade in time. When it did not answer in time, the upgrade
+     *         goes on in the background and <code>false</code> is returned.
+     */
     public boolean release(String downloadJSON) {
-
-        final int TIME_OUT = 30 * 1000;
-        RequestConfig config = RequestConfig.custom().setConnectTimeout(TIME_OUT).setSocketTimeout(TIME_OUT).build();
-
-        CloseableHttpClient client = HttpClientBuilder.create().setDefaultRequestConfig(config).build();
-        StringBuilder url = new StringBuilder();
-        url.append(getId());
-        url.append("/extra/");
-        url.append(NodeAutoUpgradeServlet.class.getSimpleName());
-        HttpPost post = new HttpPost(url.toString());
-
-        List<NameValuePair> nvps = new ArrayList<NameValuePair>();
-        NameValuePair jsonNVP = new BasicNameValuePair(GridAutoUpgradeDelegateServlet.PARAM_JSON, downloadJSON);
-        nvps.add(jsonNVP);
-
         try {
-            post.setEntity(new UrlEncodedFormEntity(nvps));
-            client.execute(post);
-        } catch (ClientProtocolException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
+            return upgrade(downloadJSON).get(RELEASE_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             return false;
-        } catch (IOException e) {
+        } catch (TimeoutException e) {// NOSONAR
+            LOGGER.warning("The node " + machine + " did not accept the upgrade within " + RELEASE_TIMEOUT + " ms");
+            return false;
+        } catch (ExecutionException e) {
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
             return false;
-        } finally {
-            try {
-                client.close();
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            }
         }
+    }
 
-        synchronized (this) {
-            forceShutDown = true;
-            shutDownInProgress = true;
-            if (getTotalUsed() <= 1) {
-                shutdownNode();
+    /**
+     * Asks the node to upgrade itself, and to restart once it is idle, without waiting for the node to answer.
+     * 
+     * @param downloadJSON
+     *            the json that describes the artifacts to upgrade to.
+     * @return a future that is set to <code>true</code> once the node accepted the upgrade.
+     */
+    public ListenableFuture<Boolean> upgrade(String downloadJSON) {
+        List<NameValuePair> nvps = new ArrayList<NameValuePair>();
+        nvps.add(new BasicNameValuePair(GridAutoUpgradeDelegateServlet.PARAM_JSON, downloadJSON));
+        ListenableFuture<Boolean> upgraded = NodeRecycleCoordinator.getInstance().upgrade(getId(),
+                getNodeUrl(NodeAutoUpgradeServlet.class), nvps);
+        return Futures.transform(upgraded, new Function<Boolean, Boolean>() {
+            @Override
+            public Boolean apply(Boolean accepted) {
+                if (accepted) {
+                    synchronized (SeLionRemoteProxy.this) {
+                        forceShutDown = true;
+                        startDraining();
+                        if (getTotalUsed() <= 1) {
+                            shutdownNode();
+                        }
+                    }
+                }
+                return accepted;
             }
-        }
-
-        return true;
+        });
     }
 
     public void beforeRelease(TestSession session) {
@@ -187,7 +172,7 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
             synchronized (this) {
 
                 forceShutDown = true;
-                shutDownInProgress = true;
+                startDraining();
                 error.append("Session :").append(session.toString()).append(", ");
 
                 String testName = (String) session.getRequestedCapabilities().get("name");
@@ -212,7 +197,7 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
         TestSession session = null;
         synchronized (this) {
             if (totalSessionsStarted >= maxSessionsAllowed || forceShutDown) {
-                shutDownInProgress = true;
+                startDraining();
                 // TODO: Remove me once Node stability has been ascertained
                 // This is being included here intentionally since this is the
                 // only way to debug issues
@@ -228,7 +213,7 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
                 // count ONLY if the session was a valid one
                 totalSessionsStarted++;
                 if (totalSessionsStarted >= maxSessionsAllowed) {
-                    shutDownInProgress = true;
+                    startDraining();
                 }
                 appendMsgToCustomLog("Beginning session #" + totalSessionsStarted);
             }
@@ -258,29 +243,58 @@ public class SeLionRemoteProxy extends DefaultRemoteProxy {
         }
     }
 
-    public synchronized void shutdownNode() {
-        CloseableHttpClient client = HttpClientBuilder.create().build();
+    /**
+     * Asks the node to restart itself. The call is made in the background, so this returns right away.
+     */
+    public void shutdownNode() {
+        ListenableFuture<Boolean> restarted = NodeRecycleCoordinator.getInstance().restart(getId(),
+                getNodeUrl(NodeForceRestartServlet.class));
+        Futures.addCallback(restarted, new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean accepted) {
+                if (accepted) {
+                    appendMsgToCustomLog("Node " + machine + " shut-down successfully.");
+                } else {
+                    appendMsgToCustomLog("Node " + machine + " could not be shut-down.");
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                LOGGER.log(Level.SEVERE, t.getMessage(), t);
+            }
+        });
+    }
+
+    /**
+     * @return the recycle state of the node, or <code>null</code> if the node is not being recycled.
+     */
+    public NodeRecycleCoordinator.State getRecycleState() {
+        return NodeRecycleCoordinator.getInstance().getState(getId());
+    }
+
+    /**
+     * @return the state of the restart of the node, or <code>null</code> if the node was not asked to restart.
+     */
+    public NodeRecycleCoordinator.State getRestartState() {
+        return NodeRecycleCoordinator.getInstance().getRestartState(getId());
+    }
+
+    private void startDraining() {
+        if (!shutDownInProgress) {
+            shutDownInProgress = true;
+            NodeRecycleCoordinator.getInstance().draining(getId());
+        }
+    }
+
+    private String getNodeUrl(Class<?> servlet) {
         StringBuilder url = new StringBuilder();
         url.append("http://");
         url.append(machine);
         url.append(":").append(this.getRemoteHost().getPort());
         url.append("/extra/");
-        url.append(NodeForceRestartServlet.class.getSimpleName());
-        HttpPost post = new HttpPost(url.toString());
-        try {
-            client.execute(post);
-            appendMsgToCustomLog("Node " + machine + " shut-down successfully.");
-        } catch (ClientProtocolException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        } finally {
-            try {
-                client.close();
-            } catch (IOException e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            }
-        }
+        url.append(servlet.getSimpleName());
+        return url.toString();
     }
 
 }
\ No newline at end of file
@@ -15,27 +15,19 @@
 
 package com.paypal.selion.proxy;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Level;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.http.HttpStatus;
 import org.openqa.grid.common.RegistrationRequest;
 import org.openqa.grid.internal.Registry;
 import org.openqa.grid.internal.TestSession;
 import org.openqa.grid.selenium.proxy.DefaultRemoteProxy;
 
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
 import com.paypal.selion.logging.SeLionGridLogger;
 import com.paypal.selion.utils.SauceConfigReader;
 
@@ -47,65 +39,55 @@ public class SeLionSauceProxy extends DefaultRemoteProxy {
 
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(SeLionSauceProxy.class);
 
+    private static final long ACTIVITY_POLL_INTERVAL = 5000;
+
     private int maxTestCase = 0;
 
-    private Lock accessLock = new ReentrantLock();
+    private final SauceConcurrencyTracker tracker;
 
     public SeLionSauceProxy(RegistrationRequest request, Registry registry) {
         super(request, registry);
         maxTestCase = getMaxTestcase();
+        tracker = SauceConcurrencyTracker.register(SauceConfigReader.getInstance().getURL() + "/activity",
+                SauceConfigReader.getInstance().getAuthenticationKey(), ACTIVITY_POLL_INTERVAL);
     }
 
     @Override
     public TestSession getNewSession(Map<String, Object> requestedCapability) {
-        TestSession session = null;
-        try {
-            accessLock.lock();
-
-            try {
-                Thread.sleep(3000);
-            } catch (InterruptedException e) {
-                LOGGER.log(Level.SEVERE, e.getMessage(), e);
-            }
-
-            if (getNumberOfTCRunning() <= maxTestCase) {
-                String username = (String) requestedCapability.get("sauceUserName");
-                String accessKey = (String) requestedCapability.get("sauceApiKey");
-                String tunnelId = (String) requestedCapability.get("parent-tunnel");
-                if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(accessKey)) {
-                    requestedCapability.put("username", username);
-                    requestedCapability.put("accessKey", accessKey);
-                }
-                if (StringUtils.isEmpty(tunnelId)) {
-                    requestedCapability.put("parent-tunnel", SauceConfigReader.getInstance().getUserName());
-                }
-                session = super.getNewSession(requestedCapability);
-            }
-        } finally {
-            accessLock.unlock();
+        if (!tracker.tryAcquire(maxTestCase)) {
+            return null;
+        }
+        String username = (String) requestedCapability.get("sauceUserName");
+        String accessKey = (String) requestedCapability.get("sauceApiKey");
+        String tunnelId = (String) requestedCapability.get("parent-tunnel");
+        if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(accessKey)) {
+            requestedCapability.put("username", username);
+            requestedCapability.put("accessKey", accessKey);
+        }
+        if (StringUtils.isEmpty(tunnelId)) {
+            requestedCapability.put("parent-tunnel", SauceConfigReader.getInstance().getUserName());
+        }
+        TestSession session = super.getNewSession(requestedCapability);
+        if (session == null) {
+            tracker.release();
         }
         return session;
     }
 
     @Override
     public void afterSession(TestSession session) {
-
+        tracker.release();
     }
 
     /**
-     * Get the total number of test cases running in sauce labs for the primary account.
+     * Get the total number of test cases running in sauce labs for the primary account. The number is kept up to date
+     * in the background, so calling this does not call Sauce Labs.
      * 
      * @return number of test cases running
      */
     public int getNumberOfTCRunning() {
-        try {
-            String result = getSauceLabsRestApi(SauceConfigReader.getInstance().getURL() + "/activity");
-            JsonObject obj = new JsonParser().parse(result).getAsJsonObject();
-            return obj.getAsJsonObject("totals").get("all").getAsInt();
-        } catch (JsonSyntaxException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        }
-        return maxTestCase + 1;
+        int running = tracker.getRunning();
+        return (running < 0) ? maxTestCase + 1 : running;
     }
 
     /**
@@ -116,10 +98,10 @@ public class SeLionSauceProxy extends DefaultRemoteProxy {
      */
     public int getNumberOfTCRunningForUser(String user) {
         try {
-            String result = getSauceLabsRestApi(SauceConfigReader.getInstance().getURL() + "/activity");
-            JsonObject obj = new JsonParser().parse(result).getAsJsonObject();
+            JsonObject obj = getSauceLabsRestApi(SauceConfigReader.getInstance().getURL() + "/activity");
             return obj.getAsJsonObject("subaccounts").getAsJsonObject(user).get("all").getAsInt();
-        } catch (JsonSyntaxException e) {
+        } catch (IOException | RuntimeException e) {// NOSONAR
+            // We cannot afford to throw exceptions from within a Proxy
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
         return -1;
@@ -132,10 +114,10 @@ public class SeLionSauceProxy extends DefaultRemoteProxy {
      */
     public int getMaxTestcase() {
         try {
-            String result = getSauceLabsRestApi(SauceConfigReader.getInstance().getURL() + "/limits");
-            JsonObject obj = new JsonParser().parse(result).getAsJsonObject();
+            JsonObject obj = getSauceLabsRestApi(SauceConfigReader.getInstance().getURL() + "/limits");
             return obj.get("concurrency").getAsInt();
-        } catch (JsonSyntaxException e) {
+        } catch (IOException | RuntimeException e) {// NOSONAR
+            // We cannot afford to throw exceptions from within a Proxy
             LOGGER.log(Level.SEVERE, e.getMessage(), e);
         }
         return 0;
@@ -154,40 +136,12 @@ public class SeLionSauceProxy extends DefaultRemoteProxy {
         return remoteHost;
     }
 
-    private String getSauceLabsRestApi(String urlString) {
-
-        URL url = null;
-        HttpURLConnection conn = null;
-        String result = "";
-        try {
-            url = new URL(urlString);
-            conn = (HttpURLConnection) url.openConnection();
-
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setRequestProperty("Authorization", "Basic " + SauceConfigReader.getInstance().getAuthenticationKey());
-            if (conn.getResponseCode() != HttpStatus.SC_OK) {
-                throw new RuntimeException("Failed : HTTP error code : " + conn.getResponseCode());
-            }
-
-            BufferedReader br = new BufferedReader(new InputStreamReader((conn.getInputStream())));
-
-            String output;
-
-            while ((output = br.readLine()) != null) {
-                result = result + output;
-            }
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, e.getMessage(), e);
-        } finally {
-            if (conn != null) {
-                conn.disconnect();
-            }
-        }
-        return result;
+    private JsonObject getSauceLabsRestApi(String urlString) throws IOException {
+        return SauceConcurrencyTracker.getJson(urlString, SauceConfigReader.getInstance().getAuthenticationKey());
     }
 
     public void teardown() {
+        SauceConcurrencyTracker.unregister(tracker);
         super.teardown();
     }
 
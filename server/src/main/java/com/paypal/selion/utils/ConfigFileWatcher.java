@@ -0,0 +1,96 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.logging.Level;
+
+import org.apache.commons.io.IOUtils;
+
+import com.paypal.selion.logging.SeLionGridLogger;
+
+/**
+ * Watches the SeLion configuration file and has {@link ConfigParser} reload it whenever the file is modified or
+ * replaced.
+ */
+final class ConfigFileWatcher implements Runnable {
+    private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(ConfigFileWatcher.class);
+
+    private final Path fileName;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    ConfigFileWatcher(File file) throws IOException {
+        Path path = file.getAbsoluteFile().toPath();
+        fileName = path.getFileName();
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            // editors often save by writing a new file and renaming it over the old one, hence ENTRY_CREATE
+            path.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeQuietly(watchService);
+            throw e;
+        }
+        thread = new Thread(this, "SeLion-Config-Watcher");
+        thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    void close() {
+        IOUtils.closeQuietly(watchService);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) { // NOSONAR
+            // another configuration file is in use now, or the JVM is going down
+            LOGGER.fine("Stopped watching the configuration file " + fileName);
+        }
+    }
+
+    private void reload() {
+        try {
+            ConfigParser.reload();
+        } catch (RuntimeException e) { // NOSONAR
+            LOGGER.log(Level.SEVERE, "Unable to reload the configuration file " + fileName, e);
+        }
+    }
+}
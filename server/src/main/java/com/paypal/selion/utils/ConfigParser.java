@@ -23,37 +23,113 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
-import com.google.gson.JsonSyntaxException;
 import com.paypal.selion.logging.SeLionGridLogger;
 import com.paypal.selion.pojos.SeLionGridConstants;
 
 /**
  * A configuration utility that is internally used by SeLion to parse SeLion configuration json file.
- *
+ * <p>
+ * Every {@link ConfigParser} is an immutable snapshot of the configuration, with its values converted once when the
+ * file is read, so looking a value up does not parse or allocate anything. When the configuration is loaded from a
+ * file (see {@link #setConfigFile(String)}) the file is watched, and a new snapshot replaces the current one whenever
+ * the file changes. Components that cache configuration values can register a {@link ChangeListener} to learn about
+ * the new snapshot.
  */
 public final class ConfigParser {
-    private static ConfigParser parser;
-    private JsonObject configuration;
+    private static volatile ConfigParser parser;
     private static String configFile;
+    private static ConfigFileWatcher watcher;
+    private static final List<ChangeListener> LISTENERS = new CopyOnWriteArrayList<ChangeListener>();
     private static final SeLionGridLogger LOGGER = SeLionGridLogger.getLogger(ConfigParser.class);
 
+    private final JsonObject configuration;
+    private final Map<String, String> strings;
+    private final Map<String, Long> numbers;
+    private final String source;
+
+    /**
+     * Receives the new {@link ConfigParser} snapshot whenever the configuration file changes.
+     */
+    public interface ChangeListener {
+        /**
+         * @param previous
+         *            the snapshot that was in use until now
+         * @param current
+         *            the snapshot that {@link ConfigParser#parse()} returns from now on
+         */
+        void configurationChanged(ConfigParser previous, ConfigParser current);
+    }
+
     /**
      * @return A {@link ConfigParser} object that can be used to retrieve values from the Configuration object as
      *         represented by the JSON file passed via the JVM argument <b>SeLionConfig</b>
      */
     public static ConfigParser parse() {
-        LOGGER.entering();
-        if (parser == null) {
-            parser = new ConfigParser();
+        ConfigParser current = parser;
+        if (current != null) {
+            return current;
+        }
+        synchronized (ConfigParser.class) {
+            if (parser == null) {
+                parser = load();
+                watch();
+            }
+            return parser;
         }
-        LOGGER.exiting(parser.toString());
-        return parser;
+    }
+
+    /**
+     * Re-reads the configuration and makes it the current snapshot. Registered {@link ChangeListener}s are notified
+     * when the contents differ from the previous snapshot. If the configuration cannot be read, the previous snapshot
+     * stays in use.
+     * 
+     * @return the {@link ConfigParser} snapshot that is current after the reload
+     */
+    public static ConfigParser reload() {
+        ConfigParser previous;
+        ConfigParser current;
+        synchronized (ConfigParser.class) {
+            previous = parser;
+            try {
+                current = load();
+            } catch (ConfigParserException | IllegalArgumentException e) {
+                if (previous == null) {
+                    throw e;
+                }
+                LOGGER.log(Level.SEVERE, "Unable to reload the configuration, keeping the previous one.", e);
+                return previous;
+            }
+            if (previous != null && previous.configuration.equals(current.configuration)) {
+                return previous;
+            }
+            parser = current;
+        }
+        LOGGER.info("Configuration reloaded from " + current.source);
+        if (previous != null) {
+            for (ChangeListener listener : LISTENERS) {
+                try {
+                    listener.configurationChanged(previous, current);
+                } catch (RuntimeException e) { // NOSONAR
+                    // one misbehaving listener must not keep the others from seeing the new configuration
+                    LOGGER.log(Level.WARNING, "Configuration change listener " + listener + " failed.", e);
+                }
+            }
+        }
+        return current;
     }
 
     /**
@@ -63,7 +139,30 @@ public final class ConfigParser {
      */
     public static void setConfigFile(String file) {
         LOGGER.entering(file);
-        configFile = file;
+        synchronized (ConfigParser.class) {
+            configFile = file;
+            parser = null;
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        }
+    }
+
+    /**
+     * @param listener
+     *            the {@link ChangeListener} to notify when the configuration file changes
+     */
+    public static void addChangeListener(ChangeListener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener
+     *            the {@link ChangeListener} that should no longer be notified
+     */
+    public static void removeChangeListener(ChangeListener listener) {
+        LISTENERS.remove(listener);
     }
 
     /**
@@ -72,12 +171,7 @@ public final class ConfigParser {
      * @return an int that represents the value for the key
      */
     public int getInt(String key) {
-        LOGGER.entering(key);
-        try {
-            return configuration.get(key).getAsInt();
-        } catch (JsonSyntaxException | NullPointerException e) { //NOSONAR
-            throw new ConfigParserException(e);
-        }
+        return (int) getLong(key);
     }
 
     /**
@@ -88,12 +182,8 @@ public final class ConfigParser {
      * @return
      */
     public int getInt(String key, int defaultVal) {
-        LOGGER.entering(key);
-        try {
-            return configuration.get(key).getAsInt();
-        } catch (JsonSyntaxException | NullPointerException e) { //NOSONAR
-            return defaultVal;
-        }
+        Long value = numbers.get(key);
+        return (value == null) ? defaultVal : value.intValue();
     }
 
     /**
@@ -102,12 +192,11 @@ public final class ConfigParser {
      * @return a long that represents the value for the key
      */
     public long getLong(String key) {
-        LOGGER.entering(key);
-        try {
-            return configuration.get(key).getAsLong();
-        } catch (JsonSyntaxException | NullPointerException e) { //NOSONAR
-            throw new ConfigParserException(e);
+        Long value = numbers.get(key);
+        if (value == null) {
+            throw new ConfigParserException(key + " is not configured as a number in " + source);
         }
+        return value;
     }
 
     /**
@@ -118,12 +207,8 @@ public final class ConfigParser {
      * @return
      */
     public long getLong(String key, long defaultVal) {
-        LOGGER.entering(key);
-        try {
-            return configuration.get(key).getAsLong();
-        } catch (JsonSyntaxException | NullPointerException e) { //NOSONAR
-            return defaultVal;
-        }
+        Long value = numbers.get(key);
+        return (value == null) ? defaultVal : value;
     }
 
     /**
@@ -132,12 +217,11 @@ public final class ConfigParser {
      * @return a String that represents the value for the key
      */
     public String getString(String key) {
-        LOGGER.entering(key);
-        try {
-            return configuration.get(key).getAsString();
-        } catch (JsonSyntaxException | NullPointerException e) { //NOSONAR
-            throw new ConfigParserException(e);
+        String value = strings.get(key);
+        if (value == null) {
+            throw new ConfigParserException(key + " is not configured in " + source);
         }
+        return value;
     }
 
     /**
@@ -148,29 +232,74 @@ public final class ConfigParser {
      * @return
      */
     public String getString(String key, String defaultVal) {
-        LOGGER.entering(key);
-        try {
-            return configuration.get(key).getAsString();
-        } catch (JsonSyntaxException | NullPointerException e) { //NOSONAR
-            return defaultVal;
+        String value = strings.get(key);
+        return (value == null) ? defaultVal : value;
+    }
+
+    /**
+     * @param key
+     *            The key for which the value is to be read for.
+     * @param defaultVal
+     *            default value to use if the key does not exist
+     * @return a boolean that represents the value for the key
+     */
+    public boolean getBoolean(String key, boolean defaultVal) {
+        String value = strings.get(key);
+        return (value == null) ? defaultVal : Boolean.parseBoolean(value);
+    }
+
+    private ConfigParser(JsonObject configuration, String source) {
+        this.configuration = configuration;
+        this.source = source;
+        ImmutableMap.Builder<String, String> stringsBuilder = ImmutableMap.builder();
+        ImmutableMap.Builder<String, Long> numbersBuilder = ImmutableMap.builder();
+        for (Entry<String, JsonElement> entry : configuration.entrySet()) {
+            if (!entry.getValue().isJsonPrimitive()) {
+                continue;
+            }
+            stringsBuilder.put(entry.getKey(), entry.getValue().getAsString());
+            try {
+                numbersBuilder.put(entry.getKey(), entry.getValue().getAsLong());
+            } catch (NumberFormatException e) { // NOSONAR
+                // not a number, so it can only be read as a String
+            }
         }
+        strings = stringsBuilder.build();
+        numbers = numbersBuilder.build();
     }
 
-    private ConfigParser() {
+    private static ConfigParser load() {
         try {
-            readConfigFileContents();
+            String source = StringUtils.isBlank(configFile) ? SeLionGridConstants.SELION_CONFIG_FILE_RESOURCE
+                    : configFile;
+            ConfigParser loaded = new ConfigParser(readConfigFileContents(), source);
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Loaded " + loaded);
+            }
+            return loaded;
         } catch (IOException e) {
             throw new ConfigParserException(e);
         }
+    }
 
+    private static void watch() {
+        if (watcher != null || StringUtils.isBlank(configFile)) {
+            return;
+        }
+        try {
+            watcher = new ConfigFileWatcher(new File(configFile));
+            watcher.start();
+        } catch (IOException | UnsupportedOperationException e) { // NOSONAR
+            LOGGER.log(Level.WARNING, "Changes to " + configFile + " will not be picked up without a restart.", e);
+        }
     }
 
-    private void readConfigFileContents() throws IOException {
+    private static JsonObject readConfigFileContents() throws IOException {
         LOGGER.entering();
         InputStream stream = null;
         if (StringUtils.isBlank(configFile)) {
             LOGGER.fine("Config file will be loaded as a resource.");
-            stream = this.getClass().getResourceAsStream(SeLionGridConstants.SELION_CONFIG_FILE_RESOURCE);
+            stream = ConfigParser.class.getResourceAsStream(SeLionGridConstants.SELION_CONFIG_FILE_RESOURCE);
         } else {
             File config = new File(configFile);
             String path = config.getAbsolutePath();
@@ -190,11 +319,12 @@ public final class ConfigParser {
             IOUtils.closeQuietly(br);
         }
         try {
-            configuration = new JsonParser().parse(builder.toString()).getAsJsonObject();
-        } catch (JsonSyntaxException e) {
+            JsonObject configuration = new JsonParser().parse(builder.toString()).getAsJsonObject();
+            LOGGER.exiting();
+            return configuration;
+        } catch (JsonParseException | IllegalStateException e) {
             throw new ConfigParserException(e);
         }
-        LOGGER.exiting();
     }
 
     @Override
@@ -203,7 +333,7 @@ public final class ConfigParser {
         builder.append("ConfigParser [configuration=");
         builder.append(configuration.toString());
         builder.append(", configFile=");
-        builder.append(configFile);
+        builder.append(source);
         builder.append("]");
         return builder.toString();
     }
@@ -218,6 +348,10 @@ public final class ConfigParser {
         public ConfigParserException(Throwable cause) {
             super(cause);
         }
+
+        public ConfigParserException(String message) {
+            super(message);
+        }
     }
 
 }
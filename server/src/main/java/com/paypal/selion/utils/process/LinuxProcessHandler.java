@@ -0,0 +1,303 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.utils.process;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import com.paypal.selion.pojos.ProcessInfo;
+import com.paypal.selion.pojos.ProcessNames;
+
+/**
+ * A {@link UnixProcessHandler} for Linux that finds the processes to be recycled by reading <code>/proc</code> instead
+ * of forking <code>pgrep</code>. The whole tree of processes below the SeLion-Grid process is looked at, not just its
+ * direct children, as are the processes of our session that were orphaned and adopted by <code>init</code>, such as a
+ * browser whose driver already went away. <br>
+ * <br>
+ * The processes are first asked to terminate with a <code>SIGTERM</code>, and those still around after a grace period
+ * are killed with a <code>SIGKILL</code>. Each signal is sent to all the processes with a single <code>kill</code>.
+ * <br>
+ * <br>
+ * When <code>/proc</code> is not available, this falls back to what {@link UnixProcessHandler} does.
+ */
+public class LinuxProcessHandler extends UnixProcessHandler {
+
+    private static final File PROC = new File("/proc");
+    private static final int INIT_PID = 1;
+    private static final long GRACE_PERIOD = TimeUnit.SECONDS.toMillis(3);
+    private static final long POLL_INTERVAL = 100;
+
+    private final long gracePeriod;
+
+    public LinuxProcessHandler() {
+        this(GRACE_PERIOD);
+    }
+
+    LinuxProcessHandler(long gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    /**
+     * @return <code>true</code> if the processes can be looked up in <code>/proc</code>.
+     */
+    static boolean isSupported() {
+        return new File(PROC, "self/stat").canRead();
+    }
+
+    @Override
+    public List<ProcessInfo> potentialProcessToBeKilled() throws ProcessHandlerException {
+        if (!isSupported()) {
+            return super.potentialProcessToBeKilled();
+        }
+        LOGGER.entering();
+        int ourProcessPID = getCurrentProcessID();
+        Map<Integer, ProcStat> all = readAll();
+        ProcStat ourselves = all.get(ourProcessPID);
+        if (ourselves == null) {
+            throw new ProcessHandlerException("Unable to find the process " + ourProcessPID + " in " + PROC);
+        }
+
+        Map<Integer, List<ProcStat>> children = new HashMap<Integer, List<ProcStat>>();
+        for (ProcStat each : all.values()) {
+            List<ProcStat> siblings = children.get(each.ppid);
+            if (siblings == null) {
+                siblings = new ArrayList<ProcStat>();
+                children.put(each.ppid, siblings);
+            }
+            siblings.add(each);
+        }
+
+        Map<Integer, ProcStat> candidates = new LinkedHashMap<Integer, ProcStat>();
+        Deque<Integer> parents = new ArrayDeque<Integer>();
+        parents.add(ourProcessPID);
+        while (!parents.isEmpty()) {
+            List<ProcStat> descendants = children.get(parents.poll());
+            if (descendants == null) {
+                continue;
+            }
+            for (ProcStat each : descendants) {
+                if (candidates.put(each.pid, each) == null) {
+                    parents.add(each.pid);
+                }
+            }
+        }
+        // The descendants of a process that already died are adopted by init, yet stay in our session. Our own
+        // ancestors, such as the launcher that spawned us, may have been adopted too and are left alone.
+        Set<Integer> ancestors = new HashSet<Integer>();
+        ProcStat ancestor = ourselves;
+        while (ancestor != null && ancestors.add(ancestor.pid)) {
+            ancestor = all.get(ancestor.ppid);
+        }
+        List<ProcStat> orphans = children.get(INIT_PID);
+        if (orphans != null && ourselves.session != INIT_PID) {
+            for (ProcStat each : orphans) {
+                if (each.session == ourselves.session && !ancestors.contains(each.pid)) {
+                    candidates.put(each.pid, each);
+                }
+            }
+        }
+
+        List<ProcessInfo> processToBeKilled = new ArrayList<ProcessInfo>();
+        for (ProcStat each : candidates.values()) {
+            if (!each.isZombie() && matches(each.name.toLowerCase())) {
+                processToBeKilled.add(new ProcessInfo(each.name, Integer.toString(each.pid)));
+            }
+        }
+        LOGGER.exiting(processToBeKilled.toString());
+        return processToBeKilled;
+    }
+
+    @Override
+    public void killProcess(List<ProcessInfo> processes) throws ProcessHandlerException {
+        if (!isSupported()) {
+            super.killProcess(processes);
+            return;
+        }
+        if (processes.isEmpty()) {
+            return;
+        }
+        try {
+            List<ProcessInfo> remaining = signal("-TERM", processes);
+            long deadline = System.currentTimeMillis() + gracePeriod;
+            while (!remaining.isEmpty() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(POLL_INTERVAL);
+                remaining = alive(remaining);
+            }
+            if (!remaining.isEmpty()) {
+                LOGGER.info("Forcibly killing processes that did not terminate: " + remaining);
+                signal("-KILL", remaining);
+            }
+            LOGGER.info("Successfully killed all stalled processes");
+        } catch (IOException e) {
+            throw new ProcessHandlerException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessHandlerException(e);
+        }
+    }
+
+    @Override
+    protected int getCurrentProcessID() throws ProcessHandlerException {
+        if (!isSupported()) {
+            return super.getCurrentProcessID();
+        }
+        try {
+            return Integer.parseInt(new File(PROC, "self").getCanonicalFile().getName());
+        } catch (IOException | NumberFormatException e) {
+            throw new ProcessHandlerException(e);
+        }
+    }
+
+    /**
+     * Sends a signal to the processes that are still alive.
+     * 
+     * @return the processes that were signalled.
+     */
+    private List<ProcessInfo> signal(String signal, List<ProcessInfo> processes) throws IOException,
+            InterruptedException {
+        List<ProcessInfo> alive = alive(processes);
+        if (alive.isEmpty()) {
+            return alive;
+        }
+        List<String> cmd = new ArrayList<String>();
+        cmd.add("kill");
+        cmd.add(signal);
+        for (ProcessInfo each : alive) {
+            cmd.add(each.getProcessId());
+        }
+        LOGGER.info("Sending " + signal + " to processes: " + alive);
+        Process kill = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        kill.getOutputStream().close();
+        // A process may exit before the signal reaches it, which is what we want anyway.
+        kill.waitFor();
+        kill.destroy();
+        return alive;
+    }
+
+    /**
+     * @return the processes that are still running, and were not replaced by another process with the same PID.
+     */
+    private List<ProcessInfo> alive(List<ProcessInfo> processes) {
+        List<ProcessInfo> alive = new ArrayList<ProcessInfo>();
+        for (ProcessInfo each : processes) {
+            ProcStat stat = read(new File(PROC, each.getProcessId()));
+            if (stat != null && !stat.isZombie() && stat.name.equalsIgnoreCase(each.getProcessName())) {
+                alive.add(each);
+            }
+        }
+        return alive;
+    }
+
+    private static Map<Integer, ProcStat> readAll() throws ProcessHandlerException {
+        File[] entries = PROC.listFiles();
+        if (entries == null) {
+            throw new ProcessHandlerException("Unable to list " + PROC);
+        }
+        Map<Integer, ProcStat> all = new HashMap<Integer, ProcStat>();
+        for (File each : entries) {
+            if (!isNumeric(each.getName())) {
+                continue;
+            }
+            ProcStat stat = read(each);
+            if (stat != null) {
+                all.put(stat.pid, stat);
+            }
+        }
+        return all;
+    }
+
+    private static ProcStat read(File processDir) {
+        try {
+            byte[] content = Files.readAllBytes(new File(processDir, "stat").toPath());
+            return ProcStat.parse(new String(content, StandardCharsets.UTF_8));
+        } catch (IOException | IllegalArgumentException e) {// NOSONAR
+            // The process went away while we were looking at it.
+            LOGGER.log(Level.FINE, "Unable to read " + processDir + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isNumeric(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The fields of a <code>/proc/&lt;pid&gt;/stat</code> file that are of interest to us.
+     */
+    static final class ProcStat {
+        final int pid;
+        final String name;
+        final char state;
+        final int ppid;
+        final int session;
+
+        private ProcStat(int pid, String name, char state, int ppid, int session) {
+            this.pid = pid;
+            this.name = name;
+            this.state = state;
+            this.ppid = ppid;
+            this.session = session;
+        }
+
+        boolean isZombie() {
+            return state == 'Z' || state == 'X';
+        }
+
+        /**
+         * Parses a line such as <code>1234 (chromedriver) S 1200 1234 1100 ...</code>. The name is enclosed in
+         * parentheses and may itself contain spaces and parentheses, so the fields that follow it are looked up after
+         * the last closing parenthesis.
+         */
+        static ProcStat parse(String line) {
+            int open = line.indexOf('(');
+            int close = line.lastIndexOf(')');
+            if (open <= 0 || close < open) {
+                throw new IllegalArgumentException("Unexpected stat content: " + line);
+            }
+            int pid = Integer.parseInt(line.substring(0, open).trim());
+            String name = line.substring(open + 1, close);
+            // state, ppid, pgrp, session, ...
+            String[] fields = line.substring(close + 1).trim().split(" ");
+            if (fields.length < 4 || fields[0].isEmpty()) {
+                throw new IllegalArgumentException("Unexpected stat content: " + line);
+            }
+            return new ProcStat(pid, name, fields[0].charAt(0), Integer.parseInt(fields[1]),
+                    Integer.parseInt(fields[3]));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ChecksumCacheTest {
+
+    private File directory;
+    private File cacheFile;
+    private File file;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        directory = Files.createTempDirectory("selion-checksums").toFile();
+        cacheFile = new File(directory, "checksums.properties");
+        file = new File(directory, "artifact.zip");
+        FileUtils.writeStringToFile(file, "original");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void after() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    @Test
+    public void testChecksumIsKeyedBySizeAndModificationTime() throws IOException {
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        String original = DigestUtils.sha1Hex("original");
+        assertEquals(cache.getChecksum(file, "SHA1"), original);
+
+        // same size and modification time, so the file is not read again
+        long modified = file.lastModified();
+        FileUtils.writeStringToFile(file, "modified");
+        assertTrue(file.setLastModified(modified));
+        assertEquals(cache.getChecksum(file, "SHA1"), original);
+
+        assertTrue(file.setLastModified(modified - 10000));
+        assertEquals(cache.getChecksum(file, "SHA1"), DigestUtils.sha1Hex("modified"));
+        assertEquals(cache.getChecksum(file, "MD5"), DigestUtils.md5Hex("modified"));
+    }
+
+    @Test
+    public void testChecksumsArePersisted() throws IOException {
+        ChecksumCache cache = new ChecksumCache(cacheFile);
+        cache.putChecksum(file, "SHA1", "ABCDEF");
+        File deleted = new File(directory, "deleted.zip");
+        FileUtils.writeStringToFile(deleted, "deleted");
+        cache.getChecksum(deleted, "SHA1");
+        assertTrue(deleted.delete());
+        cache.save();
+
+        ChecksumCache reloaded = new ChecksumCache(cacheFile);
+        assertEquals(reloaded.getChecksum(file, "SHA1"), "abcdef");
+        assertFalse(FileUtils.readFileToString(cacheFile).contains("deleted.zip"),
+                "Checksums of files that no longer exist were saved");
+    }
+}
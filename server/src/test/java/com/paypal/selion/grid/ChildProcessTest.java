@@ -0,0 +1,128 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.LogManager;
+import java.util.logging.Logger;
+
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.SystemUtils;
+import org.testng.SkipException;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class ChildProcessTest {
+
+    // exits with 3 once activated, and with 0 when the standby is no longer needed
+    private static final String STANDBY_SCRIPT = "[ \"$" + ChildProcess.STANDBY_ENV + "\" = true ] || exit 1; "
+            + "read line; [ \"$line\" = " + ChildProcess.ACTIVATE + " ] && exit 3; exit 0";
+
+    @BeforeClass
+    public void checkPlatform() {
+        if (SystemUtils.IS_OS_WINDOWS) {
+            throw new SkipException("The child processes of this test are shell scripts");
+        }
+    }
+
+    private static CommandLine shell(String script) {
+        CommandLine cmdLine = new CommandLine("sh");
+        cmdLine.addArgument("-c");
+        cmdLine.addArgument(script, false);
+        return cmdLine;
+    }
+
+    @Test
+    public void testStandbyWaitsForActivation() throws Exception {
+        ChildProcess standby = ChildProcess.start(shell(STANDBY_SCRIPT), true);
+        assertFalse(standby.waitFor(500), "the standby exited before being activated");
+
+        standby.activate();
+
+        assertTrue(standby.waitFor(10000));
+        assertNotNull(standby.getException());
+        assertEquals(standby.getException().getExitValue(), 3);
+    }
+
+    @Test
+    public void testDestroyedStandby() throws Exception {
+        ChildProcess standby = ChildProcess.start(shell(STANDBY_SCRIPT), true);
+        assertFalse(standby.waitFor(500), "the standby exited before being activated");
+
+        standby.destroy();
+
+        assertTrue(standby.waitFor(10000));
+    }
+
+    @Test
+    public void testChildIsNotAStandby() throws Exception {
+        ChildProcess child = ChildProcess.start(shell("[ -z \"$" + ChildProcess.STANDBY_ENV + "\" ]"), false);
+
+        assertTrue(child.waitFor(10000));
+        assertNull(child.getException());
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testChildCannotBeActivated() throws Exception {
+        ChildProcess child = ChildProcess.start(shell("exit 0"), false);
+        try {
+            child.activate();
+        } finally {
+            child.waitFor(10000);
+        }
+    }
+
+    @Test
+    public void testStandbyWritesNoLogFilesUntilActivated() throws Exception {
+        File folder = Files.createTempDirectory("selion-standby-logs").toFile();
+        File config = new File(folder, "logging.properties");
+        FileUtils.writeStringToFile(config, "handlers=java.util.logging.FileHandler\n"
+                + "java.util.logging.FileHandler.pattern=" + folder.getAbsolutePath().replace('\\', '/')
+                + "/node-%g.log\n", "UTF-8");
+        String previous = System.getProperty("java.util.logging.config.file");
+        System.setProperty("java.util.logging.config.file", config.getAbsolutePath());
+        try {
+            ChildProcess.suspendFileLogging();
+            for (Handler handler : Logger.getLogger("").getHandlers()) {
+                assertFalse(handler instanceof FileHandler, "the standby writes the log files");
+            }
+            assertFalse(new File(folder, "node-0.log").exists());
+
+            ChildProcess.resumeFileLogging();
+            Logger.getLogger("").getHandlers();
+            assertTrue(new File(folder, "node-0.log").exists(), "the activated standby does not write the log files");
+        } finally {
+            if (previous == null) {
+                System.clearProperty("java.util.logging.config.file");
+            } else {
+                System.setProperty("java.util.logging.config.file", previous);
+            }
+            LogManager.getLogManager().readConfiguration();
+            FileUtils.deleteQuietly(folder);
+        }
+    }
+}
@@ -19,23 +19,235 @@ import static org.testng.Assert.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
+import org.apache.http.message.BasicNameValuePair;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.paypal.selion.pojos.ArtifactDetails.URLChecksumEntity;
 import com.paypal.selion.pojos.SeLionGridConstants;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 
 public class FileDownloaderTest {
 
     File downloadedFile = null;
     File downloadDir = null;
 
+    HttpServer server = null;
+    final Map<String, byte[]> artifacts = new ConcurrentHashMap<String, byte[]>();
+    final List<String> requests = new CopyOnWriteArrayList<String>();
+    final AtomicInteger failuresLeft = new AtomicInteger();
+    final AtomicInteger interruptionsLeft = new AtomicInteger();
+    volatile CountDownLatch parallel = new CountDownLatch(0);
+
     @BeforeClass
     public void mkDownloadDir() throws IOException {
         downloadDir = new File(SeLionGridConstants.DOWNLOADS_DIR);
         downloadDir.mkdirs();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/artifacts/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                requests.add(exchange.getRequestURI().getPath() + ((range == null) ? "" : " " + range));
+                parallel.countDown();
+                try {
+                    parallel.await(5, TimeUnit.SECONDS);
+                    respond(exchange, range);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    private void respond(HttpExchange exchange, String range) throws IOException {
+        byte[] contents = artifacts.get(exchange.getRequestURI().getPath());
+        if (failuresLeft.getAndDecrement() > 0) {
+            exchange.sendResponseHeaders(500, -1);
+            return;
+        }
+        int from = (range == null) ? 0 : Integer.parseInt(range.replaceAll("\\D", ""));
+        exchange.getResponseHeaders().add("Content-Range",
+                "bytes " + from + "-" + (contents.length - 1) + "/" + contents.length);
+        exchange.sendResponseHeaders((from == 0) ? 200 : 206, contents.length - from);
+        OutputStream os = exchange.getResponseBody();
+        if (interruptionsLeft.getAndDecrement() > 0) {
+            // the connection drops half way through the artifact
+            os.write(contents, from, (contents.length - from) / 2);
+            os.flush();
+            return;
+        }
+        os.write(contents, from, contents.length - from);
+    }
+
+    private String serve(int size) {
+        return serve(size, ".zip");
+    }
+
+    private String serve(int size, String extension) {
+        byte[] contents = new byte[size];
+        new Random().nextBytes(contents);
+        String path = "/artifacts/artifact-" + UUID.randomUUID() + extension;
+        artifacts.put(path, contents);
+        return path;
+    }
+
+    private String urlOf(String path) {
+        return "http://localhost:" + server.getAddress().getPort() + path;
+    }
+
+    private void reset() {
+        requests.clear();
+        failuresLeft.set(0);
+        interruptionsLeft.set(0);
+        parallel = new CountDownLatch(0);
+    }
+
+    @Test
+    public void testInterruptedDownloadIsResumed() throws Exception {
+        reset();
+        String path = serve(256 * 1024);
+        interruptionsLeft.set(1);
+
+        String result = FileDownloader.downloadFile(urlOf(path), DigestUtils.sha1Hex(artifacts.get(path)), 3, 10);
+
+        assertEquals(FileUtils.readFileToByteArray(new File(result)), artifacts.get(path));
+        assertEquals(requests.size(), 2, requests.toString());
+        assertEquals(requests.get(1), path + " bytes=" + (128 * 1024) + "-");
+        assertFalse(new File(result + ".part").exists());
+    }
+
+    @Test
+    public void testRetriesAreCapped() throws Exception {
+        reset();
+        String path = serve(1024);
+        failuresLeft.set(Integer.MAX_VALUE);
+
+        try {
+            FileDownloader.downloadFile(urlOf(path), DigestUtils.md5Hex(artifacts.get(path)), 3, 10);
+            fail("A download that keeps failing was not given up on");
+        } catch (RuntimeException e) {
+            assertEquals(requests.size(), 3);
+        }
+    }
+
+    @Test
+    public void testValidatedFileIsNotDownloadedAgain() throws Exception {
+        reset();
+        String path = serve(1024);
+        String checksum = DigestUtils.sha1Hex(artifacts.get(path));
+
+        String result = FileDownloader.downloadFile(urlOf(path), checksum, 1, 10);
+        assertEquals(FileDownloader.downloadFile(urlOf(path), checksum, 1, 10), result);
+        assertEquals(requests.size(), 1);
+    }
+
+    @Test
+    public void testDownloadsRunInParallel() throws Exception {
+        reset();
+        List<URLChecksumEntity> entities = new ArrayList<URLChecksumEntity>();
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            String path = serve(64 * 1024);
+            paths.add(path);
+            entities.add(new URLChecksumEntity(new BasicNameValuePair("url", urlOf(path)), new BasicNameValuePair(
+                    "checksum", DigestUtils.sha1Hex(artifacts.get(path)))));
+        }
+        // each request waits until all of them arrived
+        parallel = new CountDownLatch(3);
+
+        List<String> results = FileDownloader.downloadAll(entities, 1, 10);
+
+        assertEquals(parallel.getCount(), 0, "The artifacts were not downloaded in parallel");
+        assertEquals(results.size(), 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(results.get(i).endsWith(paths.get(i).substring(paths.get(i).lastIndexOf('/') + 1)));
+            assertEquals(FileUtils.readFileToByteArray(new File(results.get(i))), artifacts.get(paths.get(i)));
+        }
+    }
+
+    @Test
+    public void testRepeatedArtifactIsDownloadedOnce() throws Exception {
+        reset();
+        String path = serve(64 * 1024);
+        URLChecksumEntity entity = new URLChecksumEntity(new BasicNameValuePair("url", urlOf(path)),
+                new BasicNameValuePair("checksum", DigestUtils.sha1Hex(artifacts.get(path))));
+
+        List<String> results = FileDownloader.downloadAll(Arrays.asList(entity, entity), 1, 10);
+
+        assertEquals(results.size(), 1);
+        assertEquals(requests.size(), 1);
+        assertEquals(FileUtils.readFileToByteArray(new File(results.get(0))), artifacts.get(path));
+    }
+
+    @Test(expectedExceptions = { IllegalArgumentException.class })
+    public void testArtifactsDownloadedToTheSameFileAreRejected() {
+        reset();
+        String path = serve(1024);
+        String otherUrl = urlOf("/other" + path);
+        List<URLChecksumEntity> entities = Arrays.asList(
+                new URLChecksumEntity(new BasicNameValuePair("url", urlOf(path)), new BasicNameValuePair("checksum",
+                        DigestUtils.sha1Hex(artifacts.get(path)))),
+                new URLChecksumEntity(new BasicNameValuePair("url", otherUrl), new BasicNameValuePair("checksum",
+                        DigestUtils.sha1Hex(artifacts.get(path)))));
+        try {
+            FileDownloader.downloadAll(entities, 1, 10);
+        } finally {
+            assertTrue(requests.isEmpty(), "An artifact was downloaded");
+        }
+    }
+
+    @Test
+    public void testFailedDownloadsAreRetriedOnTheNextCheck() throws Exception {
+        reset();
+        // a jar is not extracted
+        String path = serve(1024, ".jar");
+        File downloadJson = File.createTempFile("download", ".json");
+        File jar = new File(SeLionGridConstants.SELION_HOME_DIR + path.substring(path.lastIndexOf('/') + 1));
+        try {
+            FileUtils.write(downloadJson, "[{\"name\":\"artifact\",\"any\":{\"url\":\"" + urlOf(path)
+                    + "\",\"checksum\":\"" + DigestUtils.sha1Hex(artifacts.get(path)) + "\"}}]");
+            failuresLeft.set(Integer.MAX_VALUE);
+            try {
+                FileDownloader.checkForDownloads(downloadJson, 1, 10);
+                fail("The download did not fail");
+            } catch (RuntimeException e) {
+                // expected
+            }
+
+            failuresLeft.set(0);
+            assertTrue(FileDownloader.checkForDownloads(downloadJson, 1, 10), "The download was not retried");
+            assertEquals(FileUtils.readFileToByteArray(jar), artifacts.get(path));
+            assertFalse(FileDownloader.checkForDownloads(downloadJson, 1, 10));
+        } finally {
+            FileUtils.deleteQuietly(downloadJson);
+            FileUtils.deleteQuietly(jar);
+        }
     }
 
     @Test(expectedExceptions = { UnsupportedOperationException.class })
@@ -64,6 +276,9 @@ public class FileDownloaderTest {
 
     @AfterClass(alwaysRun = true)
     public void cleanUpFile() {
+        if (server != null) {
+            server.stop(0);
+        }
         FileUtils.deleteQuietly(downloadedFile);
         FileUtils.deleteQuietly(downloadDir);
     }
@@ -0,0 +1,98 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid.servlet.transfer;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.UUID;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.paypal.selion.grid.servlets.transfer.ArtifactDownloadException;
+import com.paypal.selion.grid.servlets.transfer.DefaultManagedArtifact.DefaultCriteria;
+import com.paypal.selion.grid.servlets.transfer.ManagedArtifact;
+import com.paypal.selion.grid.servlets.transfer.ManagedArtifactRepository;
+import com.paypal.selion.grid.servlets.transfer.UploadRequestProcessor.RequestHeaders;
+import com.paypal.selion.grid.servlets.transfer.UploadedArtifact.UploadedArtifactBuilder;
+import com.paypal.selion.pojos.SeLionGridConstants;
+
+/**
+ * Saves and looks up artifacts through the in-memory catalogue of the real {@link ManagedArtifactRepository}.
+ */
+public class ArtifactCatalogueTest {
+
+    private final String userId = "catalogue-" + UUID.randomUUID();
+
+    private DefaultCriteria criteria(String artifactName, String applicationFolder) {
+        EnumMap<RequestHeaders, String> parameters = new EnumMap<>(RequestHeaders.class);
+        parameters.put(RequestHeaders.FILENAME, artifactName);
+        parameters.put(RequestHeaders.USERID, userId);
+        if (applicationFolder != null) {
+            parameters.put(RequestHeaders.APPLICATIONFOLDER, applicationFolder);
+        }
+        return new DefaultCriteria(parameters);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUp() {
+        FileUtils.deleteQuietly(new File(SeLionGridConstants.SELION_HOME_DIR + "repository", userId));
+    }
+
+    @Test
+    public void savedArtifactIsFound() {
+        ManagedArtifactRepository repository = ManagedArtifactRepository.getInstance();
+        repository.saveContents(new UploadedArtifactBuilder("app.zip", new byte[] { 1, 2, 3 }).withUserId(userId)
+                .build());
+
+        Assert.assertTrue(repository.isArtifactPresent(criteria("app.zip", null)));
+        ManagedArtifact artifact = repository.getArtifact(criteria("app.zip", null));
+        Assert.assertEquals(artifact.getArtifactContents(), new byte[] { 1, 2, 3 });
+        Assert.assertFalse(repository.isArtifactPresent(criteria("app.zip", "someApp")));
+        Assert.assertFalse(repository.isArtifactPresent(criteria("other.zip", null)));
+    }
+
+    @Test
+    public void savedArtifactIsFoundInItsApplicationFolder() {
+        ManagedArtifactRepository repository = ManagedArtifactRepository.getInstance();
+        repository.saveContents(new UploadedArtifactBuilder("app.zip", new byte[] { 4 }).withUserId(userId)
+                .withApplicationFolderName("myApp").build());
+
+        Assert.assertEquals(repository.getArtifact(criteria("app.zip", "myApp")).getArtifactContents(),
+                new byte[] { 4 });
+        Assert.assertFalse(repository.isArtifactPresent(criteria("app.zip", "otherApp")));
+    }
+
+    @Test
+    public void resavedArtifactReplacesThePreviousOne() {
+        ManagedArtifactRepository repository = ManagedArtifactRepository.getInstance();
+        repository.saveContents(new UploadedArtifactBuilder("resaved.zip", new byte[] { 1 }).withUserId(userId)
+                .build());
+        repository.saveContents(new UploadedArtifactBuilder("resaved.zip", new byte[] { 2 }).withUserId(userId)
+                .build());
+
+        Assert.assertEquals(repository.getArtifact(criteria("resaved.zip", null)).getArtifactContents(),
+                new byte[] { 2 });
+    }
+
+    @Test(expectedExceptions = ArtifactDownloadException.class)
+    public void missingArtifactIsNotFound() {
+        ManagedArtifactRepository.getInstance().getArtifact(criteria("missing.zip", null));
+    }
+}
@@ -0,0 +1,170 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid.servlet.transfer;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.nio.file.Files;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.paypal.selion.grid.servlets.transfer.ArtifactUploadException;
+import com.paypal.selion.grid.servlets.transfer.DefaultManagedArtifact;
+import com.paypal.selion.grid.servlets.transfer.FileBackedArtifact;
+import com.paypal.selion.grid.servlets.transfer.ManagedArtifact;
+import com.paypal.selion.grid.servlets.transfer.ManagedArtifactRepository;
+import com.paypal.selion.grid.servlets.transfer.UploadedArtifact;
+import com.paypal.selion.grid.servlets.transfer.UploadedArtifact.UploadedArtifactBuilder;
+import com.paypal.selion.pojos.SeLionGridConstants;
+
+/**
+ * Saves identical artifacts for several users and checks that they share one blob, which the cleaner deletes once no
+ * artifact references it.
+ */
+public class ContentAddressedStorageTest {
+
+    private final String userOne = "blobs-" + UUID.randomUUID();
+
+    private final String userTwo = "blobs-" + UUID.randomUUID();
+
+    private final File repoFolder = new File(SeLionGridConstants.SELION_HOME_DIR + "repository");
+
+    private final File blobsFolder = new File(repoFolder, ".blobs");
+
+    private final File saveRecordsFolder = new File(repoFolder, ".saved");
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUp() {
+        FileUtils.deleteQuietly(new File(repoFolder, userOne));
+        FileUtils.deleteQuietly(new File(repoFolder, userTwo));
+        FileUtils.deleteQuietly(new File(saveRecordsFolder, userOne));
+        FileUtils.deleteQuietly(new File(saveRecordsFolder, userTwo));
+    }
+
+    private byte[] uniqueContents() {
+        return UUID.randomUUID().toString().getBytes();
+    }
+
+    private File save(String userId, String name, byte[] contents) {
+        ManagedArtifact managedArtifact = ManagedArtifactRepository.getInstance().saveContents(
+                new UploadedArtifactBuilder(name, contents).withUserId(userId).build());
+        return ((FileBackedArtifact) managedArtifact).getArtifactFile();
+    }
+
+    private void runCleaner() throws Exception {
+        Class<?> cleanerClass = Class.forName(ManagedArtifactRepository.class.getName() + "$RepositoryCleaner");
+        Constructor<?> constructor = cleanerClass.getDeclaredConstructor(ManagedArtifactRepository.class);
+        constructor.setAccessible(true);
+        ((TimerTask) constructor.newInstance(ManagedArtifactRepository.getInstance())).run();
+    }
+
+    @Test
+    public void identicalContentsAreStoredOnce() throws IOException {
+        byte[] contents = uniqueContents();
+        File one = save(userOne, "shared.zip", contents);
+        File two = save(userTwo, "shared.zip", contents);
+
+        File blob = new File(blobsFolder, DigestUtils.sha1Hex(contents));
+        Assert.assertTrue(blob.isFile());
+        Assert.assertEquals(FileUtils.readFileToByteArray(two), contents);
+        Assert.assertTrue(Files.isSameFile(one.toPath(), blob.toPath()) || FileUtils.contentEquals(one, blob));
+    }
+
+    @Test
+    public void knownContentsAreSavedByReference() throws IOException {
+        byte[] contents = uniqueContents();
+        save(userOne, "original.zip", contents);
+
+        UploadedArtifact reference = new UploadedArtifactBuilder("reference.zip", (byte[]) null).withUserId(userTwo)
+                .withDigest(DigestUtils.sha1Hex(contents)).build();
+        ManagedArtifact managedArtifact = ManagedArtifactRepository.getInstance().saveReference(reference);
+
+        Assert.assertNotNull(managedArtifact);
+        Assert.assertEquals(managedArtifact.getArtifactName(), "reference.zip");
+        Assert.assertEquals(managedArtifact.getArtifactContents(), contents);
+    }
+
+    @Test
+    public void savingByReferenceLeavesOtherArtifactsAlone() throws IOException {
+        byte[] contents = uniqueContents();
+        File original = save(userOne, "stale.zip", contents);
+        File blob = new File(blobsFolder, DigestUtils.sha1Hex(contents));
+        long stale = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        Assert.assertTrue(blob.setLastModified(stale));
+        // as if the original artifact was saved two days ago
+        Assert.assertTrue(new File(new File(saveRecordsFolder, userOne), "stale.zip").setLastModified(stale));
+
+        UploadedArtifact reference = new UploadedArtifactBuilder("fresh.zip", (byte[]) null).withUserId(userTwo)
+                .withDigest(DigestUtils.sha1Hex(contents)).build();
+        ManagedArtifact managedArtifact = ManagedArtifactRepository.getInstance().saveReference(reference);
+        File fresh = ((FileBackedArtifact) managedArtifact).getArtifactFile();
+
+        Assert.assertFalse(managedArtifact.isExpired(), "An artifact saved by reference is expired");
+        // what a restarted Hub sees
+        Assert.assertFalse(new DefaultManagedArtifact(fresh.getPath()).isExpired(),
+                "An artifact saved by reference is expired once the Hub restarted");
+        Assert.assertEquals(blob.lastModified() / 1000, stale / 1000, "The shared blob was touched");
+        Assert.assertTrue(new DefaultManagedArtifact(original.getPath()).isExpired(),
+                "The expiry of another artifact was extended");
+    }
+
+    @Test
+    public void unknownContentsAreNotSavedByReference() {
+        UploadedArtifact reference = new UploadedArtifactBuilder("unknown.zip", (byte[]) null).withUserId(userTwo)
+                .withDigest(DigestUtils.sha1Hex(uniqueContents())).build();
+        Assert.assertNull(ManagedArtifactRepository.getInstance().saveReference(reference));
+        Assert.assertFalse(new File(new File(repoFolder, userTwo), "unknown.zip").exists());
+    }
+
+    @Test(expectedExceptions = ArtifactUploadException.class)
+    public void invalidDigestIsRejected() {
+        ManagedArtifactRepository.getInstance().saveReference(
+                new UploadedArtifactBuilder("invalid.zip", (byte[]) null).withUserId(userTwo)
+                        .withDigest("../../etc/passwd").build());
+    }
+
+    @Test
+    public void unreferencedBlobsAreCleaned() throws Exception {
+        byte[] kept = uniqueContents();
+        byte[] dropped = uniqueContents();
+        save(userOne, "kept.zip", kept);
+        File one = save(userOne, "dropped.zip", dropped);
+        File two = save(userTwo, "dropped.zip", dropped);
+        File keptBlob = new File(blobsFolder, DigestUtils.sha1Hex(kept));
+        File droppedBlob = new File(blobsFolder, DigestUtils.sha1Hex(dropped));
+
+        Assert.assertTrue(one.delete());
+        runCleaner();
+        Assert.assertTrue(droppedBlob.isFile(), "A blob that is still referenced was deleted");
+
+        Assert.assertTrue(two.delete());
+        runCleaner();
+        Assert.assertFalse(droppedBlob.exists(), "An unreferenced blob was not deleted");
+        Assert.assertTrue(keptBlob.isFile());
+        Assert.assertFalse(new File(new File(saveRecordsFolder, userTwo), "dropped.zip").exists(),
+                "The record of a deleted artifact was not deleted");
+        Assert.assertTrue(new File(new File(saveRecordsFolder, userOne), "kept.zip").isFile());
+    }
+}
@@ -0,0 +1,193 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.grid.servlet.transfer;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.mockito.ArgumentCaptor;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.paypal.selion.grid.servlets.transfer.DownloadRequestProcessor;
+import com.paypal.selion.grid.servlets.transfer.DownloadResponder;
+import com.paypal.selion.grid.servlets.transfer.FileBackedArtifact;
+import com.paypal.selion.grid.servlets.transfer.ManagedArtifact;
+import com.paypal.selion.grid.servlets.transfer.ManagedArtifactRepository;
+import com.paypal.selion.grid.servlets.transfer.TransferContext;
+import com.paypal.selion.grid.servlets.transfer.UploadedArtifact;
+import com.paypal.selion.grid.servlets.transfer.UploadedArtifact.UploadedArtifactBuilder;
+import com.paypal.selion.pojos.SeLionGridConstants;
+
+/**
+ * Uploads an artifact as a stream and downloads it back from its file, in full, conditionally and in ranges.
+ */
+public class StreamingTransferTest {
+
+    private final String userId = "streaming-" + UUID.randomUUID();
+
+    private final File userFolder = new File(SeLionGridConstants.SELION_HOME_DIR + "repository", userId);
+
+    private final File saveRecordsFolder = new File(SeLionGridConstants.SELION_HOME_DIR + "repository/.saved", userId);
+
+    @AfterClass(alwaysRun = true)
+    public void cleanUp() {
+        FileUtils.deleteQuietly(userFolder);
+        FileUtils.deleteQuietly(saveRecordsFolder);
+    }
+
+    @Test
+    public void streamedUploadIsDigestedAndRenamedIntoPlace() throws IOException {
+        byte[] contents = new byte[3 * 1024 * 1024 + 17];
+        new Random(42).nextBytes(contents);
+        UploadedArtifact uploadedArtifact = new UploadedArtifactBuilder("big.zip", new ByteArrayInputStream(contents))
+                .withUserId(userId).build();
+
+        ManagedArtifact managedArtifact = ManagedArtifactRepository.getInstance().saveContents(uploadedArtifact);
+
+        Assert.assertEquals(uploadedArtifact.getDigest(), DigestUtils.sha1Hex(contents));
+        File file = ((FileBackedArtifact) managedArtifact).getArtifactFile();
+        Assert.assertEquals(FileUtils.readFileToByteArray(file), contents);
+        Assert.assertEquals(userFolder.list(), new String[] { "big.zip" }, "A temporary file was left behind");
+    }
+
+    private HttpServletResponse download(ByteArrayOutputStream bos, String... headers) throws IOException {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+        final ByteArrayOutputStream out = bos;
+        when(request.getPathInfo()).thenReturn("/" + userId + "/big.zip");
+        when(request.getDateHeader(anyString())).thenReturn(-1L);
+        for (int i = 0; i < headers.length; i += 2) {
+            when(request.getHeader(headers[i])).thenReturn(headers[i + 1]);
+        }
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+        });
+        TransferContext transferContext = new TransferContext(request, response);
+        transferContext.setDownloadRequestProcessor(new DownloadRequestProcessor());
+        new DownloadResponder(transferContext).respond();
+        return response;
+    }
+
+    private File artifactFile() {
+        return new File(userFolder, "big.zip");
+    }
+
+    @Test(dependsOnMethods = "streamedUploadIsDigestedAndRenamedIntoPlace")
+    public void downloadIsTransferredFromTheFile() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = download(bos);
+
+        byte[] contents = FileUtils.readFileToByteArray(artifactFile());
+        Assert.assertEquals(bos.toByteArray(), contents);
+        verify(response).setContentLength(contents.length);
+        verify(response).setHeader("ETag", "\"" + DigestUtils.sha1Hex(contents) + "\"");
+        verify(response, never()).setStatus(anyInt());
+    }
+
+    @Test(dependsOnMethods = "streamedUploadIsDigestedAndRenamedIntoPlace")
+    public void matchingEntityTagIsNotModified() throws IOException {
+        String entityTag = "\"" + DigestUtils.sha1Hex(FileUtils.readFileToByteArray(artifactFile())) + "\"";
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = download(bos, "If-None-Match", "\"other\", " + entityTag);
+
+        verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        Assert.assertEquals(bos.size(), 0);
+
+        bos = new ByteArrayOutputStream();
+        response = download(bos, "If-None-Match", "\"other\"");
+        verify(response, never()).setStatus(anyInt());
+        Assert.assertEquals(bos.size(), artifactFile().length());
+    }
+
+    @Test(dependsOnMethods = "streamedUploadIsDigestedAndRenamedIntoPlace")
+    public void lastModifiedIsWhenTheArtifactWasSaved() throws IOException {
+        // the file is a link to a blob whose contents may have been stored long before the artifact was saved
+        long stale = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        Assert.assertTrue(artifactFile().setLastModified(stale));
+        HttpServletResponse response = download(new ByteArrayOutputStream());
+
+        ArgumentCaptor<Long> lastModified = ArgumentCaptor.forClass(Long.class);
+        verify(response).setDateHeader(eq("Last-Modified"), lastModified.capture());
+        Assert.assertTrue(lastModified.getValue() > stale + TimeUnit.DAYS.toMillis(1),
+                "Last-Modified is the last modified time of the blob");
+    }
+
+    @Test(dependsOnMethods = "streamedUploadIsDigestedAndRenamedIntoPlace")
+    public void rangeIsTransferredPartially() throws IOException {
+        byte[] contents = FileUtils.readFileToByteArray(artifactFile());
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = download(bos, "Range", "bytes=1000-");
+
+        verify(response).setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        verify(response).setHeader("Content-Range", "bytes 1000-" + (contents.length - 1) + "/" + contents.length);
+        verify(response).setContentLength(contents.length - 1000);
+        Assert.assertEquals(bos.toByteArray(), Arrays.copyOfRange(contents, 1000, contents.length));
+
+        bos = new ByteArrayOutputStream();
+        download(bos, "Range", "bytes=-10");
+        Assert.assertEquals(bos.toByteArray(), Arrays.copyOfRange(contents, contents.length - 10, contents.length));
+    }
+
+    @Test(dependsOnMethods = "streamedUploadIsDigestedAndRenamedIntoPlace")
+    public void staleIfRangeGetsTheWholeArtifact() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = download(bos, "Range", "bytes=1000-", "If-Range", "\"stale\"");
+
+        verify(response, never()).setStatus(anyInt());
+        Assert.assertEquals(bos.size(), artifactFile().length());
+    }
+
+    @Test(dependsOnMethods = "streamedUploadIsDigestedAndRenamedIntoPlace")
+    public void unsatisfiableRangeIsRejected() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = download(bos, "Range", "bytes=" + artifactFile().length() + "-");
+
+        verify(response).sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        verify(response).setHeader("Content-Range", "bytes */" + artifactFile().length());
+        Assert.assertEquals(bos.size(), 0);
+    }
+}
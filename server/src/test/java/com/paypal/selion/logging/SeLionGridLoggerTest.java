@@ -0,0 +1,233 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.logging;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Supplier;
+
+public class SeLionGridLoggerTest {
+
+    private SeLionGridLogger logger;
+    private RecordingHandler handler;
+
+    /**
+     * Keeps the records it gets, optionally waiting for a latch before taking the first one.
+     */
+    private static class RecordingHandler extends Handler {
+        private final List<LogRecord> records = new ArrayList<LogRecord>();
+        private final CountDownLatch publishing = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        RecordingHandler(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void publish(LogRecord record) {
+            publishing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (records) {
+                records.add(record);
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        List<LogRecord> getRecords() {
+            synchronized (records) {
+                return new ArrayList<LogRecord>(records);
+            }
+        }
+    }
+
+    private static class CountingSupplier implements Supplier<Object> {
+        private int calls;
+
+        @Override
+        public Object get() {
+            calls += 1;
+            return new Object[] { "first", "second" };
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        logger = SeLionGridLogger.getLogger(SeLionGridLoggerTest.class);
+        logger.setUseParentHandlers(false);
+        handler = new RecordingHandler(new CountDownLatch(0));
+        handler.setLevel(Level.ALL);
+        logger.addHandler(handler);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        logger.removeHandler(handler);
+        logger.setUseParentHandlers(true);
+        logger.setLevel(null);
+    }
+
+    @Test
+    public void testDisabledTraceDoesNotComputeParameters() {
+        logger.setLevel(Level.FINE);
+        CountingSupplier params = new CountingSupplier();
+
+        assertFalse(logger.isTracing());
+        logger.traceEntry("testDisabledTraceDoesNotComputeParameters", params);
+        logger.traceExit("testDisabledTraceDoesNotComputeParameters", params);
+        logger.entering();
+
+        assertEquals(params.calls, 0);
+        assertTrue(handler.getRecords().isEmpty());
+    }
+
+    @Test
+    public void testTraceUsesExplicitTokens() {
+        logger.setLevel(Level.FINER);
+        CountingSupplier params = new CountingSupplier();
+
+        logger.traceEntry("someMethod", params);
+        logger.traceExit("someMethod", Boolean.TRUE);
+
+        assertEquals(params.calls, 1);
+        List<LogRecord> records = handler.getRecords();
+        assertEquals(records.size(), 2);
+        LogRecord entry = records.get(0);
+        assertEquals(entry.getSourceClassName(), SeLionGridLoggerTest.class.getName());
+        assertEquals(entry.getSourceMethodName(), "someMethod");
+        assertEquals(entry.getParameters(), new Object[] { "first", "second" });
+        assertEquals(records.get(1).getParameters(), new Object[] { Boolean.TRUE });
+    }
+
+    @Test
+    public void testEnteringFindsTheCaller() {
+        logger.setLevel(Level.FINER);
+
+        logger.entering();
+
+        LogRecord entry = handler.getRecords().get(0);
+        assertEquals(entry.getSourceClassName(), SeLionGridLoggerTest.class.getName());
+        assertEquals(entry.getSourceMethodName(), "testEnteringFindsTheCaller");
+    }
+
+    @Test
+    public void testAsyncHandlerDropsTracesWhenFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingHandler target = new RecordingHandler(release);
+        AsyncHandler async = new AsyncHandler(target, 1);
+
+        async.publish(new LogRecord(Level.INFO, "first"));
+        // the writer is now busy with the first record, so the queue fills up with the second one
+        assertTrue(target.publishing.await(10, TimeUnit.SECONDS));
+        async.publish(new LogRecord(Level.INFO, "second"));
+        async.publish(new LogRecord(Level.FINER, "dropped"));
+        assertEquals(async.getDropped(), 1);
+        release.countDown();
+        async.close();
+
+        List<LogRecord> records = target.getRecords();
+        assertEquals(records.size(), 3);
+        assertEquals(records.get(0).getMessage(), "first");
+        assertEquals(records.get(1).getLevel(), Level.WARNING);
+        assertTrue(records.get(1).getMessage().startsWith("1 log records were dropped"));
+        assertEquals(records.get(2).getMessage(), "second");
+        assertEquals(async.getDropped(), 0);
+    }
+
+    @Test(timeOut = 30000)
+    public void testAsyncHandlerClosesWhenTheWriterIsStuck() throws Exception {
+        final List<String> written = new ArrayList<String>();
+        final CountDownLatch stuck = new CountDownLatch(1);
+        Handler target = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                if ("stuck".equals(record.getMessage())) {
+                    stuck.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                synchronized (written) {
+                    written.add(record.getMessage());
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AsyncHandler async = new AsyncHandler(target, 1, 200);
+
+        async.publish(new LogRecord(Level.INFO, "stuck"));
+        assertTrue(stuck.await(10, TimeUnit.SECONDS));
+        async.publish(new LogRecord(Level.INFO, "queued"));
+        // the queue is full and the writer never takes the next record
+        async.close();
+
+        synchronized (written) {
+            assertEquals(written, Arrays.asList("queued"));
+        }
+    }
+
+    @Test
+    public void testAsyncHandlerResolvesTheCallerBeforeQueueing() throws Exception {
+        RecordingHandler target = new RecordingHandler(new CountDownLatch(0));
+        AsyncHandler async = new AsyncHandler(target, 10);
+
+        Logger julLogger = Logger.getAnonymousLogger();
+        julLogger.setUseParentHandlers(false);
+        julLogger.addHandler(async);
+        julLogger.info("message");
+        async.close();
+
+        LogRecord record = target.getRecords().get(0);
+        assertEquals(record.getSourceClassName(), SeLionGridLoggerTest.class.getName());
+        assertEquals(record.getSourceMethodName(), "testAsyncHandlerResolvesTheCallerBeforeQueueing");
+    }
+}
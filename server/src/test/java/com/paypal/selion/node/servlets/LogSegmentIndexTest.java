@@ -0,0 +1,103 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.node.servlets;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class LogSegmentIndexTest {
+
+    private File directory;
+    private LogSegmentIndex index;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        directory = Files.createTempDirectory("selion-logs").toFile();
+        index = new LogSegmentIndex(directory, Pattern.compile("selion-grid-node-(\\d+)\\.log"));
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void after() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    private File createLog(String name) throws IOException {
+        File file = new File(directory, name);
+        FileUtils.writeStringToFile(file, name);
+        return file;
+    }
+
+    @Test
+    public void testSegmentsAreOrderedByGeneration() throws IOException {
+        File current = createLog("selion-grid-node-0.log");
+        File tenth = createLog("selion-grid-node-10.log");
+        File first = createLog("selion-grid-node-1.log");
+        createLog("selion-grid-node-0.log.lck");
+        createLog("selion-grid-hub-1.log");
+
+        assertEquals(index.getSegments().keySet().toArray(), new Integer[] { 0, 1, 10 });
+        assertEquals(index.getSegment(0), current);
+        assertEquals(index.getSegment(1), first, "Generation 1 must not be confused with generation 10");
+        assertEquals(index.getSegment(10), tenth);
+        assertNull(index.getSegment(2));
+    }
+
+    @Test
+    public void testNewSegmentsAreFound() throws IOException {
+        createLog("selion-grid-node-0.log");
+        assertEquals(index.getSegments().size(), 1);
+        long indexedModification = directory.lastModified();
+
+        // a segment that is rolled over within the resolution of the folder's modification time
+        File rolled = createLog("selion-grid-node-1.log");
+        directory.setLastModified(indexedModification);
+
+        assertEquals(index.getSegment(1), rolled);
+    }
+
+    @Test
+    public void testIndexIsRefreshedPeriodically() throws Exception {
+        index = new LogSegmentIndex(directory, Pattern.compile("selion-grid-node-(\\d+)\\.log"), 200);
+        createLog("selion-grid-node-0.log");
+        assertEquals(index.getSegments().size(), 1);
+        long indexedModification = directory.lastModified();
+
+        createLog("selion-grid-node-1.log");
+        directory.setLastModified(indexedModification);
+        assertEquals(index.getSegments().size(), 1, "The folder was listed again although it did not change");
+
+        Thread.sleep(250);
+        assertEquals(index.getSegments().size(), 2);
+    }
+
+    @Test
+    public void testGeneration() {
+        assertEquals(index.getGeneration("selion-grid-node-3.log"), 3);
+        assertEquals(index.getGeneration("selion-grid-node-3.log.lck"), -1);
+        assertEquals(index.getGeneration("../selion-grid-node-3.log"), -1);
+        assertEquals(index.getGeneration("selion-grid-node-99999999999.log"), -1);
+    }
+}
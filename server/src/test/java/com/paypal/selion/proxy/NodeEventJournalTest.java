@@ -0,0 +1,123 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+public class NodeEventJournalTest {
+
+    @Test
+    public void appendedEventsAreWrittenInOrder() throws IOException, InterruptedException {
+        File log = File.createTempFile("node", ".log");
+        FileUtils.write(log, "left over from a previous proxy");
+        NodeEventJournal journal = new NodeEventJournal(log);
+        for (int i = 0; i < 100; i++) {
+            journal.append("event " + i);
+        }
+        assertTrue(journal.flush(10000));
+
+        String contents = FileUtils.readFileToString(log);
+        assertFalse(contents.contains("left over"));
+        int last = -1;
+        for (int i = 0; i < 100; i++) {
+            int at = contents.indexOf(" event " + i + "\n");
+            assertTrue(at > last, "event " + i + " is missing or out of order");
+            last = at;
+        }
+        FileUtils.deleteQuietly(log);
+    }
+
+    @Test
+    public void logIsRotatedWhenItGrowsTooLarge() throws IOException, InterruptedException {
+        File log = File.createTempFile("node", ".log");
+        NodeEventJournal journal = new NodeEventJournal(log, 200, 2);
+        for (int i = 0; i < 20; i++) {
+            journal.append("event number " + i);
+            assertTrue(journal.flush(10000));
+        }
+
+        File first = new File(log.getPath() + ".1");
+        File second = new File(log.getPath() + ".2");
+        assertTrue(first.exists());
+        assertTrue(second.exists());
+        assertFalse(new File(log.getPath() + ".3").exists());
+        assertTrue(log.length() <= 200);
+        assertTrue(FileUtils.readFileToString(log).contains("event number 19"));
+        assertFalse(FileUtils.readFileToString(second).contains("event number 0\n"));
+        FileUtils.deleteQuietly(log);
+        FileUtils.deleteQuietly(first);
+        FileUtils.deleteQuietly(second);
+    }
+
+    @Test
+    public void eventsOfDifferentNodesGoToTheirOwnLogs() throws IOException, InterruptedException {
+        File one = File.createTempFile("node1", ".log");
+        File two = File.createTempFile("node2", ".log");
+        NodeEventJournal first = new NodeEventJournal(one);
+        NodeEventJournal second = new NodeEventJournal(two);
+        first.append("first node");
+        second.append("second node");
+        assertTrue(first.flush(10000));
+
+        assertEquals(FileUtils.readFileToString(one).trim().endsWith("first node"), true);
+        assertEquals(FileUtils.readFileToString(two).trim().endsWith("second node"), true);
+        FileUtils.deleteQuietly(one);
+        FileUtils.deleteQuietly(two);
+    }
+
+    @Test
+    public void writerSurvivesAnErrorWhileWriting() throws IOException, InterruptedException {
+        File broken = new File(File.createTempFile("broken", ".log").getPath()) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public long length() {
+                throw new AssertionError("simulated failure");
+            }
+        };
+        File healthy = File.createTempFile("healthy", ".log");
+        NodeEventJournal failing = new NodeEventJournal(broken);
+        failing.append("never written");
+        assertTrue(failing.flush(10000));
+
+        NodeEventJournal journal = new NodeEventJournal(healthy);
+        journal.append("written after the error");
+        assertTrue(journal.flush(10000));
+        assertTrue(FileUtils.readFileToString(healthy).contains("written after the error"));
+        FileUtils.deleteQuietly(broken);
+        FileUtils.deleteQuietly(healthy);
+    }
+
+    @Test
+    public void logIsWrittenInUtf8() throws IOException, InterruptedException {
+        File log = File.createTempFile("node", ".log");
+        NodeEventJournal journal = new NodeEventJournal(log);
+        journal.append("caf\u00e9 \u65e5\u672c");
+        assertTrue(journal.flush(10000));
+
+        assertTrue(FileUtils.readFileToString(log, "UTF-8").contains("caf\u00e9 \u65e5\u672c"));
+        FileUtils.deleteQuietly(log);
+    }
+}
@@ -0,0 +1,154 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.paypal.selion.proxy.NodeRecycleCoordinator.State;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class NodeRecycleCoordinatorTest {
+
+    private HttpServer node;
+    private NodeRecycleCoordinator coordinator;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<String> servlets = new CopyOnWriteArrayList<String>();
+    private volatile int failuresLeft;
+    private volatile CountDownLatch answer;
+
+    @BeforeMethod
+    public void startNode() throws IOException {
+        calls.set(0);
+        servlets.clear();
+        failuresLeft = 0;
+        answer = new CountDownLatch(0);
+        node = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        node.createContext("/extra/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                calls.incrementAndGet();
+                servlets.add(exchange.getRequestURI().getPath().substring("/extra/".length()));
+                try {
+                    answer.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                int status = 200;
+                if (failuresLeft > 0) {
+                    failuresLeft -= 1;
+                    status = 503;
+                }
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+            }
+        });
+        node.start();
+        coordinator = new NodeRecycleCoordinator(3, 10, 2);
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stopNode() {
+        coordinator.shutdown();
+        node.stop(0);
+    }
+
+    private String url(String servlet) {
+        return "http://localhost:" + node.getAddress().getPort() + "/extra/" + servlet;
+    }
+
+    @Test
+    public void restartIsCompleted() throws Exception {
+        assertTrue(coordinator.restart("node", url("NodeForceRestartServlet")).get(10, TimeUnit.SECONDS));
+        assertEquals(calls.get(), 1);
+        assertEquals(coordinator.getState("node"), State.COMPLETED);
+        assertTrue(coordinator.getInFlight().isEmpty());
+    }
+
+    @Test
+    public void failedUpgradeIsRetried() throws Exception {
+        failuresLeft = 2;
+        ArrayList<NameValuePair> form = new ArrayList<NameValuePair>();
+        form.add(new BasicNameValuePair("downloadJSON", "{}"));
+        assertTrue(coordinator.upgrade("node", url("NodeAutoUpgradeServlet"), form).get(10, TimeUnit.SECONDS));
+        assertEquals(calls.get(), 3);
+        assertEquals(coordinator.getState("node"), State.COMPLETED);
+    }
+
+    @Test
+    public void unreachableNodeFails() throws Exception {
+        String url = url("NodeForceRestartServlet");
+        node.stop(0);
+        assertFalse(coordinator.restart("node", url).get(10, TimeUnit.SECONDS));
+        assertEquals(coordinator.getState("node"), State.FAILED);
+    }
+
+    @Test
+    public void pendingRestartIsShared() throws Exception {
+        answer = new CountDownLatch(1);
+        coordinator.draining("node");
+        assertEquals(coordinator.getInFlight().get("node"), State.DRAINING);
+
+        ListenableFuture<Boolean> first = coordinator.restart("node", url("NodeForceRestartServlet"));
+        ListenableFuture<Boolean> second = coordinator.restart("node", url("NodeForceRestartServlet"));
+        assertSame(second, first);
+        assertEquals(coordinator.getInFlight().get("node"), State.RESTARTING);
+
+        answer.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS));
+        assertEquals(calls.get(), 1);
+    }
+
+    @Test
+    public void upgradeIsMadeAfterPendingRestart() throws Exception {
+        answer = new CountDownLatch(1);
+        ListenableFuture<Boolean> restart = coordinator.restart("node", url("NodeForceRestartServlet"));
+        ArrayList<NameValuePair> form = new ArrayList<NameValuePair>();
+        form.add(new BasicNameValuePair("downloadJSON", "{}"));
+        ListenableFuture<Boolean> upgrade = coordinator.upgrade("node", url("NodeAutoUpgradeServlet"), form);
+        assertNotSame(upgrade, restart);
+        assertFalse(upgrade.isDone());
+
+        answer.countDown();
+        assertTrue(restart.get(10, TimeUnit.SECONDS));
+        assertTrue(upgrade.get(10, TimeUnit.SECONDS));
+        assertEquals(servlets, Arrays.asList("NodeForceRestartServlet", "NodeAutoUpgradeServlet"));
+        assertEquals(coordinator.getState("node"), State.COMPLETED);
+    }
+}
@@ -0,0 +1,188 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openqa.grid.internal.Registry;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.JsonObject;
+import com.paypal.selion.proxy.NodeRecycleCoordinator.State;
+import com.paypal.selion.proxy.NodeUpgradeOrchestrator.Status;
+import com.paypal.selion.proxy.NodeUpgradeOrchestrator.Upgrade;
+
+public class NodeUpgradeOrchestratorTest {
+
+    private static final String JSON = "[]";
+
+    private NodeUpgradeOrchestrator orchestrator;
+    private Registry registry;
+    private List<SeLionRemoteProxy> proxies;
+    private List<SettableFuture<Boolean>> upgrades;
+
+    @BeforeMethod
+    public void before() {
+        // a long poll interval, the test advances the upgrade itself
+        orchestrator = new NodeUpgradeOrchestrator(60000, 60000);
+        registry = mock(Registry.class);
+        proxies = new ArrayList<SeLionRemoteProxy>();
+        upgrades = new ArrayList<SettableFuture<Boolean>>();
+        for (int i = 0; i < 5; i++) {
+            SeLionRemoteProxy proxy = mock(SeLionRemoteProxy.class);
+            SettableFuture<Boolean> upgraded = SettableFuture.create();
+            when(proxy.getId()).thenReturn("http://node" + i + ":5555");
+            when(proxy.upgrade(JSON)).thenReturn(upgraded);
+            when(registry.getProxyById(proxy.getId())).thenReturn(proxy);
+            proxies.add(proxy);
+            upgrades.add(upgraded);
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void after() {
+        orchestrator.shutdown();
+    }
+
+    private void reRegister(int node) {
+        SeLionRemoteProxy restarted = mock(SeLionRemoteProxy.class);
+        when(registry.getProxyById(proxies.get(node).getId())).thenReturn(restarted);
+    }
+
+    @Test
+    public void testAtMostMaxDrainingNodesAreUpgradedAtOnce() throws Exception {
+        Upgrade upgrade = orchestrator.start(registry, proxies, JSON, 2);
+        upgrade.advance();
+
+        verify(proxies.get(0)).upgrade(JSON);
+        verify(proxies.get(1)).upgrade(JSON);
+        verify(proxies.get(2), never()).upgrade(JSON);
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.UPGRADING);
+        assertEquals(upgrade.getStatuses().get(proxies.get(2).getId()), Status.QUEUED);
+
+        upgrades.get(0).set(true);
+        upgrades.get(1).set(false);
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.DRAINING);
+        assertEquals(upgrade.getStatuses().get(proxies.get(1).getId()), Status.REJECTED);
+
+        // the rejected node makes room for the next one, the draining node does not
+        upgrade.advance();
+        verify(proxies.get(2)).upgrade(JSON);
+        verify(proxies.get(3), never()).upgrade(JSON);
+
+        when(proxies.get(0).getRestartState()).thenReturn(State.COMPLETED);
+        upgrade.advance();
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.RESTARTING);
+        verify(proxies.get(3), never()).upgrade(JSON);
+
+        reRegister(0);
+        upgrade.advance();
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.UPGRADED);
+        verify(proxies.get(3)).upgrade(JSON);
+        assertFalse(upgrade.isDone());
+    }
+
+    @Test
+    public void testUpgradeCompletes() throws Exception {
+        Upgrade upgrade = orchestrator.start(registry, proxies, JSON, 10);
+        assertNull(orchestrator.start(registry, proxies, JSON, 10), "A second upgrade was started");
+        upgrade.advance();
+        for (int i = 0; i < 5; i++) {
+            upgrades.get(i).set(true);
+        }
+        when(proxies.get(4).getRestartState()).thenReturn(State.FAILED);
+        for (int i = 0; i < 4; i++) {
+            reRegister(i);
+        }
+        upgrade.advance();
+
+        assertTrue(upgrade.isDone());
+        JsonObject json = upgrade.toJson();
+        assertTrue(json.get("done").getAsBoolean());
+        assertEquals(json.getAsJsonObject("summary").get("UPGRADED").getAsInt(), 4);
+        assertEquals(json.getAsJsonObject("nodes").get(proxies.get(4).getId()).getAsString(), "FAILED");
+        assertNotNull(orchestrator.start(registry, proxies, JSON, 10), "A new upgrade was not started");
+    }
+
+    @Test
+    public void testNodeThatDoesNotComeBackFails() throws Exception {
+        orchestrator.shutdown();
+        orchestrator = new NodeUpgradeOrchestrator(60000, 200);
+        Upgrade upgrade = orchestrator.start(registry, proxies.subList(0, 2), JSON, 2);
+        upgrade.advance();
+        upgrades.get(0).set(true);
+        upgrades.get(1).set(true);
+
+        // node 0 was asked to restart, node 1 left the Hub
+        when(proxies.get(0).getRestartState()).thenReturn(State.RESTARTING);
+        when(registry.getProxyById(proxies.get(1).getId())).thenReturn(null);
+        upgrade.advance();
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.RESTARTING);
+        assertEquals(upgrade.getStatuses().get(proxies.get(1).getId()), Status.RESTARTING);
+
+        Thread.sleep(300);
+        upgrade.advance();
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.FAILED);
+        assertEquals(upgrade.getStatuses().get(proxies.get(1).getId()), Status.FAILED);
+        assertTrue(upgrade.isDone());
+    }
+
+    @Test
+    public void testDrainingNodeIsNotRestarting() throws Exception {
+        Upgrade upgrade = orchestrator.start(registry, proxies, JSON, 1);
+        upgrade.advance();
+        upgrades.get(0).set(true);
+        // a recycle that completed without a restart ever being sent
+        when(proxies.get(0).getRecycleState()).thenReturn(State.COMPLETED);
+        upgrade.advance();
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.DRAINING);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        assertNull(orchestrator.cancel(), "Nothing to cancel");
+        Upgrade upgrade = orchestrator.start(registry, proxies, JSON, 2);
+        upgrade.advance();
+        upgrades.get(0).set(true);
+
+        assertEquals(orchestrator.cancel(), upgrade);
+        assertTrue(upgrade.isDone());
+        assertEquals(upgrade.getStatuses().get(proxies.get(0).getId()), Status.CANCELLED);
+        assertEquals(upgrade.getStatuses().get(proxies.get(4).getId()), Status.CANCELLED);
+
+        // a late answer does not bring a cancelled node back
+        upgrades.get(1).set(true);
+        assertEquals(upgrade.getStatuses().get(proxies.get(1).getId()), Status.CANCELLED);
+        upgrade.advance();
+        verify(proxies.get(2), never()).upgrade(JSON);
+        assertNotNull(orchestrator.start(registry, proxies, JSON, 2), "A new upgrade was not started");
+    }
+}
@@ -0,0 +1,166 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.proxy;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class SauceConcurrencyTrackerTest {
+
+    private HttpServer sauce;
+    private final AtomicInteger polls = new AtomicInteger();
+    private volatile int running;
+    private volatile int status;
+
+    private String activityUrl() {
+        return "http://localhost:" + sauce.getAddress().getPort() + "/rest/v1/user/activity";
+    }
+
+    private SauceConcurrencyTracker newTracker() {
+        SauceConcurrencyTracker tracker = new SauceConcurrencyTracker(activityUrl(), "dXNlcjprZXk=", 60000);
+        // the first poll, without waiting for the poller
+        tracker.refresh();
+        return tracker;
+    }
+
+    @BeforeMethod
+    public void startSauce() throws IOException {
+        polls.set(0);
+        running = 0;
+        status = 200;
+        sauce = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        sauce.createContext("/rest/v1/user/activity", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                polls.incrementAndGet();
+                byte[] body = ("{\"subaccounts\": {}, \"totals\": {\"queued\": 0, \"all\": " + running
+                        + ", \"in progress\": " + running + "}}").getBytes("UTF-8");
+                exchange.sendResponseHeaders(status, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        sauce.start();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void stopSauce() {
+        sauce.stop(0);
+    }
+
+    @Test
+    public void sessionsAreAccountedLocallyBetweenPolls() {
+        running = 1;
+        SauceConcurrencyTracker tracker = newTracker();
+        try {
+            assertEquals(polls.get(), 1);
+            assertEquals(tracker.getRunning(), 1);
+
+            assertTrue(tracker.tryAcquire(2));
+            assertTrue(tracker.tryAcquire(2));
+            assertFalse(tracker.tryAcquire(2));
+            assertEquals(tracker.getRunning(), 3);
+
+            tracker.release();
+            assertEquals(tracker.getRunning(), 2);
+            assertTrue(tracker.tryAcquire(2));
+            assertEquals(polls.get(), 1);
+        } finally {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    public void pollReplacesLocalAccounting() {
+        SauceConcurrencyTracker tracker = newTracker();
+        try {
+            assertTrue(tracker.tryAcquire(1));
+            assertTrue(tracker.tryAcquire(1));
+            assertEquals(tracker.getRunning(), 2);
+
+            running = 0;
+            tracker.refresh();
+            assertEquals(tracker.getRunning(), 0);
+
+            running = 5;
+            tracker.refresh();
+            assertFalse(tracker.tryAcquire(1));
+        } finally {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    public void nothingIsAdmittedUntilTheFirstPollSucceeds() {
+        status = 500;
+        SauceConcurrencyTracker tracker = newTracker();
+        try {
+            assertEquals(tracker.getRunning(), -1);
+            assertFalse(tracker.tryAcquire(10));
+
+            status = 200;
+            tracker.refresh();
+            assertTrue(tracker.tryAcquire(10));
+        } finally {
+            tracker.stop();
+        }
+    }
+
+    @Test
+    public void proxiesOfAnAccountShareOneTracker() throws InterruptedException {
+        running = 3;
+        SauceConcurrencyTracker first = SauceConcurrencyTracker.register(activityUrl(), "dXNlcjprZXk=", 60000);
+        SauceConcurrencyTracker second = SauceConcurrencyTracker.register(activityUrl(), "dXNlcjprZXk=", 60000);
+        SauceConcurrencyTracker other = SauceConcurrencyTracker.register(activityUrl(), "b3RoZXI6a2V5", 60000);
+        try {
+            assertSame(second, first);
+            assertNotSame(other, first);
+
+            // the first poll happens in the background
+            for (int i = 0; i < 100 && first.getRunning() < 0; i++) {
+                Thread.sleep(50);
+            }
+            assertEquals(first.getRunning(), 3);
+            assertTrue(first.tryAcquire(3));
+            assertFalse(second.tryAcquire(3));
+        } finally {
+            SauceConcurrencyTracker.unregister(first);
+            SauceConcurrencyTracker.unregister(second);
+            SauceConcurrencyTracker.unregister(other);
+        }
+        SauceConcurrencyTracker next = SauceConcurrencyTracker.register(activityUrl(), "dXNlcjprZXk=", 60000);
+        SauceConcurrencyTracker.unregister(next);
+        assertNotSame(next, first);
+    }
+}
@@ -62,9 +62,11 @@ public class ConfigParserTest extends PowerMockTestCase {
         long maxFileSize = config.getLong("along", 10L);
         String managedArtifact = config.getString("astring", "default");
         int sessionCount = config.getInt("anint", 10);
+        boolean warmStandby = config.getBoolean("aboolean", true);
 
         assertEquals(maxFileSize, 10L);
         assertEquals(managedArtifact, "default");
         assertEquals(sessionCount, 10);
+        assertTrue(warmStandby);
     }
 }
\ No newline at end of file
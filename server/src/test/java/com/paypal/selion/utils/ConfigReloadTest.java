@@ -0,0 +1,133 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.utils;
+
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.paypal.selion.utils.ConfigParser.ChangeListener;
+
+public class ConfigReloadTest {
+
+    private File configFile;
+
+    @BeforeMethod
+    public void before() throws IOException {
+        configFile = File.createTempFile("SeLionConfig", ".json");
+        write("{\"uniqueSessionCount\": 25, \"artifactExpiryInMilliSec\": 1000, \"restartCycle\": \"often\"}");
+        ConfigParser.setConfigFile(configFile.getAbsolutePath());
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void after() {
+        // back to the configuration that the other tests expect
+        ConfigParser.setConfigFile(null);
+        FileUtils.deleteQuietly(configFile);
+    }
+
+    private void write(String contents) throws IOException {
+        FileUtils.writeStringToFile(configFile, contents);
+    }
+
+    @Test
+    public void testSnapshotValues() {
+        ConfigParser config = ConfigParser.parse();
+
+        assertSame(ConfigParser.parse(), config);
+        assertEquals(config.getInt("uniqueSessionCount"), 25);
+        assertEquals(config.getString("uniqueSessionCount"), "25");
+        assertEquals(config.getLong("restartCycle", 60000L), 60000L);
+        assertEquals(config.getString("restartCycle"), "often");
+    }
+
+    @Test(expectedExceptions = ConfigParser.ConfigParserException.class)
+    public void testMissingValue() {
+        ConfigParser.parse().getLong("restartCycle");
+    }
+
+    @Test
+    public void testReloadNotifiesListeners() throws Exception {
+        ConfigParser previous = ConfigParser.parse();
+        final AtomicReference<ConfigParser> notified = new AtomicReference<ConfigParser>();
+        final CountDownLatch changed = new CountDownLatch(1);
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public void configurationChanged(ConfigParser previous, ConfigParser current) {
+                notified.set(current);
+                changed.countDown();
+            }
+        };
+        ConfigParser.addChangeListener(listener);
+        try {
+            assertSame(ConfigParser.reload(), previous, "An unchanged configuration was swapped");
+            assertNull(notified.get());
+
+            write("{\"uniqueSessionCount\": 10, \"artifactExpiryInMilliSec\": 1000}");
+            // the file watcher may get to the change first, in which case it notifies the listener
+            assertEquals(ConfigParser.reload().getInt("uniqueSessionCount"), 10);
+
+            assertTrue(changed.await(30, TimeUnit.SECONDS), "The listener was not notified");
+            assertSame(notified.get(), ConfigParser.parse());
+            assertEquals(previous.getInt("uniqueSessionCount"), 25, "A snapshot changed after it was replaced");
+        } finally {
+            ConfigParser.removeChangeListener(listener);
+        }
+    }
+
+    @Test
+    public void testMalformedFileKeepsPreviousSnapshot() throws IOException {
+        ConfigParser previous = ConfigParser.parse();
+        write("{\"uniqueSessionCount\": ");
+
+        assertSame(ConfigParser.reload(), previous);
+        assertEquals(ConfigParser.parse().getInt("uniqueSessionCount"), 25);
+    }
+
+    @Test
+    public void testFileChangeIsPickedUp() throws Exception {
+        ConfigParser.parse();
+        final CountDownLatch changed = new CountDownLatch(1);
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public void configurationChanged(ConfigParser previous, ConfigParser current) {
+                if (current.getInt("uniqueSessionCount", 0) == 5) {
+                    changed.countDown();
+                }
+            }
+        };
+        ConfigParser.addChangeListener(listener);
+        try {
+            write("{\"uniqueSessionCount\": 5, \"artifactExpiryInMilliSec\": 1000}");
+
+            // some platforms poll for file changes instead of being notified, so allow for a generous wait
+            assertTrue(changed.await(30, TimeUnit.SECONDS), "The configuration file change was not picked up");
+            assertEquals(ConfigParser.parse().getInt("uniqueSessionCount"), 5);
+        } finally {
+            ConfigParser.removeChangeListener(listener);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*-------------------------------------------------------------------------------------------------------------------*\
+|  Copyright (C) 2015 eBay Software Foundation                                                                        |
+|                                                                                                                     |
+|  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance     |
+|  with the License.                                                                                                  |
+|                                                                                                                     |
+|  You may obtain a copy of the License at                                                                            |
+|                                                                                                                     |
+|       http://www.apache.org/licenses/LICENSE-2.0                                                                    |
+|                                                                                                                     |
+|  Unless required by applicable law or agreed to in writing, software distributed under the License is distributed   |
+|  on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for  |
+|  the specific language governing permissions and limitations under the License.                                     |
+\*-------------------------------------------------------------------------------------------------------------------*/
+
+
+package com.paypal.selion.utils.process;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import com.paypal.selion.pojos.ProcessInfo;
+import com.paypal.selion.utils.process.LinuxProcessHandler.ProcStat;
+
+public class LinuxProcessHandlerTest {
+
+    /**
+     * Matches the <code>sleep</code> processes started by the tests instead of the browsers and drivers.
+     */
+    private static class SleepProcessHandler extends LinuxProcessHandler {
+        SleepProcessHandler() {
+            super(TimeUnit.SECONDS.toMillis(1));
+        }
+
+        @Override
+        protected boolean matches(String image) {
+            return "sleep".equals(image);
+        }
+    }
+
+    @Test
+    public void testParseStat() {
+        ProcStat stat = ProcStat.parse("4242 (Web Content) (x)) S 4200 4100 4000 34816 4100 4194560 1 0 0 0");
+        assertEquals(stat.pid, 4242);
+        assertEquals(stat.name, "Web Content) (x)");
+        assertEquals(stat.state, 'S');
+        assertEquals(stat.ppid, 4200);
+        assertEquals(stat.session, 4000);
+        assertFalse(stat.isZombie());
+        assertTrue(ProcStat.parse("7 (chromedriver) Z 1 7 7 0 -1").isZombie());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseMalformedStat() {
+        ProcStat.parse("4242 chromedriver S 4200");
+    }
+
+    @Test
+    public void testGrandChildrenAreFoundAndKilled() throws Exception {
+        if (!LinuxProcessHandler.isSupported()) {
+            throw new SkipException("/proc is not available");
+        }
+        // The shell is our child, the sleep it starts in the background is our grandchild.
+        Process shell = new ProcessBuilder("sh", "-c", "sleep 300 & wait").start();
+        try {
+            LinuxProcessHandler handler = new SleepProcessHandler();
+            List<ProcessInfo> processes = waitForSleep(handler);
+            assertEquals(processes.size(), 1, processes.toString());
+            String pid = processes.get(0).getProcessId();
+
+            handler.killProcess(processes);
+            assertFalse(isRunning(pid), "sleep " + pid + " is still running");
+            assertTrue(handler.potentialProcessToBeKilled().isEmpty());
+        } finally {
+            shell.destroy();
+        }
+    }
+
+    private static List<ProcessInfo> waitForSleep(LinuxProcessHandler handler) throws Exception {
+        List<ProcessInfo> processes = handler.potentialProcessToBeKilled();
+        for (int i = 0; i < 50 && processes.isEmpty(); i++) {
+            Thread.sleep(100);
+            processes = handler.potentialProcessToBeKilled();
+        }
+        return processes;
+    }
+
+    private static boolean isRunning(String pid) throws IOException {
+        File stat = new File("/proc/" + pid + "/stat");
+        // Once killed, the sleep stays a zombie until the shell reaps it.
+        return stat.exists() && !ProcStat.parse(new String(Files.readAllBytes(stat.toPath()), "UTF-8")).isZombie();
+    }
+}